@@ -19,6 +19,7 @@ import org.openstreetmap.josm.data.PreferencesUtils;
 import org.openstreetmap.josm.gui.ExtendedDialog;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.io.importexport.FileExporter;
+import org.openstreetmap.josm.gui.io.importexport.OsmExporter;
 import org.openstreetmap.josm.gui.layer.AbstractModifiableLayer;
 import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.gui.util.GuiHelper;
@@ -134,7 +135,7 @@ public abstract class SaveActionBase extends DiskAccessAction {
             return false;
 
         try {
-            boolean exported = false;
+            FileExporter exported = null;
             boolean canceled = false;
             for (FileExporter exporter : ExtensionFileFilter.getExporters()) {
                 if (exporter.acceptFile(file, layer)) {
@@ -143,12 +144,12 @@ public abstract class SaveActionBase extends DiskAccessAction {
                     } else {
                         exporter.exportData(file, layer);
                     }
-                    exported = true;
+                    exported = exporter;
                     canceled = exporter.isCanceled();
                     break;
                 }
             }
-            if (!exported) {
+            if (exported == null) {
                 GuiHelper.runInEDT(() ->
                     JOptionPane.showMessageDialog(MainApplication.getMainFrame(), tr("No Exporter found! Nothing saved."), tr("Warning"),
                         JOptionPane.WARNING_MESSAGE));
@@ -160,7 +161,8 @@ public abstract class SaveActionBase extends DiskAccessAction {
                 layer.setName(file.getName());
             }
             layer.setAssociatedFile(file);
-            if (layer instanceof AbstractModifiableLayer) {
+            // the edits of the layer are still to be saved if the file format cannot store them
+            if (layer instanceof AbstractModifiableLayer && !(exported instanceof OsmExporter && !((OsmExporter) exported).keepsEdits())) {
                 ((AbstractModifiableLayer) layer).onPostSaveToFile();
             }
         } catch (IOException | InvalidPathException e) {
@@ -2,8 +2,9 @@
 package org.openstreetmap.josm.data.cache;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import javax.imageio.ImageIO;
 
@@ -29,6 +30,15 @@ public class BufferedImageCacheEntry extends CacheEntry {
         super(content);
     }
 
+    /**
+     * Constructs a cache entry that decodes its image directly from a buffer, e.g. a mapped file.
+     * @param content buffer containing image. It must not be modified afterwards
+     * @since 17260
+     */
+    public BufferedImageCacheEntry(ByteBuffer content) {
+        super(content);
+    }
+
     /**
      * Returns BufferedImage from for the content. Subsequent calls will return the same instance,
      * to reduce overhead of ImageIO
@@ -42,9 +52,10 @@ public class BufferedImageCacheEntry extends CacheEntry {
         synchronized (this) {
             if (imageLoaded)
                 return img;
-            byte[] content = getContent();
-            if (content.length > 0) {
-                img = ImageIO.read(new ByteArrayInputStream(content));
+            if (getContentLength() > 0) {
+                try (InputStream in = getContentStream()) {
+                    img = ImageIO.read(in);
+                }
                 imageLoaded = true;
             }
         }
@@ -1,9 +1,16 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.data.cache;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import org.openstreetmap.josm.io.ByteBufferInputStream;
+
 /**
  * Class that will hold JCS cache entries
  *
@@ -12,6 +19,8 @@ import java.util.Arrays;
 public class CacheEntry implements Serializable {
     private static final long serialVersionUID = 1L; //version
     protected byte[] content;
+    // content read from a mapped file, copied into content only when serialized
+    private transient ByteBuffer buffer;
 
     /**
      * @param content of the cache entry
@@ -20,14 +29,59 @@ public class CacheEntry implements Serializable {
         this.content = Arrays.copyOf(content, content.length);
     }
 
+    /**
+     * Constructs a cache entry that reads its content from a buffer, e.g. a mapped file, without copying it.
+     * @param content of the cache entry. It must not be modified afterwards
+     * @since 17260
+     */
+    public CacheEntry(ByteBuffer content) {
+        this.buffer = content.slice().asReadOnlyBuffer();
+    }
+
     /**
      * Returns cache entry content.
      * @return cache entry content
      */
     public byte[] getContent() {
         if (content == null) {
+            if (buffer != null) {
+                byte[] result = new byte[buffer.remaining()];
+                buffer.duplicate().get(result);
+                return result;
+            }
             return new byte[]{};
         }
         return Arrays.copyOf(content, content.length);
     }
+
+    /**
+     * Returns the length of the cache entry content, without copying it.
+     * @return the length of the cache entry content
+     * @since 17260
+     */
+    public int getContentLength() {
+        if (content == null) {
+            return buffer != null ? buffer.remaining() : 0;
+        }
+        return content.length;
+    }
+
+    /**
+     * Returns a stream reading the cache entry content, without copying it.
+     * @return a stream reading the cache entry content
+     * @since 17260
+     */
+    public InputStream getContentStream() {
+        if (content == null) {
+            return buffer != null ? new ByteBufferInputStream(buffer.duplicate()) : new ByteArrayInputStream(new byte[0]);
+        }
+        return new ByteArrayInputStream(content);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (content == null && buffer != null) {
+            content = getContent();
+        }
+        out.defaultWriteObject();
+    }
 }
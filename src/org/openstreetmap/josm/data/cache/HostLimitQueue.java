@@ -23,6 +23,10 @@ import org.openstreetmap.josm.tools.Logging;
  * [2] If we have a queue, and for all hosts in queue we will fail to acquire semaphore, the thread
  *     take the first available job and wait for semaphore. It might be the case, that semaphore was released
  *     for some task further in queue, but this implementation doesn't try to detect such situation
+ * <p>
+ * Among the jobs whose host limit is not reached, the job of lowest {@link JCSCachedTileLoaderJob#getPriority()
+ * priority} is run first, in submission order for equal priorities. Priorities are read each time a job is taken,
+ * and the jobs whose priority is infinite are cancelled meanwhile.
  *
  * @author Wiktor Niesiobędzki
  */
@@ -52,30 +56,50 @@ public class HostLimitQueue extends LinkedBlockingDeque<Runnable> {
     }
 
     private JCSCachedTileLoaderJob<?, ?> findJob() {
-        for (Iterator<Runnable> it = iterator(); it.hasNext();) {
-            Runnable r = it.next();
-            if (r instanceof JCSCachedTileLoaderJob) {
-                JCSCachedTileLoaderJob<?, ?> job = (JCSCachedTileLoaderJob<?, ?>) r;
-                if (tryAcquireSemaphore(job)) {
-                    if (remove(job)) {
-                        return job;
-                    } else {
-                        // we have acquired the semaphore, but we didn't manage to remove job, as someone else did
-                        // release the semaphore and look for another candidate
-                        releaseSemaphore(job);
-                    }
-                } else {
-                    URL url = null;
-                    try {
-                        url = job.getUrl();
-                    } catch (IOException e) {
-                        Logging.debug(e);
+        while (true) {
+            JCSCachedTileLoaderJob<?, ?> best = null;
+            double bestPriority = Double.POSITIVE_INFINITY;
+            for (Iterator<Runnable> it = iterator(); it.hasNext();) {
+                Runnable r = it.next();
+                if (r instanceof JCSCachedTileLoaderJob) {
+                    JCSCachedTileLoaderJob<?, ?> job = (JCSCachedTileLoaderJob<?, ?>) r;
+                    double priority = job.getPriority();
+                    if (priority == Double.POSITIVE_INFINITY) {
+                        // the job is not needed anymore
+                        if (remove(job)) {
+                            job.handleJobCancellation();
+                        }
+                    } else if (best == null || priority < bestPriority) {
+                        if (getSemaphore(job).availablePermits() > 0) {
+                            best = job;
+                            bestPriority = priority;
+                        } else {
+                            Logging.debug("TMS - Skipping job {0} because host limit reached", getUrlNoException(job));
+                        }
                     }
-                    Logging.debug("TMS - Skipping job {0} because host limit reached", url);
                 }
             }
+            if (best == null) {
+                return null;
+            }
+            if (tryAcquireSemaphore(best)) {
+                if (remove(best)) {
+                    return best;
+                }
+                // we have acquired the semaphore, but we didn't manage to remove job, as someone else did
+                // release the semaphore and look for another candidate
+                releaseSemaphore(best);
+            }
+        }
+    }
+
+    private static URL getUrlNoException(JCSCachedTileLoaderJob<?, ?> job) {
+        try {
+            return job.getUrl();
+        } catch (IOException e) {
+            Logging.debug(e);
+            return null;
         }
-        return null;
     }
 
     @Override
@@ -44,6 +44,16 @@ public final class JCSCacheManager {
     private static final long maxObjectTTL = -1;
     private static final String PREFERENCE_PREFIX = "jcs.cache";
     public static final BooleanProperty USE_BLOCK_CACHE = new BooleanProperty(PREFERENCE_PREFIX + ".use_block_cache", true);
+    /**
+     * Use a {@link TilePackDiskCache} for disk caches, instead of the JCS disk caches.
+     * <p>
+     * The maximum disk size of a cache, in kB (see {@code imagery.cache.max_disk_size}, in MB), is then a limit of the
+     * size in bytes of the stored records, instead of a number of objects or blocks: the least recently used tiles are
+     * evicted above it. The pack file may be larger, as the replaced tiles are only dropped when they take more space than
+     * the stored ones.
+     * @since 17260
+     */
+    public static final BooleanProperty USE_TILE_PACK = new BooleanProperty(PREFERENCE_PREFIX + ".use_tile_pack", false);
 
     private static final AuxiliaryCacheFactory DISK_CACHE_FACTORY =
             USE_BLOCK_CACHE.get() ? new BlockDiskCacheFactory() : new IndexedDiskCacheFactory();
@@ -179,8 +189,7 @@ public final class JCSCacheManager {
             IDiskCacheAttributes diskAttributes = getDiskCacheAttributes(maxDiskObjects, cachePath, cacheName);
             try {
                 if (cc.getAuxCaches().length == 0) {
-                    cc.setAuxCaches(new AuxiliaryCache[]{DISK_CACHE_FACTORY.createCache(
-                            diskAttributes, null, null, new StandardSerializer())});
+                    cc.setAuxCaches(new AuxiliaryCache[]{createDiskCache(diskAttributes, maxDiskObjects)});
                 }
             } catch (Exception e) { // NOPMD
                 // in case any error in setting auxiliary cache, do not use disk cache at all - only memory
@@ -191,6 +200,15 @@ public final class JCSCacheManager {
         return cacheAccess;
     }
 
+    private static AuxiliaryCache<?, ?> createDiskCache(IDiskCacheAttributes diskAttributes, int maxDiskObjects)
+            throws Exception { // NOPMD
+        if (USE_TILE_PACK.get()) {
+            // maxDiskObjects is the maximum size of the cache in kB, not a number of objects
+            return new TilePackDiskCache(diskAttributes, maxDiskObjects * 1024L, new StandardSerializer());
+        }
+        return DISK_CACHE_FACTORY.createCache(diskAttributes, null, null, new StandardSerializer());
+    }
+
     /**
      * Close all files to ensure, that all indexes and data are properly written
      */
@@ -200,10 +218,18 @@ public final class JCSCacheManager {
 
     private static IDiskCacheAttributes getDiskCacheAttributes(int maxDiskObjects, String cachePath, String cacheName) {
         IDiskCacheAttributes ret;
-        removeStaleFiles(cachePath + File.separator + cacheName, USE_BLOCK_CACHE.get() ? "_INDEX_v2" : "_BLOCK_v2");
-        String newCacheName = cacheName + (USE_BLOCK_CACHE.get() ? "_BLOCK_v2" : "_INDEX_v2");
+        String newCacheName;
+        if (USE_TILE_PACK.get()) {
+            removeStaleFiles(cachePath + File.separator + cacheName, "_INDEX_v2");
+            removeStaleFiles(cachePath + File.separator + cacheName, "_BLOCK_v2");
+            newCacheName = cacheName + "_PACK_v1";
+        } else {
+            removeStaleFiles(cachePath + File.separator + cacheName, USE_BLOCK_CACHE.get() ? "_INDEX_v2" : "_BLOCK_v2");
+            TilePackFile.deleteFiles(new File(cachePath), cacheName + "_PACK_v1");
+            newCacheName = cacheName + (USE_BLOCK_CACHE.get() ? "_BLOCK_v2" : "_INDEX_v2");
+        }
 
-        if (USE_BLOCK_CACHE.get()) {
+        if (USE_BLOCK_CACHE.get() && !USE_TILE_PACK.get()) {
             BlockDiskCacheAttributes blockAttr = new BlockDiskCacheAttributes();
             /*
              * BlockDiskCache never optimizes the file, so when file size is reduced, it will never be truncated to desired size.
@@ -180,7 +180,7 @@ public abstract class JCSCachedTileLoaderJob<K, V extends CacheEntry> implements
         if (cacheData == null) {
             return false;
         }
-        return cacheData.getContent().length > 0;
+        return cacheData.getContentLength() > 0;
     }
 
     /**
@@ -539,6 +539,16 @@ public abstract class JCSCachedTileLoaderJob<K, V extends CacheEntry> implements
 
     }
 
+    /**
+     * Returns the priority of this job in the download queue, read each time a download thread picks a job.
+     * @return the priority of this job, lower values being run first, or {@link Double#POSITIVE_INFINITY} if the job
+     * is not needed anymore and may be cancelled. Jobs of the same priority are run in submission order
+     * @since 17263
+     */
+    public double getPriority() {
+        return 0;
+    }
+
     /**
      * Marks this job as canceled
      */
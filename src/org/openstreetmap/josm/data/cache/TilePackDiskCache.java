@@ -0,0 +1,162 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.jcs3.auxiliary.AuxiliaryCacheAttributes;
+import org.apache.commons.jcs3.auxiliary.disk.AbstractDiskCache;
+import org.apache.commons.jcs3.auxiliary.disk.behavior.IDiskCacheAttributes;
+import org.apache.commons.jcs3.engine.CacheElement;
+import org.apache.commons.jcs3.engine.behavior.ICacheElement;
+import org.apache.commons.jcs3.engine.behavior.IElementAttributes;
+import org.apache.commons.jcs3.engine.behavior.IElementSerializer;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * JCS disk cache storing the cache entries in a {@link TilePackFile}.
+ * <p>
+ * The content of {@link BufferedImageCacheEntry} objects is stored as is, and read back without copy from the mapped
+ * pack file, so that the images are decoded directly from it. Only the element attributes, and the values of other
+ * types, are serialized.
+ * <p>
+ * The keys of the cache must be strings, as for the tile caches.
+ * @since 17260
+ */
+public class TilePackDiskCache extends AbstractDiskCache<String, CacheEntry> {
+
+    /** Record of a {@link BufferedImageCacheEntry}, whose data is the raw content */
+    private static final int KIND_IMAGE = 1;
+    /** Record of another value, whose data is the serialized value */
+    private static final int KIND_SERIALIZED = 2;
+
+    private final IDiskCacheAttributes attributes;
+    private final TilePackFile pack;
+
+    /**
+     * Constructs a new {@code TilePackDiskCache}.
+     * @param attributes the disk cache attributes, giving the cache name and directory
+     * @param maxSize the maximum size of the cache, in bytes, or 0 for no limit
+     * @param serializer the serializer of the element attributes and of the values which are not images
+     * @throws IOException if the pack file cannot be opened
+     */
+    public TilePackDiskCache(IDiskCacheAttributes attributes, long maxSize, IElementSerializer serializer)
+            throws IOException {
+        super(attributes);
+        this.attributes = attributes;
+        setElementSerializer(serializer);
+        this.pack = new TilePackFile(attributes.getDiskPath(), attributes.getCacheName(), maxSize);
+        setAlive(true);
+    }
+
+    @Override
+    public Set<String> getKeySet() throws IOException {
+        return new HashSet<>(pack.getKeys());
+    }
+
+    @Override
+    protected ICacheElement<String, CacheEntry> processGet(String key) throws IOException {
+        TilePackFile.Record record = pack.get(key);
+        if (record == null) {
+            return null;
+        }
+        try {
+            CacheEntry value;
+            if (record.getKind() == KIND_IMAGE) {
+                value = new BufferedImageCacheEntry(record.getData());
+            } else {
+                value = getElementSerializer().deSerialize(toArray(record.getData()), null);
+            }
+            CacheElement<String, CacheEntry> element = new CacheElement<>(getCacheName(), key, value);
+            IElementAttributes elementAttributes = getElementSerializer().deSerialize(toArray(record.getMeta()), null);
+            element.setElementAttributes(elementAttributes);
+            return element;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            Logging.warn("Unable to read tile pack entry {0}: {1}", key, e);
+            pack.remove(key);
+            return null;
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+    @Override
+    protected Map<String, ICacheElement<String, CacheEntry>> processGetMatching(String pattern) throws IOException {
+        Pattern compiled = Pattern.compile(pattern);
+        Map<String, ICacheElement<String, CacheEntry>> result = new HashMap<>();
+        for (String key : pack.getKeys()) {
+            if (compiled.matcher(key).matches()) {
+                ICacheElement<String, CacheEntry> element = processGet(key);
+                if (element != null) {
+                    result.put(key, element);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected void processUpdate(ICacheElement<String, CacheEntry> cacheElement) throws IOException {
+        CacheEntry value = cacheElement.getVal();
+        int kind;
+        byte[] data;
+        if (value != null && value.getClass() == BufferedImageCacheEntry.class) {
+            kind = KIND_IMAGE;
+            data = value.getContent();
+        } else {
+            kind = KIND_SERIALIZED;
+            data = getElementSerializer().serialize(value);
+        }
+        byte[] meta = getElementSerializer().serialize(cacheElement.getElementAttributes());
+        if (TilePackFile.RECORD_HEADER_SIZE + data.length + meta.length > TilePackFile.MAX_RECORD_SIZE) {
+            Logging.debug("Not storing too large tile pack entry {0}", cacheElement.getKey());
+            return;
+        }
+        pack.put(cacheElement.getKey(), kind, meta, data);
+    }
+
+    @Override
+    protected boolean processRemove(String key) throws IOException {
+        return pack.remove(key);
+    }
+
+    @Override
+    protected void processRemoveAll() throws IOException {
+        pack.clear();
+    }
+
+    @Override
+    protected void processDispose() throws IOException {
+        pack.close();
+    }
+
+    @Override
+    public int getSize() {
+        return pack.size();
+    }
+
+    @Override
+    protected String getDiskLocation() {
+        return pack.getPackFile().getPath();
+    }
+
+    @Override
+    public AuxiliaryCacheAttributes getAuxiliaryCacheAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public String getEventLoggingExtraInfo() {
+        return getDiskLocation();
+    }
+}
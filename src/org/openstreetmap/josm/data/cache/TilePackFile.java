@@ -0,0 +1,1019 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * A store of tiles in a single file, read through memory mapping.
+ * <p>
+ * The records are appended to a pack file and never modified. Each record holds its key, metadata, data and a
+ * checksum. Replaced and removed records stay in the file until it is compacted into a new pack file, which happens
+ * in the background when they take more space than the live records. The live records are copied without holding the
+ * lock of the store, only the records appended during the copy are copied while holding it, before switching to the
+ * new pack file.
+ * <p>
+ * The records are found through an open addressing hash table of 64 bits key hashes, so that an entry only takes a
+ * few dozen bytes of heap, whatever the length of its key. The table is saved in an index file when the store is
+ * closed, and at regular intervals. When the store is opened, the records appended after the last save of the index
+ * (or all records, if the index is missing or damaged) are scanned, and the pack is truncated at the first incomplete
+ * record.
+ * <p>
+ * When a maximum size is given, the least recently used records are evicted when the live records exceed it.
+ * <p>
+ * The data of the records are returned as read-only views of the mapped file, they are not copied to the heap.
+ * @since 17260
+ */
+public final class TilePackFile implements Closeable {
+
+    /** Maximum size of a record */
+    public static final int MAX_RECORD_SIZE = 1 << 26;
+
+    private static final long PACK_MAGIC = 0x4a4f534d54504b31L; // "JOSMTPK1"
+    private static final int INDEX_MAGIC = 0x4a545058; // "JTPX"
+    private static final int RECORD_MAGIC = 0x4a545052; // "JTPR"
+    private static final int VERSION = 1;
+
+    /** Pack header: magic, version, pack id */
+    static final int PACK_HEADER_SIZE = 20;
+    /** Record header: magic, kind, key length, meta length, data length, checksum */
+    static final int RECORD_HEADER_SIZE = 24;
+    /** Index header: magic, version, pack id, pack sequence, indexed length, tick, count */
+    private static final int INDEX_HEADER_SIZE = 40;
+    /** Index entry: hash, offset, size, tick */
+    private static final int INDEX_ENTRY_SIZE = 28;
+    /** Size of the mapped regions of the pack. Records never cross a region boundary */
+    static final int REGION_SIZE = 1 << 28;
+
+    private static final int KIND_REMOVED = 0;
+    private static final int KIND_PADDING = -1;
+
+    /** Minimum space of the dead records before compacting the pack */
+    private static final long MIN_DEAD_BYTES = 64L << 20;
+    /** Length of the records appended after which the index is saved */
+    private static final long INDEX_SAVE_INTERVAL = 256L << 20;
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ExecutorService COMPACTION_EXECUTOR =
+            Executors.newSingleThreadExecutor(Utils.newThreadFactory("tile-pack-compaction-%d", Thread.MIN_PRIORITY));
+
+    private final File directory;
+    private final String name;
+    private final long maxSize;
+
+    private int sequence;
+    private long packId;
+    private FileChannel channel;
+    private MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    /** End of the last record */
+    private long length;
+    /** Length of the pack covered by the saved index */
+    private long indexedLength;
+    private long liveBytes;
+    private long tick;
+
+    // hash table, with linear probing. A zero hash marks an empty slot
+    private long[] hashes;
+    private long[] offsets;
+    private int[] sizes;
+    private long[] ticks;
+    private int count;
+
+    /** Compaction in progress, or {@code null} */
+    private Compaction compaction;
+
+    /**
+     * A record read from the pack.
+     */
+    public static final class Record {
+        private final int kind;
+        private final ByteBuffer meta;
+        private final ByteBuffer data;
+
+        Record(int kind, ByteBuffer meta, ByteBuffer data) {
+            this.kind = kind;
+            this.meta = meta;
+            this.data = data;
+        }
+
+        /**
+         * Returns the kind of the record, as given to {@link TilePackFile#put}.
+         * @return the kind of the record
+         */
+        public int getKind() {
+            return kind;
+        }
+
+        /**
+         * Returns the metadata of the record.
+         * @return a read-only view of the metadata
+         */
+        public ByteBuffer getMeta() {
+            return meta.duplicate();
+        }
+
+        /**
+         * Returns the data of the record.
+         * @return a read-only view of the data, in the mapped pack file
+         */
+        public ByteBuffer getData() {
+            return data.duplicate();
+        }
+    }
+
+    /**
+     * Opens a store, or creates it if it does not exist.
+     * @param directory the directory of the files of the store
+     * @param name the base name of the files of the store
+     * @param maxSize the maximum size of the live records, in bytes, or 0 for no limit
+     * @throws IOException if the files cannot be opened or created
+     */
+    public TilePackFile(File directory, String name, long maxSize) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.maxSize = maxSize;
+        sequence = Math.max(0, getLastSequence());
+        deleteStaleFiles();
+        channel = FileChannel.open(getPackFile(sequence).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        clearTable(1024);
+        if (readPackHeader()) {
+            if (!loadIndex()) {
+                clearTable(1024);
+                indexedLength = PACK_HEADER_SIZE;
+            }
+            scan(indexedLength);
+        } else {
+            if (channel.size() > 0) {
+                Logging.warn("Invalid tile pack {0}, creating a new one", getPackFile(sequence));
+            }
+            channel.truncate(0);
+            packId = RANDOM.nextLong();
+            writeFully(channel, createPackHeader(packId), 0);
+            length = PACK_HEADER_SIZE;
+            indexedLength = PACK_HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Deletes the files of a store, which must not be open.
+     * @param directory the directory of the files of the store
+     * @param name the base name of the files of the store
+     */
+    public static void deleteFiles(File directory, String name) {
+        Utils.deleteFileIfExists(new File(directory, name + ".pidx"));
+        Utils.deleteFileIfExists(new File(directory, name + ".pidx.tmp"));
+        for (File f : listPackFiles(directory, name)) {
+            Utils.deleteFile(f);
+        }
+    }
+
+    /**
+     * Returns the current pack file.
+     * @return the current pack file
+     */
+    public synchronized File getPackFile() {
+        return getPackFile(sequence);
+    }
+
+    private File getPackFile(int seq) {
+        return new File(directory, name + '.' + seq + ".pack");
+    }
+
+    private File getIndexFile() {
+        return new File(directory, name + ".pidx");
+    }
+
+    private static List<File> listPackFiles(File directory, String name) {
+        List<File> result = new ArrayList<>();
+        File[] files = directory.listFiles((dir, n) -> getSequence(name, n) >= 0);
+        if (files != null) {
+            result.addAll(Arrays.asList(files));
+        }
+        return result;
+    }
+
+    private static int getSequence(String name, String fileName) {
+        if (fileName.startsWith(name + '.') && (fileName.endsWith(".pack") || fileName.endsWith(".tmp"))) {
+            String seq = fileName.substring(name.length() + 1, fileName.lastIndexOf('.'));
+            try {
+                return Integer.parseInt(seq);
+            } catch (NumberFormatException e) {
+                Logging.trace(e);
+            }
+        }
+        return -1;
+    }
+
+    private int getLastSequence() {
+        int result = -1;
+        for (File f : listPackFiles(directory, name)) {
+            if (f.getName().endsWith(".pack")) {
+                result = Math.max(result, getSequence(name, f.getName()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Deletes the temporary files of interrupted compactions, and the old pack files that could not be deleted
+     * (e.g. on Windows, where mapped files cannot be deleted).
+     */
+    private void deleteStaleFiles() {
+        File current = getPackFile(sequence);
+        for (File f : listPackFiles(directory, name)) {
+            if (!f.equals(current)) {
+                Utils.deleteFile(f);
+            }
+        }
+    }
+
+    private static ByteBuffer createPackHeader(long id) {
+        ByteBuffer header = ByteBuffer.allocate(PACK_HEADER_SIZE);
+        header.putLong(PACK_MAGIC).putInt(VERSION).putLong(id);
+        ((Buffer) header).flip();
+        return header;
+    }
+
+    private boolean readPackHeader() throws IOException {
+        if (channel.size() < PACK_HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(PACK_HEADER_SIZE);
+        readFully(channel, header, 0);
+        if (header.getLong(0) != PACK_MAGIC || header.getInt(8) != VERSION) {
+            return false;
+        }
+        packId = header.getLong(12);
+        return true;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            int n = ch.read(buffer, pos);
+            if (n < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            pos += n;
+        }
+        ((Buffer) buffer).flip();
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            pos += ch.write(buffer, pos);
+        }
+    }
+
+    /**
+     * Scans the records of the pack from a given position, and truncates the pack after the last valid record.
+     * @param from the position of the first record to scan
+     * @throws IOException if an I/O error occurs
+     */
+    private void scan(long from) throws IOException {
+        long size = channel.size();
+        long position = from;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        while (true) {
+            position = alignHeader(position);
+            if (position + RECORD_HEADER_SIZE > size) {
+                break;
+            }
+            ((Buffer) header).clear();
+            readFully(channel, header, position);
+            int kind = header.getInt(4);
+            int keyLength = header.getInt(8);
+            int metaLength = header.getInt(12);
+            int dataLength = header.getInt(16);
+            long recordSize = (long) RECORD_HEADER_SIZE + keyLength + metaLength + dataLength;
+            if (header.getInt(0) != RECORD_MAGIC || keyLength < 0 || metaLength < 0 || dataLength < 0
+                    || (kind != KIND_PADDING && recordSize > MAX_RECORD_SIZE)
+                    || position % REGION_SIZE + recordSize > REGION_SIZE || position + recordSize > size) {
+                break;
+            }
+            crc.reset();
+            crc.update(header.array(), 4, 16);
+            byte[] key = EMPTY;
+            if (kind != KIND_PADDING) {
+                ByteBuffer payload = ByteBuffer.allocate((int) recordSize - RECORD_HEADER_SIZE);
+                readFully(channel, payload, position + RECORD_HEADER_SIZE);
+                crc.update(payload.array(), 0, payload.limit());
+                key = Arrays.copyOf(payload.array(), keyLength);
+            }
+            if ((int) crc.getValue() != header.getInt(20)) {
+                break;
+            }
+            if (kind == KIND_REMOVED) {
+                int slot = find(hash(key));
+                if (slot >= 0) {
+                    removeSlot(slot);
+                }
+            } else if (kind != KIND_PADDING) {
+                insert(hash(key), position, (int) recordSize, ++tick);
+            }
+            position += recordSize;
+        }
+        if (position < size) {
+            Logging.warn("Truncating tile pack {0} after the last valid record, at {1} of {2} bytes",
+                    getPackFile(sequence), position, size);
+            channel.truncate(position);
+        }
+        length = position;
+    }
+
+    /**
+     * Returns the position of a record header, which must fit in a region.
+     * @param position the position after the previous record
+     * @return the position of the next region if the header does not fit in the region of {@code position}
+     */
+    private static long alignHeader(long position) {
+        long offset = position % REGION_SIZE;
+        return offset + RECORD_HEADER_SIZE > REGION_SIZE ? position - offset + REGION_SIZE : position;
+    }
+
+    static long hash(byte[] key) {
+        // FNV-1a, followed by a finalization step so that the low bits used by the table depend on all bytes
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private void clearTable(int capacity) {
+        hashes = new long[capacity];
+        offsets = new long[capacity];
+        sizes = new int[capacity];
+        ticks = new long[capacity];
+        count = 0;
+        liveBytes = 0;
+    }
+
+    private int find(long hash) {
+        int mask = hashes.length - 1;
+        for (int i = (int) hash & mask; hashes[i] != 0; i = (i + 1) & mask) {
+            if (hashes[i] == hash) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long hash, long offset, int size, long t) {
+        if ((count + 1) * 4L > hashes.length * 3L) {
+            resize(hashes.length * 2);
+        }
+        int mask = hashes.length - 1;
+        int i = (int) hash & mask;
+        while (hashes[i] != 0 && hashes[i] != hash) {
+            i = (i + 1) & mask;
+        }
+        if (hashes[i] == hash) {
+            liveBytes -= sizes[i];
+        } else {
+            count++;
+        }
+        hashes[i] = hash;
+        offsets[i] = offset;
+        sizes[i] = size;
+        ticks[i] = t;
+        liveBytes += size;
+    }
+
+    private void resize(int capacity) {
+        long[] oldHashes = hashes;
+        long[] oldOffsets = offsets;
+        int[] oldSizes = sizes;
+        long[] oldTicks = ticks;
+        clearTable(capacity);
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != 0) {
+                insert(oldHashes[i], oldOffsets[i], oldSizes[i], oldTicks[i]);
+            }
+        }
+    }
+
+    /**
+     * Removes an entry of the table, shifting back the following entries of its cluster.
+     * @param slot the slot of the entry
+     */
+    private void removeSlot(int slot) {
+        liveBytes -= sizes[slot];
+        count--;
+        int mask = hashes.length - 1;
+        int hole = slot;
+        for (int j = (slot + 1) & mask; hashes[j] != 0; j = (j + 1) & mask) {
+            int home = (int) hashes[j] & mask;
+            // the entry may be moved to the hole if the hole is between its home slot and its slot
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                hashes[hole] = hashes[j];
+                offsets[hole] = offsets[j];
+                sizes[hole] = sizes[j];
+                ticks[hole] = ticks[j];
+                hole = j;
+            }
+        }
+        hashes[hole] = 0;
+    }
+
+    private static byte[] getBytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a read-only view of a part of the pack file.
+     * @param offset the offset of the part
+     * @param size the size of the part, which must not cross a region boundary
+     * @return a read-only view of the part
+     * @throws IOException if the pack cannot be mapped
+     */
+    private ByteBuffer map(long offset, int size) throws IOException {
+        int region = (int) (offset / REGION_SIZE);
+        int from = (int) (offset % REGION_SIZE);
+        if (region >= regions.length) {
+            regions = Arrays.copyOf(regions, region + 1);
+        }
+        MappedByteBuffer mapped = regions[region];
+        if (mapped == null || mapped.capacity() < from + size) {
+            // the previous mapping stays valid for the records returned before
+            long start = (long) region * REGION_SIZE;
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, length - start));
+            regions[region] = mapped;
+        }
+        return slice(mapped, from, from + size);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int from, int to) {
+        ByteBuffer result = buffer.duplicate();
+        ((Buffer) result).limit(to);
+        ((Buffer) result).position(from);
+        return result.slice().asReadOnlyBuffer();
+    }
+
+    private static boolean matches(ByteBuffer record, byte[] key) {
+        if (record.getInt(0) != RECORD_MAGIC || record.getInt(8) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (record.get(RECORD_HEADER_SIZE + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a record, and marks it as recently used.
+     * @param key the key of the record
+     * @return the record, or {@code null} if there is no record with this key
+     * @throws IOException if the pack cannot be read
+     */
+    public synchronized Record get(String key) throws IOException {
+        ensureOpen();
+        byte[] k = getBytes(key);
+        int slot = find(hash(k));
+        if (slot < 0) {
+            return null;
+        }
+        ByteBuffer record = map(offsets[slot], sizes[slot]);
+        // another key with the same hash would have replaced the record
+        if (!matches(record, k)) {
+            return null;
+        }
+        ticks[slot] = ++tick;
+        int metaLength = record.getInt(12);
+        int dataLength = record.getInt(16);
+        int metaOffset = RECORD_HEADER_SIZE + k.length;
+        return new Record(record.getInt(4),
+                slice(record, metaOffset, metaOffset + metaLength),
+                slice(record, metaOffset + metaLength, metaOffset + metaLength + dataLength));
+    }
+
+    /**
+     * Determines if the store contains a record.
+     * @param key the key of the record
+     * @return {@code true} if the store contains a record with this key
+     * @throws IOException if the pack cannot be read
+     */
+    public synchronized boolean contains(String key) throws IOException {
+        ensureOpen();
+        byte[] k = getBytes(key);
+        int slot = find(hash(k));
+        return slot >= 0 && matches(map(offsets[slot], sizes[slot]), k);
+    }
+
+    /**
+     * Adds or replaces a record.
+     * @param key the key of the record
+     * @param kind the kind of the record, a positive number given back by {@link Record#getKind()}
+     * @param meta the metadata of the record
+     * @param data the data of the record
+     * @throws IOException if the record cannot be written
+     * @throws IllegalArgumentException if the kind is not positive or if the record is larger than {@link #MAX_RECORD_SIZE}
+     */
+    public synchronized void put(String key, int kind, byte[] meta, byte[] data) throws IOException {
+        ensureOpen();
+        if (kind <= 0) {
+            throw new IllegalArgumentException("Invalid record kind: " + kind);
+        }
+        byte[] k = getBytes(key);
+        long offset = append(kind, k, meta, data);
+        insert(hash(k), offset, RECORD_HEADER_SIZE + k.length + meta.length + data.length, ++tick);
+        if (maxSize > 0 && liveBytes > maxSize) {
+            evict(maxSize - maxSize / 10);
+        }
+        maintain();
+    }
+
+    /**
+     * Removes a record.
+     * @param key the key of the record
+     * @return {@code true} if the record was removed, {@code false} if there was no record with this key
+     * @throws IOException if the removal cannot be written
+     */
+    public synchronized boolean remove(String key) throws IOException {
+        ensureOpen();
+        byte[] k = getBytes(key);
+        int slot = find(hash(k));
+        if (slot < 0 || !matches(map(offsets[slot], sizes[slot]), k)) {
+            return false;
+        }
+        removeSlot(slot);
+        // the removal is recorded, so that the record is not restored if the index is lost
+        append(KIND_REMOVED, k, EMPTY, EMPTY);
+        maintain();
+        return true;
+    }
+
+    /**
+     * Removes all records, by starting a new pack file.
+     * @throws IOException if the new pack file cannot be written
+     */
+    public synchronized void clear() throws IOException {
+        ensureOpen();
+        clearTable(1024);
+        // a compaction in progress is abandoned, as its source is no longer the current pack
+        int newSequence = sequence + 1;
+        long newId = RANDOM.nextLong();
+        FileChannel newChannel = FileChannel.open(getPackFile(newSequence).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writeFully(newChannel, createPackHeader(newId), 0);
+        switchPack(newSequence, newChannel, newId, PACK_HEADER_SIZE);
+    }
+
+    /**
+     * Appends a record to the pack.
+     * @return the offset of the record
+     */
+    private long append(int kind, byte[] key, byte[] meta, byte[] data) throws IOException {
+        long size = (long) RECORD_HEADER_SIZE + key.length + meta.length + data.length;
+        if (size > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Record too large: " + size);
+        }
+        long offset = alignRecord(channel, length, (int) size);
+        ByteBuffer record = ByteBuffer.allocate((int) size);
+        record.putInt(RECORD_MAGIC).putInt(kind).putInt(key.length).putInt(meta.length).putInt(data.length);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, 16);
+        crc.update(key);
+        crc.update(meta);
+        crc.update(data);
+        record.putInt((int) crc.getValue()).put(key).put(meta).put(data);
+        ((Buffer) record).flip();
+        writeFully(channel, record, offset);
+        length = offset + size;
+        return offset;
+    }
+
+    /**
+     * Returns the position of a new record, so that it does not cross a region boundary. A padding record is
+     * written at the end of the region if needed.
+     * @param ch the pack channel
+     * @param position the position after the last record
+     * @param size the size of the new record
+     * @return the position of the new record
+     */
+    private static long alignRecord(FileChannel ch, long position, int size) throws IOException {
+        long pos = alignHeader(position);
+        long offset = pos % REGION_SIZE;
+        if (offset + size <= REGION_SIZE) {
+            return pos;
+        }
+        ByteBuffer padding = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        padding.putInt(RECORD_MAGIC).putInt(KIND_PADDING).putInt(0).putInt(0)
+                .putInt((int) (REGION_SIZE - offset - RECORD_HEADER_SIZE));
+        CRC32 crc = new CRC32();
+        crc.update(padding.array(), 4, 16);
+        padding.putInt((int) crc.getValue());
+        ((Buffer) padding).flip();
+        writeFully(ch, padding, pos);
+        return pos - offset + REGION_SIZE;
+    }
+
+    /**
+     * Evicts the least recently used records.
+     * @param target the maximum size of the remaining live records
+     */
+    private void evict(long target) {
+        long[] sorted = new long[count];
+        int n = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != 0) {
+                sorted[n++] = ticks[i];
+            }
+        }
+        Arrays.sort(sorted);
+        // find the most recent tick to evict, so that the records used after it fit in the target size
+        int low = 0;
+        int high = n - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (liveBytes - getSizeUsedUntil(sorted[middle]) <= target) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        long threshold = n > 0 ? sorted[low] : Long.MIN_VALUE;
+        List<Long> evicted = new ArrayList<>();
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != 0 && ticks[i] <= threshold) {
+                evicted.add(hashes[i]);
+            }
+        }
+        for (long hash : evicted) {
+            removeSlot(find(hash));
+        }
+        Logging.debug("Evicted {0} records from tile pack {1}", evicted.size(), getPackFile(sequence));
+    }
+
+    private long getSizeUsedUntil(long threshold) {
+        long result = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != 0 && ticks[i] <= threshold) {
+                result += sizes[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts a compaction in the background if the dead records take too much space, or saves the index if many
+     * records were appended since the last save.
+     */
+    private void maintain() throws IOException {
+        long deadBytes = length - PACK_HEADER_SIZE - liveBytes;
+        if (deadBytes > Math.max(liveBytes, MIN_DEAD_BYTES)) {
+            if (compaction == null) {
+                Compaction c = new Compaction();
+                compaction = c;
+                COMPACTION_EXECUTOR.submit(() -> {
+                    try {
+                        runCompaction(c);
+                    } catch (IOException e) {
+                        Logging.log(Logging.LEVEL_WARN, "Unable to compact tile pack " + getPackFile(c.newSequence - 1), e);
+                    }
+                });
+            }
+        } else if (length - indexedLength > INDEX_SAVE_INTERVAL) {
+            saveIndex();
+        }
+    }
+
+    /**
+     * Copies the live records to a new pack file, and deletes the current one. The records are read and written
+     * without blocking the other operations of the store, which are only blocked while the records appended in the
+     * meantime are copied. Does nothing if a compaction is already in progress.
+     * @throws IOException if the new pack file cannot be written
+     */
+    public void compact() throws IOException {
+        Compaction c = startCompaction();
+        if (c != null) {
+            runCompaction(c);
+        }
+    }
+
+    synchronized Compaction startCompaction() throws IOException {
+        ensureOpen();
+        if (compaction != null) {
+            return null;
+        }
+        compaction = new Compaction();
+        return compaction;
+    }
+
+    private void runCompaction(Compaction c) throws IOException {
+        try {
+            c.copy();
+            finishCompaction(c);
+        } catch (IOException e) {
+            synchronized (this) {
+                // the pack may have been closed or cleared during the copy
+                if (channel == c.source) {
+                    throw e;
+                }
+                Logging.trace(e);
+            }
+        } finally {
+            c.discard();
+            synchronized (this) {
+                if (compaction == c) {
+                    compaction = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the records appended since the start of a compaction, and switches to its pack file.
+     * @param c the compaction, whose live records are copied
+     * @throws IOException if the new pack file cannot be written
+     */
+    synchronized void finishCompaction(Compaction c) throws IOException {
+        if (compaction == c) {
+            compaction = null;
+        }
+        if (channel != c.source) {
+            // closed or cleared in the meantime
+            return;
+        }
+        long[] newOffsets = new long[offsets.length];
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != 0) {
+                // the records are never modified, so a record at the same offset is the one copied before
+                int slot = c.find(hashes[i]);
+                newOffsets[i] = slot >= 0 && c.liveOffsets[slot] == offsets[i]
+                        ? c.copiedOffsets[slot] : c.transfer(offsets[i], sizes[i]);
+            }
+        }
+        c.out.force(true);
+        c.out.close();
+        File newPack = getPackFile(c.newSequence);
+        Files.move(c.tmp.toPath(), newPack.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        FileChannel newChannel = FileChannel.open(newPack.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        offsets = newOffsets;
+        switchPack(c.newSequence, newChannel, c.newId, c.position);
+    }
+
+    /**
+     * Replaces the current pack file, whose records are already in the new one.
+     */
+    private void switchPack(int newSequence, FileChannel newChannel, long newId, long newLength) throws IOException {
+        File oldPack = getPackFile(sequence);
+        channel.close();
+        channel = newChannel;
+        // the records returned before keep their mapping of the old file
+        regions = new MappedByteBuffer[0];
+        length = newLength;
+        packId = newId;
+        sequence = newSequence;
+        saveIndex();
+        // may fail on Windows while the old file is still mapped, it is then deleted at the next opening
+        Utils.deleteFile(oldPack);
+    }
+
+    /**
+     * A copy of the live records of the pack to a new pack file. The table of the live records is copied when the
+     * compaction starts, so that the records can be copied without holding the lock of the store.
+     */
+    final class Compaction {
+        private final FileChannel source;
+        private final long[] liveHashes;
+        private final long[] liveOffsets;
+        private final int[] liveSizes;
+        private final long[] copiedOffsets;
+        private final int newSequence;
+        private final long newId;
+        private final File tmp;
+        private FileChannel out;
+        private long position = PACK_HEADER_SIZE;
+
+        private Compaction() {
+            source = channel;
+            liveHashes = hashes.clone();
+            liveOffsets = offsets.clone();
+            liveSizes = sizes.clone();
+            copiedOffsets = new long[liveHashes.length];
+            newSequence = sequence + 1;
+            newId = RANDOM.nextLong();
+            tmp = new File(directory, name + '.' + newSequence + ".tmp");
+        }
+
+        /**
+         * Copies the records live at the start of the compaction.
+         * @throws IOException if the records cannot be read or written
+         */
+        void copy() throws IOException {
+            out = FileChannel.open(tmp.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            writeFully(out, createPackHeader(newId), 0);
+            for (int i = 0; i < liveHashes.length; i++) {
+                if (liveHashes[i] != 0) {
+                    copiedOffsets[i] = transfer(liveOffsets[i], liveSizes[i]);
+                }
+            }
+        }
+
+        private long transfer(long offset, int size) throws IOException {
+            ByteBuffer record = ByteBuffer.allocate(size);
+            readFully(source, record, offset);
+            position = alignRecord(out, position, size);
+            writeFully(out, record, position);
+            long result = position;
+            position += size;
+            return result;
+        }
+
+        private int find(long hash) {
+            int mask = liveHashes.length - 1;
+            for (int i = (int) hash & mask; liveHashes[i] != 0; i = (i + 1) & mask) {
+                if (liveHashes[i] == hash) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void discard() {
+            Utils.close(out);
+            Utils.deleteFileIfExists(tmp);
+        }
+    }
+
+    /**
+     * Saves the index of the pack.
+     * @throws IOException if the index cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        saveIndex();
+    }
+
+    private void saveIndex() throws IOException {
+        // the index must not refer to records which are not written yet
+        channel.force(false);
+        ByteBuffer index = ByteBuffer.allocate(INDEX_HEADER_SIZE + count * INDEX_ENTRY_SIZE + 4);
+        index.putInt(INDEX_MAGIC).putInt(VERSION).putLong(packId).putInt(sequence).putLong(length).putLong(tick)
+                .putInt(count);
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != 0) {
+                index.putLong(hashes[i]).putLong(offsets[i]).putInt(sizes[i]).putLong(ticks[i]);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(index.array(), 0, index.position());
+        index.putInt((int) crc.getValue());
+        ((Buffer) index).flip();
+        File file = getIndexFile();
+        File tmp = new File(directory, name + ".pidx.tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(out, index, 0);
+            out.force(true);
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Logging.trace(e);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        indexedLength = length;
+    }
+
+    /**
+     * Loads the saved index, if it matches the pack.
+     * @return {@code true} if the index was loaded
+     */
+    private boolean loadIndex() {
+        File file = getIndexFile();
+        if (!file.isFile()) {
+            return false;
+        }
+        try {
+            ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            int size = index.capacity();
+            if (size < INDEX_HEADER_SIZE + 4) {
+                return false;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(index.array(), 0, size - 4);
+            if ((int) crc.getValue() != index.getInt(size - 4)
+                    || index.getInt() != INDEX_MAGIC || index.getInt() != VERSION || index.getLong() != packId
+                    || index.getInt() != sequence) {
+                return false;
+            }
+            long indexed = index.getLong();
+            long t = index.getLong();
+            int n = index.getInt();
+            if (indexed < PACK_HEADER_SIZE || indexed > channel.size() || n < 0
+                    || size != INDEX_HEADER_SIZE + (long) n * INDEX_ENTRY_SIZE + 4) {
+                return false;
+            }
+            clearTable(Math.max(1024, Integer.highestOneBit(n) * 4));
+            for (int i = 0; i < n; i++) {
+                insert(index.getLong(), index.getLong(), index.getInt(), index.getLong());
+            }
+            tick = t;
+            indexedLength = indexed;
+            return true;
+        } catch (IOException e) {
+            Logging.log(Logging.LEVEL_WARN, "Unable to read tile pack index " + file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the keys of the records.
+     * @return the keys of the records
+     * @throws IOException if the pack cannot be read
+     */
+    public synchronized List<String> getKeys() throws IOException {
+        ensureOpen();
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != 0) {
+                ByteBuffer record = map(offsets[i], sizes[i]);
+                byte[] key = new byte[record.getInt(8)];
+                ((Buffer) record).position(RECORD_HEADER_SIZE);
+                record.get(key);
+                result.add(new String(key, StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of records.
+     * @return the number of records
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Returns the size of the live records, including their keys and headers.
+     * @return the size of the live records, in bytes
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Returns the length of the pack file, including the replaced and removed records.
+     * @return the length of the pack file, in bytes
+     */
+    public synchronized long getLength() {
+        return length;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel == null) {
+            throw new IOException("Tile pack " + getPackFile(sequence) + " is closed");
+        }
+    }
+
+    /**
+     * Saves the index and closes the pack file. The records returned before stay readable.
+     * @throws IOException if the index cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            try {
+                saveIndex();
+            } finally {
+                channel.close();
+                channel = null;
+                regions = new MappedByteBuffer[0];
+            }
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.util.stream.Stream;
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.Data;
 import org.openstreetmap.josm.data.DataSource;
+import org.openstreetmap.josm.data.ProjectionBounds;
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.gpx.IGpxTrack.GpxTrackChangeListener;
 import org.openstreetmap.josm.data.projection.ProjectionRegistry;
@@ -138,6 +139,7 @@ public class GpxData extends WithAttributes implements Data {
     private final ListenerList<GpxDataChangeListener> listeners = ListenerList.create();
 
     private List<GpxTrackSegmentSpan> segSpans;
+    private volatile GpxTrackIndex trackIndex;
 
     /**
      * Merges data from another object.
@@ -406,6 +408,7 @@ public class GpxData extends WithAttributes implements Data {
     private synchronized void clearTracks() {
         privateTracks.forEach(t -> t.removeListener(proxy));
         privateTracks.clear();
+        trackIndex = null;
     }
 
     /**
@@ -788,74 +791,80 @@ public class GpxData extends WithAttributes implements Data {
         double px = p.east();
         double py = p.north();
         double rx = 0.0, ry = 0.0, sx, sy, x, y;
-        for (IGpxTrack track : privateTracks) {
-            for (IGpxTrackSegment seg : track.getSegments()) {
-                WayPoint r = null;
-                for (WayPoint wpSeg : seg.getWayPoints()) {
-                    EastNorth en = wpSeg.getEastNorth(ProjectionRegistry.getProjection());
-                    if (r == null) {
-                        r = wpSeg;
-                        rx = en.east();
-                        ry = en.north();
+        // only the chunks of points near p can contain the nearest point
+        Bounds area = ProjectionRegistry.getProjection().getLatLonBoundsBox(
+                new ProjectionBounds(px - tolerance, py - tolerance, px + tolerance, py + tolerance));
+        for (GpxTrackIndex.Chunk chunk : getTrackIndex().search(area)) {
+            WayPoint r = null;
+            List<WayPoint> points = new ArrayList<>(GpxTrackIndex.CHUNK_SIZE + 1);
+            if (chunk.getPrevious() != null) {
+                points.add(chunk.getPrevious());
+            }
+            points.addAll(chunk.getPoints());
+            for (WayPoint wpSeg : points) {
+                EastNorth en = wpSeg.getEastNorth(ProjectionRegistry.getProjection());
+                if (r == null) {
+                    r = wpSeg;
+                    rx = en.east();
+                    ry = en.north();
+                    x = px - rx;
+                    y = py - ry;
+                    double pRsq = x * x + y * y;
+                    if (pRsq < pnminsq) {
+                        pnminsq = pRsq;
+                        bestEN = en;
+                        if (r.hasDate()) {
+                            bestTime = r.getTime();
+                        }
+                    }
+                } else {
+                    sx = en.east();
+                    sy = en.north();
+                    double a = sy - ry;
+                    double b = rx - sx;
+                    double c = -a * rx - b * ry;
+                    double rssq = a * a + b * b;
+                    if (rssq == 0) {
+                        continue;
+                    }
+                    double pnsq = a * px + b * py + c;
+                    pnsq = pnsq * pnsq / rssq;
+                    if (pnsq < pnminsq) {
                         x = px - rx;
                         y = py - ry;
-                        double pRsq = x * x + y * y;
-                        if (pRsq < pnminsq) {
-                            pnminsq = pRsq;
-                            bestEN = en;
-                            if (r.hasDate()) {
-                                bestTime = r.getTime();
-                            }
-                        }
-                    } else {
-                        sx = en.east();
-                        sy = en.north();
-                        double a = sy - ry;
-                        double b = rx - sx;
-                        double c = -a * rx - b * ry;
-                        double rssq = a * a + b * b;
-                        if (rssq == 0) {
-                            continue;
-                        }
-                        double pnsq = a * px + b * py + c;
-                        pnsq = pnsq * pnsq / rssq;
-                        if (pnsq < pnminsq) {
-                            x = px - rx;
-                            y = py - ry;
-                            double prsq = x * x + y * y;
-                            x = px - sx;
-                            y = py - sy;
-                            double pssq = x * x + y * y;
-                            if (prsq - pnsq <= rssq && pssq - pnsq <= rssq) {
-                                double rnoverRS = Math.sqrt((prsq - pnsq) / rssq);
-                                double nx = rx - rnoverRS * b;
-                                double ny = ry + rnoverRS * a;
-                                bestEN = new EastNorth(nx, ny);
-                                if (r.hasDate() && wpSeg.hasDate()) {
-                                    bestTime = r.getTime() + rnoverRS * (wpSeg.getTime() - r.getTime());
-                                }
-                                pnminsq = pnsq;
+                        double prsq = x * x + y * y;
+                        x = px - sx;
+                        y = py - sy;
+                        double pssq = x * x + y * y;
+                        if (prsq - pnsq <= rssq && pssq - pnsq <= rssq) {
+                            double rnoverRS = Math.sqrt((prsq - pnsq) / rssq);
+                            double nx = rx - rnoverRS * b;
+                            double ny = ry + rnoverRS * a;
+                            bestEN = new EastNorth(nx, ny);
+                            if (r.hasDate() && wpSeg.hasDate()) {
+                                bestTime = r.getTime() + rnoverRS * (wpSeg.getTime() - r.getTime());
                             }
+                            pnminsq = pnsq;
                         }
-                        r = wpSeg;
-                        rx = sx;
-                        ry = sy;
                     }
+                    r = wpSeg;
+                    rx = sx;
+                    ry = sy;
                 }
-                if (r != null) {
-                    EastNorth c = r.getEastNorth(ProjectionRegistry.getProjection());
-                    /* if there is only one point in the seg, it will do this twice, but no matter */
-                    rx = c.east();
-                    ry = c.north();
-                    x = px - rx;
-                    y = py - ry;
-                    double prsq = x * x + y * y;
-                    if (prsq < pnminsq) {
-                        pnminsq = prsq;
-                        bestEN = c;
-                        if (r.hasDate()) {
-                            bestTime = r.getTime();
-                        }
+            }
+            if (r != null && chunk.isSegmentEnd()) {
+                EastNorth c = r.getEastNorth(ProjectionRegistry.getProjection());
+                /* if there is only one point in the seg, it will do this twice, but no matter */
+                rx = c.east();
+                ry = c.north();
+                x = px - rx;
+                y = py - ry;
+                double prsq = x * x + y * y;
+                if (prsq < pnminsq) {
+                    pnminsq = prsq;
+                    bestEN = c;
+                    if (r.hasDate()) {
+                        bestTime = r.getTime();
                     }
                 }
             }
@@ -869,6 +878,20 @@ public class GpxData extends WithAttributes implements Data {
         return best;
     }
 
+    /**
+     * Returns the spatial index of the track points. It is built when needed, and dropped when the tracks change.
+     * @return the spatial index of the track points
+     * @since 17256
+     */
+    public synchronized GpxTrackIndex getTrackIndex() {
+        GpxTrackIndex index = trackIndex;
+        if (index == null) {
+            index = new GpxTrackIndex(privateTracks);
+            trackIndex = index;
+        }
+        return index;
+    }
+
     /**
      * Iterate over all track segments and over all routes.
      *
@@ -885,6 +908,9 @@ public class GpxData extends WithAttributes implements Data {
      * Resets the internal caches of east/north coordinates.
      */
     public synchronized void resetEastNorthCache() {
+        if (trackIndex != null) {
+            trackIndex.clearDecimation();
+        }
         privateWaypoints.forEach(WayPoint::invalidateEastNorthCache);
         getTrackPoints().forEach(WayPoint::invalidateEastNorthCache);
         for (GpxRoute route: getRoutes()) {
@@ -1086,6 +1112,7 @@ public class GpxData extends WithAttributes implements Data {
      * Fires event listeners and sets the modified flag to true.
      */
     public void invalidate() {
+        trackIndex = null;
         fireInvalidate(true);
     }
 
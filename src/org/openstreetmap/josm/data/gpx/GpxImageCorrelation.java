@@ -2,10 +2,14 @@
 package org.openstreetmap.josm.data.gpx;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
+import org.openstreetmap.josm.data.gpx.GpxData.GpxDataChangeEvent;
+import org.openstreetmap.josm.data.gpx.GpxData.GpxDataChangeListener;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.Pair;
@@ -30,247 +34,444 @@ public final class GpxImageCorrelation {
      * @return number of matched points
      */
     public static int matchGpxTrack(List<? extends GpxImageEntry> images, GpxData selectedGpx, long offset, boolean forceTags) {
+        return matchGpxTrack(images, new CorrelationIndex(selectedGpx, forceTags), offset);
+    }
+
+    /**
+     * Match a list of photos to the track points of a correlation index with a given offset.
+     * All images need a exifTime attribute and the List must be sorted according to these times.
+     * <p>
+     * The same index can be used with any offset, e.g. while the user adjusts it.
+     * @param images images to match
+     * @param index the track points of the GPX data to match
+     * @param offset offset
+     * @return number of matched points
+     * @since 17259
+     */
+    public static int matchGpxTrack(List<? extends GpxImageEntry> images, CorrelationIndex index, long offset) {
+        int n = index.points.length;
+        if (n == 0) {
+            return 0;
+        }
         int ret = 0;
+        if (index.isImageLookupFaster(images.size())) {
+            // look up the first track point interval matching each image
+            for (GpxImageEntry image : images) {
+                if (image.getTmp().getPos() == null && index.match(image, offset)) {
+                    ret++;
+                }
+            }
+        } else {
+            // look up the images of each track point interval, when the track times go back and forth a lot
+            for (int k = 0; k < n; k++) {
+                ret += index.matchStep(images, k, getLastIndexOfListBefore(images, index.times[k] + offset), offset);
+            }
+            if (index.lastTagMillis >= 0) {
+                ret += index.matchStep(images, n, images.size() - 1, offset);
+            }
+        }
+        return ret;
+    }
 
-        long prevWpTime = 0;
-        WayPoint prevWp = null;
-
-        List<List<List<WayPoint>>> trks = new ArrayList<>();
-
-        for (IGpxTrack trk : selectedGpx.tracks) {
-            List<List<WayPoint>> segs = new ArrayList<>();
-            for (IGpxTrackSegment seg : trk.getSegments()) {
-                List<WayPoint> wps = new ArrayList<>(seg.getWayPoints());
-                if (!wps.isEmpty()) {
-                    //remove waypoints at the beginning of the track/segment without timestamps
-                    int wp;
-                    for (wp = 0; wp < wps.size(); wp++) {
-                        if (wps.get(wp).hasDate()) {
-                            break;
-                        }
-                    }
-                    if (wp == 0) {
-                        segs.add(wps);
-                    } else if (wp < wps.size()) {
-                        segs.add(wps.subList(wp, wps.size()));
+    /**
+     * The correlation settings, from the preferences.
+     */
+    private static final class Settings {
+        private final boolean trkInt;
+        private final boolean trkTag;
+        private final boolean segInt;
+        private final boolean segTag;
+        private final int trkTime;
+        private final int trkDist;
+        private final int trkTagTime;
+        private final int segTime;
+        private final int segDist;
+        private final int segTagTime;
+
+        Settings(boolean forceTags) {
+            if (forceTags) { //temporary option to override advanced settings and activate all possible interpolations / tagging methods
+                trkInt = trkTag = segInt = segTag = true;
+                trkTime = trkDist = trkTagTime = segTime = segDist = segTagTime = Integer.MAX_VALUE;
+            } else {
+                // Load the settings
+                trkInt = Config.getPref().getBoolean("geoimage.trk.int", false);
+                trkTime = Config.getPref().getBoolean("geoimage.trk.int.time", false) ?
+                        Config.getPref().getInt("geoimage.trk.int.time.val", 60) : Integer.MAX_VALUE;
+                trkDist = Config.getPref().getBoolean("geoimage.trk.int.dist", false) ?
+                        Config.getPref().getInt("geoimage.trk.int.dist.val", 50) : Integer.MAX_VALUE;
+
+                trkTag = Config.getPref().getBoolean("geoimage.trk.tag", true);
+                trkTagTime = Config.getPref().getBoolean("geoimage.trk.tag.time", true) ?
+                        Config.getPref().getInt("geoimage.trk.tag.time.val", 2) : Integer.MAX_VALUE;
+
+                segInt = Config.getPref().getBoolean("geoimage.seg.int", true);
+                segTime = Config.getPref().getBoolean("geoimage.seg.int.time", true) ?
+                        Config.getPref().getInt("geoimage.seg.int.time.val", 60) : Integer.MAX_VALUE;
+                segDist = Config.getPref().getBoolean("geoimage.seg.int.dist", true) ?
+                        Config.getPref().getInt("geoimage.seg.int.dist.val", 50) : Integer.MAX_VALUE;
+
+                segTag = Config.getPref().getBoolean("geoimage.seg.tag", true);
+                segTagTime = Config.getPref().getBoolean("geoimage.seg.tag.time", true) ?
+                        Config.getPref().getInt("geoimage.seg.tag.time.val", 2) : Integer.MAX_VALUE;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(trkInt, trkTag, segInt, segTag, trkTime, trkDist, trkTagTime, segTime, segDist, segTagTime);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            Settings other = (Settings) obj;
+            return trkInt == other.trkInt && trkTag == other.trkTag && segInt == other.segInt && segTag == other.segTag
+                    && trkTime == other.trkTime && trkDist == other.trkDist && trkTagTime == other.trkTagTime
+                    && segTime == other.segTime && segDist == other.segDist && segTagTime == other.segTagTime;
+        }
+    }
+
+    /**
+     * The track points of a {@link GpxData} in correlation order, with all the values not depending on the time offset,
+     * so that images can be matched again quickly with another offset.
+     * <p>
+     * Each track point ends an interval starting at the previous track point. An image is matched to the first interval
+     * containing its time. The intervals are divided into runs of increasing times, in which the interval of an image
+     * is found by binary search.
+     * @since 17259
+     */
+    public static final class CorrelationIndex implements GpxDataChangeListener {
+
+        /** Tag time of the intervals in which the images are interpolated */
+        private static final long INTERPOLATE = -1;
+
+        private final GpxData data;
+        private final Settings settings;
+        private volatile boolean dataChanged;
+
+        /** The track points ending the intervals */
+        private final WayPoint[] points;
+        /** The times of the points, without offset */
+        private final long[] times;
+        /** The tag time of the intervals, in milliseconds, or {@link #INTERPOLATE} */
+        private final long[] tagMillis;
+        private final Double[] speeds;
+        private final Double[] elevations;
+        /** The first and last intervals of each run of increasing times, after the first interval */
+        private final int[] runFrom;
+        private final int[] runTo;
+        /** The tag time after the last point, in milliseconds, or -1 */
+        private final long lastTagMillis;
+
+        /**
+         * Constructs a new {@code CorrelationIndex}, using the correlation settings from the preferences.
+         * @param data the GPX data
+         * @param forceTags force tagging of all photos, otherwise prefs are used
+         */
+        public CorrelationIndex(GpxData data, boolean forceTags) {
+            this.data = data;
+            this.settings = new Settings(forceTags);
+
+            List<WayPoint> pts = new ArrayList<>();
+            List<Long> tags = new ArrayList<>();
+            collectPoints(data, settings, pts, tags);
+
+            int n = pts.size();
+            points = pts.toArray(new WayPoint[0]);
+            times = new long[n];
+            tagMillis = new long[n];
+            speeds = new Double[n];
+            elevations = new Double[n];
+            List<int[]> runs = new ArrayList<>();
+            int from = 1;
+            for (int k = 0; k < n; k++) {
+                times[k] = points[k].getTimeInMillis();
+                tagMillis[k] = tags.get(k);
+                elevations[k] = getElevation(points[k]);
+                if (k > 0 && tagMillis[k] == INTERPOLATE && times[k] > times[k - 1]) {
+                    // This is in km/h, 3.6 * m/s
+                    double distance = points[k - 1].getCoor().greatCircleDistance(points[k].getCoor());
+                    speeds[k] = 3600 * distance / (times[k] - times[k - 1]);
+                }
+                if (k > 0 && times[k] < times[k - 1]) {
+                    // empty interval, a new run starts after it
+                    if (from < k) {
+                        runs.add(new int[] {from, k - 1});
                     }
+                    from = k + 1;
                 }
             }
-            //sort segments by first waypoint
-            if (!segs.isEmpty()) {
-                segs.sort((o1, o2) -> {
-                    if (o1.isEmpty() || o2.isEmpty())
-                        return 0;
-                    return o1.get(0).compareTo(o2.get(0));
-                });
-                trks.add(segs);
+            if (from < n) {
+                runs.add(new int[] {from, n - 1});
             }
+            runFrom = runs.stream().mapToInt(r -> r[0]).toArray();
+            runTo = runs.stream().mapToInt(r -> r[1]).toArray();
+            lastTagMillis = settings.trkTag ? TimeUnit.MINUTES.toMillis(settings.trkTagTime) : -1;
+            data.addWeakChangeListener(this);
         }
-        //sort tracks by first waypoint of first segment
-        trks.sort((o1, o2) -> {
-            if (o1.isEmpty() || o1.get(0).isEmpty()
-             || o2.isEmpty() || o2.get(0).isEmpty())
-                return 0;
-            return o1.get(0).get(0).compareTo(o2.get(0).get(0));
-        });
-
-        boolean trkInt, trkTag, segInt, segTag;
-        int trkTime, trkDist, trkTagTime, segTime, segDist, segTagTime;
-
-        if (forceTags) { //temporary option to override advanced settings and activate all possible interpolations / tagging methods
-            trkInt = trkTag = segInt = segTag = true;
-            trkTime = trkDist = trkTagTime = segTime = segDist = segTagTime = Integer.MAX_VALUE;
-        } else {
-            // Load the settings
-            trkInt = Config.getPref().getBoolean("geoimage.trk.int", false);
-            trkTime = Config.getPref().getBoolean("geoimage.trk.int.time", false) ?
-                    Config.getPref().getInt("geoimage.trk.int.time.val", 60) : Integer.MAX_VALUE;
-            trkDist = Config.getPref().getBoolean("geoimage.trk.int.dist", false) ?
-                    Config.getPref().getInt("geoimage.trk.int.dist.val", 50) : Integer.MAX_VALUE;
-
-            trkTag = Config.getPref().getBoolean("geoimage.trk.tag", true);
-            trkTagTime = Config.getPref().getBoolean("geoimage.trk.tag.time", true) ?
-                    Config.getPref().getInt("geoimage.trk.tag.time.val", 2) : Integer.MAX_VALUE;
-
-            segInt = Config.getPref().getBoolean("geoimage.seg.int", true);
-            segTime = Config.getPref().getBoolean("geoimage.seg.int.time", true) ?
-                    Config.getPref().getInt("geoimage.seg.int.time.val", 60) : Integer.MAX_VALUE;
-            segDist = Config.getPref().getBoolean("geoimage.seg.int.dist", true) ?
-                    Config.getPref().getInt("geoimage.seg.int.dist.val", 50) : Integer.MAX_VALUE;
-
-            segTag = Config.getPref().getBoolean("geoimage.seg.tag", true);
-            segTagTime = Config.getPref().getBoolean("geoimage.seg.tag.time", true) ?
-                    Config.getPref().getInt("geoimage.seg.tag.time.val", 2) : Integer.MAX_VALUE;
-        }
-        boolean isFirst = true;
-
-        for (int t = 0; t < trks.size(); t++) {
-            List<List<WayPoint>> segs = trks.get(t);
-            for (int s = 0; s < segs.size(); s++) {
-                List<WayPoint> wps = segs.get(s);
-                for (int i = 0; i < wps.size(); i++) {
-                    WayPoint curWp = wps.get(i);
-                    // Interpolate timestamps in the segment, if one or more waypoints miss them
-                    if (!curWp.hasDate()) {
-                        //check if any of the following waypoints has a timestamp...
-                        if (i > 0 && wps.get(i - 1).hasDate()) {
-                            long prevWpTimeNoOffset = wps.get(i - 1).getTimeInMillis();
-                            double totalDist = 0;
-                            List<Pair<Double, WayPoint>> nextWps = new ArrayList<>();
-                            for (int j = i; j < wps.size(); j++) {
-                                totalDist += wps.get(j - 1).getCoor().greatCircleDistance(wps.get(j).getCoor());
-                                nextWps.add(new Pair<>(totalDist, wps.get(j)));
-                                if (wps.get(j).hasDate()) {
-                                    // ...if yes, interpolate everything in between
-                                    long timeDiff = wps.get(j).getTimeInMillis() - prevWpTimeNoOffset;
-                                    for (Pair<Double, WayPoint> pair : nextWps) {
-                                        pair.b.setTimeInMillis((long) (prevWpTimeNoOffset + (timeDiff * (pair.a / totalDist))));
-                                    }
-                                    break;
-                                }
-                            }
-                            if (!curWp.hasDate()) {
-                                break; //It's pointless to continue with this segment, because none of the following waypoints had a timestamp
+
+        private static void collectPoints(GpxData data, Settings settings, List<WayPoint> points, List<Long> tags) {
+            long prevWpTime = 0;
+            WayPoint prevWp = null;
+
+            List<List<List<WayPoint>>> trks = new ArrayList<>();
+
+            for (IGpxTrack trk : data.tracks) {
+                List<List<WayPoint>> segs = new ArrayList<>();
+                for (IGpxTrackSegment seg : trk.getSegments()) {
+                    List<WayPoint> wps = new ArrayList<>(seg.getWayPoints());
+                    if (!wps.isEmpty()) {
+                        //remove waypoints at the beginning of the track/segment without timestamps
+                        int wp;
+                        for (wp = 0; wp < wps.size(); wp++) {
+                            if (wps.get(wp).hasDate()) {
+                                break;
                             }
-                        } else {
-                            // Timestamps on waypoints without preceding timestamps in the same segment can not be interpolated, so try next one
-                            continue;
+                        }
+                        if (wp == 0) {
+                            segs.add(wps);
+                        } else if (wp < wps.size()) {
+                            segs.add(wps.subList(wp, wps.size()));
                         }
                     }
+                }
+                //sort segments by first waypoint
+                if (!segs.isEmpty()) {
+                    segs.sort((o1, o2) -> {
+                        if (o1.isEmpty() || o2.isEmpty())
+                            return 0;
+                        return o1.get(0).compareTo(o2.get(0));
+                    });
+                    trks.add(segs);
+                }
+            }
+            //sort tracks by first waypoint of first segment
+            trks.sort((o1, o2) -> {
+                if (o1.isEmpty() || o1.get(0).isEmpty()
+                 || o2.isEmpty() || o2.get(0).isEmpty())
+                    return 0;
+                return o1.get(0).get(0).compareTo(o2.get(0).get(0));
+            });
+
+            boolean isFirst = true;
 
-                    final long curWpTime = curWp.getTimeInMillis() + offset;
-                    boolean interpolate = true;
-                    int tagTime = 0;
-                    if (i == 0) {
-                        if (s == 0) { //First segment of the track, so apply settings for tracks
-                            if (!trkInt || isFirst || prevWp == null ||
-                                    Math.abs(curWpTime - prevWpTime) > TimeUnit.MINUTES.toMillis(trkTime) ||
-                                    prevWp.getCoor().greatCircleDistance(curWp.getCoor()) > trkDist) {
-                                isFirst = false;
-                                interpolate = false;
-                                if (trkTag) {
-                                    tagTime = trkTagTime;
+            for (int t = 0; t < trks.size(); t++) {
+                List<List<WayPoint>> segs = trks.get(t);
+                for (int s = 0; s < segs.size(); s++) {
+                    List<WayPoint> wps = segs.get(s);
+                    for (int i = 0; i < wps.size(); i++) {
+                        WayPoint curWp = wps.get(i);
+                        // Interpolate timestamps in the segment, if one or more waypoints miss them
+                        if (!curWp.hasDate()) {
+                            //check if any of the following waypoints has a timestamp...
+                            if (i > 0 && wps.get(i - 1).hasDate()) {
+                                long prevWpTimeNoOffset = wps.get(i - 1).getTimeInMillis();
+                                double totalDist = 0;
+                                List<Pair<Double, WayPoint>> nextWps = new ArrayList<>();
+                                for (int j = i; j < wps.size(); j++) {
+                                    totalDist += wps.get(j - 1).getCoor().greatCircleDistance(wps.get(j).getCoor());
+                                    nextWps.add(new Pair<>(totalDist, wps.get(j)));
+                                    if (wps.get(j).hasDate()) {
+                                        // ...if yes, interpolate everything in between
+                                        long timeDiff = wps.get(j).getTimeInMillis() - prevWpTimeNoOffset;
+                                        for (Pair<Double, WayPoint> pair : nextWps) {
+                                            pair.b.setTimeInMillis((long) (prevWpTimeNoOffset + (timeDiff * (pair.a / totalDist))));
+                                        }
+                                        break;
+                                    }
+                                }
+                                if (!curWp.hasDate()) {
+                                    break; //It's pointless to continue with this segment, because none of the following waypoints had a timestamp
                                 }
+                            } else {
+                                // Timestamps on waypoints without preceding timestamps in the same segment can not be interpolated, so try next one
+                                continue;
                             }
-                        } else { //Apply settings for segments
-                            if (!segInt || prevWp == null ||
-                                    Math.abs(curWpTime - prevWpTime) > TimeUnit.MINUTES.toMillis(segTime) ||
-                                    prevWp.getCoor().greatCircleDistance(curWp.getCoor()) > segDist) {
-                                interpolate = false;
-                                if (segTag) {
-                                    tagTime = segTagTime;
+                        }
+
+                        // the time offset does not change the differences of times
+                        final long curWpTime = curWp.getTimeInMillis();
+                        boolean interpolate = true;
+                        int tagTime = 0;
+                        if (i == 0) {
+                            if (s == 0) { //First segment of the track, so apply settings for tracks
+                                if (!settings.trkInt || isFirst || prevWp == null ||
+                                        Math.abs(curWpTime - prevWpTime) > TimeUnit.MINUTES.toMillis(settings.trkTime) ||
+                                        prevWp.getCoor().greatCircleDistance(curWp.getCoor()) > settings.trkDist) {
+                                    isFirst = false;
+                                    interpolate = false;
+                                    if (settings.trkTag) {
+                                        tagTime = settings.trkTagTime;
+                                    }
+                                }
+                            } else { //Apply settings for segments
+                                if (!settings.segInt || prevWp == null ||
+                                        Math.abs(curWpTime - prevWpTime) > TimeUnit.MINUTES.toMillis(settings.segTime) ||
+                                        prevWp.getCoor().greatCircleDistance(curWp.getCoor()) > settings.segDist) {
+                                    interpolate = false;
+                                    if (settings.segTag) {
+                                        tagTime = settings.segTagTime;
+                                    }
                                 }
                             }
                         }
+                        // the first point has no previous point to interpolate from
+                        points.add(curWp);
+                        tags.add(interpolate && prevWp != null ? INTERPOLATE : TimeUnit.MINUTES.toMillis(tagTime));
+                        prevWp = curWp;
+                        prevWpTime = curWpTime;
                     }
-                    ret += matchPoints(images, prevWp, prevWpTime, curWp, curWpTime, offset, interpolate, tagTime, false);
-                    prevWp = curWp;
-                    prevWpTime = curWpTime;
                 }
             }
         }
-        if (trkTag) {
-            ret += matchPoints(images, prevWp, prevWpTime, prevWp, prevWpTime, offset, false, trkTagTime, true);
-        }
-        return ret;
-    }
 
-    static Double getElevation(WayPoint wp) {
-        if (wp != null) {
-            String value = wp.getString(GpxConstants.PT_ELE);
-            if (value != null && !value.isEmpty()) {
-                try {
-                    return Double.valueOf(value);
-                } catch (NumberFormatException e) {
-                    Logging.warn(e);
-                }
-            }
+        /**
+         * Determines if this index can be used to match images to the given GPX data.
+         * @param data the GPX data
+         * @param forceTags force tagging of all photos, otherwise prefs are used
+         * @return {@code true} if this index has been built for this GPX data, which has not changed since, and for the
+         * current correlation settings
+         */
+        public boolean isValidFor(GpxData data, boolean forceTags) {
+            return this.data == data && !dataChanged && settings.equals(new Settings(forceTags));
         }
-        return null;
-    }
 
-    private static int matchPoints(List<? extends GpxImageEntry> images, WayPoint prevWp, long prevWpTime, WayPoint curWp, long curWpTime,
-            long offset, boolean interpolate, int tagTime, boolean isLast) {
-
-        int ret = 0;
+        /**
+         * Returns the number of indexed track points.
+         * @return the number of indexed track points
+         */
+        public int size() {
+            return points.length;
+        }
 
-        // i is the index of the timewise last photo that has the same or earlier EXIF time
-        int i;
-        if (isLast) {
-            i = images.size() - 1;
-        } else {
-            i = getLastIndexOfListBefore(images, curWpTime);
+        @Override
+        public void gpxDataChanged(GpxDataChangeEvent e) {
+            dataChanged = true;
         }
 
-        // no photos match
-        if (i < 0)
-            return 0;
+        private boolean isImageLookupFaster(int imageCount) {
+            long imageLookups = (long) imageCount * (runFrom.length + 2) * log2(points.length);
+            long pointLookups = (long) points.length * log2(imageCount);
+            return imageLookups <= pointLookups;
+        }
 
-        Double speed = null;
-        Double prevElevation = null;
+        private static int log2(int n) {
+            return 32 - Integer.numberOfLeadingZeros(n);
+        }
 
-        if (prevWp != null && interpolate) {
-            double distance = prevWp.getCoor().greatCircleDistance(curWp.getCoor());
-            // This is in km/h, 3.6 * m/s
-            if (curWpTime > prevWpTime) {
-                speed = 3600 * distance / (curWpTime - prevWpTime);
+        /**
+         * Matches an image to the first interval containing its time.
+         */
+        private boolean match(GpxImageEntry image, long offset) {
+            final long time = image.getExifTime().getTime() - offset;
+            if (matchInterval(image, 0, offset)) {
+                return true;
             }
-            prevElevation = getElevation(prevWp);
+            for (int r = 0; r < runFrom.length; r++) {
+                // first interval ending at or after the image, the previous ones ending before it
+                int k = Arrays.binarySearch(times, runFrom[r], runTo[r] + 1, time);
+                if (k < 0) {
+                    k = -k - 1;
+                } else {
+                    while (k > runFrom[r] && times[k - 1] == time) {
+                        k--;
+                    }
+                }
+                if (k <= runTo[r] && times[k - 1] <= time && matchInterval(image, k, offset)) {
+                    return true;
+                }
+            }
+            return lastTagMillis >= 0 && matchInterval(image, points.length, offset);
         }
 
-        Double curElevation = getElevation(curWp);
-
-        if (!interpolate || isLast) {
-            final long half = Math.abs(curWpTime - prevWpTime) / 2;
-            while (i >= 0) {
-                final GpxImageEntry curImg = images.get(i);
-                final GpxImageEntry curTmp = curImg.getTmp();
-                final long time = curImg.getExifTime().getTime();
-                if ((!isLast && time > curWpTime) || time < prevWpTime) {
+        /**
+         * Matches the images of an interval.
+         * @param images images sorted by time
+         * @param k the interval
+         * @param last the index of the last image before the end of the interval
+         * @param offset offset
+         * @return the number of matched images
+         */
+        private int matchStep(List<? extends GpxImageEntry> images, int k, int last, long offset) {
+            final long prevWpTime = k == 0 ? 0 : times[k - 1] + offset;
+            int ret = 0;
+            for (int i = last; i >= 0; i--) {
+                GpxImageEntry image = images.get(i);
+                if (image.getExifTime().getTime() < prevWpTime) {
                     break;
                 }
-                long tagms = TimeUnit.MINUTES.toMillis(tagTime);
-                if (curTmp.getPos() == null &&
-                        (Math.abs(time - curWpTime) <= tagms
-                        || Math.abs(prevWpTime - time) <= tagms)) {
-                    if (prevWp != null && time < curWpTime - half) {
-                        curTmp.setPos(prevWp.getCoor());
-                    } else {
-                        curTmp.setPos(curWp.getCoor());
-                    }
-                    curTmp.setGpsTime(new Date(curImg.getExifTime().getTime() - offset));
-                    curTmp.flagNewGpsData();
+                if (image.getTmp().getPos() == null && matchInterval(image, k, offset)) {
                     ret++;
                 }
-                i--;
             }
-        } else if (prevWp != null) {
-            // This code gives a simple linear interpolation of the coordinates between current and
-            // previous track point assuming a constant speed in between
-            while (i >= 0) {
-                GpxImageEntry curImg = images.get(i);
-                GpxImageEntry curTmp = curImg.getTmp();
-                final long imgTime = curImg.getExifTime().getTime();
-                if (imgTime < prevWpTime) {
-                    break;
+            return ret;
+        }
+
+        /**
+         * Matches an image to an interval, if it is in the interval.
+         * @param image the image
+         * @param k the interval, ending at the point {@code k}, or after the last point if {@code k} is the number of points
+         * @param offset offset
+         * @return {@code true} if the image has been matched
+         */
+        private boolean matchInterval(GpxImageEntry image, int k, long offset) {
+            final boolean isLast = k == points.length;
+            final int cur = isLast ? k - 1 : k;
+            final WayPoint curWp = points[cur];
+            final long curWpTime = times[cur] + offset;
+            final WayPoint prevWp = isLast ? curWp : k == 0 ? null : points[k - 1];
+            final long prevWpTime = isLast ? curWpTime : k == 0 ? 0 : times[k - 1] + offset;
+            final long tagms = isLast ? lastTagMillis : tagMillis[k];
+
+            final GpxImageEntry curTmp = image.getTmp();
+            final long time = image.getExifTime().getTime();
+            if ((!isLast && time > curWpTime) || time < prevWpTime) {
+                return false;
+            }
+            if (tagms != INTERPOLATE) {
+                if (Math.abs(time - curWpTime) > tagms && Math.abs(prevWpTime - time) > tagms) {
+                    return false;
                 }
-                if (curTmp.getPos() == null) {
-                    // The values of timeDiff are between 0 and 1, it is not seconds but a dimensionless variable
-                    double timeDiff = (double) (imgTime - prevWpTime) / Math.abs(curWpTime - prevWpTime);
-                    curTmp.setPos(prevWp.getCoor().interpolate(curWp.getCoor(), timeDiff));
-                    curTmp.setSpeed(speed);
-                    if (curElevation != null && prevElevation != null) {
-                        curTmp.setElevation(prevElevation + (curElevation - prevElevation) * timeDiff);
-                    }
-                    curTmp.setGpsTime(new Date(curImg.getExifTime().getTime() - offset));
-                    curTmp.flagNewGpsData();
+                final long half = Math.abs(curWpTime - prevWpTime) / 2;
+                if (prevWp != null && time < curWpTime - half) {
+                    curTmp.setPos(prevWp.getCoor());
+                } else {
+                    curTmp.setPos(curWp.getCoor());
+                }
+            } else {
+                // This code gives a simple linear interpolation of the coordinates between current and
+                // previous track point assuming a constant speed in between
+                // The values of timeDiff are between 0 and 1, it is not seconds but a dimensionless variable
+                double timeDiff = (double) (time - prevWpTime) / Math.abs(curWpTime - prevWpTime);
+                curTmp.setPos(prevWp.getCoor().interpolate(curWp.getCoor(), timeDiff));
+                curTmp.setSpeed(speeds[k]);
+                Double curElevation = elevations[k];
+                Double prevElevation = elevations[k - 1];
+                if (curElevation != null && prevElevation != null) {
+                    curTmp.setElevation(prevElevation + (curElevation - prevElevation) * timeDiff);
+                }
+            }
+            curTmp.setGpsTime(new Date(image.getExifTime().getTime() - offset));
+            curTmp.flagNewGpsData();
+            return true;
+        }
+    }
 
-                    ret++;
+    static Double getElevation(WayPoint wp) {
+        if (wp != null) {
+            String value = wp.getString(GpxConstants.PT_ELE);
+            if (value != null && !value.isEmpty()) {
+                try {
+                    return Double.valueOf(value);
+                } catch (NumberFormatException e) {
+                    Logging.warn(e);
                 }
-                i--;
             }
         }
-        return ret;
+        return null;
     }
 
     private static int getLastIndexOfListBefore(List<? extends GpxImageEntry> images, long searchedTime) {
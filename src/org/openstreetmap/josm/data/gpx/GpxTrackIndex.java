@@ -0,0 +1,296 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.gpx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+
+/**
+ * Spatial index of the track points of a {@link GpxData}, so that painting a view or searching a point near the
+ * tracks only visits the points in the area of interest.
+ * <p>
+ * The points of each track segment are divided into chunks of consecutive points. The bounds of a chunk include the
+ * last point of the previous chunk, so that a chunk covers all the lines ending at its points.
+ * <p>
+ * For zoomed out views, the index provides decimated points: for each zoom band (each one doubling the scale of the
+ * previous one), the points closer than half a pixel to the previously kept point are dropped. The decimated points
+ * depend on the projection and on {@link WayPoint#drawLine}, so {@link #clearDecimation()} must be called when they
+ * change.
+ * <p>
+ * The index is built from a snapshot of the tracks, {@link GpxData} drops it when the tracks change.
+ * @since 17256
+ */
+public final class GpxTrackIndex {
+
+    /** The number of points per chunk */
+    static final int CHUNK_SIZE = 64;
+
+    /** Marks a band in which no point is dropped */
+    private static final int[] KEEP_ALL = new int[0];
+
+    private final List<Segment> segments = new ArrayList<>();
+
+    /**
+     * The points of a track segment.
+     */
+    private static final class Segment {
+        private final int track;
+        private final int ordinal;
+        private final WayPoint[] points;
+        private final Bounds bounds;
+        private final List<Chunk> chunks = new ArrayList<>();
+        private final Map<Integer, int[]> decimated = new ConcurrentHashMap<>();
+
+        Segment(int track, int ordinal, Collection<WayPoint> wayPoints) {
+            this.track = track;
+            this.ordinal = ordinal;
+            this.points = wayPoints.toArray(new WayPoint[0]);
+            Bounds b = null;
+            for (int from = 0; from < points.length; from += CHUNK_SIZE) {
+                Chunk chunk = new Chunk(this, from, Math.min(points.length, from + CHUNK_SIZE));
+                chunks.add(chunk);
+                if (chunk.bounds != null) {
+                    if (b == null) {
+                        b = new Bounds(chunk.bounds);
+                    } else {
+                        b.extend(chunk.bounds);
+                    }
+                }
+            }
+            this.bounds = b;
+        }
+
+        /**
+         * Returns the indexes of the points kept at the given scale.
+         * @param scale the scale, in east/north units per pixel
+         * @return the indexes of the kept points, or {@link #KEEP_ALL}
+         */
+        int[] getKept(double scale) {
+            if (!(scale > 0) || points.length < 3) {
+                return KEEP_ALL;
+            }
+            int band = Math.getExponent(scale);
+            return decimated.computeIfAbsent(band, b -> decimate(Math.scalb(0.5, b)));
+        }
+
+        private int[] decimate(double tolerance) {
+            int n = points.length;
+            double toleranceSq = tolerance * tolerance;
+            int[] kept = new int[n];
+            int count = 0;
+            kept[count++] = 0;
+            EastNorth last = getEastNorth(points[0]);
+            for (int i = 1; i < n; i++) {
+                WayPoint p = points[i];
+                EastNorth en = getEastNorth(p);
+                // keep the ends, gaps (and the points before them) and points without coordinates
+                boolean keep = i == n - 1 || !p.drawLine || !points[i + 1].drawLine || en == null || last == null;
+                if (!keep) {
+                    double dx = en.east() - last.east();
+                    double dy = en.north() - last.north();
+                    keep = dx * dx + dy * dy > toleranceSq;
+                }
+                if (keep) {
+                    kept[count++] = i;
+                    last = en;
+                }
+            }
+            return count == n ? KEEP_ALL : Arrays.copyOf(kept, count);
+        }
+
+        private static EastNorth getEastNorth(WayPoint p) {
+            return p.isLatLonKnown() ? p.getEastNorth(ProjectionRegistry.getProjection()) : null;
+        }
+    }
+
+    /**
+     * A chunk of consecutive points of a track segment.
+     */
+    public static final class Chunk {
+        private final Segment segment;
+        private final int from;
+        private final int to;
+        private final Bounds bounds;
+
+        Chunk(Segment segment, int from, int to) {
+            this.segment = segment;
+            this.from = from;
+            this.to = to;
+            Bounds b = null;
+            for (int i = Math.max(0, from - 1); i < to; i++) {
+                WayPoint p = segment.points[i];
+                if (p.isLatLonKnown()) {
+                    if (b == null) {
+                        b = new Bounds(p.lat(), p.lon(), false);
+                    } else {
+                        b.extend(p.lat(), p.lon());
+                    }
+                }
+            }
+            this.bounds = b;
+        }
+
+        /**
+         * Returns the index of the track of this chunk in {@link GpxData#getTracks()}.
+         * @return the index of the track
+         */
+        public int getTrackIndex() {
+            return segment.track;
+        }
+
+        /**
+         * Returns the bounds of the points of this chunk and of the point before it.
+         * @return the bounds, or {@code null} if no point has coordinates
+         */
+        public Bounds getBounds() {
+            return bounds == null ? null : new Bounds(bounds);
+        }
+
+        /**
+         * Determines if this chunk is the first one of its track segment.
+         * @return {@code true} if this chunk is the first one of its track segment
+         */
+        public boolean isSegmentStart() {
+            return from == 0;
+        }
+
+        /**
+         * Determines if this chunk is the last one of its track segment.
+         * @return {@code true} if this chunk is the last one of its track segment
+         */
+        public boolean isSegmentEnd() {
+            return to == segment.points.length;
+        }
+
+        /**
+         * Returns the points of this chunk.
+         * @return the points of this chunk
+         */
+        public List<WayPoint> getPoints() {
+            return Collections.unmodifiableList(Arrays.asList(segment.points).subList(from, to));
+        }
+
+        /**
+         * Returns the point before this chunk in its track segment.
+         * @return the point before this chunk, or {@code null} for the first chunk of a segment
+         */
+        public WayPoint getPrevious() {
+            return from > 0 ? segment.points[from - 1] : null;
+        }
+
+        /**
+         * Returns the points of this chunk to paint at the given scale.
+         * @param scale the scale, in east/north units per pixel
+         * @return the points of this chunk that are kept at this scale
+         */
+        public List<WayPoint> getPoints(double scale) {
+            int[] kept = segment.getKept(scale);
+            if (kept == KEEP_ALL) {
+                return getPoints();
+            }
+            List<WayPoint> result = new ArrayList<>();
+            for (int i = firstKept(kept); i < kept.length && kept[i] < to; i++) {
+                result.add(segment.points[kept[i]]);
+            }
+            return result;
+        }
+
+        /**
+         * Returns the kept point before this chunk in its track segment, at the given scale.
+         * @param scale the scale, in east/north units per pixel
+         * @return the kept point before this chunk, or {@code null} for the first chunk of a segment
+         */
+        public WayPoint getPrevious(double scale) {
+            int[] kept = segment.getKept(scale);
+            if (kept == KEEP_ALL) {
+                return getPrevious();
+            }
+            int i = firstKept(kept);
+            return i > 0 ? segment.points[kept[i - 1]] : null;
+        }
+
+        private int firstKept(int[] kept) {
+            int i = Arrays.binarySearch(kept, from);
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+
+    /**
+     * Constructs a new {@code GpxTrackIndex}.
+     * @param tracks the tracks to index
+     */
+    public GpxTrackIndex(Collection<IGpxTrack> tracks) {
+        int track = 0;
+        for (IGpxTrack trk : tracks) {
+            for (IGpxTrackSegment seg : trk.getSegments()) {
+                segments.add(new Segment(track, segments.size(), seg.getWayPoints()));
+            }
+            track++;
+        }
+    }
+
+    /**
+     * Returns the chunks intersecting an area, in the order of the tracks and of their points.
+     * @param area the area
+     * @param trackVisibility which tracks to include, indexed like {@link GpxData#getTracks()}. Can be null, then all
+     * tracks are included
+     * @return the chunks intersecting the area
+     */
+    public List<Chunk> search(Bounds area, boolean... trackVisibility) {
+        List<Chunk> result = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (isVisible(segment, trackVisibility) && segment.bounds != null && segment.bounds.intersects(area)) {
+                for (Chunk chunk : segment.chunks) {
+                    if (chunk.bounds != null && chunk.bounds.intersects(area)) {
+                        result.add(chunk);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the last point of the track segment before the one of a chunk, e.g. to connect segments.
+     * @param chunk the chunk
+     * @param trackVisibility which tracks to include, indexed like {@link GpxData#getTracks()}. Can be null, then all
+     * tracks are included
+     * @return the last point of the previous non-empty track segment, or {@code null}
+     */
+    public WayPoint getLastPointBefore(Chunk chunk, boolean... trackVisibility) {
+        for (int i = chunk.segment.ordinal - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (isVisible(segment, trackVisibility) && segment.points.length > 0) {
+                return segment.points[segment.points.length - 1];
+            }
+        }
+        return null;
+    }
+
+    private static boolean isVisible(Segment segment, boolean[] trackVisibility) {
+        return trackVisibility == null || segment.track >= trackVisibility.length || trackVisibility[segment.track];
+    }
+
+    /**
+     * Clears the decimated points, after a projection change or after {@link WayPoint#drawLine} has been computed.
+     */
+    public void clearDecimation() {
+        segments.forEach(s -> s.decimated.clear());
+    }
+
+    /**
+     * Returns the number of chunks.
+     * @return the number of chunks
+     */
+    public int getChunkCount() {
+        return segments.stream().mapToInt(s -> s.chunks.size()).sum();
+    }
+}
@@ -61,7 +61,12 @@ public class ImageryInfo extends
         /** A WMS endpoint entry only stores the WMS server info, without layer, which are chosen later by the user. **/
         WMS_ENDPOINT("wms_endpoint"),
         /** WMTS stores GetCapabilities URL. Does not store any information about the layer **/
-        WMTS("wmts");
+        WMTS("wmts"),
+        /**
+         * A local PMTiles archive, whose URL is the archive path.
+         * @since 17261
+         */
+        PMTILES("pmtiles");
 
         private final String typeString;
 
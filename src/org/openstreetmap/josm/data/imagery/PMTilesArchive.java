@@ -0,0 +1,412 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.gui.util.LruCache;
+import org.openstreetmap.josm.io.ByteBufferInputStream;
+
+/**
+ * Reader of <a href="https://github.com/protomaps/PMTiles">PMTiles</a> (version 3) single-file tile archives.
+ * <p>
+ * The archive is read through memory mapping. The root directory is decoded when the archive is opened, and the leaf
+ * directories when they are first needed. The recently used leaf directories are kept in memory.
+ * <p>
+ * Only the uncompressed and gzip compressed directories and tiles are supported. The reader is thread safe.
+ * @since 17261
+ */
+public final class PMTilesArchive implements Closeable {
+
+    /** Tile type of Mapbox vector tiles */
+    public static final int TILE_TYPE_MVT = 1;
+    /** Tile type of PNG images */
+    public static final int TILE_TYPE_PNG = 2;
+    /** Tile type of JPEG images */
+    public static final int TILE_TYPE_JPEG = 3;
+    /** Tile type of WebP images */
+    public static final int TILE_TYPE_WEBP = 4;
+
+    /** No compression */
+    public static final int COMPRESSION_NONE = 1;
+    /** Gzip compression */
+    public static final int COMPRESSION_GZIP = 2;
+
+    /** Size of the header */
+    static final int HEADER_SIZE = 127;
+    private static final byte[] MAGIC = "PMTiles".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 3;
+
+    /** Size of the mapped chunks of the archive */
+    private static final int CHUNK_SIZE = 1 << 30;
+    /** Maximum number of directories from the root directory to a tile */
+    private static final int MAX_DEPTH = 4;
+    /** Number of leaf directories kept in memory */
+    private static final int LEAF_CACHE_SIZE = 64;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final MappedByteBuffer[] chunks;
+
+    private final long metadataOffset;
+    private final int metadataLength;
+    private final long leafDirectoriesOffset;
+    private final long tileDataOffset;
+    private final int internalCompression;
+    private final int tileCompression;
+    private final int tileType;
+    private final int minZoom;
+    private final int maxZoom;
+    private final Bounds bounds;
+
+    private final Directory root;
+    private final Map<Long, Directory> leaves = new LruCache<>(LEAF_CACHE_SIZE);
+
+    /**
+     * A directory of the archive: sorted entries pointing to runs of tiles or to leaf directories.
+     */
+    static final class Directory {
+        private final long[] tileIds;
+        private final long[] offsets;
+        private final int[] lengths;
+        private final int[] runLengths;
+
+        private Directory(int size) {
+            tileIds = new long[size];
+            offsets = new long[size];
+            lengths = new int[size];
+            runLengths = new int[size];
+        }
+
+        static Directory parse(ByteBuffer buffer) throws IOException {
+            long size = readVarint(buffer);
+            // each entry takes at least 4 bytes
+            if (size < 0 || size > buffer.remaining() / 4) {
+                throw new IOException("Invalid directory size: " + size);
+            }
+            Directory dir = new Directory((int) size);
+            long tileId = 0;
+            for (int i = 0; i < size; i++) {
+                tileId += readVarint(buffer);
+                dir.tileIds[i] = tileId;
+            }
+            for (int i = 0; i < size; i++) {
+                dir.runLengths[i] = (int) readVarint(buffer);
+            }
+            for (int i = 0; i < size; i++) {
+                dir.lengths[i] = (int) readVarint(buffer);
+            }
+            for (int i = 0; i < size; i++) {
+                long offset = readVarint(buffer);
+                // 0 means that the entry follows the previous one
+                dir.offsets[i] = offset == 0 && i > 0 ? dir.offsets[i - 1] + dir.lengths[i - 1] : offset - 1;
+            }
+            return dir;
+        }
+
+        /**
+         * Returns the entry of the last run starting before a tile.
+         * @param tileId the tile id
+         * @return the index of the entry, or -1
+         */
+        int find(long tileId) {
+            int i = Arrays.binarySearch(tileIds, tileId);
+            return i >= 0 ? i : -i - 2;
+        }
+
+        int size() {
+            return tileIds.length;
+        }
+    }
+
+    /**
+     * Opens an archive.
+     * @param file the archive file
+     * @throws IOException if the file cannot be read, is not a PMTiles archive, or uses unsupported features
+     */
+    public PMTilesArchive(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            fileSize = channel.size();
+            chunks = new MappedByteBuffer[(int) ((fileSize + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Not a PMTiles archive: " + file);
+            }
+            ByteBuffer header = read(0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (header.get(i) != MAGIC[i]) {
+                    throw new IOException("Not a PMTiles archive: " + file);
+                }
+            }
+            if (header.get(7) != VERSION) {
+                throw new IOException("Unsupported PMTiles version: " + header.get(7));
+            }
+            long rootOffset = header.getLong(8);
+            long rootLength = header.getLong(16);
+            metadataOffset = header.getLong(24);
+            metadataLength = toLength(header.getLong(32));
+            leafDirectoriesOffset = header.getLong(40);
+            tileDataOffset = header.getLong(56);
+            internalCompression = header.get(97);
+            tileCompression = header.get(98);
+            tileType = header.get(99);
+            minZoom = header.get(100) & 0xff;
+            maxZoom = header.get(101) & 0xff;
+            bounds = new Bounds(header.getInt(106) / 1e7, header.getInt(102) / 1e7,
+                    header.getInt(114) / 1e7, header.getInt(110) / 1e7);
+            checkCompression(internalCompression);
+            checkCompression(tileCompression);
+            if (tileType == TILE_TYPE_MVT) {
+                throw new IOException("Vector tiles are not supported: " + file);
+            }
+            root = Directory.parse(decompress(read(rootOffset, toLength(rootLength)), internalCompression));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void checkCompression(int compression) throws IOException {
+        if (compression != COMPRESSION_NONE && compression != COMPRESSION_GZIP) {
+            throw new IOException("Unsupported PMTiles compression: " + compression);
+        }
+    }
+
+    private static int toLength(long length) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid length: " + length);
+        }
+        return (int) length;
+    }
+
+    static long readVarint(ByteBuffer buffer) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Truncated varint");
+            }
+            byte b = buffer.get();
+            result |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    /**
+     * Returns the id of a tile: the number of tiles of the lower zoom levels, plus the position of the tile on the
+     * Hilbert curve of its zoom level.
+     * @param zoom the zoom level
+     * @param x the tile column
+     * @param y the tile row, from the north
+     * @return the tile id
+     */
+    static long getTileId(int zoom, int x, int y) {
+        long acc = ((1L << (2 * zoom)) - 1) / 3;
+        long tx = x;
+        long ty = y;
+        long d = 0;
+        for (long s = 1L << zoom >> 1; s > 0; s >>= 1) {
+            int rx = (tx & s) > 0 ? 1 : 0;
+            int ry = (ty & s) > 0 ? 1 : 0;
+            d += s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    tx = s - 1 - tx;
+                    ty = s - 1 - ty;
+                }
+                long t = tx;
+                tx = ty;
+                ty = t;
+            }
+        }
+        return acc + d;
+    }
+
+    /**
+     * Returns a part of the archive.
+     * @param offset the offset of the part
+     * @param length the length of the part
+     * @return a read-only view of the mapped archive, or a copy if the part crosses two mapped chunks
+     * @throws IOException if the part is outside of the archive or cannot be read
+     */
+    private ByteBuffer read(long offset, int length) throws IOException {
+        if (offset < 0 || offset + length > fileSize) {
+            throw new IOException("Invalid range in " + file + ": " + offset + '+' + length);
+        }
+        int chunk = (int) (offset / CHUNK_SIZE);
+        int from = (int) (offset % CHUNK_SIZE);
+        if (from + length <= CHUNK_SIZE) {
+            ByteBuffer result = getChunk(chunk).duplicate();
+            ((Buffer) result).position(from);
+            ((Buffer) result).limit(from + length);
+            return result.slice();
+        }
+        ByteBuffer result = ByteBuffer.allocate(length);
+        long position = offset;
+        while (result.hasRemaining()) {
+            int n = channel.read(result, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of file " + file);
+            }
+            position += n;
+        }
+        ((Buffer) result).flip();
+        return result.asReadOnlyBuffer();
+    }
+
+    private synchronized MappedByteBuffer getChunk(int chunk) throws IOException {
+        if (chunks[chunk] == null) {
+            long start = (long) chunk * CHUNK_SIZE;
+            chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, fileSize - start));
+        }
+        return chunks[chunk];
+    }
+
+    private static ByteBuffer decompress(ByteBuffer buffer, int compression) throws IOException {
+        if (compression != COMPRESSION_GZIP) {
+            return buffer;
+        }
+        try (InputStream in = new GZIPInputStream(new ByteBufferInputStream(buffer))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(buffer.remaining() * 4);
+            byte[] b = new byte[8192];
+            int n;
+            while ((n = in.read(b)) > 0) {
+                out.write(b, 0, n);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+    }
+
+    private Directory getLeaf(long offset, int length) throws IOException {
+        synchronized (leaves) {
+            Directory leaf = leaves.get(offset);
+            if (leaf != null) {
+                return leaf;
+            }
+        }
+        Directory leaf = Directory.parse(decompress(read(leafDirectoriesOffset + offset, length), internalCompression));
+        synchronized (leaves) {
+            leaves.put(offset, leaf);
+        }
+        return leaf;
+    }
+
+    /**
+     * Returns the content of a tile.
+     * @param zoom the zoom level
+     * @param x the tile column
+     * @param y the tile row, from the north
+     * @return the tile content, or {@code null} if the archive has no such tile. Uncompressed tiles are returned as
+     * read-only views of the mapped archive
+     * @throws IOException if the archive cannot be read or is invalid
+     */
+    public ByteBuffer getTile(int zoom, int x, int y) throws IOException {
+        if (zoom < minZoom || zoom > maxZoom || zoom > 30 || x < 0 || y < 0 || x >= 1 << zoom || y >= 1 << zoom) {
+            return null;
+        }
+        long tileId = getTileId(zoom, x, y);
+        Directory dir = root;
+        for (int depth = 0; depth < MAX_DEPTH; depth++) {
+            int i = dir.find(tileId);
+            if (i < 0) {
+                return null;
+            }
+            if (dir.runLengths[i] == 0) {
+                dir = getLeaf(dir.offsets[i], dir.lengths[i]);
+            } else if (tileId - dir.tileIds[i] < dir.runLengths[i]) {
+                return decompress(read(tileDataOffset + dir.offsets[i], dir.lengths[i]), tileCompression);
+            } else {
+                return null;
+            }
+        }
+        throw new IOException("Too deep directories in " + file);
+    }
+
+    /**
+     * Returns the metadata of the archive.
+     * @return the metadata, as a JSON string
+     * @throws IOException if the archive cannot be read
+     */
+    public String getMetadata() throws IOException {
+        ByteBuffer metadata = decompress(read(metadataOffset, metadataLength), internalCompression);
+        byte[] bytes = new byte[metadata.remaining()];
+        metadata.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the archive file.
+     * @return the archive file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the type of the tiles.
+     * @return the type of the tiles, e.g. {@link #TILE_TYPE_PNG}, or 0 if unknown
+     */
+    public int getTileType() {
+        return tileType;
+    }
+
+    /**
+     * Returns the minimum zoom level of the tiles.
+     * @return the minimum zoom level
+     */
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    /**
+     * Returns the maximum zoom level of the tiles.
+     * @return the maximum zoom level
+     */
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    /**
+     * Returns the bounds of the tiles.
+     * @return the bounds of the tiles
+     */
+    public Bounds getBounds() {
+        return new Bounds(bounds);
+    }
+
+    /**
+     * Returns the number of entries of the root directory.
+     * @return the number of entries of the root directory
+     */
+    int getRootSize() {
+        return root.size();
+    }
+
+    /**
+     * Closes the archive. The tiles returned before stay readable.
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
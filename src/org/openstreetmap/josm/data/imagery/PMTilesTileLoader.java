@@ -0,0 +1,137 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileJob;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileLoader;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileLoaderListener;
+import org.openstreetmap.josm.gui.layer.imagery.SharedTileCache;
+import org.openstreetmap.josm.io.ByteBufferInputStream;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Tile loader reading the tiles of a {@link PMTilesTileSource} from its archive.
+ * <p>
+ * The tiles are read from the mapped archive and decoded by a pool of worker threads shared by all archives, so that
+ * image decoding does not block the painting of the map.
+ * @since 17261
+ */
+public class PMTilesTileLoader implements TileLoader {
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            Runtime.getRuntime().availableProcessors(),
+            Runtime.getRuntime().availableProcessors(),
+            60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            Utils.newThreadFactory("pmtiles-loader-%d", Thread.NORM_PRIORITY));
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final TileLoaderListener listener;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final class LoadJob implements TileJob, Runnable {
+        private final Tile tile;
+
+        LoadJob(Tile tile) {
+            this.tile = tile;
+        }
+
+        @Override
+        public void submit() {
+            submit(false);
+        }
+
+        @Override
+        public void submit(boolean force) {
+            tile.initLoading();
+            outstanding.incrementAndGet();
+            EXECUTOR.execute(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                load(tile);
+            } finally {
+                outstanding.decrementAndGet();
+            }
+        }
+
+        private PMTilesTileLoader getLoader() {
+            return PMTilesTileLoader.this;
+        }
+    }
+
+    /**
+     * Constructs a new {@code PMTilesTileLoader}.
+     * @param listener the listener notified when a tile is loaded
+     */
+    public PMTilesTileLoader(TileLoaderListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public TileJob createTileLoaderJob(Tile tile) {
+        if (!(tile.getTileSource() instanceof PMTilesTileSource)) {
+            throw new IllegalArgumentException("Not a PMTiles tile: " + tile);
+        }
+        return new LoadJob(tile);
+    }
+
+    private void load(Tile tile) {
+        PMTilesArchive archive = ((PMTilesTileSource) tile.getTileSource()).getArchive();
+        boolean success = false;
+        try {
+            ByteBuffer data = archive.getTile(tile.getZoom(), tile.getXtile(), tile.getYtile());
+            if (data == null) {
+                tile.setError(tr("No tile in the archive"));
+                tile.putValue("tile-info", "no-tile");
+            } else {
+                try (InputStream in = new ByteBufferInputStream(data)) {
+                    long start = System.nanoTime();
+                    tile.loadImage(in);
+                    SharedTileCache.recordDecoding(System.nanoTime() - start);
+                }
+                success = tile.getImage() != null;
+                if (!success) {
+                    tile.setError(tr("Could not load image from the archive"));
+                }
+            }
+        } catch (IOException e) {
+            Logging.warn("Error reading tile {0} from {1}: {2}", tile.getKey(), archive.getFile(), e.getMessage());
+            tile.setError(e);
+        } finally {
+            tile.finishLoading();
+        }
+        listener.tileLoadingFinished(tile, success);
+    }
+
+    @Override
+    public void cancelOutstandingTasks() {
+        for (Runnable r : EXECUTOR.getQueue()) {
+            if (r instanceof LoadJob && ((LoadJob) r).getLoader() == this && EXECUTOR.remove(r)) {
+                outstanding.decrementAndGet();
+                ((LoadJob) r).tile.loadingCanceled();
+            }
+        }
+    }
+
+    @Override
+    public boolean hasOutstandingTasks() {
+        return outstanding.get() > 0;
+    }
+}
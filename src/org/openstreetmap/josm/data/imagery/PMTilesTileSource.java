@@ -0,0 +1,70 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.openstreetmap.gui.jmapviewer.JMapViewer;
+import org.openstreetmap.gui.jmapviewer.tilesources.TMSTileSource;
+
+/**
+ * Tile source reading the tiles of a local {@link PMTilesArchive}, whose path is the imagery URL.
+ * @since 17261
+ */
+public class PMTilesTileSource extends TMSTileSource {
+
+    private final PMTilesArchive archive;
+
+    /**
+     * Creates a tile source from an imagery info, and opens its archive.
+     * @param info imagery info, whose URL is the path or {@code file:} URL of the archive
+     * @throws IOException if the archive cannot be opened
+     */
+    public PMTilesTileSource(ImageryInfo info) throws IOException {
+        super(info);
+        this.archive = new PMTilesArchive(getFile(info.getUrl()));
+    }
+
+    /**
+     * Returns the archive file of an imagery URL.
+     * @param url the path or {@code file:} URL of the archive
+     * @return the archive file
+     * @throws IOException if the URL is invalid
+     */
+    public static File getFile(String url) throws IOException {
+        if (url.startsWith("file:")) {
+            try {
+                return new File(new URI(url));
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                throw new IOException(e);
+            }
+        }
+        return new File(url);
+    }
+
+    /**
+     * Returns the archive of this tile source.
+     * @return the archive of this tile source
+     */
+    public PMTilesArchive getArchive() {
+        return archive;
+    }
+
+    @Override
+    public String getBaseUrl() {
+        // a plain path, so that the layer does not read it as a file: URL with another tile loader
+        return archive.getFile().getPath();
+    }
+
+    @Override
+    public int getMinZoom() {
+        return archive.getMinZoom();
+    }
+
+    @Override
+    public int getMaxZoom() {
+        return Math.min(archive.getMaxZoom(), JMapViewer.MAX_ZOOM);
+    }
+}
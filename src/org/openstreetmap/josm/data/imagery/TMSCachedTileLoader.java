@@ -13,6 +13,7 @@ import org.openstreetmap.gui.jmapviewer.interfaces.TileLoaderListener;
 import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
 import org.openstreetmap.josm.data.cache.BufferedImageCacheEntry;
 import org.openstreetmap.josm.data.cache.HostLimitQueue;
+import org.openstreetmap.josm.data.cache.JCSCachedTileLoaderJob;
 import org.openstreetmap.josm.data.preferences.IntegerProperty;
 import org.openstreetmap.josm.tools.CheckParameterUtil;
 import org.openstreetmap.josm.tools.Utils;
@@ -45,6 +46,7 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader {
     private static final ThreadPoolExecutor DEFAULT_DOWNLOAD_JOB_DISPATCHER = getNewThreadPoolExecutor("TMS-downloader-%d");
 
     private ThreadPoolExecutor downloadExecutor = DEFAULT_DOWNLOAD_JOB_DISPATCHER;
+    private TilePrioritizer prioritizer;
     protected final TileJobOptions options;
 
     /**
@@ -100,12 +102,14 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader {
 
     @Override
     public TileJob createTileLoaderJob(Tile tile) {
-        return new TMSCachedTileLoaderJob(
+        TMSCachedTileLoaderJob job = new TMSCachedTileLoaderJob(
                 listener,
                 tile,
                 cache,
                 options,
                 getDownloadExecutor());
+        job.setPrioritizer(prioritizer);
+        return job;
     }
 
     @Override
@@ -134,11 +138,44 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader {
         }
     }
 
+    /**
+     * cancels the outstanding tasks in the queue whose tiles are not needed anymore, according to their prioritizer.
+     * This rollbacks the state of their tiles to loading = false / loaded = false
+     * @see TilePrioritizer#STALE
+     * @since 17263
+     */
+    public void cancelStaleTasks() {
+        for (Runnable r: downloadExecutor.getQueue()) {
+            if (r instanceof JCSCachedTileLoaderJob && ((JCSCachedTileLoaderJob<?, ?>) r).getPriority() == TilePrioritizer.STALE
+                    && downloadExecutor.remove(r)) {
+                ((JCSCachedTileLoaderJob<?, ?>) r).handleJobCancellation();
+            }
+        }
+    }
+
     @Override
     public boolean hasOutstandingTasks() {
         return downloadExecutor.getTaskCount() > downloadExecutor.getCompletedTaskCount();
     }
 
+    /**
+     * Sets the prioritizer giving the order in which the tiles of the jobs created afterwards are downloaded.
+     * @param prioritizer the tile prioritizer, or {@code null} to download tiles in submission order
+     * @since 17263
+     */
+    public void setTilePrioritizer(TilePrioritizer prioritizer) {
+        this.prioritizer = prioritizer;
+    }
+
+    /**
+     * Returns the prioritizer giving the order in which tiles are downloaded.
+     * @return the tile prioritizer, or {@code null}
+     * @since 17263
+     */
+    public TilePrioritizer getTilePrioritizer() {
+        return prioritizer;
+    }
+
     /**
      * Sets the download executor that will be used to download tiles instead of default one.
      * You can use {@link #getNewThreadPoolExecutor} to create a new download executor with separate
@@ -3,8 +3,8 @@ package org.openstreetmap.josm.data.imagery;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
@@ -33,6 +33,7 @@ import org.openstreetmap.josm.data.cache.CacheEntryAttributes;
 import org.openstreetmap.josm.data.cache.ICachedLoaderListener;
 import org.openstreetmap.josm.data.cache.JCSCachedTileLoaderJob;
 import org.openstreetmap.josm.data.preferences.LongProperty;
+import org.openstreetmap.josm.gui.layer.imagery.SharedTileCache;
 import org.openstreetmap.josm.tools.HttpClient;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.Utils;
@@ -53,6 +54,7 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
     static final Pattern JSON_PATTERN = Pattern.compile("\\{\"message\":\"(.+)\"\\}");
     protected final Tile tile;
     private volatile URL url;
+    private volatile TilePrioritizer prioritizer;
     private final TileJobOptions options;
 
     // we need another deduplication of Tile Loader listeners, as for each submit, new TMSCachedTileLoaderJob was created
@@ -116,9 +118,8 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
     @Override
     public boolean isObjectLoadable() {
         if (cacheData != null) {
-            byte[] content = cacheData.getContent();
             try {
-                return content.length > 0 || cacheData.getImage() != null || isNoTileAtZoom();
+                return cacheData.getContentLength() > 0 || cacheData.getImage() != null || isNoTileAtZoom();
             } catch (IOException e) {
                 Logging.logWithStackTrace(Logging.LEVEL_WARN, e, "JCS TMS - error loading from cache for tile {0}: {1}",
                         tile.getKey(), e.getMessage());
@@ -255,6 +256,21 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
         submit(false);
     }
 
+    /**
+     * Sets the prioritizer giving the priority of this job in the download queue.
+     * @param prioritizer the prioritizer of the tile, or {@code null} to load it in submission order
+     * @since 17263
+     */
+    public void setPrioritizer(TilePrioritizer prioritizer) {
+        this.prioritizer = prioritizer;
+    }
+
+    @Override
+    public double getPriority() {
+        TilePrioritizer p = prioritizer;
+        return p == null ? 0 : p.getPriority(tile);
+    }
+
     @Override
     protected CacheEntryAttributes parseHeaders(HttpClient.Response urlConn) {
         CacheEntryAttributes ret = super.parseHeaders(urlConn);
@@ -291,12 +307,13 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
 
     private boolean tryLoadTileImage(CacheEntry object) throws IOException {
         if (object != null) {
-            byte[] content = object.getContent();
-            if (content.length > 0) {
-                try (ByteArrayInputStream in = new ByteArrayInputStream(content)) {
+            if (object.getContentLength() > 0) {
+                try (InputStream in = object.getContentStream()) {
+                    long start = System.nanoTime();
                     tile.loadImage(in);
+                    SharedTileCache.recordDecoding(System.nanoTime() - start);
                     if (tile.getImage() == null) {
-                        String s = new String(content, StandardCharsets.UTF_8);
+                        String s = new String(object.getContent(), StandardCharsets.UTF_8);
                         Matcher m = SERVICE_EXCEPTION_PATTERN.matcher(s);
                         if (m.matches()) {
                             String message = Utils.strip(m.group(1));
@@ -0,0 +1,28 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import org.openstreetmap.gui.jmapviewer.Tile;
+
+/**
+ * Gives the order in which queued tiles are loaded.
+ * <p>
+ * Priorities are asked again each time a loader thread picks a job, so they may change while tiles are waiting in the
+ * queue, e.g. when the map is panned.
+ * @since 17263
+ */
+@FunctionalInterface
+public interface TilePrioritizer {
+
+    /**
+     * Priority of tiles which are not needed anymore, whose loading may be cancelled.
+     */
+    double STALE = Double.POSITIVE_INFINITY;
+
+    /**
+     * Returns the priority of a tile.
+     * @param tile the tile to load
+     * @return the priority of the tile, lower values being loaded first, or {@link #STALE} if the tile is not needed
+     * anymore
+     */
+    double getPriority(Tile tile);
+}
@@ -0,0 +1,474 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.TileXY;
+import org.openstreetmap.gui.jmapviewer.interfaces.ICoordinate;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileJob;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileLoader;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileLoaderListener;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.josm.data.cache.ICachedLoaderJob;
+import org.openstreetmap.josm.data.preferences.DoubleProperty;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Downloads all the tiles of an area and of a range of zoom levels into the tile cache, e.g. before working offline.
+ * <p>
+ * Tiles are enumerated zoom level by zoom level, row by row, so that seeding may be resumed after a restart from
+ * {@link #getPosition()}. Tiles which are already in the cache, even expired, are not downloaded again. At most
+ * {@link #getMaxPending()} tiles are loaded at once, and the requests to each host may be limited to
+ * {@link #getRateLimit()} per second.
+ * @since 17264
+ */
+public class TileSeeder implements TileLoaderListener {
+
+    /** The number of tiles downloaded in parallel */
+    public static final IntegerProperty THREADS = new IntegerProperty("imagery.seed.threads", 2);
+    /** The maximum number of requests per second to each host, or 0 for no limit */
+    public static final DoubleProperty RATE_LIMIT = new DoubleProperty("imagery.seed.rate_limit", 4.0);
+    /** The maximum number of tiles seeded at once */
+    public static final IntegerProperty MAX_TILES = new IntegerProperty("imagery.seed.max_tiles", 1_000_000);
+
+    private final TileSource tileSource;
+    private final Shape area;
+    private final int minZoom;
+    private final int maxZoom;
+
+    private TileLoader tileLoader;
+    private int maxPending = 1;
+    private double rateLimit;
+    private LongSupplier cacheUsage = () -> -1;
+    private LongConsumer positionListener = position -> { };
+
+    private volatile boolean canceled;
+    private volatile long nextIndex;
+    private volatile long startTime;
+    private long tileCount = -1;
+    private Semaphore pending;
+    /** Index of the tiles being loaded, by tile key */
+    private final Map<String, Long> loading = new ConcurrentHashMap<>();
+    private final NavigableSet<Long> loadingIndexes = new ConcurrentSkipListSet<>();
+    /** Time of the next request allowed to each host, in nanoseconds */
+    private final Map<String, Long> nextRequest = new HashMap<>();
+    private final AtomicLong downloaded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Constructs a new {@code TileSeeder}.
+     * @param tileSource the tile source
+     * @param area the area to seed, in degrees of longitude (x) and latitude (y)
+     * @param minZoom the minimum zoom level to seed
+     * @param maxZoom the maximum zoom level to seed
+     */
+    public TileSeeder(TileSource tileSource, Shape area, int minZoom, int maxZoom) {
+        if (minZoom > maxZoom) {
+            throw new IllegalArgumentException(minZoom + " > " + maxZoom);
+        }
+        this.tileSource = tileSource;
+        this.area = area;
+        this.minZoom = Math.max(minZoom, tileSource.getMinZoom());
+        this.maxZoom = Math.min(maxZoom, tileSource.getMaxZoom());
+    }
+
+    /**
+     * Sets the tile loader, which must notify this seeder when tiles are loaded.
+     * @param tileLoader the tile loader
+     * @param maxPending the maximum number of tiles loaded at once, at least the number of download threads
+     */
+    public void setTileLoader(TileLoader tileLoader, int maxPending) {
+        this.tileLoader = tileLoader;
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    /**
+     * Returns the tile loader.
+     * @return the tile loader
+     */
+    public TileLoader getTileLoader() {
+        return tileLoader;
+    }
+
+    /**
+     * Returns the maximum number of tiles loaded at once.
+     * @return the maximum number of tiles loaded at once
+     */
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    /**
+     * Sets the maximum number of requests per second to each host.
+     * @param rateLimit the maximum number of requests per second to each host, or 0 for no limit
+     */
+    public void setRateLimit(double rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * Returns the maximum number of requests per second to each host.
+     * @return the maximum number of requests per second to each host, or 0 for no limit
+     */
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * Sets the function giving the size of the tile cache, reported in the progress of seeding.
+     * @param cacheUsage the function returning the size of the tile cache in bytes, or a negative value if unknown
+     */
+    public void setCacheUsage(LongSupplier cacheUsage) {
+        this.cacheUsage = cacheUsage;
+    }
+
+    /**
+     * Sets the function notified of the {@link #getPosition() position} of the seeding when its progress is updated,
+     * about every second and when it ends, so that it may be saved to resume an interrupted seeding.
+     * @param positionListener the function called with the position, from the thread running the seeding
+     * @since 17265
+     */
+    public void setPositionListener(LongConsumer positionListener) {
+        this.positionListener = positionListener;
+    }
+
+    /**
+     * Returns the minimum zoom level to seed, within the zoom levels of the tile source.
+     * @return the minimum zoom level to seed
+     */
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    /**
+     * Returns the maximum zoom level to seed, within the zoom levels of the tile source.
+     * @return the maximum zoom level to seed
+     */
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    /**
+     * Returns the number of tiles of the bounding box of the area, which is quickly computed.
+     * @return the number of tiles of the bounding box of the area, an upper bound of {@link #getTileCount()}
+     */
+    public long getMaxTileCount() {
+        long count = 0;
+        for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+            int[] range = getRange(zoom);
+            count += (long) (range[2] - range[0] + 1) * (range[3] - range[1] + 1);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of tiles intersecting the area.
+     * @return the number of tiles to seed
+     */
+    public synchronized long getTileCount() {
+        if (tileCount < 0) {
+            long count = 0;
+            for (Iterator<Tile> it = iterator(0); it.hasNext(); it.next()) {
+                count++;
+            }
+            tileCount = count;
+        }
+        return tileCount;
+    }
+
+    /**
+     * Returns the tiles intersecting the area, zoom level by zoom level, row by row.
+     * @param start the number of tiles to skip
+     * @return the tiles to seed, from the tile at index {@code start}
+     */
+    public Iterator<Tile> iterator(long start) {
+        TileIterator it = new TileIterator();
+        for (long i = 0; i < start && it.hasNext(); i++) {
+            it.next();
+        }
+        return it;
+    }
+
+    /**
+     * Returns the range of the tiles of the bounding box of the area.
+     * @param zoom the zoom level
+     * @return the minimum x, minimum y, maximum x and maximum y indexes of the tiles
+     */
+    private int[] getRange(int zoom) {
+        Rectangle2D bounds = area.getBounds2D();
+        TileXY t1 = tileSource.latLonToTileXY(bounds.getMaxY(), bounds.getMinX(), zoom);
+        TileXY t2 = tileSource.latLonToTileXY(bounds.getMinY(), bounds.getMaxX(), zoom);
+        return new int[] {
+            Utils.clamp(Math.min(t1.getXIndex(), t2.getXIndex()), tileSource.getTileXMin(zoom), tileSource.getTileXMax(zoom)),
+            Utils.clamp(Math.min(t1.getYIndex(), t2.getYIndex()), tileSource.getTileYMin(zoom), tileSource.getTileYMax(zoom)),
+            Utils.clamp(Math.max(t1.getXIndex(), t2.getXIndex()), tileSource.getTileXMin(zoom), tileSource.getTileXMax(zoom)),
+            Utils.clamp(Math.max(t1.getYIndex(), t2.getYIndex()), tileSource.getTileYMin(zoom), tileSource.getTileYMax(zoom))
+        };
+    }
+
+    /**
+     * Determines if the tiles from (minX, minY) to (maxX, maxY), inclusive, intersect the area.
+     */
+    private boolean intersects(int minX, int minY, int maxX, int maxY, int zoom) {
+        ICoordinate c1 = tileSource.tileXYToLatLon(minX, minY, zoom);
+        ICoordinate c2 = tileSource.tileXYToLatLon(maxX + 1, maxY + 1, zoom);
+        double minLon = Math.min(c1.getLon(), c2.getLon());
+        double minLat = Math.min(c1.getLat(), c2.getLat());
+        return area.intersects(minLon, minLat, Math.max(c1.getLon(), c2.getLon()) - minLon,
+                Math.max(c1.getLat(), c2.getLat()) - minLat);
+    }
+
+    private class TileIterator implements Iterator<Tile> {
+        private int zoom = minZoom - 1;
+        private int[] range = {0, 0, -1, -1};
+        private int x;
+        private int y;
+        private Tile next;
+
+        TileIterator() {
+            next = findNext();
+        }
+
+        private Tile findNext() {
+            while (true) {
+                if (x < range[2]) {
+                    x++;
+                    if (intersects(x, y, x, y, zoom)) {
+                        return new Tile(tileSource, x, y, zoom);
+                    }
+                } else if (y < range[3]) {
+                    y++;
+                    // skip the rows outside of the area at once
+                    x = intersects(range[0], y, range[2], y, zoom) ? range[0] - 1 : range[2];
+                } else if (zoom < maxZoom) {
+                    zoom++;
+                    range = getRange(zoom);
+                    x = range[2];
+                    y = range[1] - 1;
+                } else {
+                    return null;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Tile next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Tile result = next;
+            next = findNext();
+            return result;
+        }
+    }
+
+    /**
+     * Loads the tiles, and waits until they are loaded or the seeding is canceled.
+     * @param progressMonitor the progress monitor
+     * @param start the index of the first tile to load, e.g. the {@link #getPosition() position} of an interrupted seeding
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public void run(ProgressMonitor progressMonitor, long start) throws InterruptedException {
+        progressMonitor.indeterminateSubTask(tr("Counting tiles"));
+        long total = getTileCount();
+        progressMonitor.setTicksCount((int) Math.min(Integer.MAX_VALUE, total));
+        progressMonitor.setTicks((int) Math.min(Integer.MAX_VALUE, start));
+        progressMonitor.subTask(tr("Downloading tiles"));
+        pending = new Semaphore(maxPending);
+        startTime = System.nanoTime();
+        long lastUpdate = 0;
+        long index = start;
+        nextIndex = index;
+        for (Iterator<Tile> it = iterator(start); it.hasNext() && !isCanceled(progressMonitor);) {
+            Tile tile = it.next();
+            TileJob job = tileLoader.createTileLoaderJob(tile);
+            if (isCached(job)) {
+                skipped.incrementAndGet();
+            } else {
+                while (!pending.tryAcquire(200, TimeUnit.MILLISECONDS)) {
+                    if (isCanceled(progressMonitor)) {
+                        break;
+                    }
+                }
+                if (isCanceled(progressMonitor)) {
+                    break;
+                }
+                waitForHost(tile);
+                loading.put(tile.getKey(), index);
+                loadingIndexes.add(index);
+                job.submit();
+                if (tile.hasError() && !tile.isLoading()) {
+                    // the job could not be submitted, e.g. without URL
+                    tileLoadingFinished(tile, false);
+                }
+            }
+            nextIndex = ++index;
+            if (System.nanoTime() - lastUpdate > TimeUnit.SECONDS.toNanos(1)) {
+                lastUpdate = System.nanoTime();
+                updateProgress(progressMonitor, total);
+            }
+        }
+        // wait for the last tiles
+        while (!isCanceled(progressMonitor) && !pending.tryAcquire(maxPending, 1, TimeUnit.SECONDS)) {
+            updateProgress(progressMonitor, total);
+        }
+        updateProgress(progressMonitor, total);
+    }
+
+    private void updateProgress(ProgressMonitor progressMonitor, long total) {
+        long position = getPosition();
+        progressMonitor.setTicks((int) Math.min(Integer.MAX_VALUE, position));
+        progressMonitor.setCustomText(getStatus(total));
+        positionListener.accept(position);
+    }
+
+    private boolean isCanceled(ProgressMonitor progressMonitor) {
+        if (!canceled && progressMonitor.isCanceled()) {
+            cancel();
+        }
+        return canceled;
+    }
+
+    private static boolean isCached(TileJob job) {
+        try {
+            return job instanceof ICachedLoaderJob && ((ICachedLoaderJob<?>) job).get() != null;
+        } catch (RuntimeException e) { // NOPMD
+            // the cache may not be readable, download the tile anyway
+            Logging.trace(e);
+            return false;
+        }
+    }
+
+    /**
+     * Waits until a request can be sent to the host of a tile, according to the rate limit.
+     */
+    private void waitForHost(Tile tile) throws InterruptedException {
+        if (rateLimit <= 0) {
+            return;
+        }
+        String host;
+        try {
+            host = new URL(tileSource.getTileUrl(tile.getZoom(), tile.getXtile(), tile.getYtile())).getHost();
+        } catch (IOException e) {
+            Logging.trace(e);
+            host = "";
+        }
+        long now = System.nanoTime();
+        long next = nextRequest.getOrDefault(host, now);
+        if (next > now) {
+            TimeUnit.NANOSECONDS.sleep(next - now);
+        }
+        nextRequest.put(host, Math.max(now, next) + (long) (TimeUnit.SECONDS.toNanos(1) / rateLimit));
+    }
+
+    @Override
+    public void tileLoadingFinished(Tile tile, boolean success) {
+        Long index = loading.remove(tile.getKey());
+        if (index == null) {
+            return;
+        }
+        if (canceled && !success) {
+            // the tile has not been loaded, keep it in the position to resume from
+            pending.release();
+            return;
+        }
+        loadingIndexes.remove(index);
+        if (success) {
+            downloaded.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+            Logging.warn("Tile loading failure: " + tile + " - " + tile.getErrorMessage());
+        }
+        pending.release();
+    }
+
+    /**
+     * Cancels the seeding: no more tiles are loaded, and the tiles waiting to be loaded are discarded.
+     */
+    public void cancel() {
+        canceled = true;
+        if (tileLoader != null) {
+            tileLoader.cancelOutstandingTasks();
+        }
+    }
+
+    /**
+     * Returns the index of the first tile which has not been loaded yet, from which an interrupted seeding may resume.
+     * @return the index of the first tile which has not been loaded yet
+     */
+    public long getPosition() {
+        // read before the loading tiles, as tiles are added to them before the next index is increased
+        long next = nextIndex;
+        Long first = loadingIndexes.ceiling(Long.MIN_VALUE);
+        return first != null ? Math.min(first, next) : next;
+    }
+
+    /**
+     * Returns the number of downloaded tiles.
+     * @return the number of downloaded tiles
+     */
+    public long getDownloadedCount() {
+        return downloaded.get();
+    }
+
+    /**
+     * Returns the number of tiles which could not be downloaded.
+     * @return the number of tiles which could not be downloaded
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the number of tiles which were already in the cache.
+     * @return the number of tiles which were already in the cache
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /**
+     * Returns the number of tiles downloaded per second since the seeding started.
+     * @return the number of tiles downloaded per second
+     */
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return startTime == 0 || seconds <= 0 ? 0 : downloaded.get() / seconds;
+    }
+
+    private String getStatus(long total) {
+        String status = tr("{0} of {1} tiles: {2} downloaded, {3} already cached, {4} failed, {5} tiles/s",
+                getPosition(), total, getDownloadedCount(), getSkippedCount(), getFailedCount(),
+                String.format(Locale.ROOT, "%.1f", getThroughput()));
+        long cacheSize = cacheUsage.getAsLong();
+        return cacheSize >= 0 ? status + ", " + tr("cache size {0}", Utils.getSizeString(cacheSize, Locale.getDefault())) : status;
+    }
+}
@@ -4,6 +4,7 @@ package org.openstreetmap.josm.data.osm;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.awt.geom.Area;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -105,6 +106,11 @@ import org.openstreetmap.josm.tools.SubclassFilteredCollection;
  * Note that locks cannot be upgraded - if one threads use read lock and and then write lock, dead lock will occur - see #5814 for
  * sample ticket
  *
+ * {@link #snapshot()} returns a read-only deep copy of the data, which can then be read without holding the lock. The
+ * copy is made under the read lock and takes as much memory as the data set itself, so it only pays off when the data
+ * is read many times, or much more slowly than it is copied. It is not used by the save, the renderer or the validator,
+ * which read the data set under the read lock.
+ *
  * @author imi
  */
 public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>, ProjectionChangeListener {
@@ -144,6 +150,11 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
+    // Incremented each time the write lock is acquired
+    private volatile long generation;
+    // Last snapshot, shared by consumers as long as it is in use and the data set is not modified
+    private volatile WeakReference<DataSetSnapshot> lastSnapshot = new WeakReference<>(null);
+
     /**
      * The mutex lock that is used to synchronize selection changes.
      */
@@ -292,6 +303,42 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
         return lock.readLock();
     }
 
+    /**
+     * Returns the generation of this data set. The generation changes each time the data set is modified.
+     * @return the generation of this data set
+     * @since 17243
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns a read-only copy of the current state of this data set.
+     * <p>
+     * This is a full deep copy: it doubles the memory used by the data while it is in use, and writers are blocked
+     * while the read lock is held to copy all primitives. The copy can then be read without any locking.
+     * Consecutive calls return the same snapshot as long as this data set is not modified and the snapshot is still in use.
+     * @return a read-only copy of the current state of this data set
+     * @since 17243
+     */
+    public DataSetSnapshot snapshot() {
+        DataSetSnapshot snapshot = lastSnapshot.get();
+        if (snapshot != null && snapshot.getGeneration() == generation) {
+            return snapshot;
+        }
+        lock.readLock().lock();
+        try {
+            snapshot = lastSnapshot.get();
+            if (snapshot == null || snapshot.getGeneration() != generation) {
+                snapshot = new DataSetSnapshot(this, generation);
+                lastSnapshot = new WeakReference<>(snapshot);
+            }
+            return snapshot;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     /**
      * History of selections - shared by plugins and SelectionListDialog
      */
@@ -901,6 +948,7 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
     public void beginUpdate() {
         lock.writeLock().lock();
         updateCount++;
+        generation++;
     }
 
     /**
@@ -0,0 +1,94 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+/**
+ * A read-only copy of a {@link DataSet}, taken for one generation of the data set.
+ * <p>
+ * The snapshot holds a deep copy of the data set primitives, created under the read lock of the source data set, so
+ * taking it blocks edits for the time of the copy and it uses as much memory as the source data. It can then be read
+ * without any locking. The generation of a data set changes each time it is modified: use {@link #isCurrent()} to know
+ * if the snapshot still reflects the source data set.
+ * <p>
+ * This is not a copy-on-write snapshot: taking it costs about as much as reading the whole data set once. The save and
+ * autosave of layers, the renderer and the validator therefore keep reading the live data set under its read lock.
+ * <p>
+ * Primitives of the snapshot are copies: they have the same ids as the source primitives, which can be retrieved with
+ * {@link #getSourcePrimitive}. Selection and highlighting state is not part of the snapshot.
+ * @see DataSet#snapshot()
+ * @since 17243
+ */
+public final class DataSetSnapshot {
+
+    private final DataSet source;
+    private final long generation;
+    private final boolean sourceLocked;
+    private final DataSet data;
+
+    /**
+     * Constructs a new {@code DataSetSnapshot}. The read lock of the source data set must be held.
+     * @param source source data set
+     * @param generation current generation of the source data set
+     */
+    DataSetSnapshot(DataSet source, long generation) {
+        this.source = source;
+        this.generation = generation;
+        this.sourceLocked = source.isLocked();
+        this.data = new DataSet(source);
+        this.data.setName(source.getName());
+        if (!data.isLocked()) {
+            data.lock();
+        }
+    }
+
+    /**
+     * Returns the read-only copy of the source data set.
+     * @return the read-only copy of the source data set. Its primitives cannot be modified
+     */
+    public DataSet getDataSet() {
+        return data;
+    }
+
+    /**
+     * Returns the source data set.
+     * @return the source data set
+     */
+    public DataSet getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the generation of the source data set when this snapshot was taken.
+     * @return the generation of the source data set when this snapshot was taken
+     * @see DataSet#getGeneration()
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Determines if the source data set has not been modified since this snapshot was taken.
+     * @return {@code true} if the source data set has not been modified since this snapshot was taken
+     */
+    public boolean isCurrent() {
+        return source.getGeneration() == generation;
+    }
+
+    /**
+     * Determines if the source data set was locked (read-only) when this snapshot was taken.
+     * The copy returned by {@link #getDataSet()} is always locked.
+     * @return {@code true} if the source data set was locked when this snapshot was taken
+     */
+    public boolean isSourceLocked() {
+        return sourceLocked;
+    }
+
+    /**
+     * Returns the primitive of the source data set with the same id as the given snapshot primitive.
+     * The source primitive may have been modified or removed since the snapshot was taken.
+     * @param primitive primitive of the snapshot
+     * @return the source primitive, or {@code null} if it does not exist anymore
+     */
+    public OsmPrimitive getSourcePrimitive(PrimitiveId primitive) {
+        return source.getPrimitiveById(primitive);
+    }
+}
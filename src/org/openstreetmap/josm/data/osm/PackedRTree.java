@@ -0,0 +1,492 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A spatial index stored as packed R-trees, bulk loaded with the Sort-Tile-Recursive (STR) algorithm.
+ * <p>
+ * The bounding boxes of the tree nodes and primitives are stored in flat arrays, so that a search only walks a few
+ * contiguous nodes of {@value #NODE_CAPACITY} entries each. Incremental updates use the logarithmic method: added
+ * primitives are kept in a small buffer, which is merged with the smallest trees into a new packed tree when full.
+ * A tree with {@code n} primitives is thus rebuilt {@code O(log n)} times. Removed primitives are only marked as
+ * deleted, a tree being rebuilt when half of its primitives have been removed. {@link #addAll} bulk loads a single tree.
+ * <p>
+ * Note: bbox of primitives added to a PackedRTree has to stay the same. In case of coordinate change, primitive must
+ * be removed and re-added.
+ * <p>
+ * This class does not do any synchronization. Unlike {@link QuadBuckets}, searches and iterations do not modify the
+ * index: they can run concurrently in several threads, as long as no modification is running at the same time.
+ * @param <T> type of primitives
+ * @since 17244
+ */
+public class PackedRTree<T extends IPrimitive> extends AbstractCollection<T> implements SpatialIndex<T> {
+
+    /** Maximum number of children of a tree node */
+    static final int NODE_CAPACITY = 16;
+    /** Number of added primitives kept unindexed before being packed into a tree */
+    static final int BUFFER_SIZE = 256;
+
+    /** Added primitives, not yet packed in a tree */
+    private final List<T> buffer = new ArrayList<>();
+    /** Packed trees. The tree at index i holds at most {@code BUFFER_SIZE << i} primitives, {@code null} if empty */
+    private final List<PackedTree<T>> trees = new ArrayList<>();
+    private final Set<T> invalidBBoxPrimitives = new LinkedHashSet<>();
+    private int size;
+
+    /**
+     * A primitive with its bounding box, used while building a tree.
+     */
+    private static final class Entry<T> {
+        final T item;
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+
+        Entry(T item, BBox bbox) {
+            this(item, bbox.getTopLeftLon(), bbox.getBottomRightLat(), bbox.getBottomRightLon(), bbox.getTopLeftLat());
+        }
+
+        Entry(T item, double minX, double minY, double maxX, double maxY) {
+            this.item = item;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        double centerX() {
+            return minX + maxX;
+        }
+
+        double centerY() {
+            return minY + maxY;
+        }
+    }
+
+    /**
+     * An immutable, STR packed R-tree. Primitives can only be marked as removed.
+     */
+    private static final class PackedTree<T extends IPrimitive> {
+        /** Primitives in leaf order, {@code null} when removed */
+        private final Object[] items;
+        /** Bounding boxes of primitives, 4 values per primitive: minX, minY, maxX, maxY */
+        private final double[] itemBounds;
+        /** Bounding boxes of nodes, 4 values per node, from the leaf level to the root */
+        private final double[] nodeBounds;
+        /** Index of the first node of each level, followed by the total number of nodes */
+        private final int[] levelStart;
+        private int removed;
+
+        PackedTree(List<Entry<T>> entries) {
+            int n = entries.size();
+            items = new Object[n];
+            itemBounds = new double[4 * n];
+
+            // Sort-Tile-Recursive: sort by x, cut into vertical slices, sort each slice by y
+            @SuppressWarnings("unchecked")
+            Entry<T>[] sorted = entries.toArray(new Entry[n]);
+            int leafCount = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            int sliceSize = (int) Math.ceil(Math.sqrt(leafCount)) * NODE_CAPACITY;
+            Arrays.sort(sorted, Comparator.comparingDouble(Entry::centerX));
+            for (int from = 0; from < n; from += sliceSize) {
+                Arrays.sort(sorted, from, Math.min(from + sliceSize, n), Comparator.comparingDouble(Entry::centerY));
+            }
+            for (int i = 0; i < n; i++) {
+                Entry<T> e = sorted[i];
+                items[i] = e.item;
+                itemBounds[4 * i] = e.minX;
+                itemBounds[4 * i + 1] = e.minY;
+                itemBounds[4 * i + 2] = e.maxX;
+                itemBounds[4 * i + 3] = e.maxY;
+            }
+
+            // Count nodes of each level
+            List<Integer> starts = new ArrayList<>();
+            int total = 0;
+            int count = leafCount;
+            while (true) {
+                starts.add(total);
+                total += count;
+                if (count == 1) {
+                    break;
+                }
+                count = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            }
+            starts.add(total);
+            levelStart = starts.stream().mapToInt(Integer::intValue).toArray();
+
+            // Compute node bounds, level by level
+            nodeBounds = new double[4 * total];
+            for (int node = 0; node < leafCount; node++) {
+                union(itemBounds, node * NODE_CAPACITY, Math.min((node + 1) * NODE_CAPACITY, n), node);
+            }
+            for (int level = 1; level < levelStart.length - 1; level++) {
+                int childStart = levelStart[level - 1];
+                int childCount = levelStart[level] - childStart;
+                for (int node = 0; node < levelStart[level + 1] - levelStart[level]; node++) {
+                    union(nodeBounds, childStart + node * NODE_CAPACITY,
+                            childStart + Math.min((node + 1) * NODE_CAPACITY, childCount), levelStart[level] + node);
+                }
+            }
+        }
+
+        private void union(double[] bounds, int from, int to, int node) {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                minX = Math.min(minX, bounds[4 * i]);
+                minY = Math.min(minY, bounds[4 * i + 1]);
+                maxX = Math.max(maxX, bounds[4 * i + 2]);
+                maxY = Math.max(maxY, bounds[4 * i + 3]);
+            }
+            nodeBounds[4 * node] = minX;
+            nodeBounds[4 * node + 1] = minY;
+            nodeBounds[4 * node + 2] = maxX;
+            nodeBounds[4 * node + 3] = maxY;
+        }
+
+        private static boolean intersects(double[] bounds, int i, double minX, double minY, double maxX, double maxY) {
+            return bounds[4 * i] <= maxX && bounds[4 * i + 2] >= minX && bounds[4 * i + 1] <= maxY && bounds[4 * i + 3] >= minY;
+        }
+
+        private static boolean isInside(double[] bounds, int i, double minX, double minY, double maxX, double maxY) {
+            return bounds[4 * i] >= minX && bounds[4 * i + 2] <= maxX && bounds[4 * i + 1] >= minY && bounds[4 * i + 3] <= maxY;
+        }
+
+        int liveCount() {
+            return items.length - removed;
+        }
+
+        /**
+         * Visits the leaf slots whose bounding box intersects the given one.
+         * @param level level of the node, 0 for leaves
+         * @param node index of the node in its level
+         * @param visitor called with each candidate slot, returns {@code false} to stop the search
+         * @return {@code false} if the search was stopped
+         */
+        private boolean visit(int level, int node, double minX, double minY, double maxX, double maxY, SlotVisitor visitor) {
+            if (!intersects(nodeBounds, levelStart[level] + node, minX, minY, maxX, maxY)) {
+                return true;
+            }
+            int from = node * NODE_CAPACITY;
+            if (level == 0) {
+                int to = Math.min(from + NODE_CAPACITY, items.length);
+                boolean inside = isInside(nodeBounds, node, minX, minY, maxX, maxY);
+                for (int i = from; i < to; i++) {
+                    if (items[i] != null && (inside || intersects(itemBounds, i, minX, minY, maxX, maxY)) && !visitor.visit(i)) {
+                        return false;
+                    }
+                }
+            } else {
+                int to = Math.min(from + NODE_CAPACITY, levelStart[level] - levelStart[level - 1]);
+                for (int child = from; child < to; child++) {
+                    if (!visit(level - 1, child, minX, minY, maxX, maxY, visitor)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private boolean visit(BBox bbox, SlotVisitor visitor) {
+            return visit(levelStart.length - 2, 0, bbox.getTopLeftLon(), bbox.getBottomRightLat(),
+                    bbox.getBottomRightLon(), bbox.getTopLeftLat(), visitor);
+        }
+
+        @SuppressWarnings("unchecked")
+        void search(BBox bbox, List<T> result) {
+            visit(bbox, i -> result.add((T) items[i]));
+        }
+
+        int indexOf(Object o, BBox bbox) {
+            int[] found = {-1};
+            visit(bbox, i -> {
+                if (o.equals(items[i])) {
+                    found[0] = i;
+                    return false;
+                }
+                return true;
+            });
+            return found[0];
+        }
+
+        boolean remove(Object o, BBox bbox) {
+            int index = indexOf(o, bbox);
+            if (index >= 0) {
+                items[index] = null;
+                removed++;
+                return true;
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        void addLiveEntries(List<Entry<T>> entries) {
+            for (int i = 0; i < items.length; i++) {
+                if (items[i] != null) {
+                    entries.add(new Entry<>((T) items[i], itemBounds[4 * i], itemBounds[4 * i + 1],
+                            itemBounds[4 * i + 2], itemBounds[4 * i + 3]));
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SlotVisitor {
+        boolean visit(int slot);
+    }
+
+    /**
+     * Constructs a new, empty {@code PackedRTree}.
+     */
+    public PackedRTree() {
+        // Do nothing
+    }
+
+    /**
+     * Constructs a new {@code PackedRTree}, bulk loaded with the given primitives.
+     * @param primitives primitives to add
+     */
+    public PackedRTree(Collection<? extends T> primitives) {
+        addAll(primitives);
+    }
+
+    @Override
+    public final void clear() {
+        buffer.clear();
+        trees.clear();
+        invalidBBoxPrimitives.clear();
+        size = 0;
+    }
+
+    @Override
+    public boolean add(T n) {
+        if (n.getBBox().isValid()) {
+            buffer.add(n);
+            if (buffer.size() >= BUFFER_SIZE) {
+                packBuffer();
+            }
+        } else {
+            invalidBBoxPrimitives.add(n);
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Merges the buffer and the smallest trees into a new tree, like a binary counter.
+     */
+    private void packBuffer() {
+        List<Entry<T>> entries = new ArrayList<>();
+        for (T t : buffer) {
+            entries.add(new Entry<>(t, t.getBBox()));
+        }
+        buffer.clear();
+        int level = 0;
+        while (level < trees.size() && trees.get(level) != null) {
+            trees.get(level).addLiveEntries(entries);
+            trees.set(level, null);
+            level++;
+        }
+        setTree(level, entries.isEmpty() ? null : new PackedTree<>(entries));
+    }
+
+    private void setTree(int level, PackedTree<T> tree) {
+        while (trees.size() <= level) {
+            trees.add(null);
+        }
+        trees.set(level, tree);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> objects) {
+        if (objects.size() < BUFFER_SIZE) {
+            objects.forEach(this::add);
+            return !objects.isEmpty();
+        }
+        // Bulk load everything in a single tree
+        List<Entry<T>> entries = new ArrayList<>(size + objects.size());
+        for (T t : buffer) {
+            entries.add(new Entry<>(t, t.getBBox()));
+        }
+        buffer.clear();
+        for (PackedTree<T> tree : trees) {
+            if (tree != null) {
+                tree.addLiveEntries(entries);
+            }
+        }
+        trees.clear();
+        for (T t : objects) {
+            BBox bbox = t.getBBox();
+            if (bbox.isValid()) {
+                entries.add(new Entry<>(t, bbox));
+            } else {
+                invalidBBoxPrimitives.add(t);
+            }
+        }
+        size += objects.size();
+        if (!entries.isEmpty()) {
+            int level = 0;
+            while ((long) BUFFER_SIZE << level < entries.size()) {
+                level++;
+            }
+            setTree(level, new PackedTree<>(entries));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        BBox bbox = t.getBBox();
+        boolean removed;
+        if (!bbox.isValid()) {
+            removed = invalidBBoxPrimitives.remove(o);
+        } else {
+            removed = buffer.remove(o) || removeFromTrees(o, bbox);
+        }
+        if (removed) {
+            size--;
+        }
+        return removed;
+    }
+
+    private boolean removeFromTrees(Object o, BBox bbox) {
+        for (int level = 0; level < trees.size(); level++) {
+            PackedTree<T> tree = trees.get(level);
+            if (tree != null && tree.remove(o, bbox)) {
+                if (tree.liveCount() == 0) {
+                    trees.set(level, null);
+                } else if (2 * tree.removed > tree.items.length) {
+                    List<Entry<T>> entries = new ArrayList<>(tree.liveCount());
+                    tree.addLiveEntries(entries);
+                    trees.set(level, new PackedTree<>(entries));
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> objects) {
+        return objects.stream().map(this::remove).reduce(false, (a, b) -> a || b);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> objects) {
+        List<T> toRemove = new ArrayList<>();
+        for (T t : this) {
+            if (!objects.contains(t)) {
+                toRemove.add(t);
+            }
+        }
+        return removeAll(toRemove);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        BBox bbox = t.getBBox();
+        if (!bbox.isValid()) {
+            return invalidBBoxPrimitives.contains(o);
+        }
+        return buffer.contains(o) || trees.stream().anyMatch(tree -> tree != null && tree.indexOf(o, bbox) >= 0);
+    }
+
+    @Override
+    public List<T> search(BBox searchBbox) {
+        List<T> ret = new ArrayList<>();
+        if (searchBbox == null || !searchBbox.isValid()) {
+            return ret;
+        }
+        for (PackedTree<T> tree : trees) {
+            if (tree != null) {
+                tree.search(searchBbox, ret);
+            }
+        }
+        for (T t : buffer) {
+            if (t.getBBox().intersects(searchBbox)) {
+                ret.add(t);
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new PackedRTreeIterator();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Iterates over the trees, the buffer and the primitives with an invalid bounding box. Does not support removal.
+     */
+    private class PackedRTreeIterator implements Iterator<T> {
+        private int level;
+        private int slot;
+        private final Iterator<T> bufferIterator = buffer.iterator();
+        private final Iterator<T> invalidBBoxIterator = invalidBBoxPrimitives.iterator();
+
+        PackedRTreeIterator() {
+            slot = -1;
+            advance();
+        }
+
+        private void advance() {
+            slot++;
+            while (level < trees.size()) {
+                PackedTree<T> tree = trees.get(level);
+                if (tree != null) {
+                    while (slot < tree.items.length && tree.items[slot] == null) {
+                        slot++;
+                    }
+                    if (slot < tree.items.length) {
+                        return;
+                    }
+                }
+                level++;
+                slot = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return level < trees.size() || bufferIterator.hasNext() || invalidBBoxIterator.hasNext();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (level < trees.size()) {
+                T t = (T) trees.get(level).items[slot];
+                advance();
+                return t;
+            } else if (bufferIterator.hasNext()) {
+                return bufferIterator.next();
+            } else if (invalidBBoxIterator.hasNext()) {
+                return invalidBBoxIterator.next();
+            }
+            throw new NoSuchElementException();
+        }
+    }
+}
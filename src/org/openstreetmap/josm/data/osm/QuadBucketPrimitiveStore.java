@@ -7,11 +7,15 @@ import java.util.List;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.JosmRuntimeException;
 
 /**
  * Stores primitives in quad buckets. This can be used to hold a collection of primitives, e.g. in a {@link DataSet}
  *
+ * Nodes and ways are indexed in {@link QuadBuckets}, or in a {@link PackedRTree} if the {@value #PREF_PACKED_RTREE}
+ * preference is set when the store is created.
+ *
  * This class does not do any synchronization.
  * @author Michael Zangl
  * @param <N> type representing OSM nodes
@@ -20,24 +24,37 @@ import org.openstreetmap.josm.tools.JosmRuntimeException;
  * @since 12048
  */
 public class QuadBucketPrimitiveStore<N extends INode, W extends IWay<N>, R extends IRelation<?>> {
+    /**
+     * Preference key to index nodes and ways in a {@link PackedRTree} instead of {@link QuadBuckets}.
+     * @since 17244
+     */
+    public static final String PREF_PACKED_RTREE = "osm.spatial-index.packed-rtree";
+
     /**
      * All nodes goes here, even when included in other data (ways etc). This enables the instant
      * conversion of the whole DataSet by iterating over this data structure.
      */
-    private final QuadBuckets<N> nodes = new QuadBuckets<>();
+    private final SpatialIndex<N> nodes = createSpatialIndex();
 
     /**
      * All ways (Streets etc.) in the DataSet.
      *
      * The way nodes are stored only in the way list.
      */
-    private final QuadBuckets<W> ways = new QuadBuckets<>();
+    private final SpatialIndex<W> ways = createSpatialIndex();
 
     /**
      * All relations/relationships
      */
     private final Collection<R> relations = new ArrayList<>();
 
+    private static <T extends IPrimitive> SpatialIndex<T> createSpatialIndex() {
+        if (Config.getPref() != null && Config.getPref().getBoolean(PREF_PACKED_RTREE, false)) {
+            return new PackedRTree<>();
+        }
+        return new QuadBuckets<>();
+    }
+
     /**
      * Searches for nodes in the given bounding box.
      * @param bbox the bounding box
@@ -22,7 +22,7 @@ import org.openstreetmap.josm.tools.Logging;
  * @param <T> type of primitives
  * @since 2165
  */
-public class QuadBuckets<T extends IPrimitive> implements Collection<T> {
+public class QuadBuckets<T extends IPrimitive> implements SpatialIndex<T> {
     private static final boolean CONSISTENCY_TESTING = false;
     private static final byte NW_INDEX = 1;
     private static final byte NE_INDEX = 3;
@@ -564,6 +564,7 @@ public class QuadBuckets<T extends IPrimitive> implements Collection<T> {
      * @param searchBbox the bbox
      * @return List of primitives within the bbox (or crossing the bbox if they are ways). Can be empty, but not null.
      */
+    @Override
     public List<T> search(BBox searchBbox) {
         List<T> ret = new ArrayList<>();
         if (searchBbox == null || !searchBbox.isValid()) {
@@ -571,23 +572,25 @@ public class QuadBuckets<T extends IPrimitive> implements Collection<T> {
         }
 
         // Doing this cuts down search cost on a real-life data set by about 25%
-        if (searchCache == null) {
-            searchCache = root;
+        // The cache is only a hint: work on a local copy, so concurrent searches under the read lock stay correct
+        QBLevel<T> start = searchCache;
+        if (start == null) {
+            start = root;
         }
         // Walk back up the tree when the last search spot can not cover the current search
-        while (searchCache != null && !searchCache.bounds(searchBbox)) {
-            searchCache = searchCache.parent;
+        while (start != null && !start.bounds(searchBbox)) {
+            start = start.parent;
         }
 
-        if (searchCache == null) {
-            searchCache = root;
+        if (start == null) {
+            start = root;
             Logging.info("bbox: " + searchBbox + " is out of the world");
         }
+        searchCache = start;
 
-        // Save parent because searchCache might change during search call
-        QBLevel<T> tmp = searchCache.parent;
+        QBLevel<T> tmp = start.parent;
 
-        searchCache.search(this, searchBbox, ret);
+        start.search(this, searchBbox, ret);
 
         // A way that spans this bucket may be stored in one
         // of the nodes which is a parent of the search cache
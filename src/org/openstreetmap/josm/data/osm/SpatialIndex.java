@@ -0,0 +1,23 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A collection of primitives indexed by their bounding box.
+ * <p>
+ * Note: bbox of primitives added to a spatial index has to stay the same. In case of coordinate change, primitive must
+ * be removed and re-added.
+ * @param <T> type of primitives
+ * @since 17244
+ */
+public interface SpatialIndex<T extends IPrimitive> extends Collection<T> {
+
+    /**
+     * Search the index for objects in the bbox (or crossing the bbox if they are ways)
+     * @param searchBbox the bbox
+     * @return List of primitives within the bbox (or crossing the bbox if they are ways). Can be empty, but not null.
+     */
+    List<T> search(BBox searchBbox);
+}
@@ -7,6 +7,7 @@ import java.awt.geom.GeneralPath;
 import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
 import java.util.Iterator;
+import java.util.List;
 
 import org.openstreetmap.josm.data.osm.BBox;
 import org.openstreetmap.josm.data.osm.INode;
@@ -65,6 +66,11 @@ public abstract class AbstractMapRenderer implements Rendering {
     /** Performs slow operations by default. Can be disabled when fast partial rendering is required */
     protected boolean doSlowOperations = true;
 
+    /** The cache of simplified way geometries, or {@code null} */
+    private SimplifiedWayCache simplifiedWays;
+    /** Preference: if ways are painted with simplified geometries at the current scale */
+    protected boolean simplifyWays;
+
     /**
      * <p>Creates an abstract paint visitor</p>
      *
@@ -191,9 +197,31 @@ public abstract class AbstractMapRenderer implements Rendering {
         this.virtualNodeSize = virtual ? Config.getPref().getInt("mappaint.node.virtual-size", 8) / 2 : 0;
         this.virtualNodeSpace = Config.getPref().getInt("mappaint.node.virtual-space", 70);
         this.segmentNumberSpace = Config.getPref().getInt("mappaint.segmentnumber.space", 40);
+        int simplifyDistance = SimplifiedWayCache.PROP_MIN_DISTANCE.get();
+        this.simplifyWays = simplifiedWays != null && simplifyDistance > 0 && nc.getDist100Pixel() >= simplifyDistance;
         getColors();
     }
 
+    /**
+     * Sets the cache of simplified way geometries used to paint ways at low zoom levels.
+     * @param simplifiedWays the cache of simplified way geometries of the rendered data set, or {@code null}
+     * @since 17252
+     */
+    public void setSimplifiedWayCache(SimplifiedWayCache simplifiedWays) {
+        this.simplifiedWays = simplifiedWays;
+    }
+
+    /**
+     * Returns the nodes to paint a way with, simplified at low zoom levels.
+     * Must be called after {@link #getSettings(boolean)}.
+     * @param w The way
+     * @return the nodes to paint the way with
+     * @since 17252
+     */
+    protected List<? extends INode> getRenderedNodes(IWay<?> w) {
+        return simplifyWays ? simplifiedWays.getNodes(w, nc.getScale()) : w.getNodes();
+    }
+
     /**
      * Checks if a way segemnt is large enough for additional information display.
      *
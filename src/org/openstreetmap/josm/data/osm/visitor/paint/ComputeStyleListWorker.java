@@ -35,6 +35,10 @@ public class ComputeStyleListWorker extends RecursiveTask<List<StyleRecord>> imp
 
     private static final long serialVersionUID = 1L;
 
+    private static final int DRAW_AREA = 1;
+    private static final int DRAW_MULTIPOLYGON = 2;
+    private static final int DRAW_RESTRICTION = 4;
+
     private final transient List<? extends IPrimitive> input;
     private final transient List<StyleRecord> output;
 
@@ -81,12 +85,34 @@ public class ComputeStyleListWorker extends RecursiveTask<List<StyleRecord>> imp
         this.output = output;
         this.directExecutionTaskSize = directExecutionTaskSize;
         this.styles = styles;
-        this.drawArea = circum <= Config.getPref().getInt("mappaint.fillareas", 10_000_000);
-        this.drawMultipolygon = drawArea && Config.getPref().getBoolean("mappaint.multipolygon", true);
-        this.drawRestriction = Config.getPref().getBoolean("mappaint.restriction", true);
+        int drawSettings = getDrawSettings(circum);
+        this.drawArea = (drawSettings & DRAW_AREA) != 0;
+        this.drawMultipolygon = (drawSettings & DRAW_MULTIPOLYGON) != 0;
+        this.drawRestriction = (drawSettings & DRAW_RESTRICTION) != 0;
         this.styles.setDrawMultipolygon(drawMultipolygon);
     }
 
+    /**
+     * Returns the settings deciding which style elements get a style record at the given scale.
+     * Workers with the same settings create the same records for the same styles.
+     * @param circum distance on the map in meters that 100 screen pixels represent
+     * @return the settings, as a bit mask
+     * @since 17251
+     */
+    static int getDrawSettings(double circum) {
+        int settings = 0;
+        if (circum <= Config.getPref().getInt("mappaint.fillareas", 10_000_000)) {
+            settings |= DRAW_AREA;
+            if (Config.getPref().getBoolean("mappaint.multipolygon", true)) {
+                settings |= DRAW_MULTIPOLYGON;
+            }
+        }
+        if (Config.getPref().getBoolean("mappaint.restriction", true)) {
+            settings |= DRAW_RESTRICTION;
+        }
+        return settings;
+    }
+
     @Override
     protected List<StyleRecord> compute() {
         if (input.size() <= directExecutionTaskSize) {
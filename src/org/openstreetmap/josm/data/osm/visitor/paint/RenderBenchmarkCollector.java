@@ -3,10 +3,13 @@ package org.openstreetmap.josm.data.osm.visitor.paint;
 
 import java.io.PrintStream;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 import org.openstreetmap.josm.data.osm.visitor.paint.StyledMapRenderer.StyleRecord;
+import org.openstreetmap.josm.gui.mappaint.RenderProfiler;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Selector;
+import org.openstreetmap.josm.gui.mappaint.styleelement.StyleElement;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.Utils;
@@ -26,6 +29,16 @@ public class RenderBenchmarkCollector {
         // nop
     }
 
+    /**
+     * Notified when the renderer gets the styles from a {@link RetainedRenderList}
+     * @param reused <code>true</code> if the list of a previous frame has been reused, with the changed primitives
+     * updated, <code>false</code> if it has been rebuilt
+     * @since 17251
+     */
+    public void renderListUsed(boolean reused) {
+        // nop
+    }
+
     /**
      * Notified when the renderer method starts sorting the styles
      * @return <code>true</code> if the renderer should continue to render
@@ -45,6 +58,26 @@ public class RenderBenchmarkCollector {
         return true;
     }
 
+    /**
+     * Determines if the renderer should measure the time needed to paint each style element,
+     * see {@link #elementPainted(StyleElement, long)}.
+     * @return <code>true</code> if the renderer should measure each style element
+     * @since 17254
+     */
+    public boolean isProfilingElements() {
+        return false;
+    }
+
+    /**
+     * Notified when a style element has been painted, if {@link #isProfilingElements()}
+     * @param element The painted style element
+     * @param nanos The time needed to paint it, in nanoseconds
+     * @since 17254
+     */
+    public void elementPainted(StyleElement element, long nanos) {
+        // nop
+    }
+
     /**
      * Notified when the render method is done.
      */
@@ -61,6 +94,8 @@ public class RenderBenchmarkCollector {
         protected long timeGenerateDone;
         protected long timeSortingDone;
         protected long timeFinished;
+        protected boolean renderListUsed;
+        protected boolean renderListReused;
 
         @Override
         public void renderStart(double circum) {
@@ -68,6 +103,13 @@ public class RenderBenchmarkCollector {
             super.renderStart(circum);
         }
 
+        @Override
+        public void renderListUsed(boolean reused) {
+            renderListUsed = true;
+            renderListReused = reused;
+            super.renderListUsed(reused);
+        }
+
         @Override
         public boolean renderSort() {
             timeGenerateDone = getCurrentTimeMilliseconds();
@@ -109,6 +151,15 @@ public class RenderBenchmarkCollector {
         public long getDrawTime() {
             return timeFinished - timeGenerateDone;
         }
+
+        /**
+         * Determines if the styles have been taken from a retained render list of a previous frame
+         * @return <code>true</code> if a retained render list has been reused
+         * @since 17251
+         */
+        public boolean isRenderListReused() {
+            return renderListReused;
+        }
     }
 
     public static long getCurrentTimeMilliseconds() {
@@ -120,6 +171,8 @@ public class RenderBenchmarkCollector {
      * @author Michael Zangl
      */
     public static class LoggingBenchmark extends RenderBenchmarkCollector.CapturingBenchmark {
+        private static final AtomicLong RENDER_LIST_FRAMES = new AtomicLong();
+        private static final AtomicLong RENDER_LIST_REUSED = new AtomicLong();
         private final PrintStream outStream = System.err;
         private double circum;
 
@@ -140,18 +193,46 @@ public class RenderBenchmarkCollector {
         @Override
         public void renderDone() {
             super.renderDone();
-            outStream.println("; phase 2 (draw): " + Utils.getDurationString(timeFinished - timeGenerateDone) +
+            outStream.print("; phase 2 (draw): " + Utils.getDurationString(timeFinished - timeGenerateDone) +
                     "; total: " + Utils.getDurationString(timeFinished - timeStart) +
                     " (scale: " + circum + " zoom level: " + Selector.GeneralSelector.scale2level(circum) + ')');
+            if (renderListUsed) {
+                long frames = RENDER_LIST_FRAMES.incrementAndGet();
+                long reused = renderListReused ? RENDER_LIST_REUSED.incrementAndGet() : RENDER_LIST_REUSED.get();
+                outStream.print("; render list " + (renderListReused ? "reused" : "rebuilt") +
+                        " (reused in " + reused + " of " + frames + " frames)");
+            }
+            outStream.println();
+        }
+    }
+
+    /**
+     * A benchmark that reports the time needed to paint each style element to the {@link RenderProfiler}.
+     * @since 17254
+     */
+    public static class ProfilingBenchmark extends RenderBenchmarkCollector.CapturingBenchmark {
+        @Override
+        public boolean isProfilingElements() {
+            return true;
+        }
+
+        @Override
+        public void elementPainted(StyleElement element, long nanos) {
+            RenderProfiler.elementPainted(element, nanos);
         }
     }
 
     /**
      * A supplier that gets the default benchmark class.
-     * @return A supplier that returns a nop or a logging benchmark.
+     * @return A supplier that returns a nop, a profiling or a logging benchmark.
      */
     public static Supplier<RenderBenchmarkCollector> defaultBenchmarkSupplier() {
-        return () -> Logging.isTraceEnabled() || Config.getPref().getBoolean("mappaint.render.benchmark", false)
-                ? new LoggingBenchmark() : new RenderBenchmarkCollector();
+        return () -> {
+            if (RenderProfiler.isEnabled()) {
+                return new ProfilingBenchmark();
+            }
+            return Logging.isTraceEnabled() || Config.getPref().getBoolean("mappaint.render.benchmark", false)
+                    ? new LoggingBenchmark() : new RenderBenchmarkCollector();
+        };
     }
 }
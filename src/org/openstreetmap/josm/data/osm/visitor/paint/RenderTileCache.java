@@ -0,0 +1,461 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.ProjectionBounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.WaySegment;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.FilterChangedEvent;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.data.preferences.NamedColorProperty;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles.MapPaintStylesUpdateListener;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.spi.preferences.PreferenceChangeEvent;
+import org.openstreetmap.josm.spi.preferences.PreferenceChangedListener;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Cache of rendered tiles of a data set, to paint a data layer without rendering all visible primitives again.
+ * <p>
+ * The map is divided into square tiles of {@link #TILE_SIZE} pixels, aligned to the pixel grid of the view at its
+ * current scale. Missing tiles are rendered in parallel on the thread pool of {@link StyledMapRenderer}, and kept for
+ * each scale, so that panning only renders the newly exposed tiles. The least recently used tiles are dropped first.
+ * <p>
+ * Tiles are invalidated where changed, selected or highlighted primitives touch them, and all tiles are dropped when
+ * styles, rendering preferences (including the active renderer) or rendering settings change. Since tiles are rendered
+ * independently, labels of long ways and large areas are placed in each tile they cross.
+ * @since 17250
+ */
+public final class RenderTileCache implements PreferenceChangedListener, MapPaintStylesUpdateListener {
+
+    /**
+     * The size of tiles, in pixels.
+     */
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * The maximum number of tiles kept in the cache of a layer.
+     */
+    public static final IntegerProperty PROP_CACHE_SIZE = new IntegerProperty("mappaint.tiled-rendering.cache-size", 256);
+
+    /** Extra space around tiles in which primitives are rendered, so that symbols and labels are not cut at tile borders */
+    private static final int MARGIN = TILE_SIZE / 2;
+    /** Prefixes of the preferences read by the renderers and the map paint styles */
+    private static final String[] RENDERING_PREFERENCES = {
+        "mappaint.", "draw.", NamedColorProperty.NAMED_COLOR_PREFIX, "glyph-bug"};
+    /** Maximum number of views kept to render tiles */
+    private static final int MAX_IDLE_VIEWS = 64;
+
+    private final DataSet data;
+    private final Map<TileKey, Tile> tiles = new LinkedHashMap<TileKey, Tile>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TileKey, Tile> eldest) {
+            return size() > PROP_CACHE_SIZE.get();
+        }
+    };
+    /** The distance that 100 pixels represent, for each scale, so that tiles of a scale share the same rendering settings */
+    private final Map<Double, Double> dist100Pixel = new HashMap<>();
+    private final Deque<TileView> idleViews = new ArrayDeque<>();
+    private boolean inactive;
+    private boolean virtual;
+    private SimplifiedWayCache simplifiedWays;
+    private List<WaySegment> highlightedWaySegments;
+    private List<WaySegment> highlightedVirtualNodes;
+    /** incremented on each invalidation, so that tiles rendered meanwhile are not cached */
+    private int modCount;
+
+    private static final class TileKey {
+        private final double scale;
+        private final int x;
+        private final int y;
+
+        TileKey(double scale, int x, int y) {
+            this.scale = scale;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            TileKey other = (TileKey) obj;
+            return Double.compare(scale, other.scale) == 0 && x == other.x && y == other.y;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(scale, x, y);
+        }
+    }
+
+    private static final class Tile {
+        private final BufferedImage image;
+        private final BBox bbox;
+        /** the primitives found in the bounds of the tile, which may have been painted on it */
+        private final Set<OsmPrimitive> primitives;
+        private final Set<OsmPrimitive> highlighted;
+
+        Tile(BufferedImage image, BBox bbox, Set<OsmPrimitive> primitives) {
+            this.image = image;
+            this.bbox = bbox;
+            this.primitives = primitives;
+            this.highlighted = new HashSet<>();
+            for (OsmPrimitive p : primitives) {
+                if (p.isHighlighted()) {
+                    highlighted.add(p);
+                }
+            }
+        }
+
+        boolean isAffectedBy(Set<OsmPrimitive> changed, List<BBox> boxes) {
+            if (primitives.size() < changed.size()) {
+                if (primitives.stream().anyMatch(changed::contains))
+                    return true;
+            } else if (changed.stream().anyMatch(primitives::contains)) {
+                return true;
+            }
+            return boxes.stream().anyMatch(bbox::intersects);
+        }
+
+        boolean isHighlightChanged() {
+            return primitives.stream().anyMatch(p -> p.isHighlighted() != highlighted.contains(p));
+        }
+    }
+
+    /**
+     * A tile to render.
+     */
+    private static final class TileTask {
+        private final TileKey key;
+        private final TileView view;
+        private final Bounds bounds;
+        private final AbstractMapRenderer renderer;
+        private final BufferedImage image;
+
+        TileTask(TileKey key, TileView view, Bounds bounds, boolean inactive, SimplifiedWayCache simplifiedWays) {
+            this.key = key;
+            this.view = view;
+            this.bounds = bounds;
+            this.image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+            this.renderer = MapRendererFactory.getInstance().createActiveRenderer(image.createGraphics(), view, inactive);
+            this.renderer.setSimplifiedWayCache(simplifiedWays);
+        }
+
+        Tile render(DataSet data, boolean virtual) {
+            try {
+                renderer.render(data, virtual, bounds);
+            } finally {
+                renderer.g.dispose();
+            }
+            BBox bbox = bounds.toBBox();
+            Set<OsmPrimitive> primitives = new HashSet<>();
+            data.getReadLock().lock();
+            try {
+                primitives.addAll(data.searchNodes(bbox));
+                primitives.addAll(data.searchWays(bbox));
+                primitives.addAll(data.searchRelations(bbox));
+                return new Tile(image, bbox, primitives);
+            } finally {
+                data.getReadLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Constructs a new {@code RenderTileCache}.
+     * @param data the data set to render
+     */
+    public RenderTileCache(DataSet data) {
+        this.data = Objects.requireNonNull(data, "data");
+        this.highlightedWaySegments = new ArrayList<>(data.getHighlightedWaySegments());
+        this.highlightedVirtualNodes = new ArrayList<>(data.getHighlightedVirtualNodes());
+        Config.getPref().addPreferenceChangeListener(this);
+        MapPaintStyles.addMapPaintStylesUpdateListener(this);
+    }
+
+    /**
+     * Sets the cache of simplified way geometries used to render tiles at low zoom levels.
+     * @param simplifiedWays the cache of simplified way geometries of the data set, or {@code null}
+     * @since 17252
+     */
+    public synchronized void setSimplifiedWayCache(SimplifiedWayCache simplifiedWays) {
+        this.simplifiedWays = simplifiedWays;
+    }
+
+    /**
+     * Paints the data set with tiles, rendering the missing ones.
+     * @param g the graphics to paint on
+     * @param nc the view
+     * @param inactive if {@code true}, the data set is painted in inactive mode
+     * @param virtual if {@code true}, virtual nodes are painted
+     * @return {@code true} if the data set has been painted. Tiles cannot be used with a scaled graphics context or at
+     * extreme scales, the data set must then be rendered directly.
+     */
+    public boolean paint(Graphics2D g, NavigatableComponent nc, boolean inactive, boolean virtual) {
+        if ((g.getTransform().getType() & ~AffineTransform.TYPE_TRANSLATION) != 0) {
+            // the tiles would be scaled
+            return false;
+        }
+        double scale = nc.getScale();
+        double span = TILE_SIZE * scale;
+        ProjectionBounds view = nc.getProjectionBounds();
+        int minX = (int) Math.floor(view.minEast / span);
+        int maxX = (int) Math.floor(view.maxEast / span);
+        int minY = (int) Math.floor(-view.maxNorth / span);
+        int maxY = (int) Math.floor(-view.minNorth / span);
+
+        Map<TileKey, BufferedImage> images = new LinkedHashMap<>();
+        List<TileTask> tasks = new ArrayList<>();
+        int startModCount;
+        synchronized (this) {
+            if (inactive != this.inactive || virtual != this.virtual) {
+                clear();
+                this.inactive = inactive;
+                this.virtual = virtual;
+            }
+            double dist = dist100Pixel.computeIfAbsent(scale, s -> nc.getDist100Pixel());
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    TileKey key = new TileKey(scale, x, y);
+                    Tile tile = tiles.get(key);
+                    if (tile != null) {
+                        images.put(key, tile.image);
+                    } else {
+                        TileView tileView = idleViews.isEmpty() ? new TileView(TILE_SIZE) : idleViews.pop();
+                        tileView.moveTo(new EastNorth((x + .5) * span, -(y + .5) * span), scale, dist);
+                        if (!Utils.equalsEpsilon(tileView.getScale(), scale)) {
+                            // the scale is out of the range supported by tiles
+                            idleViews.push(tileView);
+                            tasks.forEach(t -> idleViews.push(t.view));
+                            return false;
+                        }
+                        ProjectionBounds pb = tileView.getProjectionBounds();
+                        pb.extend(new EastNorth(pb.minEast - MARGIN * scale, pb.minNorth - MARGIN * scale));
+                        pb.extend(new EastNorth(pb.maxEast + MARGIN * scale, pb.maxNorth + MARGIN * scale));
+                        Bounds bounds = ProjectionRegistry.getProjection().getLatLonBoundsBox(pb);
+                        tasks.add(new TileTask(key, tileView, bounds, inactive, simplifiedWays));
+                        images.put(key, null);
+                    }
+                }
+            }
+            // creating renderers may change preferences
+            startModCount = modCount;
+        }
+
+        if (!tasks.isEmpty()) {
+            List<Tile> rendered = render(tasks, virtual);
+            synchronized (this) {
+                for (int i = 0; i < tasks.size(); i++) {
+                    TileTask task = tasks.get(i);
+                    images.put(task.key, task.image);
+                    if (modCount == startModCount) {
+                        tiles.put(task.key, rendered.get(i));
+                    }
+                    if (idleViews.size() < MAX_IDLE_VIEWS) {
+                        idleViews.push(task.view);
+                    }
+                }
+                dist100Pixel.keySet().removeIf(s -> s != scale && tiles.keySet().stream().noneMatch(k -> k.scale == s));
+            }
+        }
+
+        for (Map.Entry<TileKey, BufferedImage> e : images.entrySet()) {
+            TileKey key = e.getKey();
+            Point2D p = nc.getState().getPointFor(new EastNorth(key.x * span, -key.y * span)).getInView();
+            g.drawImage(e.getValue(), (int) Math.round(p.getX()), (int) Math.round(p.getY()), null);
+        }
+        return true;
+    }
+
+    private List<Tile> render(List<TileTask> tasks, boolean virtual) {
+        // the bounds rendered by the tasks, including their margins
+        Bounds bounds = null;
+        for (TileTask task : tasks) {
+            if (bounds == null) {
+                bounds = new Bounds(task.bounds);
+            } else {
+                bounds.extend(task.bounds);
+            }
+        }
+        AbstractMapRenderer first = tasks.get(0).renderer;
+        if (first instanceof StyledMapRenderer) {
+            // compute styles once, not concurrently for primitives crossing several tiles
+            ((StyledMapRenderer) first).computeStyles(data, bounds);
+        }
+        List<Tile> rendered = new ArrayList<>(tasks.size());
+        if (StyledMapRenderer.THREAD_POOL != null && tasks.size() > 1) {
+            List<ForkJoinTask<Tile>> futures = new ArrayList<>(tasks.size());
+            for (TileTask task : tasks) {
+                futures.add(StyledMapRenderer.THREAD_POOL.submit(() -> task.render(data, virtual)));
+            }
+            for (ForkJoinTask<Tile> future : futures) {
+                rendered.add(future.join());
+            }
+        } else {
+            for (TileTask task : tasks) {
+                rendered.add(task.render(data, virtual));
+            }
+        }
+        return rendered;
+    }
+
+    /**
+     * Invalidates the tiles affected by a data set event.
+     * @param event the event
+     */
+    public void processDatasetEvent(AbstractDatasetChangedEvent event) {
+        if (event instanceof DataChangedEvent) {
+            List<AbstractDatasetChangedEvent> events = ((DataChangedEvent) event).getEvents();
+            if (events == null) {
+                clear();
+            } else {
+                events.forEach(this::processDatasetEvent);
+            }
+        } else if (event instanceof FilterChangedEvent) {
+            clear();
+        } else {
+            invalidate(event.getPrimitives());
+        }
+    }
+
+    /**
+     * Invalidates the tiles where the given primitives are painted, or may have been painted before a change.
+     * Primitives whose style may depend on them (parents, members and way nodes) are invalidated too.
+     * @param primitives the changed primitives
+     */
+    public void invalidate(Collection<? extends OsmPrimitive> primitives) {
+        if (primitives.isEmpty()) {
+            return;
+        }
+        Set<OsmPrimitive> changed = RetainedRenderList.withDependents(primitives);
+        List<BBox> boxes = new ArrayList<>();
+        for (OsmPrimitive p : changed) {
+            if (!(p instanceof Node) || ((Node) p).isLatLonKnown()) {
+                BBox bbox = p.getBBox();
+                if (bbox.isValid()) {
+                    boxes.add(bbox);
+                }
+            }
+        }
+        synchronized (this) {
+            modCount++;
+            tiles.values().removeIf(t -> t.isAffectedBy(changed, boxes));
+        }
+    }
+
+    /**
+     * Invalidates the tiles where the highlighted primitives changed.
+     */
+    public void highlightUpdated() {
+        List<WaySegment> waySegments = new ArrayList<>(data.getHighlightedWaySegments());
+        List<WaySegment> virtualNodes = new ArrayList<>(data.getHighlightedVirtualNodes());
+        Set<OsmPrimitive> changed = new HashSet<>();
+        synchronized (this) {
+            addChangedWays(changed, highlightedWaySegments, waySegments);
+            addChangedWays(changed, highlightedVirtualNodes, virtualNodes);
+            highlightedWaySegments = waySegments;
+            highlightedVirtualNodes = virtualNodes;
+            modCount++;
+            tiles.values().removeIf(Tile::isHighlightChanged);
+        }
+        invalidate(changed);
+    }
+
+    private static void addChangedWays(Set<OsmPrimitive> changed, List<WaySegment> before, List<WaySegment> after) {
+        if (!before.equals(after)) {
+            before.forEach(ws -> changed.add(ws.way));
+            after.forEach(ws -> changed.add(ws.way));
+        }
+    }
+
+    /**
+     * Removes all tiles.
+     */
+    public synchronized void clear() {
+        modCount++;
+        tiles.clear();
+        dist100Pixel.clear();
+    }
+
+    /**
+     * Removes all tiles and unregisters the listeners of this cache. It must not be used afterwards.
+     */
+    public void destroy() {
+        Config.getPref().removePreferenceChangeListener(this);
+        MapPaintStyles.removeMapPaintStylesUpdateListener(this);
+        synchronized (this) {
+            clear();
+            idleViews.clear();
+        }
+    }
+
+    /**
+     * Returns the number of cached tiles.
+     * @return the number of cached tiles
+     */
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    /**
+     * Determines if a preference affects the rendering of the tiles.
+     * @param key the preference key
+     * @return {@code true} if the tiles must be rendered again when the preference changes
+     */
+    static boolean isRenderingPreference(String key) {
+        for (String prefix : RENDERING_PREFERENCES) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void preferenceChanged(PreferenceChangeEvent e) {
+        if (isRenderingPreference(e.getKey())) {
+            clear();
+        }
+    }
+
+    @Override
+    public void mapPaintStylesUpdated() {
+        clear();
+    }
+
+    @Override
+    public void mapPaintStyleEntryUpdated(int index) {
+        clear();
+    }
+}
@@ -0,0 +1,309 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.IPrimitive;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.FilterChangedEvent;
+import org.openstreetmap.josm.data.osm.visitor.paint.StyledMapRenderer.StyleRecord;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.mappaint.ElemStyles;
+import org.openstreetmap.josm.gui.mappaint.Range;
+
+/**
+ * The style records of the primitives around the painted area of a data set, sorted in painting order, and retained
+ * between frames.
+ * <p>
+ * When the view is only moved within the retained area, the records are not computed and sorted again. The list is
+ * rebuilt when the styles are reloaded, when the scale leaves the range in which all retained styles are valid, or
+ * when the view leaves the retained area. Primitives changed in the meantime, as notified by data set events and
+ * selection changes, are updated in place: their records are computed again and merged into the sorted list.
+ * <p>
+ * Only one frame is built at a time, the list is synchronized.
+ * @since 17251
+ */
+public final class RetainedRenderList {
+
+    /** Extra space around the painted area in which records are retained, relative to its size */
+    private static final double MARGIN = 0.25;
+    /** The list is rebuilt if more than one primitive per this number of records has been changed */
+    private static final int MAX_CHANGED_RATIO = 4;
+
+    private final DataSet data;
+    private final Set<OsmPrimitive> changed = new HashSet<>();
+    private boolean valid;
+
+    private ElemStyles styles;
+    private short stylesCacheIndex;
+    private short dataCacheIndex;
+    private NavigatableComponent nc;
+    private int drawSettings;
+    private Range range;
+    private BBox area;
+
+    private StyleRecord[] records = new StyleRecord[0];
+    /** the bounds of the primitives of the records, as minimum and maximum longitude and latitude */
+    private double[] bounds = new double[0];
+
+    /**
+     * Constructs a new {@code RetainedRenderList}.
+     * @param data the data set whose records are retained
+     */
+    public RetainedRenderList(DataSet data) {
+        this.data = data;
+    }
+
+    /**
+     * Returns the data set whose records are retained.
+     * @return the data set whose records are retained
+     */
+    public DataSet getDataSet() {
+        return data;
+    }
+
+    /**
+     * Returns the sorted style records of the primitives in the given bounds, from the retained list if possible.
+     * The data set must be read locked.
+     * @param styles the styles
+     * @param circum distance on the map in meters that 100 screen pixels represent
+     * @param nc navigatable component
+     * @param bbox the painted area
+     * @param benchmark notified whether the retained list has been reused
+     * @return the style records of the primitives in the painted area, in painting order
+     */
+    synchronized List<StyleRecord> getRecords(ElemStyles styles, double circum, NavigatableComponent nc, BBox bbox,
+            RenderBenchmarkCollector benchmark) {
+        boolean reused = isReusable(styles, circum, nc, bbox);
+        if (reused) {
+            update(circum);
+        } else {
+            rebuild(styles, circum, nc, bbox);
+        }
+        benchmark.renderListUsed(reused);
+
+        List<StyleRecord> result = new ArrayList<>();
+        double minLon = bbox.getTopLeftLon();
+        double maxLon = bbox.getBottomRightLon();
+        double minLat = bbox.getBottomRightLat();
+        double maxLat = bbox.getTopLeftLat();
+        for (int i = 0; i < records.length; i++) {
+            int j = 4 * i;
+            if (bounds[j] <= maxLon && bounds[j + 2] >= minLon && bounds[j + 1] <= maxLat && bounds[j + 3] >= minLat) {
+                result.add(records[i]);
+            }
+        }
+        return result;
+    }
+
+    private boolean isReusable(ElemStyles styles, double circum, NavigatableComponent nc, BBox bbox) {
+        return valid
+                && styles == this.styles
+                && styles.getCacheIndex() == stylesCacheIndex
+                && data.getMappaintCacheIndex() == dataCacheIndex
+                && nc == this.nc
+                && ComputeStyleListWorker.getDrawSettings(circum) == drawSettings
+                && range.contains(circum)
+                && area.bounds(bbox)
+                && changed.size() * MAX_CHANGED_RATIO <= records.length;
+    }
+
+    private void rebuild(ElemStyles styles, double circum, NavigatableComponent nc, BBox bbox) {
+        this.styles = styles;
+        this.stylesCacheIndex = styles.getCacheIndex();
+        this.dataCacheIndex = data.getMappaintCacheIndex();
+        this.nc = nc;
+        this.drawSettings = ComputeStyleListWorker.getDrawSettings(circum);
+        double marginLon = bbox.width() * MARGIN;
+        double marginLat = bbox.height() * MARGIN;
+        area = new BBox(bbox.getTopLeftLon() - marginLon, bbox.getBottomRightLat() - marginLat,
+                bbox.getBottomRightLon() + marginLon, bbox.getTopLeftLat() + marginLat);
+        changed.clear();
+
+        List<Node> nodes = data.searchNodes(area);
+        List<Way> ways = data.searchWays(area);
+        List<Relation> relations = data.searchRelations(area);
+        List<StyleRecord> list = StyledMapRenderer.computeStyleRecords(circum, nc, styles, nodes, ways, relations);
+        range = Range.ZERO_TO_INFINITY;
+        cutRange(nodes, circum);
+        cutRange(ways, circum);
+        cutRange(relations, circum);
+
+        // We use parallel sort here. This is only available for arrays.
+        records = list.toArray(new StyleRecord[0]);
+        Arrays.parallelSort(records, null);
+        bounds = new double[4 * records.length];
+        for (int i = 0; i < records.length; i++) {
+            setBounds(i);
+        }
+        valid = true;
+    }
+
+    private void update(double circum) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        Set<OsmPrimitive> affected = withDependents(changed);
+        changed.clear();
+
+        List<Node> nodes = new ArrayList<>();
+        List<Way> ways = new ArrayList<>();
+        List<Relation> relations = new ArrayList<>();
+        for (OsmPrimitive p : affected) {
+            if (p.getDataSet() != data || p.isIncomplete() || (p instanceof Node && !((Node) p).isLatLonKnown())
+                    || !area.intersects(p.getBBox())) {
+                continue;
+            }
+            if (p instanceof Node) {
+                nodes.add((Node) p);
+            } else if (p instanceof Way) {
+                ways.add((Way) p);
+            } else if (p instanceof Relation) {
+                relations.add((Relation) p);
+            }
+        }
+        StyleRecord[] added = StyledMapRenderer.computeStyleRecords(circum, nc, styles, nodes, ways, relations)
+                .toArray(new StyleRecord[0]);
+        Arrays.sort(added);
+        cutRange(nodes, circum);
+        cutRange(ways, circum);
+        cutRange(relations, circum);
+
+        // merge the new records into the sorted records of unchanged primitives
+        StyleRecord[] old = records;
+        double[] oldBounds = bounds;
+        records = new StyleRecord[old.length + added.length];
+        bounds = new double[4 * records.length];
+        int size = 0;
+        int a = 0;
+        for (int i = 0; i < old.length; i++) {
+            if (affected.contains(old[i].getPrimitive())) {
+                continue;
+            }
+            while (a < added.length && added[a].compareTo(old[i]) < 0) {
+                records[size] = added[a++];
+                setBounds(size++);
+            }
+            records[size] = old[i];
+            System.arraycopy(oldBounds, 4 * i, bounds, 4 * size++, 4);
+        }
+        while (a < added.length) {
+            records[size] = added[a++];
+            setBounds(size++);
+        }
+        if (size < records.length) {
+            records = Arrays.copyOf(records, size);
+            bounds = Arrays.copyOf(bounds, 4 * size);
+        }
+    }
+
+    private void cutRange(List<? extends IPrimitive> primitives, double circum) {
+        for (IPrimitive p : primitives) {
+            if (p.isDrawable()) {
+                range = Range.cut(range, styles.getStyleCacheWithRange(p, circum, nc).b);
+            }
+        }
+    }
+
+    private void setBounds(int i) {
+        IPrimitive p = records[i].getPrimitive();
+        int j = 4 * i;
+        if (i > 0 && records[i - 1].getPrimitive() == p) {
+            System.arraycopy(bounds, j - 4, bounds, j, 4);
+        } else {
+            BBox bbox = p.getBBox();
+            bounds[j] = bbox.getTopLeftLon();
+            bounds[j + 1] = bbox.getBottomRightLat();
+            bounds[j + 2] = bbox.getBottomRightLon();
+            bounds[j + 3] = bbox.getTopLeftLat();
+        }
+    }
+
+    /**
+     * Returns the given primitives and the primitives whose style or painting may depend on them: parents (and their
+     * parents), members and way nodes.
+     * @param primitives the changed primitives
+     * @return the primitives affected by the change
+     */
+    static Set<OsmPrimitive> withDependents(Collection<? extends OsmPrimitive> primitives) {
+        Set<OsmPrimitive> affected = new HashSet<>();
+        for (OsmPrimitive p : primitives) {
+            affected.add(p);
+            for (OsmPrimitive referrer : p.getReferrers(true)) {
+                affected.add(referrer);
+                affected.addAll(referrer.getReferrers(true));
+            }
+            if (p instanceof Way) {
+                affected.addAll(((Way) p).getNodes());
+            } else if (p instanceof Relation) {
+                affected.addAll(((Relation) p).getMemberPrimitivesList());
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Processes a data set event: the changed primitives are updated in the next frame.
+     * @param event the data set event
+     */
+    public void processDatasetEvent(AbstractDatasetChangedEvent event) {
+        if (event instanceof DataChangedEvent) {
+            List<AbstractDatasetChangedEvent> events = ((DataChangedEvent) event).getEvents();
+            if (events == null) {
+                clear();
+            } else {
+                events.forEach(this::processDatasetEvent);
+            }
+        } else if (event instanceof FilterChangedEvent) {
+            clear();
+        } else {
+            invalidate(event.getPrimitives());
+        }
+    }
+
+    /**
+     * Marks primitives as changed, for instance after a selection change. Their records are updated in the next frame.
+     * @param primitives the changed primitives
+     */
+    public synchronized void invalidate(Collection<? extends OsmPrimitive> primitives) {
+        if (!valid) {
+            return;
+        }
+        changed.addAll(primitives);
+        if (changed.size() * MAX_CHANGED_RATIO > records.length) {
+            // rebuilt in the next frame anyway
+            clear();
+        }
+    }
+
+    /**
+     * Clears the list, it is rebuilt in the next frame.
+     */
+    public synchronized void clear() {
+        valid = false;
+        changed.clear();
+        records = new StyleRecord[0];
+        bounds = new double[0];
+        nc = null;
+    }
+
+    /**
+     * Returns the number of retained style records.
+     * @return the number of retained style records
+     */
+    public synchronized int size() {
+        return records.length;
+    }
+}
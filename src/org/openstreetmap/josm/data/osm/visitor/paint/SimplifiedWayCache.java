@@ -0,0 +1,183 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.INode;
+import org.openstreetmap.josm.data.osm.IWay;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+
+/**
+ * Cache of simplified way geometries of a data set, to paint zoomed out views without walking every node of every way.
+ * <p>
+ * The scales are divided into zoom bands, each one doubling the scale of the previous one. For each band, the nodes
+ * of a way are simplified lazily with the Douglas-Peucker algorithm, with a tolerance of half a pixel at the smallest
+ * scale of the band, and kept until the way or one of its nodes changes.
+ * <p>
+ * The cache is thread safe, so that tiles can be rendered in parallel.
+ * @since 17252
+ */
+public final class SimplifiedWayCache {
+
+    /**
+     * The minimum distance in meters that 100 pixels represent, from which ways are painted simplified. 0 disables it.
+     */
+    public static final IntegerProperty PROP_MIN_DISTANCE = new IntegerProperty("mappaint.simplify-ways.distance", 1000);
+
+    /** Ways with less nodes are not simplified */
+    private static final int MIN_NODES = 8;
+
+    private final DataSet data;
+    private final Map<Way, Map<Integer, List<? extends INode>>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code SimplifiedWayCache}.
+     * @param data the data set whose ways are simplified
+     */
+    public SimplifiedWayCache(DataSet data) {
+        this.data = data;
+    }
+
+    /**
+     * Returns the nodes to paint a way at the given scale.
+     * @param way the way
+     * @param scale the scale, in east/north units per pixel
+     * @return the simplified nodes of the way, or all its nodes if it cannot be simplified
+     */
+    public List<? extends INode> getNodes(IWay<?> way, double scale) {
+        List<? extends INode> nodes = way.getNodes();
+        if (nodes.size() < MIN_NODES || !(way instanceof Way) || ((Way) way).getDataSet() != data || !(scale > 0)) {
+            return nodes;
+        }
+        int band = Math.getExponent(scale);
+        return cache.computeIfAbsent((Way) way, w -> new ConcurrentHashMap<>())
+                .computeIfAbsent(band, b -> simplify(nodes, Math.scalb(0.5, b)));
+    }
+
+    /**
+     * Simplifies a line with the Douglas-Peucker algorithm. The first and last nodes are always kept.
+     * @param nodes the nodes of the line
+     * @param tolerance the maximum distance of removed nodes to the simplified line, in east/north units
+     * @return the kept nodes, or {@code nodes} if all are kept or some have no coordinates
+     */
+    static List<? extends INode> simplify(List<? extends INode> nodes, double tolerance) {
+        int n = nodes.size();
+        if (n < 3) {
+            return nodes;
+        }
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            INode node = nodes.get(i);
+            EastNorth en = node.isLatLonKnown() ? node.getEastNorth() : null;
+            if (en == null) {
+                return nodes;
+            }
+            x[i] = en.east();
+            y[i] = en.north();
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int kept = 2;
+        double toleranceSq = tolerance * tolerance;
+        // pending ranges, as pairs of first and last index
+        int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int farthest = -1;
+            double maxSq = toleranceSq;
+            for (int i = first + 1; i < last; i++) {
+                double distSq = distanceSq(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (distSq > maxSq) {
+                    maxSq = distSq;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                kept++;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+        if (kept == n) {
+            return nodes;
+        }
+
+        List<INode> result = new ArrayList<>(kept);
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                result.add(nodes.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static double distanceSq(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSq));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * Processes a data set event: the ways whose geometry has changed are removed from the cache.
+     * @param event the data set event
+     */
+    public void processDatasetEvent(AbstractDatasetChangedEvent event) {
+        if (event instanceof DataChangedEvent) {
+            List<AbstractDatasetChangedEvent> events = ((DataChangedEvent) event).getEvents();
+            if (events == null) {
+                clear();
+            } else {
+                events.forEach(this::processDatasetEvent);
+            }
+        } else if (event instanceof NodeMovedEvent) {
+            for (OsmPrimitive referrer : ((NodeMovedEvent) event).getNode().getReferrers(true)) {
+                cache.remove(referrer);
+            }
+        } else if (event instanceof WayNodesChangedEvent) {
+            cache.remove(((WayNodesChangedEvent) event).getChangedWay());
+        } else if (event instanceof PrimitivesRemovedEvent) {
+            event.getPrimitives().forEach(cache::remove);
+        }
+    }
+
+    /**
+     * Clears the cache, for instance after a projection change.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Returns the number of ways in the cache.
+     * @return the number of ways in the cache
+     */
+    public int size() {
+        return cache.size();
+    }
+}
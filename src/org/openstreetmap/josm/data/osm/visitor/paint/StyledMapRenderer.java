@@ -7,7 +7,6 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Composite;
 import java.awt.Font;
-import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Point;
@@ -28,6 +27,7 @@ import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -78,6 +78,7 @@ import org.openstreetmap.josm.gui.mappaint.styleelement.RepeatImageElement.LineI
 import org.openstreetmap.josm.gui.mappaint.styleelement.StyleElement;
 import org.openstreetmap.josm.gui.mappaint.styleelement.Symbol;
 import org.openstreetmap.josm.gui.mappaint.styleelement.TextLabel;
+import org.openstreetmap.josm.gui.mappaint.styleelement.placement.LabelCollisionIndex;
 import org.openstreetmap.josm.gui.mappaint.styleelement.placement.PositionForAreaStrategy;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.CompositeList;
@@ -97,7 +98,8 @@ import org.openstreetmap.josm.tools.bugreport.BugReport;
  */
 public class StyledMapRenderer extends AbstractMapRenderer {
 
-    private static final ForkJoinPool THREAD_POOL = newForkJoinPool();
+    /** The pool computing styles, and rendering tiles with {@link RenderTileCache} */
+    static final ForkJoinPool THREAD_POOL = newForkJoinPool();
 
     private static ForkJoinPool newForkJoinPool() {
         try {
@@ -217,6 +219,15 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             return style;
         }
 
+        /**
+         * Get the primitive painted with the style.
+         * @return The primitive
+         * @since 17251
+         */
+        public IPrimitive getPrimitive() {
+            return osm;
+        }
+
         /**
          * Paints the primitive with the style.
          * @param paintSettings The settings to use.
@@ -294,6 +305,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
 
     private MapPaintSettings paintSettings;
     private ElemStyles styles;
+    private RetainedRenderList renderList;
 
     private Color highlightColorTransparent;
 
@@ -340,6 +352,17 @@ public class StyledMapRenderer extends AbstractMapRenderer {
      */
     public static final AbstractProperty<String> PREFERENCE_TEXT_ANTIALIASING
             = new StringProperty("mappaint.text-antialiasing", "default").cached();
+    /**
+     * Indicates that labels overlapping already painted labels are skipped
+     * @since 17255
+     */
+    public static final AbstractProperty<Boolean> PREFERENCE_LABEL_DECLUTTER
+            = new BooleanProperty("mappaint.label.declutter", false).cached();
+
+    /**
+     * The space to keep free around labels when decluttering, in pixels
+     */
+    private static final double LABEL_MARGIN = 2;
 
     /**
      * The line with to use for highlighting
@@ -358,6 +381,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
     private boolean showNames;
     private boolean showIcons;
     private boolean isOutlineOnly;
+    private LabelCollisionIndex labelIndex;
 
     private boolean leftHandTraffic;
     private Object antialiasing;
@@ -389,6 +413,16 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         this.styles = styles;
     }
 
+    /**
+     * Set the {@link RetainedRenderList} used to paint its data set, instead of computing and sorting the styles of
+     * all primitives for each frame.
+     * @param renderList the render list to use, or {@code null}
+     * @since 17251
+     */
+    public void setRenderList(RetainedRenderList renderList) {
+        this.renderList = renderList;
+    }
+
     private void displaySegments(MapViewPath path, Path2D orientationArrows, Path2D onewayArrows, Path2D onewayArrowsCasing,
             Color color, BasicStroke line, BasicStroke dashes, Color dashedColor) {
         g.setColor(isInactiveMode ? inactiveColor : color);
@@ -617,7 +651,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         g.setFont(text.font);
 
         FontRenderContext frc = g.getFontRenderContext();
-        Rectangle2D bounds = text.font.getStringBounds(s, frc);
+        Rectangle2D bounds = TextLayoutCache.getInstance().getStringBounds(s, text.font, frc);
 
         double x = p.getInViewX() + bs.xOffset;
         double y = p.getInViewY() + bs.yOffset;
@@ -667,7 +701,9 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         if (!RotationAngle.NO_ROTATION.equals(text.rotationAngle)) {
             at.rotate(text.rotationAngle.getRotationAngle(n));
         }
-        displayText(n, text, s, at);
+        if (reserveLabelSpace(Collections.singletonList(at.createTransformedShape(bounds).getBounds2D()), text)) {
+            displayText(n, text, s, at);
+        }
         g.setFont(defaultFont);
     }
 
@@ -1147,8 +1183,8 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             return;
         }
 
-        FontMetrics fontMetrics = g.getFontMetrics(text.font); // if slow, use cache
-        Rectangle2D nb = fontMetrics.getStringBounds(name, g); // if slow, approximate by strlen()*maxcharbounds(font)
+        FontRenderContext frc = g.getFontRenderContext();
+        Rectangle2D nb = TextLayoutCache.getInstance().getStringBounds(name, text.font, frc);
 
         Font defaultFont = g.getFont();
         forEachPolygon(osm, path -> {
@@ -1158,9 +1194,12 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             if (center != null) {
                 displayText(osm, text, name, nb, center);
             } else if (position.supportsGlyphVector()) {
-                List<GlyphVector> gvs = Utils.getGlyphVectorsBidi(name, text.font, g.getFontRenderContext());
+                List<GlyphVector> gvs = TextLayoutCache.getInstance().getGlyphVectors(name, text.font, frc);
 
                 List<GlyphVector> translatedGvs = position.generateGlyphVectors(path, nb, gvs, isGlyphVectorDoubleTranslationBug(text.font));
+                if (!reserveLabelSpace(getGlyphBounds(translatedGvs), text)) {
+                    return;
+                }
                 displayText(() -> translatedGvs.forEach(gv -> g.drawGlyphVector(gv, 0, 0)),
                         () -> translatedGvs.stream().collect(
                                 Path2D.Double::new,
@@ -1189,7 +1228,39 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             at.rotate(center.getRotation());
             at.translate(-nb.getCenterX(), -nb.getCenterY());
         }
-        displayText(osm, text, name, at);
+        if (reserveLabelSpace(Collections.singletonList(at.createTransformedShape(nb).getBounds2D()), text)) {
+            displayText(osm, text, name, at);
+        }
+    }
+
+    /**
+     * Marks the space of a label as occupied, if labels are decluttered.
+     * @param bounds the bounds of the parts of the label, in view coordinates
+     * @param text the text style
+     * @return {@code true} if the label is to be painted, {@code false} if it overlaps a label painted before
+     */
+    private boolean reserveLabelSpace(List<Rectangle2D> bounds, TextLabel text) {
+        if (labelIndex == null) {
+            return true;
+        }
+        double margin = LABEL_MARGIN + (text.haloRadius != null ? text.haloRadius : 0);
+        for (Rectangle2D r : bounds) {
+            r.setRect(r.getX() - margin, r.getY() - margin, r.getWidth() + 2 * margin, r.getHeight() + 2 * margin);
+        }
+        return labelIndex.addIfFree(bounds);
+    }
+
+    private static List<Rectangle2D> getGlyphBounds(List<GlyphVector> gvs) {
+        List<Rectangle2D> bounds = new ArrayList<>();
+        for (GlyphVector gv : gvs) {
+            for (int i = 0; i < gv.getNumGlyphs(); i++) {
+                Rectangle2D r = gv.getGlyphVisualBounds(i).getBounds2D();
+                if (!r.isEmpty()) {
+                    bounds.add(r);
+                }
+            }
+        }
+        return bounds;
     }
 
     private void displayText(IPrimitive osm, TextLabel text, String name, AffineTransform at) {
@@ -1201,7 +1272,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             g.setTransform(defaultTransform);
         }, () -> {
             FontRenderContext frc = g.getFontRenderContext();
-            TextLayout tl = new TextLayout(name, text.font, frc);
+            TextLayout tl = TextLayoutCache.getInstance().getTextLayout(name, text.font, frc);
             return tl.getOutline(at);
         }, osm.isDisabled(), text);
     }
@@ -1282,7 +1353,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             bounds.grow(100, 100);
         }
 
-        List<? extends INode> wayNodes = way.getNodes();
+        List<? extends INode> wayNodes = getRenderedNodes(way);
         if (wayNodes.size() < 2) return;
 
         // only highlight the segment if the way itself is not highlighted
@@ -1420,6 +1491,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         showNames = paintSettings.getShowNamesDistance() > circum;
         showIcons = paintSettings.getShowIconsDistance() > circum;
         isOutlineOnly = paintSettings.isOutlineOnly();
+        labelIndex = PREFERENCE_LABEL_DECLUTTER.get() ? new LabelCollisionIndex() : null;
 
         antialiasing = PREFERENCE_ANTIALIASING_USE.get() ?
                         RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF;
@@ -1457,9 +1529,9 @@ public class StyledMapRenderer extends AbstractMapRenderer {
     private MapViewPath getPath(IWay<?> w) {
         MapViewPath path = new MapViewPath(mapState);
         if (w.isClosed()) {
-            path.appendClosed(w.getNodes(), false);
+            path.appendClosed(getRenderedNodes(w), false);
         } else {
-            path.append(w.getNodes(), false);
+            path.append(getRenderedNodes(w), false);
         }
         return path;
     }
@@ -1653,6 +1725,58 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         }
     }
 
+    /**
+     * Computes the styles of the primitives in the given bounds, without painting them.
+     * The styles are cached in the primitives for the current scale, so that later calls of
+     * {@link #render(OsmData, boolean, Bounds)} for parts of these bounds do not compute styles concurrently.
+     * @param data The data set
+     * @param bounds The bounds
+     * @since 17250
+     */
+    public void computeStyles(final OsmData<?, ?, ?, ?> data, Bounds bounds) {
+        BBox bbox = bounds.toBBox();
+        getSettings(false);
+        data.getReadLock().lock();
+        try {
+            computeStyleRecords(data, bbox);
+        } finally {
+            data.getReadLock().unlock();
+        }
+    }
+
+    private List<StyleRecord> computeStyleRecords(final OsmData<?, ?, ?, ?> data, BBox bbox) {
+        return computeStyleRecords(circum, nc, styles, data.searchNodes(bbox), data.searchWays(bbox), data.searchRelations(bbox));
+    }
+
+    /**
+     * Computes the style records of primitives, in parallel if possible.
+     * @param circum distance on the map in meters that 100 screen pixels represent
+     * @param nc navigatable component
+     * @param styles the styles
+     * @param nodes the nodes
+     * @param ways the ways
+     * @param relations the relations
+     * @return the style records, unsorted
+     */
+    static List<StyleRecord> computeStyleRecords(double circum, NavigatableComponent nc, ElemStyles styles,
+            List<? extends INode> nodes, List<? extends IWay<?>> ways, List<? extends IRelation<?>> relations) {
+        final List<StyleRecord> allStyleElems = new ArrayList<>(nodes.size()+ways.size()+relations.size());
+
+        // Need to process all relations first.
+        // Reason: Make sure, ElemStyles.getStyleCacheWithRange is not called for the same primitive in parallel threads.
+        // (Could be synchronized, but try to avoid this for performance reasons.)
+        if (THREAD_POOL != null) {
+            THREAD_POOL.invoke(new ComputeStyleListWorker(circum, nc, relations, allStyleElems,
+                    Math.max(20, relations.size() / THREAD_POOL.getParallelism() / 3), styles));
+            THREAD_POOL.invoke(new ComputeStyleListWorker(circum, nc, new CompositeList<>(nodes, ways), allStyleElems,
+                    Math.max(100, (nodes.size() + ways.size()) / THREAD_POOL.getParallelism() / 3), styles));
+        } else {
+            new ComputeStyleListWorker(circum, nc, relations, allStyleElems, 0, styles).computeDirectly();
+            new ComputeStyleListWorker(circum, nc, new CompositeList<>(nodes, ways), allStyleElems, 0, styles).computeDirectly();
+        }
+        return allStyleElems;
+    }
+
     private void paintWithLock(final OsmData<?, ?, ?, ?> data, boolean renderVirtualNodes, RenderBenchmarkCollector benchmark,
             BBox bbox) {
         try {
@@ -1660,39 +1784,38 @@ public class StyledMapRenderer extends AbstractMapRenderer {
 
             benchmark.renderStart(circum);
 
-            List<? extends INode> nodes = data.searchNodes(bbox);
-            List<? extends IWay<?>> ways = data.searchWays(bbox);
-            List<? extends IRelation<?>> relations = data.searchRelations(bbox);
-
-            final List<StyleRecord> allStyleElems = new ArrayList<>(nodes.size()+ways.size()+relations.size());
-
-            // Need to process all relations first.
-            // Reason: Make sure, ElemStyles.getStyleCacheWithRange is not called for the same primitive in parallel threads.
-            // (Could be synchronized, but try to avoid this for performance reasons.)
-            if (THREAD_POOL != null) {
-                THREAD_POOL.invoke(new ComputeStyleListWorker(circum, nc, relations, allStyleElems,
-                        Math.max(20, relations.size() / THREAD_POOL.getParallelism() / 3), styles));
-                THREAD_POOL.invoke(new ComputeStyleListWorker(circum, nc, new CompositeList<>(nodes, ways), allStyleElems,
-                        Math.max(100, (nodes.size() + ways.size()) / THREAD_POOL.getParallelism() / 3), styles));
-            } else {
-                new ComputeStyleListWorker(circum, nc, relations, allStyleElems, 0, styles).computeDirectly();
-                new ComputeStyleListWorker(circum, nc, new CompositeList<>(nodes, ways), allStyleElems, 0, styles).computeDirectly();
-            }
+            // the records of a retained render list are sorted already
+            final boolean retained = renderList != null && renderList.getDataSet() == data;
+            final List<StyleRecord> allStyleElems = retained
+                    ? renderList.getRecords(styles, circum, nc, bbox, benchmark)
+                    : computeStyleRecords(data, bbox);
 
             if (!benchmark.renderSort()) {
                 return;
             }
 
-            // We use parallel sort here. This is only available for arrays.
-            StyleRecord[] sorted = allStyleElems.toArray(new StyleRecord[0]);
-            Arrays.parallelSort(sorted, null);
+            List<StyleRecord> sorted = allStyleElems;
+            if (!retained) {
+                // We use parallel sort here. This is only available for arrays.
+                StyleRecord[] array = allStyleElems.toArray(new StyleRecord[0]);
+                Arrays.parallelSort(array, null);
+                sorted = Arrays.asList(array);
+            }
 
             if (!benchmark.renderDraw(allStyleElems)) {
                 return;
             }
 
-            for (StyleRecord record : sorted) {
-                paintRecord(record);
+            if (benchmark.isProfilingElements()) {
+                for (StyleRecord record : sorted) {
+                    long start = System.nanoTime();
+                    paintRecord(record);
+                    benchmark.elementPainted(record.getStyle(), System.nanoTime() - start);
+                }
+            } else {
+                for (StyleRecord record : sorted) {
+                    paintRecord(record);
+                }
             }
 
             drawVirtualNodes(data, bbox);
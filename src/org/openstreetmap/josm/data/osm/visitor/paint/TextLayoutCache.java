@@ -0,0 +1,184 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextLayout;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.openstreetmap.josm.gui.util.LruCache;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Cache of the laid out labels, so that the same texts are not measured and shaped again at each repaint.
+ * <p>
+ * The entries are keyed by text, font and font render context (which includes the transformation of the graphics).
+ * They do not depend on the map scale, so they are shared by all renderers and kept for the recently used texts only.
+ * <p>
+ * The cache is thread safe, so that tiles can be rendered in parallel.
+ * @since 17255
+ */
+public final class TextLayoutCache {
+
+    /** The maximum number of cached texts */
+    private static final int CAPACITY = 10_000;
+
+    private static final TextLayoutCache INSTANCE = new TextLayoutCache(CAPACITY);
+
+    private final Map<Key, Entry> cache;
+
+    private static final class Key {
+        private final String text;
+        private final Font font;
+        private final FontRenderContext frc;
+
+        Key(String text, Font font, FontRenderContext frc) {
+            this.text = text;
+            this.font = font;
+            this.frc = frc;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(text, font, frc);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            Key other = (Key) obj;
+            return text.equals(other.text) && font.equals(other.font) && frc.equals(other.frc);
+        }
+    }
+
+    /**
+     * The layouts of a text, computed lazily. Concurrent renderers may compute a value twice, which is harmless.
+     */
+    private static final class Entry {
+        private volatile Rectangle2D bounds;
+        private volatile TextLayout layout;
+        private volatile List<GlyphVector> glyphVectors;
+    }
+
+    TextLayoutCache(int capacity) {
+        cache = new LruCache<>(capacity);
+    }
+
+    /**
+     * Returns the shared instance.
+     * @return the shared instance
+     */
+    public static TextLayoutCache getInstance() {
+        return INSTANCE;
+    }
+
+    private Entry getEntry(String text, Font font, FontRenderContext frc) {
+        Key key = new Key(text, font, frc);
+        synchronized (cache) {
+            return cache.computeIfAbsent(key, k -> new Entry());
+        }
+    }
+
+    /**
+     * Returns the logical bounds of a text.
+     * @param text the text
+     * @param font the font
+     * @param frc the font render context
+     * @return the bounds, as returned by {@link Font#getStringBounds(String, FontRenderContext)}
+     */
+    public Rectangle2D getStringBounds(String text, Font font, FontRenderContext frc) {
+        Entry entry = getEntry(text, font, frc);
+        Rectangle2D bounds = entry.bounds;
+        if (bounds == null) {
+            bounds = font.getStringBounds(text, frc);
+            entry.bounds = bounds;
+        }
+        return (Rectangle2D) bounds.clone();
+    }
+
+    /**
+     * Returns the layout of a text, e.g. to get its outline.
+     * @param text the text
+     * @param font the font
+     * @param frc the font render context
+     * @return the layout of the text. It is immutable and shared
+     */
+    public TextLayout getTextLayout(String text, Font font, FontRenderContext frc) {
+        Entry entry = getEntry(text, font, frc);
+        TextLayout layout = entry.layout;
+        if (layout == null) {
+            layout = new TextLayout(text, font, frc);
+            entry.layout = layout;
+        }
+        return layout;
+    }
+
+    /**
+     * Returns the glyph vectors of a text, laid out with bidirectional text support.
+     * @param text the text
+     * @param font the font
+     * @param frc the font render context
+     * @return new glyph vectors, as returned by {@link Utils#getGlyphVectorsBidi}. They may be modified by the caller
+     */
+    public List<GlyphVector> getGlyphVectors(String text, Font font, FontRenderContext frc) {
+        Entry entry = getEntry(text, font, frc);
+        List<GlyphVector> gvs = entry.glyphVectors;
+        if (gvs == null) {
+            gvs = Utils.getGlyphVectorsBidi(text, font, frc);
+            entry.glyphVectors = gvs;
+        }
+        // the cached glyph vectors are never handed out, as the label placement transforms the glyphs
+        List<GlyphVector> copies = new ArrayList<>(gvs.size());
+        for (GlyphVector gv : gvs) {
+            copies.add(copy(gv, font, frc));
+        }
+        return copies;
+    }
+
+    /**
+     * Copies a laid out glyph vector. This only copies the glyph codes and positions, which is much cheaper than
+     * the bidirectional layout and shaping of the text.
+     * @param gv the glyph vector, without glyph transformations
+     * @param font the font
+     * @param frc the font render context
+     * @return the copy
+     */
+    private static GlyphVector copy(GlyphVector gv, Font font, FontRenderContext frc) {
+        int n = gv.getNumGlyphs();
+        GlyphVector copy = font.createGlyphVector(frc, gv.getGlyphCodes(0, n, null));
+        // positions of all glyphs, and of the end of the last one
+        float[] positions = gv.getGlyphPositions(0, n + 1, null);
+        for (int i = 0; i <= n; i++) {
+            copy.setGlyphPosition(i, new Point2D.Float(positions[2 * i], positions[2 * i + 1]));
+        }
+        return copy;
+    }
+
+    /**
+     * Clears the cache.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns the number of cached texts.
+     * @return the number of cached texts
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import java.awt.Point;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+
+/**
+ * A view of the size of a tile, not displayed, used to render the data of a tile into an image.
+ * <p>
+ * The distance of 100 pixels may be fixed, so that all tiles of a zoom level share the same rendering settings (e.g.
+ * the visibility of labels and icons), whatever their latitude.
+ * @see RenderTileCache
+ * @see org.openstreetmap.josm.gui.mappaint.TilePyramidRenderer
+ * @since 17265
+ */
+public final class TileView extends NavigatableComponent {
+    private double dist100Pixel = Double.NaN;
+
+    /**
+     * Constructs a new {@code TileView}.
+     * @param size the width and height of the tile, in pixels
+     */
+    public TileView(int size) {
+        setBounds(0, 0, size, size);
+        updateLocationState();
+    }
+
+    /**
+     * Moves the view to a tile.
+     * @param center the center of the tile
+     * @param scale the scale of the view, in east/north units per pixel
+     * @param dist100Pixel the distance of 100 pixels returned by {@link #getDist100Pixel(boolean)}, or {@code NaN} to
+     * compute it at the center of the tile
+     */
+    public void moveTo(EastNorth center, double scale, double dist100Pixel) {
+        this.dist100Pixel = dist100Pixel;
+        zoomTo(center, scale, true);
+    }
+
+    @Override
+    protected boolean isVisibleOnScreen() {
+        return true;
+    }
+
+    @Override
+    public Point getLocationOnScreen() {
+        return new Point(0, 0);
+    }
+
+    @Override
+    public double getDist100Pixel(boolean alwaysPositive) {
+        return Double.isNaN(dist100Pixel) ? super.getDist100Pixel(alwaysPositive) : dist100Pixel;
+    }
+}
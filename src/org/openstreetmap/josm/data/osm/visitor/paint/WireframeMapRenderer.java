@@ -307,7 +307,9 @@ public class WireframeMapRenderer extends AbstractMapRenderer implements Primiti
             wayColor = dfltWayColor;
         }
 
-        Iterator<? extends INode> it = w.getNodes().iterator();
+        // order numbers refer to the segments of all nodes
+        boolean showThisOrderNumber = (showOrderNumber || (showOrderNumberOnSelectedWay && w.isSelected())) && !isInactiveMode;
+        Iterator<? extends INode> it = (showThisOrderNumber ? w.getNodes() : getRenderedNodes(w)).iterator();
         if (it.hasNext()) {
             MapViewPoint lastP = mapState.getPointFor(it.next());
             int lastPOutside = lastP.getOutsideRectangleFlags(viewClip);
@@ -317,7 +319,7 @@ public class WireframeMapRenderer extends AbstractMapRenderer implements Primiti
                 if ((pOutside & lastPOutside) == 0) {
                     drawSegment(lastP, p, wayColor,
                             showOnlyHeadArrowOnly ? !it.hasNext() : showThisDirectionArrow);
-                    if ((showOrderNumber || (showOrderNumberOnSelectedWay && w.isSelected())) && !isInactiveMode) {
+                    if (showThisOrderNumber) {
                         drawOrderNumber(lastP, p, orderNumber, g.getColor());
                     }
                 }
@@ -56,6 +56,18 @@ public class ValidatorPrefHelper extends SourcePrefHelper {
      */
     public static final String PREF_FILTER_BY_SELECTION = PREFIX + ".selectionFilter";
 
+    /**
+     * The preferences key for running tests in parallel, over partitions of the data
+     * @since 17247
+     */
+    public static final BooleanProperty PREF_PARALLEL = new BooleanProperty(PREFIX + ".parallel", true);
+
+    /**
+     * The preferences key for validating the changes of the edit layer as they happen
+     * @since 17248
+     */
+    public static final BooleanProperty PREF_INCREMENTAL = new BooleanProperty(PREFIX + ".incremental", false);
+
     /**
      * Constructs a new {@code PresetPrefHelper}.
      */
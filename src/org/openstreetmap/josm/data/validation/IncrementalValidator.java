@@ -0,0 +1,280 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.data.preferences.sources.ValidatorPrefHelper;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Stopwatch;
+
+/**
+ * Validates the primitives of a data set as they are changed.
+ * <p>
+ * The changed primitives are collected from data set events. {@link #validate()} then runs the enabled tests again on
+ * them and on their surroundings (parent ways and relations, nodes of changed ways, and primitives close to them), so
+ * that tests looking at neighbours, like crossing ways or duplicate nodes, see the same data as a full validation.
+ * Tests keep no state between validations: the cost of a validation is the one of a full validation of the
+ * surroundings of the changes. Only the errors involving a changed primitive are returned, they replace the former
+ * errors of these primitives.
+ * <p>
+ * Events are coalesced: while a validation is {@link #schedule() scheduled}, further changes are collected for it.
+ * <p>
+ * The primitives to validate are collected under the read lock of the data set, which is then released while the tests
+ * run, so that edits are not blocked. Primitives edited meanwhile are validated again by the next validation. The tests
+ * run by {@link #validate()} are instances owned by this validator, distinct from the shared instances of
+ * {@link OsmValidator} run by the validator dialog and before upload.
+ * @since 17248
+ */
+public class IncrementalValidator implements DataSetListenerAdapter.Listener {
+
+    /** Extra space around changed primitives where neighbours are searched, in degrees (about 50 m) */
+    private static final double NEIGHBOURHOOD = 0.0005;
+
+    private final DataSet dataSet;
+    private final Set<OsmPrimitive> changed = new LinkedHashSet<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private Collection<Test> tests;
+    private List<String> skippedTests;
+
+    /**
+     * The result of an incremental validation.
+     */
+    public static final class Result {
+        private final Set<OsmPrimitive> revalidated;
+        private final List<TestError> errors;
+
+        Result(Set<OsmPrimitive> revalidated, List<TestError> errors) {
+            this.revalidated = revalidated;
+            this.errors = errors;
+        }
+
+        /**
+         * Returns the primitives whose errors have been recomputed.
+         * @return the primitives whose errors have been recomputed
+         */
+        public Set<OsmPrimitive> getRevalidated() {
+            return Collections.unmodifiableSet(revalidated);
+        }
+
+        /**
+         * Returns the errors of the revalidated primitives.
+         * @return the errors of the revalidated primitives
+         */
+        public List<TestError> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+
+        /**
+         * Determines if no primitive has been revalidated.
+         * @return {@code true} if no primitive has been revalidated
+         */
+        public boolean isEmpty() {
+            return revalidated.isEmpty();
+        }
+
+        /**
+         * Replaces, in a list of errors, the errors of the revalidated primitives by the new ones.
+         * Ignored errors are not added.
+         * @param list the list of errors to update
+         * @return {@code true} if the list has been changed
+         */
+        public boolean applyTo(List<TestError> list) {
+            boolean modified = list.removeIf(e -> e.getPrimitives().stream().anyMatch(revalidated::contains));
+            for (TestError error : errors) {
+                if (!error.isIgnored()) {
+                    modified |= list.add(error);
+                }
+            }
+            return modified;
+        }
+    }
+
+    /**
+     * Constructs a new {@code IncrementalValidator}.
+     * @param dataSet the data set whose changes are validated
+     */
+    public IncrementalValidator(DataSet dataSet) {
+        this.dataSet = Objects.requireNonNull(dataSet, "dataSet");
+    }
+
+    /**
+     * Returns the data set whose changes are validated.
+     * @return the data set whose changes are validated
+     */
+    public DataSet getDataSet() {
+        return dataSet;
+    }
+
+    @Override
+    public void processDatasetEvent(AbstractDatasetChangedEvent event) {
+        if (event.getDataset() != dataSet) {
+            return;
+        }
+        if (event instanceof DataChangedEvent) {
+            List<AbstractDatasetChangedEvent> events = ((DataChangedEvent) event).getEvents();
+            if (events == null) {
+                // too many changes, or another data set: a full validation is needed
+                Logging.debug("Incremental validation skipped: {0}", event);
+            } else {
+                events.forEach(this::processDatasetEvent);
+            }
+        } else {
+            synchronized (changed) {
+                changed.addAll(event.getPrimitives());
+            }
+        }
+    }
+
+    /**
+     * Determines if primitives have been changed since the last validation.
+     * @return {@code true} if primitives have been changed since the last validation
+     */
+    public boolean hasChanges() {
+        synchronized (changed) {
+            return !changed.isEmpty();
+        }
+    }
+
+    /**
+     * Marks a validation as scheduled, so that a single validation is pending at a time whatever the number of events.
+     * The mark is cleared when the validation starts.
+     * @return {@code true} if no validation was pending, so that the caller must schedule one
+     */
+    public boolean schedule() {
+        return scheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Validates the primitives changed since the last validation with the enabled tests. New instances of the enabled
+     * tests are created and initialized for this validator, and created again only when tests are enabled or disabled
+     * in the preferences. Validations must not run concurrently.
+     * @return the primitives revalidated and their errors
+     */
+    public Result validate() {
+        List<String> skipped = Config.getPref().getList(ValidatorPrefHelper.PREF_SKIP_TESTS);
+        if (tests == null || !skipped.equals(skippedTests)) {
+            tests = createTests(OsmValidator.getEnabledTests(false));
+            skippedTests = skipped;
+        }
+        return validate(tests);
+    }
+
+    /**
+     * Creates and initializes new instances of tests, so that they are not shared with other validations.
+     * Tests failing to be created or initialized are skipped.
+     * @param enabledTests the tests whose classes are instantiated
+     * @return the new tests
+     */
+    private static Collection<Test> createTests(Collection<Test> enabledTests) {
+        List<Test> result = new ArrayList<>(enabledTests.size());
+        for (Test enabled : enabledTests) {
+            try {
+                Test test = enabled.getClass().getConstructor().newInstance();
+                test.initialize();
+                result.add(test);
+            } catch (Exception e) { // NOPMD
+                Logging.log(Logging.LEVEL_WARN, "Test " + enabled.getName() + " skipped by incremental validation", e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Validates the primitives changed since the last validation.
+     * @param tests the tests to run, initialized
+     * @return the primitives revalidated and their errors
+     */
+    public Result validate(Collection<Test> tests) {
+        scheduled.set(false);
+        Set<OsmPrimitive> primitives;
+        synchronized (changed) {
+            primitives = new LinkedHashSet<>(changed);
+            changed.clear();
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Set<OsmPrimitive> revalidated = new LinkedHashSet<>();
+        Set<OsmPrimitive> visited;
+        // the data set is edited in the EDT while the validation runs in the background: only the primitives to
+        // validate are collected under the read lock, the tests run without it
+        dataSet.getReadLock().lock();
+        try {
+            for (OsmPrimitive p : primitives) {
+                if (isUsable(p)) {
+                    revalidated.add(p);
+                }
+            }
+            // errors of parent ways, relations and way nodes may depend on changed primitives
+            for (OsmPrimitive p : new ArrayList<>(revalidated)) {
+                p.getReferrers().stream().filter(this::isUsable).forEach(revalidated::add);
+                if (p instanceof Way) {
+                    ((Way) p).getNodes().stream().filter(this::isUsable).forEach(revalidated::add);
+                }
+            }
+            visited = new LinkedHashSet<>(revalidated);
+            visited.addAll(getNeighbours(revalidated));
+        } finally {
+            dataSet.getReadLock().unlock();
+        }
+        if (revalidated.isEmpty()) {
+            return new Result(revalidated, Collections.emptyList());
+        }
+
+        List<TestError> errors = new ArrayList<>();
+        for (Test test : tests) {
+            test.setBeforeUpload(false);
+            test.setPartialSelection(true);
+            test.startTest(NullProgressMonitor.INSTANCE);
+            test.visit(visited);
+            test.endTest();
+            for (TestError error : test.getErrors()) {
+                if (error.getPrimitives().stream().anyMatch(revalidated::contains)) {
+                    errors.add(error);
+                }
+            }
+            test.clear();
+        }
+        if (Boolean.TRUE.equals(ValidatorPrefHelper.PREF_USE_IGNORE.get())) {
+            errors.forEach(TestError::updateIgnored);
+        }
+        Logging.debug(stopwatch.toString("Incremental validation of " + revalidated.size() + " primitives"));
+        return new Result(revalidated, errors);
+    }
+
+    private boolean isUsable(OsmPrimitive p) {
+        return p.getDataSet() == dataSet && !p.isDeleted() && !p.isIncomplete();
+    }
+
+    private Set<OsmPrimitive> getNeighbours(Collection<OsmPrimitive> primitives) {
+        Set<OsmPrimitive> neighbours = new HashSet<>();
+        for (OsmPrimitive p : primitives) {
+            if (p instanceof Node || p instanceof Way) {
+                BBox bbox = new BBox();
+                bbox.addPrimitive(p, NEIGHBOURHOOD);
+                if (bbox.isValid()) {
+                    neighbours.addAll(dataSet.searchNodes(bbox));
+                    neighbours.addAll(dataSet.searchWays(bbox));
+                }
+            }
+        }
+        neighbours.removeIf(p -> !isUsable(p));
+        return neighbours;
+    }
+}
@@ -4,6 +4,7 @@ package org.openstreetmap.josm.data.validation;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.awt.GridBagConstraints;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -24,6 +25,7 @@ import org.openstreetmap.josm.data.osm.search.SearchCompiler.InDataSourceArea;
 import org.openstreetmap.josm.data.osm.search.SearchCompiler.NotOutsideDataSourceArea;
 import org.openstreetmap.josm.data.osm.visitor.OsmPrimitiveVisitor;
 import org.openstreetmap.josm.data.preferences.sources.ValidatorPrefHelper;
+import org.openstreetmap.josm.data.validation.util.ParallelValidation;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.tools.GBC;
@@ -204,6 +206,10 @@ public class Test implements OsmPrimitiveVisitor {
      * @param selection The primitives to be tested
      */
     public void visit(Collection<OsmPrimitive> selection) {
+        if (isParallelizable() && ParallelValidation.isEnabled() && selection.size() > ParallelValidation.DEFAULT_PARTITION_SIZE) {
+            visitInParallel(selection);
+            return;
+        }
         if (progressMonitor != null) {
             progressMonitor.setTicksCount(selection.size());
         }
@@ -227,6 +233,78 @@ public class Test implements OsmPrimitiveVisitor {
         }
     }
 
+    private void visitInParallel(Collection<OsmPrimitive> selection) {
+        if (progressMonitor != null) {
+            progressMonitor.setTicksCount(selection.size());
+        }
+        List<TestError> testErrors = errors;
+        PartitionErrors partitionErrors = new PartitionErrors();
+        errors = partitionErrors;
+        try {
+            testErrors.addAll(ParallelValidation.flatMapPartitions(new ArrayList<>(selection),
+                    ParallelValidation.DEFAULT_PARTITION_SIZE, partition -> {
+                List<TestError> result = new ArrayList<>();
+                partitionErrors.current.set(result);
+                try {
+                    for (OsmPrimitive p : partition) {
+                        if (isCanceled()) {
+                            break;
+                        }
+                        if (isPrimitiveUsable(p)) {
+                            p.accept(this);
+                        }
+                    }
+                } finally {
+                    partitionErrors.current.remove();
+                }
+                return result;
+            }));
+        } finally {
+            errors = testErrors;
+        }
+        if (progressMonitor != null) {
+            progressMonitor.worked(selection.size());
+        }
+    }
+
+    /**
+     * Errors of a test checking partitions of primitives in parallel: each thread adds errors to its own partition.
+     */
+    private static final class PartitionErrors extends AbstractList<TestError> {
+        final ThreadLocal<List<TestError>> current = new ThreadLocal<>();
+
+        @Override
+        public boolean add(TestError e) {
+            return current.get().add(e);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends TestError> c) {
+            return current.get().addAll(c);
+        }
+
+        @Override
+        public TestError get(int index) {
+            return current.get().get(index);
+        }
+
+        @Override
+        public int size() {
+            return current.get().size();
+        }
+    }
+
+    /**
+     * Determines if this test checks each primitive independently of the others: {@link #visit(Node)},
+     * {@link #visit(Way)} and {@link #visit(Relation)} only add errors to {@link #errors}, and do not modify any
+     * other state. Primitives of such tests are checked in parallel, see {@link ParallelValidation}.
+     * @return {@code true} if primitives can be checked in parallel
+     * @since 17247
+     */
+    protected boolean isParallelizable() {
+        return false;
+    }
+
     /**
      * Determines if the primitive is usable for tests.
      * @param p The primitive
@@ -257,6 +257,27 @@ public class TestError implements Comparable<TestError> {
         this.fixingCommand = builder.fixingCommand;
     }
 
+    private TestError(TestError other) {
+        this.tester = other.tester;
+        this.severity = other.severity;
+        this.message = other.message;
+        this.description = other.description;
+        this.descriptionEn = other.descriptionEn;
+        this.primitives = other.primitives;
+        this.highlighted = other.highlighted;
+        this.code = other.code;
+        this.fixingCommand = other.fixingCommand;
+    }
+
+    /**
+     * Returns a new error with the same content as this one, neither ignored nor selected.
+     * @return a copy of this error
+     * @since 17265
+     */
+    public TestError copy() {
+        return new TestError(this);
+    }
+
     /**
      * Gets the error message
      * @return the error message
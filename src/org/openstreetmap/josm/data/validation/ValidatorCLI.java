@@ -0,0 +1,355 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+import static org.openstreetmap.josm.tools.I18n.trn;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+import org.openstreetmap.josm.cli.CLIModule;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.preferences.JosmBaseDirectories;
+import org.openstreetmap.josm.data.preferences.JosmUrls;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.data.projection.Projections;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.io.PbfReader;
+import org.openstreetmap.josm.io.ValidatorErrorWriter;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.spi.preferences.MemoryPreferences;
+import org.openstreetmap.josm.tools.Http1Client;
+import org.openstreetmap.josm.tools.HttpClient;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.OptionParser;
+import org.openstreetmap.josm.tools.OptionParser.OptionCount;
+import org.openstreetmap.josm.tools.OptionParser.OptionParseException;
+import org.openstreetmap.josm.tools.Stopwatch;
+import org.openstreetmap.josm.tools.Territories;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Command line interface for validating osm data files, without a display.
+ * <p>
+ * The enabled tests run in parallel, each test in its own task on a thread pool. Errors are written to the output
+ * file with {@link ValidatorErrorWriter} test after test, in a stable order, as soon as they are available.
+ * <p>
+ * The exit status is non-zero if an input file cannot be validated, or if a test fails on one of them.
+ * @since 17246
+ */
+public class ValidatorCLI implements CLIModule {
+
+    /**
+     * The singleton instance of this class.
+     */
+    public static final ValidatorCLI INSTANCE = new ValidatorCLI();
+
+    /**
+     * Preference key for the number of threads running validator tests (default: number of processors).
+     */
+    public static final String THREADS_PREF = "validator.cli.threads";
+
+    private static final String OUTPUT_SUFFIX = ".validation.xml";
+
+    private boolean argDebug;
+    private boolean argTrace;
+    private List<String> argInput;
+    private String argOutput;
+    private Integer argThreads;
+
+    private Collection<Test> tests;
+    private final AtomicInteger failedTests = new AtomicInteger();
+
+    ValidatorCLI() {
+        // hide constructor (package private access for unit tests)
+    }
+
+    @Override
+    public String getActionKeyword() {
+        return "validate";
+    }
+
+    @Override
+    public void processArguments(String[] argArray) {
+        try {
+            parseArguments(argArray);
+            initialize();
+        } catch (IllegalArgumentException e) {
+            printError(e);
+            System.exit(1);
+        }
+        boolean failed = false;
+        for (String input : argInput) {
+            try {
+                validate(input, getOutput(input));
+            } catch (IllegalArgumentException | IllegalDataException | IOException e) {
+                // the other files are still validated
+                printError(e);
+                failed = true;
+            }
+        }
+        if (getFailedTests() > 0) {
+            System.err.println(trn("{0} test failed", "{0} tests failed", getFailedTests(), getFailedTests()));
+            failed = true;
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static void printError(Exception e) {
+        if (Logging.isDebugEnabled()) {
+            e.printStackTrace();
+        }
+        if (e instanceof FileNotFoundException || e instanceof NoSuchFileException) {
+            System.err.println(tr("Error - file not found: ''{0}''", e.getMessage()));
+        } else if (e.getMessage() != null) {
+            System.err.println(tr("Error: {0}", e.getMessage()));
+        }
+    }
+
+    /**
+     * Parse command line arguments and do some low-level error checking.
+     * @param argArray the arguments array
+     */
+    void parseArguments(String[] argArray) {
+        Logging.setLogLevel(Level.INFO);
+        argInput = new ArrayList<>();
+        argOutput = null;
+        argThreads = null;
+
+        List<String> positionalArguments = new OptionParser("JOSM validation")
+            .addFlagParameter("help", ValidatorCLI::showHelp)
+            .addShortAlias("help", "h")
+            .addFlagParameter("debug", () -> argDebug = true)
+            .addFlagParameter("trace", () -> argTrace = true)
+            .addArgumentParameter("input", OptionCount.MULTIPLE, argInput::add)
+            .addShortAlias("input", "i")
+            .addArgumentParameter("output", OptionCount.OPTIONAL, arg -> argOutput = arg)
+            .addShortAlias("output", "o")
+            .addArgumentParameter("threads", OptionCount.OPTIONAL, this::handleThreads)
+            .addShortAlias("threads", "t")
+            .parseOptionsOrExit(Arrays.asList(argArray));
+        argInput.addAll(positionalArguments);
+
+        if (argInput.isEmpty()) {
+            throw new IllegalArgumentException(tr("Missing argument - input data file ({0})", "--input|-i"));
+        }
+        if (argOutput != null && argInput.size() > 1) {
+            throw new IllegalArgumentException(tr("Option {0} can only be used with a single input file", "--output"));
+        }
+    }
+
+    private void handleThreads(String arg) {
+        try {
+            argThreads = Integer.valueOf(arg);
+        } catch (NumberFormatException nfe) {
+            throw new OptionParseException(
+                    tr("Expected integer number for option {0}, but got ''{1}''", "--threads", arg), nfe);
+        }
+        if (argThreads <= 0) {
+            throw new OptionParseException(
+                    tr("Expected integer number > 0 for option {0}, but got ''{1}''", "--threads", arg));
+        }
+    }
+
+    /**
+     * Displays help on the console
+     */
+    private static void showHelp() {
+        System.out.println(getHelp());
+        System.exit(0);
+    }
+
+    private static String getHelp() {
+        return tr("JOSM validation command line interface")+"\n\n"+
+                tr("Usage")+":\n"+
+                "\tjava -jar josm.jar validate <options> [file...]\n\n"+
+                tr("Description")+":\n"+
+                tr("Validates data files with the enabled validator tests and saves the errors to XML files.")+"\n\n"+
+                tr("Options")+":\n"+
+                "\t--help|-h                 "+tr("Show this help")+"\n"+
+                "\t--input|-i <file>         "+tr("Input data file name (.osm, .osm.bz2, .osm.gz, .osm.xz, .osm.zip or .osm.pbf)")+"\n"+
+                "\t                          "+tr("This option can be repeated to validate multiple files.")+"\n"+
+                "\t--output|-o <file>        "+tr("Output file name (.xml); defaults to the input file name followed by ''{0}''",
+                                                   OUTPUT_SUFFIX)+"\n"+
+                "\t--threads|-t <number>     "+tr("Number of tests run in parallel; defaults to the number of processors")+"\n"+
+                "\t--debug                   "+tr("Print debugging messages to console")+"\n"+
+                "\t--trace                   "+tr("Print detailed debugging messages to console")+"\n\n"+
+                tr("Exit status")+":\n"+
+                "\t"+tr("0 if all files were validated by all tests, 1 if a file could not be read or written or a test failed")+"\n\n"+
+                tr("Examples")+":\n"+
+                "  java -jar josm.jar validate -i data.osm\n"+
+                "  josm validate -i data.osm -o errors.xml\n"+
+                "  josm validate --threads 4 extract1.osm.bz2 extract2.osm.bz2\n";
+    }
+
+    /**
+     * Initialization.
+     *
+     * Requires arguments to be parsed already ({@link #parseArguments(java.lang.String[])}).
+     */
+    void initialize() {
+        Logging.setLogLevel(getLogLevel());
+        HttpClient.setFactory(Http1Client::new);
+
+        Config.setBaseDirectoriesProvider(JosmBaseDirectories.getInstance()); // for right-left-hand traffic cache file
+        Config.setPreferencesInstance(new MemoryPreferences());
+        Config.setUrlsProvider(JosmUrls.getInstance());
+        if (argThreads != null) {
+            Config.getPref().putInt(THREADS_PREF, argThreads);
+        }
+        ProjectionRegistry.setProjection(Projections.getProjectionByCode("EPSG:3857"));
+
+        Territories.initializeInternalData();
+        OsmValidator.initializeGridDetail();
+    }
+
+    private Level getLogLevel() {
+        if (argTrace) {
+            return Logging.LEVEL_TRACE;
+        } else if (argDebug) {
+            return Logging.LEVEL_DEBUG;
+        } else {
+            return Logging.LEVEL_INFO;
+        }
+    }
+
+    private String getOutput(String input) {
+        return argOutput != null ? argOutput : input + OUTPUT_SUFFIX;
+    }
+
+    /**
+     * Returns the enabled tests, initialized. Tests failing to initialize (for instance because they need a network
+     * connection) are skipped.
+     * @return the enabled tests
+     */
+    synchronized Collection<Test> getTests() {
+        if (tests == null) {
+            tests = new ArrayList<>();
+            for (Test test : OsmValidator.getEnabledTests(false)) {
+                try {
+                    test.initialize();
+                    tests.add(test);
+                } catch (Exception e) { // NOPMD
+                    Logging.warn(tr("Test {0} could not be initialized and is skipped: {1}", test.getName(), e));
+                }
+            }
+        }
+        return Collections.unmodifiableCollection(tests);
+    }
+
+    /**
+     * Returns the number of test runs which failed with an exception, whose errors are missing in the output files.
+     * @return the number of failed test runs, over all validated files
+     */
+    int getFailedTests() {
+        return failedTests.get();
+    }
+
+    /**
+     * Validates a data file. The tests failing with an exception are logged and counted in {@link #getFailedTests()}.
+     * @param input input data file
+     * @param output output XML file
+     * @return the number of errors found
+     * @throws IOException in case of I/O error
+     * @throws IllegalDataException if the input data file is invalid
+     */
+    int validate(String input, String output) throws IOException, IllegalDataException {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        String task = tr("Validating {0} to {1}", input, output);
+        System.err.println(task);
+        DataSet ds = loadDataset(input);
+        // tests only read the data, concurrently
+        ds.lock();
+        List<OsmPrimitive> primitives = new ArrayList<>(ds.allNonDeletedPrimitives());
+        List<Test> enabledTests = new ArrayList<>(getTests());
+        // some tests look at the active data set
+        OsmDataLayer layer = new OsmDataLayer(ds, input, new File(input));
+        MainApplication.getLayerManager().addLayer(layer);
+
+        int count = 0;
+        ForkJoinPool pool = Utils.newForkJoinPool(THREADS_PREF, "validator-cli-%d", Thread.NORM_PRIORITY);
+        try (OutputStream out = Files.newOutputStream(Paths.get(output));
+             ValidatorErrorWriter writer = new ValidatorErrorWriter(out)) {
+            List<ForkJoinTask<List<TestError>>> results = enabledTests.stream()
+                    .map(test -> pool.submit(() -> runTest(test, primitives)))
+                    .collect(Collectors.toList());
+            writer.writeStart();
+            for (int i = 0; i < results.size(); i++) {
+                List<TestError> errors = results.get(i).join();
+                if (errors == null) {
+                    failedTests.incrementAndGet();
+                } else if (!errors.isEmpty()) {
+                    writer.writeAnalyser(enabledTests.get(i), errors);
+                    count += errors.size();
+                }
+            }
+            writer.writeEnd();
+        } finally {
+            pool.shutdown();
+            MainApplication.getLayerManager().removeLayer(layer);
+        }
+        System.err.println(stopwatch.toString(task));
+        System.err.println(trn("{0} error found", "{0} errors found", count, count));
+        return count;
+    }
+
+    // returns null if the test failed
+    private static List<TestError> runTest(Test test, Collection<OsmPrimitive> primitives) {
+        Logging.debug("Running {0}", test.getName());
+        try {
+            test.setBeforeUpload(false);
+            test.setPartialSelection(false);
+            test.startTest(NullProgressMonitor.INSTANCE);
+            test.visit(primitives);
+            test.endTest();
+            return new ArrayList<>(test.getErrors());
+        } catch (RuntimeException e) { // NOPMD
+            Logging.log(Logging.LEVEL_ERROR, tr("Test {0} failed", test.getName()), e);
+            return null;
+        } finally {
+            test.clear();
+        }
+    }
+
+    private static DataSet loadDataset(String input) throws IOException, IllegalDataException {
+        boolean pbf = input.toLowerCase(Locale.ENGLISH).endsWith(".pbf");
+        // the compression is detected from the extension, the .pbf files are not compressed
+        try (InputStream inputStream = Compression.getUncompressedFileInputStream(Paths.get(input))) {
+            return pbf ? PbfReader.parseDataSet(inputStream, null) : OsmReader.parseDataSet(inputStream, null);
+        } catch (IllegalDataException e) {
+            String prefix = pbf ? tr("In .osm.pbf data file ''{0}'' - ", input) : tr("In .osm data file ''{0}'' - ", input);
+            throw new IllegalDataException(prefix + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Main class to run just the validation CLI.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        ValidatorCLI.INSTANCE.processArguments(args);
+    }
+}
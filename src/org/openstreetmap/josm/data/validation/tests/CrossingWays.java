@@ -6,8 +6,10 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -24,6 +26,7 @@ import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.Test;
 import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.data.validation.util.ParallelValidation;
 import org.openstreetmap.josm.data.validation.util.ValUtil;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.tools.Logging;
@@ -79,6 +82,44 @@ public abstract class CrossingWays extends Test {
     private final Map<Point2D, List<WaySegment>> cellSegments = new HashMap<>(1000);
     /** The already detected ways in error */
     private final Map<List<Way>, List<WaySegment>> seenWays = new HashMap<>(50);
+    /** The visited ways, in visit order, when crossings are searched in parallel at the end of the test */
+    private final List<Way> visitedWays = new ArrayList<>();
+    /** Determines if crossings are searched in parallel at the end of the test */
+    private boolean partitioned;
+
+    /**
+     * A way segment in a cell.
+     */
+    private static final class CellEntry {
+        final WaySegment segment;
+        /** index of the segment in visit order */
+        final int seq;
+        /** index of the cell in the cells crossed by the segment */
+        final int rank;
+
+        CellEntry(WaySegment segment, int seq, int rank) {
+            this.segment = segment;
+            this.seq = seq;
+            this.rank = rank;
+        }
+    }
+
+    /**
+     * Two crossing way segments, {@code e1} being visited after {@code e2}.
+     */
+    private static final class Crossing {
+        static final Comparator<Crossing> VISIT_ORDER = Comparator.<Crossing>comparingInt(c -> c.e1.seq)
+                .thenComparingInt(c -> c.e1.rank)
+                .thenComparingInt(c -> c.e2.seq);
+
+        final CellEntry e1;
+        final CellEntry e2;
+
+        Crossing(CellEntry e1, CellEntry e2) {
+            this.e1 = e1;
+            this.e2 = e2;
+        }
+    }
 
     protected final int code;
 
@@ -314,13 +355,20 @@ public abstract class CrossingWays extends Test {
         super.startTest(monitor);
         cellSegments.clear();
         seenWays.clear();
+        visitedWays.clear();
+        // the self crossing test only compares segments of a same way
+        partitioned = !(this instanceof SelfCrossing) && ParallelValidation.isEnabled();
     }
 
     @Override
     public void endTest() {
+        if (partitioned && !isCanceled()) {
+            findCrossingsInParallel();
+        }
         super.endTest();
         cellSegments.clear();
         seenWays.clear();
+        visitedWays.clear();
     }
 
     static boolean isCoastline(OsmPrimitive w) {
@@ -357,6 +405,9 @@ public abstract class CrossingWays extends Test {
             // free memory, we are not interested in previous ways
             cellSegments.clear();
             seenWays.clear();
+        } else if (partitioned) {
+            visitedWays.add(w);
+            return;
         }
 
         int nodesSize = w.getNodesCount();
@@ -370,37 +421,88 @@ public abstract class CrossingWays extends Test {
             }
             for (List<WaySegment> segments : getSegments(cellSegments, en1, en2)) {
                 for (WaySegment es2 : segments) {
-                    List<Way> prims;
-                    List<WaySegment> highlight;
-
-                    if (!es1.intersects(es2) || ignoreWaySegmentCombination(es1.way, es2.way)) {
-                        continue;
+                    if (es1.intersects(es2) && !ignoreWaySegmentCombination(es1.way, es2.way)) {
+                        addCrossing(es1, es2);
                     }
+                }
+                segments.add(es1);
+            }
+        }
+    }
 
-                    prims = new ArrayList<>();
-                    prims.add(es1.way);
-                    if (es1.way != es2.way)
-                        prims.add(es2.way);
-                    if ((highlight = seenWays.get(prims)) == null) {
-                        highlight = new ArrayList<>();
-                        highlight.add(es1);
-                        highlight.add(es2);
+    private void addCrossing(WaySegment es1, WaySegment es2) {
+        List<Way> prims = new ArrayList<>();
+        List<WaySegment> highlight;
+        prims.add(es1.way);
+        if (es1.way != es2.way)
+            prims.add(es2.way);
+        if ((highlight = seenWays.get(prims)) == null) {
+            highlight = new ArrayList<>();
+            highlight.add(es1);
+            highlight.add(es2);
+
+            final MessageHelper message = createMessage(es1.way, es2.way);
+            errors.add(TestError.builder(this, Severity.WARNING, message.code)
+                    .message(message.message)
+                    .primitives(prims)
+                    .highlightWaySegments(highlight)
+                    .build());
+            seenWays.put(prims, highlight);
+        } else {
+            highlight.add(es1);
+            highlight.add(es2);
+        }
+    }
 
-                        final MessageHelper message = createMessage(es1.way, es2.way);
-                        errors.add(TestError.builder(this, Severity.WARNING, message.code)
-                                .message(message.message)
-                                .primitives(prims)
-                                .highlightWaySegments(highlight)
-                                .build());
-                        seenWays.put(prims, highlight);
-                    } else {
-                        highlight.add(es1);
-                        highlight.add(es2);
+    /**
+     * Finds the crossings of the visited ways. The segments are first grouped by cells, then the cells are searched in
+     * parallel. The crossings are finally reported in the order {@link #visit(Way)} would have found them.
+     */
+    private void findCrossingsInParallel() {
+        Map<Point2D, List<CellEntry>> cells = new LinkedHashMap<>(1000);
+        int seq = 0;
+        for (Way w : visitedWays) {
+            int nodesSize = w.getNodesCount();
+            for (int i = 0; i < nodesSize - 1; i++) {
+                final WaySegment es = new WaySegment(w, i);
+                final EastNorth en1 = es.getFirstNode().getEastNorth();
+                final EastNorth en2 = es.getSecondNode().getEastNorth();
+                if (en1 == null || en2 == null) {
+                    Logging.warn("Crossing ways test skipped " + es);
+                    continue;
+                }
+                List<Point2D> segmentCells = ValUtil.getSegmentCells(en1, en2, OsmValidator.getGridDetail());
+                for (int rank = 0; rank < segmentCells.size(); rank++) {
+                    cells.computeIfAbsent(segmentCells.get(rank), k -> new ArrayList<>()).add(new CellEntry(es, seq, rank));
+                }
+                seq++;
+            }
+        }
+        List<Crossing> crossings = ParallelValidation.flatMapPartitions(new ArrayList<>(cells.values()),
+                ParallelValidation.DEFAULT_PARTITION_SIZE, this::findCrossings);
+        crossings.sort(Crossing.VISIT_ORDER);
+        for (Crossing crossing : crossings) {
+            addCrossing(crossing.e1.segment, crossing.e2.segment);
+        }
+    }
+
+    private List<Crossing> findCrossings(List<List<CellEntry>> cells) {
+        List<Crossing> crossings = new ArrayList<>();
+        for (List<CellEntry> entries : cells) {
+            if (isCanceled()) {
+                break;
+            }
+            for (int j = 1; j < entries.size(); j++) {
+                CellEntry e1 = entries.get(j);
+                for (int i = 0; i < j; i++) {
+                    CellEntry e2 = entries.get(i);
+                    if (e1.segment.intersects(e2.segment) && !ignoreWaySegmentCombination(e1.segment.way, e2.segment.way)) {
+                        crossings.add(new Crossing(e1, e2));
                     }
                 }
-                segments.add(es1);
             }
         }
+        return crossings;
     }
 
     private static boolean areLayerOrLevelDifferent(Way w1, Way w2) {
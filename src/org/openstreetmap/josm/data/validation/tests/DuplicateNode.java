@@ -30,6 +30,7 @@ import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.Test;
 import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.data.validation.util.ParallelValidation;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.MultiMap;
@@ -126,6 +127,7 @@ public class DuplicateNode extends Test {
     @SuppressWarnings("unchecked")
     @Override
     public void endTest() {
+        List<List<Node>> duplicates = new ArrayList<>();
         for (Object v: potentialDuplicates) {
             if (v instanceof Node) {
                 // just one node at this position. Nothing to report as error
@@ -145,9 +147,10 @@ public class DuplicateNode extends Test {
                 continue;
             }
 
-            // report errors
-            errors.addAll(buildTestErrors(this, nodes));
+            duplicates.add(nodes);
         }
+        // report errors, nodes at different positions are checked independently
+        ParallelValidation.map(duplicates, nodes -> buildTestErrors(this, nodes)).forEach(errors::addAll);
         super.endTest();
         potentialDuplicates = null;
     }
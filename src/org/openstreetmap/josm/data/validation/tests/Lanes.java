@@ -85,6 +85,11 @@ public class Lanes extends Test.TagTest {
         }
     }
 
+    @Override
+    protected boolean isParallelizable() {
+        return true;
+    }
+
     @Override
     public void check(OsmPrimitive p) {
         checkNumberOfLanesByKey(p, "lanes", tr("Number of lane dependent values inconsistent"));
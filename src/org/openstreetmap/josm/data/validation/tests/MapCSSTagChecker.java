@@ -21,7 +21,9 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -33,17 +35,20 @@ import org.openstreetmap.josm.command.ChangePropertyKeyCommand;
 import org.openstreetmap.josm.command.Command;
 import org.openstreetmap.josm.command.DeleteCommand;
 import org.openstreetmap.josm.command.SequenceCommand;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.IPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Tag;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.data.osm.WaySegment;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.data.preferences.sources.SourceEntry;
 import org.openstreetmap.josm.data.preferences.sources.ValidatorPrefHelper;
 import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.Test;
 import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.data.validation.util.ParallelValidation;
 import org.openstreetmap.josm.gui.mappaint.Environment;
 import org.openstreetmap.josm.gui.mappaint.Keyword;
 import org.openstreetmap.josm.gui.mappaint.MultiCascade;
@@ -76,9 +81,10 @@ import org.openstreetmap.josm.tools.Utils;
  * @since 6506
  */
 public class MapCSSTagChecker extends Test.TagTest {
-    private MapCSSStyleIndex indexData;
-    private final Map<MapCSSRule, MapCSSTagCheckerAndRule> ruleToCheckMap = new HashMap<>();
-    private static final Map<IPrimitive, Area> mpAreaCache = new HashMap<>();
+    private volatile MapCSSStyleIndex indexData;
+    private final Map<MapCSSRule, MapCSSTagCheckerAndRule> ruleToCheckMap = new ConcurrentHashMap<>();
+    private final Map<IPrimitive, Area> mpAreaCache = new ConcurrentHashMap<>();
+    private final MapCSSTagCheckerCache errorCache = new MapCSSTagCheckerCache();
     static final boolean ALL_TESTS = true;
     static final boolean ONLY_SELECTED_TESTS = false;
 
@@ -88,6 +94,15 @@ public class MapCSSTagChecker extends Test.TagTest {
      */
     public static final String ENTRIES_PREF_KEY = "validator." + MapCSSTagChecker.class.getName() + ".entries";
 
+    /**
+     * The preference for caching the errors of unchanged primitives between validations.
+     * @since 17249
+     */
+    public static final BooleanProperty PREF_CACHE = new BooleanProperty("validator." + MapCSSTagChecker.class.getName() + ".cache", true);
+
+    /** Number of primitives checked between two progress updates */
+    private static final int PROGRESS_STEP = 10_000;
+
     /**
      * Constructs a new {@code MapCSSTagChecker}.
      */
@@ -641,16 +656,32 @@ public class MapCSSTagChecker extends Test.TagTest {
      * @param includeOtherSeverity if {@code true}, errors of severity {@link Severity#OTHER} (info) will also be returned
      * @return all errors for the given primitive, with or without those of "info" severity
      */
-    public synchronized Collection<TestError> getErrorsForPrimitive(OsmPrimitive p, boolean includeOtherSeverity) {
-        final List<TestError> res = new ArrayList<>();
-        if (indexData == null) {
-            indexData = createMapCSSTagCheckerIndex(checks, includeOtherSeverity, ALL_TESTS);
+    public Collection<TestError> getErrorsForPrimitive(OsmPrimitive p, boolean includeOtherSeverity) {
+        MapCSSStyleIndex index = indexData;
+        if (index == null) {
+            synchronized (this) {
+                if (indexData == null) {
+                    indexData = createMapCSSTagCheckerIndex(checks, includeOtherSeverity, ALL_TESTS);
+                }
+                index = indexData;
+            }
         }
+        return getErrorsForPrimitive(p, index);
+    }
 
+    /**
+     * Obtains the {@link TestError}s for the {@link OsmPrimitive} {@code p}, for the rules of an index.
+     * It can be called concurrently.
+     * @param p The OSM primitive
+     * @param index The rules to check
+     * @return the errors for the given primitive
+     */
+    private List<TestError> getErrorsForPrimitive(OsmPrimitive p, MapCSSStyleIndex index) {
+        final List<TestError> res = new ArrayList<>();
         Environment env = new Environment(p, new MultiCascade(), Environment.DEFAULT_LAYER, null);
         env.mpAreaCache = mpAreaCache;
 
-        Iterator<MapCSSRule> candidates = indexData.getRuleCandidates(p);
+        Iterator<MapCSSRule> candidates = index.getRuleCandidates(p);
         while (candidates.hasNext()) {
             MapCSSRule r = candidates.next();
             for (Selector selector : r.selectors) {
@@ -725,7 +756,7 @@ public class MapCSSTagChecker extends Test.TagTest {
         // this variant is only used by the assertion tests
         final List<TestError> r = new ArrayList<>();
         final Environment env = new Environment(p, new MultiCascade(), Environment.DEFAULT_LAYER, null);
-        env.mpAreaCache = mpAreaCache;
+        env.mpAreaCache = new HashMap<>();
         for (Set<TagCheck> schecks : checksCol) {
             for (TagCheck check : schecks) {
                 boolean ignoreError = Severity.OTHER == check.getSeverity() && !includeOtherSeverity;
@@ -792,6 +823,8 @@ public class MapCSSTagChecker extends Test.TagTest {
             checks.putAll(url, result.parseChecks);
             urlTitles.put(url, findURLTitle(url));
             indexData = null;
+            ruleToCheckMap.clear();
+            errorCache.clear();
         }
         return result;
     }
@@ -820,6 +853,8 @@ public class MapCSSTagChecker extends Test.TagTest {
         checks.clear();
         urlTitles.clear();
         indexData = null;
+        ruleToCheckMap.clear();
+        errorCache.clear();
         for (SourceEntry source : new ValidatorPrefHelper().get()) {
             if (!source.active) {
                 continue;
@@ -878,13 +913,32 @@ public class MapCSSTagChecker extends Test.TagTest {
         super.endTest();
     }
 
+    /**
+     * Clears the errors cached for the primitives of a data set.
+     * @param ds the data set
+     * @since 17249
+     */
+    public void clearCache(DataSet ds) {
+        errorCache.clear(ds);
+    }
+
+    private void startCacheRun(Collection<OsmPrimitive> selection) {
+        mpAreaCache.clear();
+        if (Boolean.TRUE.equals(PREF_CACHE.get())) {
+            DataSet ds = selection.stream().map(OsmPrimitive::getDataSet).filter(Objects::nonNull).findFirst().orElse(null);
+            errorCache.startRun(ds, includeOtherSeverityChecks());
+        } else {
+            errorCache.clear();
+        }
+    }
+
     @Override
     public void visit(Collection<OsmPrimitive> selection) {
         if (progressMonitor != null) {
             progressMonitor.setTicksCount(selection.size() * checks.size());
         }
 
-        mpAreaCache.clear();
+        startCacheRun(selection);
 
         Set<OsmPrimitive> surrounding = new HashSet<>();
         for (Entry<String, Set<TagCheck>> entry : checks.entrySet()) {
@@ -896,7 +950,8 @@ public class MapCSSTagChecker extends Test.TagTest {
     }
 
     /**
-     * Perform the checks for one check url
+     * Perform the checks for one check url.
+     * Primitives are checked in parallel, their errors are added in the order of the selection.
      * @param url the url for the checks
      * @param checksForUrl the checks to perform
      * @param selection collection primitives
@@ -906,33 +961,39 @@ public class MapCSSTagChecker extends Test.TagTest {
             Set<OsmPrimitive> surrounding) {
         MultiMap<String, TagCheck> currentCheck = new MultiMap<>();
         currentCheck.putAll(url, checksForUrl);
-        indexData = createMapCSSTagCheckerIndex(currentCheck, includeOtherSeverityChecks(), ALL_TESTS);
+        final boolean includeOtherSeverity = includeOtherSeverityChecks();
+        indexData = createMapCSSTagCheckerIndex(currentCheck, includeOtherSeverity, ALL_TESTS);
+        final Function<OsmPrimitive, List<TestError>> checker = getChecker(url, checksForUrl, includeOtherSeverity);
         Set<OsmPrimitive> tested = new HashSet<>();
 
-
         String title = getTitle(url);
         if (progressMonitor != null) {
             progressMonitor.setExtraText(tr(" {0}", title));
         }
-        long cnt = 0;
+        List<OsmPrimitive> primitives = selection instanceof List ? (List<OsmPrimitive>) selection : new ArrayList<>(selection);
         Stopwatch stopwatch = Stopwatch.createStarted();
-        for (OsmPrimitive p : selection) {
-            if (isCanceled()) {
-                break;
-            }
-            if (isPrimitiveUsable(p)) {
-                check(p);
-                if (partialSelection) {
-                    tested.add(p);
+        for (int from = 0; from < primitives.size() && !isCanceled(); from += PROGRESS_STEP) {
+            List<OsmPrimitive> step = primitives.subList(from, Math.min(primitives.size(), from + PROGRESS_STEP));
+            List<List<TestError>> stepErrors = ParallelValidation.map(step,
+                    p -> isCanceled() || !isPrimitiveUsable(p) ? null : checker.apply(p));
+            for (int i = 0; i < step.size(); i++) {
+                List<TestError> primitiveErrors = stepErrors.get(i);
+                if (primitiveErrors != null) {
+                    for (TestError e : primitiveErrors) {
+                        addIfNotSimilar(e, errors);
+                    }
+                    if (partialSelection) {
+                        tested.add(step.get(i));
+                    }
                 }
             }
             if (progressMonitor != null) {
-                progressMonitor.worked(1);
-                cnt++;
+                progressMonitor.worked(step.size());
                 // add frequently changing info to progress monitor so that it
                 // doesn't seem to hang when test takes longer than 0.5 seconds
-                if (cnt % 10000 == 0 && stopwatch.elapsed() >= 500) {
-                    progressMonitor.setExtraText(tr(" {0}: {1} of {2} elements done", title, cnt, selection.size()));
+                if (step.size() == PROGRESS_STEP && stopwatch.elapsed() >= 500) {
+                    progressMonitor.setExtraText(tr(" {0}: {1} of {2} elements done", title,
+                            from + step.size(), selection.size()));
                 }
             }
         }
@@ -942,6 +1003,38 @@ public class MapCSSTagChecker extends Test.TagTest {
         }
     }
 
+    /**
+     * Returns the function finding the errors of a primitive for the checks of an url.
+     * If enabled, the errors of local checks are cached, and only other checks are run on unchanged primitives.
+     * @param url the url for the checks
+     * @param checksForUrl the checks to perform
+     * @param includeOtherSeverity if {@code true}, errors of severity other are included
+     * @return the function finding the errors of a primitive, which can be called concurrently
+     */
+    private Function<OsmPrimitive, List<TestError>> getChecker(String url, Set<TagCheck> checksForUrl,
+            boolean includeOtherSeverity) {
+        final MapCSSStyleIndex index = indexData;
+        if (!Boolean.TRUE.equals(PREF_CACHE.get()) || !MapCSSTagCheckerCache.isCacheable(checksForUrl)) {
+            return p -> getErrorsForPrimitive(p, index);
+        }
+        MultiMap<String, TagCheck> localChecks = new MultiMap<>();
+        MultiMap<String, TagCheck> otherChecks = new MultiMap<>();
+        for (TagCheck check : checksForUrl) {
+            (MapCSSTagCheckerCache.isLocal(check) ? localChecks : otherChecks).put(url, check);
+        }
+        final MapCSSStyleIndex localIndex = createMapCSSTagCheckerIndex(localChecks, includeOtherSeverity, ALL_TESTS);
+        final MapCSSStyleIndex otherIndex = createMapCSSTagCheckerIndex(otherChecks, includeOtherSeverity, ALL_TESTS);
+        return p -> {
+            List<TestError> res = new ArrayList<>(errorCache.getErrors(p, url, x -> getErrorsForPrimitive(x, localIndex)));
+            if (!otherIndex.isEmpty()) {
+                for (TestError e : getErrorsForPrimitive(p, otherIndex)) {
+                    addIfNotSimilar(e, res);
+                }
+            }
+            return res;
+        };
+    }
+
     private void testPartial(MultiMap<String, TagCheck> currentCheck, Set<OsmPrimitive> tested,
             Set<OsmPrimitive> surrounding) {
 
@@ -983,7 +1076,7 @@ public class MapCSSTagChecker extends Test.TagTest {
      * @since 16784
      */
     public void runOnly(String ruleFile, Collection<OsmPrimitive> selection) {
-        mpAreaCache.clear();
+        startCacheRun(selection);
 
         Set<OsmPrimitive> surrounding = new HashSet<>();
         for (Entry<String, Set<TagCheck>> entry : checks.entrySet()) {
@@ -0,0 +1,218 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation.tests;
+
+import java.awt.geom.Area;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.TagMap;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.GeneralSelector;
+
+/**
+ * Cache of the errors found by {@link MapCSSTagChecker} for each primitive, by rule file.
+ * <p>
+ * The errors of a primitive are reused as long as the state checks can look at is unchanged: its tags, geometry and
+ * metadata, and its parent ways and relations with their tags. It is only used for {@linkplain #isLocal(MapCSSTagChecker.TagCheck)
+ * local checks}, which do not look at other primitives. Relations are not cached, since their checks often look at
+ * their members.
+ * <p>
+ * The cached errors are never handed out: each call returns new copies, so that the ignored and selected state of the
+ * errors of a validation run does not leak into the next ones. Entries of different primitives can be read and
+ * written concurrently.
+ * @since 17249
+ */
+final class MapCSSTagCheckerCache {
+
+    /**
+     * The state of a primitive which can be seen by local checks.
+     */
+    private static final class PrimitiveState {
+        private final TagMap keys;
+        private final long id;
+        private final int version;
+        private final boolean modified;
+        private final long geometry1;
+        private final long geometry2;
+        private final List<OsmPrimitive> referrers;
+        private final TagMap[] referrerKeys;
+
+        PrimitiveState(OsmPrimitive p) {
+            keys = p.getKeys();
+            id = p.getId();
+            version = p.getVersion();
+            modified = p.isModified();
+            if (p instanceof Node) {
+                Node n = (Node) p;
+                geometry1 = Double.doubleToLongBits(n.lat());
+                geometry2 = Double.doubleToLongBits(n.lon());
+            } else if (p instanceof Way) {
+                Way w = (Way) p;
+                long hash = 0;
+                for (Node n : w.getNodes()) {
+                    hash = mix(hash, n.getUniqueId());
+                    hash = mix(hash, Double.doubleToLongBits(n.lat()));
+                    hash = mix(hash, Double.doubleToLongBits(n.lon()));
+                }
+                geometry1 = hash;
+                geometry2 = w.getNodesCount();
+            } else {
+                geometry1 = 0;
+                geometry2 = 0;
+            }
+            referrers = p.getReferrers();
+            referrerKeys = new TagMap[referrers.size()];
+            for (int i = 0; i < referrerKeys.length; i++) {
+                referrerKeys[i] = referrers.get(i).getKeys();
+            }
+        }
+
+        private static long mix(long hash, long value) {
+            return (hash ^ value) * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+        }
+
+        boolean isSameAs(PrimitiveState other) {
+            if (id != other.id || version != other.version || modified != other.modified
+                    || geometry1 != other.geometry1 || geometry2 != other.geometry2
+                    || referrers.size() != other.referrers.size() || !keys.equals(other.keys)) {
+                return false;
+            }
+            for (int i = 0; i < referrerKeys.length; i++) {
+                if (referrers.get(i) != other.referrers.get(i) || !referrerKeys[i].equals(other.referrerKeys[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The cached errors of a primitive.
+     */
+    private static final class Entry {
+        private final OsmPrimitive primitive;
+        private final PrimitiveState state;
+        private final Map<String, List<TestError>> errorsByUrl = new HashMap<>();
+        /** the validation run in which the state has been checked last, only accessed in {@code entries.compute} */
+        private int run;
+
+        Entry(OsmPrimitive primitive, PrimitiveState state, int run) {
+            this.primitive = primitive;
+            this.state = state;
+            this.run = run;
+        }
+    }
+
+    private final Map<OsmPrimitive, Entry> entries = new ConcurrentHashMap<>();
+    private DataSet dataSet;
+    private Area dataSourceArea;
+    private boolean includeOtherSeverity;
+    private volatile int run;
+
+    /**
+     * Starts a validation run. The state of primitives is checked once per run, data must not change during a run.
+     * Cached errors are dropped if the data set, its downloaded area, or the included severities changed.
+     * @param dataSet the validated data set
+     * @param includeOtherSeverity if {@code true}, errors of severity other are included
+     */
+    synchronized void startRun(DataSet dataSet, boolean includeOtherSeverity) {
+        Area area = dataSet != null ? dataSet.getDataSourceArea() : null;
+        if (dataSet != this.dataSet || area != dataSourceArea || includeOtherSeverity != this.includeOtherSeverity) {
+            entries.clear();
+            this.dataSet = dataSet;
+            this.dataSourceArea = area;
+            this.includeOtherSeverity = includeOtherSeverity;
+        }
+        run++;
+    }
+
+    /**
+     * Clears the cache.
+     */
+    synchronized void clear() {
+        entries.clear();
+        dataSet = null;
+        dataSourceArea = null;
+    }
+
+    /**
+     * Clears the cache if it contains primitives of the given data set.
+     * @param ds data set
+     */
+    synchronized void clear(DataSet ds) {
+        if (ds == dataSet) {
+            clear();
+        }
+    }
+
+    /**
+     * Returns the errors of a primitive for the local checks of a rule file, from the cache or by running the checks.
+     * @param p the primitive
+     * @param url the URL of the rule file
+     * @param checker function running the local checks of the rule file on a primitive
+     * @return the errors of the primitive
+     */
+    List<TestError> getErrors(OsmPrimitive p, String url, Function<OsmPrimitive, List<TestError>> checker) {
+        if (p instanceof Relation || !p.hasKeys() || p.getDataSet() != dataSet) {
+            return checker.apply(p);
+        }
+        int currentRun = run;
+        // atomic for the primitive, so that concurrent calls agree on the entry and its run
+        Entry entry = entries.compute(p, (k, e) -> {
+            if (e == null || e.primitive != p) {
+                // primitives with the same id are equal, use the identity
+                return new Entry(p, new PrimitiveState(p), currentRun);
+            } else if (e.run != currentRun) {
+                PrimitiveState state = new PrimitiveState(p);
+                if (!state.isSameAs(e.state)) {
+                    return new Entry(p, state, currentRun);
+                }
+                e.run = currentRun;
+            }
+            return e;
+        });
+        List<TestError> errors;
+        synchronized (entry) {
+            errors = entry.errorsByUrl.get(url);
+            if (errors == null) {
+                errors = checker.apply(p);
+                entry.errorsByUrl.put(url, errors);
+            }
+        }
+        List<TestError> copies = new ArrayList<>(errors.size());
+        for (TestError error : errors) {
+            copies.add(error.copy());
+        }
+        return copies;
+    }
+
+    /**
+     * Determines if a check is local, i.e. it only looks at the state of the matched primitive cached by this class.
+     * Checks with child or parent selectors look at other primitives.
+     * @param check the check
+     * @return {@code true} if the check is local
+     */
+    static boolean isLocal(MapCSSTagChecker.TagCheck check) {
+        return check.rule.selectors.stream().allMatch(GeneralSelector.class::isInstance);
+    }
+
+    /**
+     * Determines if the errors of a set of checks can be cached. Checks setting MapCSS classes cannot, because the
+     * classes set by a local check can be used by a non-local check, and vice versa.
+     * @param checks the checks of a rule file
+     * @return {@code true} if the errors of local checks can be cached
+     */
+    static boolean isCacheable(Collection<MapCSSTagChecker.TagCheck> checks) {
+        return checks.stream().allMatch(c -> c.setClassExpressions.isEmpty());
+    }
+}
@@ -28,6 +28,11 @@ public class SelfIntersectingWay extends Test {
                         "that contain some of their nodes more than once."));
     }
 
+    @Override
+    protected boolean isParallelizable() {
+        return true;
+    }
+
     @Override
     public void visit(Way w) {
         int last = w.getNodesCount();
@@ -172,6 +172,11 @@ public class UnclosedWays extends Test {
         return Arrays.stream(checks).map(c -> c.key).collect(Collectors.toSet());
     }
 
+    @Override
+    protected boolean isParallelizable() {
+        return true;
+    }
+
     @Override
     public void visit(Way w) {
 
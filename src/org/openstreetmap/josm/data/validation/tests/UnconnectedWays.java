@@ -19,6 +19,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.openstreetmap.josm.data.coor.EastNorth;
@@ -37,6 +38,7 @@ import org.openstreetmap.josm.data.projection.ProjectionRegistry;
 import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.Test;
 import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.data.validation.util.ParallelValidation;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Geometry;
@@ -244,73 +246,81 @@ public abstract class UnconnectedWays extends Test {
     }
 
     protected Map<Node, MyWaySegment> getHighwayEndNodesNearOtherHighway() {
-        Map<Node, MyWaySegment> map = new HashMap<>();
-        for (MyWaySegment s : waySegments) {
-            if (isCanceled()) {
-                map.clear();
-                return map;
-            }
+        return getNodesNearWaySegments(s -> {
             if (s.w.hasTag(HIGHWAY, "platform"))
-                continue;
+                return Collections.emptyList();
+            List<Node> found = new ArrayList<>();
             for (Node endnode : s.nearbyNodes(mindist)) {
                 Way parentWay = getWantedParentWay(endnode);
                 if (parentWay != null && !parentWay.hasTag(HIGHWAY, "platform")
                         && Objects.equals(OsmUtils.getLayer(s.w), OsmUtils.getLayer(parentWay))
                         // to handle intersections of 't' shapes and similar
                         && !s.isConnectedTo(endnode) && !s.obstacleBetween(endnode)) {
-                    addIfNewOrCloser(map, endnode, s);
+                    found.add(endnode);
                 }
             }
-        }
-        return map;
+            return found;
+        });
     }
 
     protected Map<Node, MyWaySegment> getWayEndNodesNearOtherWay() {
-        Map<Node, MyWaySegment> map = new HashMap<>();
-
-        for (MyWaySegment s : waySegments) {
-            if (isCanceled()) {
-                map.clear();
-                return map;
-            }
-            if (!s.concernsArea) {
-                for (Node endnode : s.nearbyNodes(mindist)) {
-                    if (!s.isConnectedTo(endnode)) {
-                        if (s.w.hasTag("power")) {
-                            boolean badConnection = false;
-                            Way otherWay = getWantedParentWay(endnode);
-                            if (otherWay != null) {
-                                for (String key : Arrays.asList("voltage", "frequency")) {
-                                    String v1 = s.w.get(key);
-                                    String v2 = otherWay.get(key);
-                                    if (v1 != null && v2 != null && !v1.equals(v2)) {
-                                        badConnection = true;
-                                    }
+        return getNodesNearWaySegments(s -> {
+            if (s.concernsArea)
+                return Collections.emptyList();
+            List<Node> found = new ArrayList<>();
+            for (Node endnode : s.nearbyNodes(mindist)) {
+                if (!s.isConnectedTo(endnode)) {
+                    if (s.w.hasTag("power")) {
+                        boolean badConnection = false;
+                        Way otherWay = getWantedParentWay(endnode);
+                        if (otherWay != null) {
+                            for (String key : Arrays.asList("voltage", "frequency")) {
+                                String v1 = s.w.get(key);
+                                String v2 = otherWay.get(key);
+                                if (v1 != null && v2 != null && !v1.equals(v2)) {
+                                    badConnection = true;
                                 }
                             }
-                            if (badConnection)
-                                continue;
                         }
-                        addIfNewOrCloser(map, endnode, s);
+                        if (badConnection)
+                            continue;
                     }
+                    found.add(endnode);
                 }
             }
-        }
-        return map;
+            return found;
+        });
     }
 
     protected Map<Node, MyWaySegment> getWayNodesNearOtherWay() {
-        Map<Node, MyWaySegment> map = new HashMap<>();
-        for (MyWaySegment s : waySegments) {
-            if (isCanceled()) {
-                map.clear();
-                return map;
-            }
+        return getNodesNearWaySegments(s -> {
+            List<Node> found = new ArrayList<>();
             for (Node en : s.nearbyNodes(minmiddledist)) {
                 if (!s.isConnectedTo(en)) {
-                    addIfNewOrCloser(map, en, s);
+                    found.add(en);
                 }
             }
+            return found;
+        });
+    }
+
+    /**
+     * Finds the nodes near each way segment. Way segments are searched independently, in parallel, and the nodes are
+     * then collected in the order of way segments, keeping the closest segment of each node.
+     * @param finder function returning the nodes near a way segment. It is called concurrently
+     * @return the closest way segment of each node found
+     */
+    private Map<Node, MyWaySegment> getNodesNearWaySegments(Function<MyWaySegment, Collection<Node>> finder) {
+        List<Collection<Node>> found = ParallelValidation.map(waySegments,
+                s -> isCanceled() ? Collections.<Node>emptyList() : finder.apply(s));
+        Map<Node, MyWaySegment> map = new HashMap<>();
+        if (isCanceled()) {
+            return map;
+        }
+        for (int i = 0; i < found.size(); i++) {
+            for (Node node : found.get(i)) {
+                addIfNewOrCloser(map, node, waySegments.get(i));
+            }
         }
         return map;
     }
@@ -39,6 +39,11 @@ public class UntaggedNode extends Test implements KeyValueVisitor {
                 tr("This test checks for untagged nodes that are not part of any way."));
     }
 
+    @Override
+    protected boolean isParallelizable() {
+        return true;
+    }
+
     @Override
     public void visit(Node n) {
         if (n.isUsable() && !n.isTagged() && n.getReferrers().isEmpty()) {
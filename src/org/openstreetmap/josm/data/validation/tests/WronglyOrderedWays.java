@@ -29,6 +29,11 @@ public class WronglyOrderedWays extends Test {
                 tr("This test checks the direction of water, land and coastline ways."));
     }
 
+    @Override
+    protected boolean isParallelizable() {
+        return true;
+    }
+
     @Override
     public void visit(Way w) {
 
@@ -0,0 +1,99 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.openstreetmap.josm.data.preferences.sources.ValidatorPrefHelper;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Runs parts of validator tests in parallel, over partitions of their data.
+ * <p>
+ * Partitions are processed on a shared thread pool, and their results are merged in the order of the partitions.
+ * A test using it thus reports the same errors, in the same order, as when run sequentially.
+ * Parallel execution can be disabled with {@link ValidatorPrefHelper#PREF_PARALLEL}.
+ * @since 17247
+ */
+public final class ParallelValidation {
+
+    /**
+     * Preference key for the number of threads of the validator (default: number of processors).
+     */
+    public static final String THREADS_PREF = "validator.threads";
+
+    /**
+     * Default number of items of a partition.
+     */
+    public static final int DEFAULT_PARTITION_SIZE = 256;
+
+    private static ForkJoinPool threadPool;
+
+    private ParallelValidation() {
+        // Hide default constructor for utils classes
+    }
+
+    /**
+     * Determines if validator tests are run in parallel.
+     * @return {@code true} if validator tests are run in parallel
+     */
+    public static boolean isEnabled() {
+        return Boolean.TRUE.equals(ValidatorPrefHelper.PREF_PARALLEL.get());
+    }
+
+    private static synchronized ForkJoinPool getThreadPool() {
+        if (threadPool == null) {
+            threadPool = Utils.newForkJoinPool(THREADS_PREF, "validator-%d", Thread.NORM_PRIORITY);
+        }
+        return threadPool;
+    }
+
+    /**
+     * Splits items in partitions, and applies a function to each partition.
+     * Partitions are processed in parallel if {@link #isEnabled() enabled} and if there is more than one partition,
+     * otherwise the function is applied to all items in the calling thread.
+     * @param <T> type of items
+     * @param <R> type of results
+     * @param items items to process
+     * @param partitionSize maximum number of items of a partition
+     * @param function function computing the results of a partition. It is called concurrently and must not modify
+     * any shared state
+     * @return results of all partitions, concatenated in the order of the partitions
+     */
+    public static <T, R> List<R> flatMapPartitions(List<T> items, int partitionSize,
+            Function<List<T>, ? extends Collection<? extends R>> function) {
+        if (items.size() <= partitionSize || !isEnabled()) {
+            return new ArrayList<>(function.apply(items));
+        }
+        ForkJoinPool pool = getThreadPool();
+        List<ForkJoinTask<? extends Collection<? extends R>>> tasks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += partitionSize) {
+            List<T> partition = items.subList(from, Math.min(items.size(), from + partitionSize));
+            tasks.add(pool.submit(() -> function.apply(partition)));
+        }
+        List<R> result = new ArrayList<>();
+        for (ForkJoinTask<? extends Collection<? extends R>> task : tasks) {
+            result.addAll(task.join());
+        }
+        return result;
+    }
+
+    /**
+     * Applies a function to each item, in parallel if {@link #isEnabled() enabled}.
+     * @param <T> type of items
+     * @param <R> type of results
+     * @param items items to process
+     * @param function function computing the result of an item. It is called concurrently and must not modify any
+     * shared state
+     * @return results, in the order of items
+     */
+    public static <T, R> List<R> map(List<T> items, Function<? super T, ? extends R> function) {
+        return flatMapPartitions(items, DEFAULT_PARTITION_SIZE,
+                partition -> partition.stream().map(function).collect(Collectors.toList()));
+    }
+}
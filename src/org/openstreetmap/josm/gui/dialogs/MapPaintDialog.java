@@ -27,6 +27,7 @@ import java.util.List;
 
 import javax.swing.AbstractAction;
 import javax.swing.DefaultButtonModel;
+import javax.swing.JButton;
 import javax.swing.DefaultListSelectionModel;
 import javax.swing.ImageIcon;
 import javax.swing.JCheckBox;
@@ -48,6 +49,7 @@ import javax.swing.event.ListSelectionListener;
 import javax.swing.filechooser.FileFilter;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableCellRenderer;
 
 import org.openstreetmap.josm.actions.ExtensionFileFilter;
@@ -60,6 +62,7 @@ import org.openstreetmap.josm.gui.PleaseWaitRunnable;
 import org.openstreetmap.josm.gui.SideButton;
 import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
 import org.openstreetmap.josm.gui.mappaint.MapPaintStyles.MapPaintStylesUpdateListener;
+import org.openstreetmap.josm.gui.mappaint.RenderProfiler;
 import org.openstreetmap.josm.gui.mappaint.StyleSettingGroupGui;
 import org.openstreetmap.josm.gui.mappaint.StyleSource;
 import org.openstreetmap.josm.gui.mappaint.loader.MapPaintStyleLoader;
@@ -629,6 +632,91 @@ public class MapPaintDialog extends ToggleDialog {
         }
     }
 
+    /**
+     * Displays the render profile: the time spent painting each kind of style element and applying each MapCSS rule.
+     * @since 17254
+     */
+    protected static class ProfileAction extends AbstractAction {
+
+        /**
+         * Constructs a new {@code ProfileAction}.
+         */
+        public ProfileAction() {
+            putValue(NAME, tr("Render profile"));
+            putValue(SHORT_DESCRIPTION, tr("view the time spent painting style elements and applying style rules"));
+            new ImageProvider("clock").getResource().attachImageIcon(this);
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            ExtendedDialog dialog = new ExtendedDialog(MainApplication.getMainFrame(), tr("Render profile"),
+                    new String[] {tr("Close")}, false);
+            dialog.setPreferredSize(new Dimension(800, 500));
+            dialog.setButtonIcons("ok");
+
+            DefaultTableModel elements = new ReadOnlyTableModel(
+                    tr("Style element"), tr("Count"), tr("Total time (ms)"), tr("Average time (µs)"));
+            DefaultTableModel rules = new ReadOnlyTableModel(
+                    tr("Selectors"), tr("Style"), tr("Checked"), tr("Applied"), tr("Total time (ms)"), tr("Average time (µs)"));
+            Runnable refresh = () -> {
+                elements.setRowCount(0);
+                for (RenderProfiler.Statistics s : RenderProfiler.getElementStatistics()) {
+                    elements.addRow(new Object[] {s.getName(), s.getCount(), s.getNanos() / 1_000_000, average(s)});
+                }
+                rules.setRowCount(0);
+                for (RenderProfiler.Statistics s : RenderProfiler.getRuleStatistics()) {
+                    rules.addRow(new Object[] {s.getName(), s.getSource(), s.getCount(), s.getApplied(), s.getNanos() / 1_000_000, average(s)});
+                }
+            };
+            refresh.run();
+
+            JCheckBox cbEnabled = new JCheckBox(tr("Profile rendering"), RenderProfiler.isEnabled());
+            cbEnabled.addActionListener(ev -> RenderProfiler.setEnabled(cbEnabled.isSelected()));
+            JButton btnRefresh = new JButton(tr("Refresh"));
+            btnRefresh.addActionListener(ev -> refresh.run());
+            JButton btnReset = new JButton(tr("Reset"));
+            btnReset.setToolTipText(tr("Clear the profile and the cached styles, so that all styles are computed again"));
+            btnReset.addActionListener(ev -> {
+                RenderProfiler.reset();
+                MapPaintStyles.getStyles().clearCached();
+                MapPaintStyles.fireMapPaintStylesUpdated();
+                refresh.run();
+            });
+
+            JPanel p = new JPanel(new GridBagLayout());
+            p.add(cbEnabled, GBC.std());
+            p.add(btnRefresh, GBC.std().insets(10, 0, 0, 0));
+            p.add(btnReset, GBC.eol().insets(10, 0, 0, 0));
+            JTabbedPane tabs = new JTabbedPane();
+            tabs.add(tr("Style elements"), new JScrollPane(new JTable(elements)));
+            tabs.add(tr("MapCSS rules"), new JScrollPane(new JTable(rules)));
+            p.add(tabs, GBC.eol().fill(GBC.BOTH));
+            dialog.setContent(p, false);
+            dialog.showDialog();
+        }
+
+        private static long average(RenderProfiler.Statistics s) {
+            return s.getCount() == 0 ? 0 : s.getNanos() / 1000 / s.getCount();
+        }
+
+        private static final class ReadOnlyTableModel extends DefaultTableModel {
+            ReadOnlyTableModel(String... columns) {
+                super(columns, 0);
+            }
+
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+
+            @Override
+            public Class<?> getColumnClass(int columnIndex) {
+                // numbers are right aligned and sorted numerically
+                return columnIndex == 0 || (getColumnCount() > 4 && columnIndex == 1) ? String.class : Long.class;
+            }
+        }
+    }
+
     class PopupMenuHandler extends PopupMenuLauncher {
         @Override
         public void launch(MouseEvent evt) {
@@ -676,6 +764,7 @@ public class MapPaintDialog extends ToggleDialog {
 
             addSeparator();
             add(new InfoAction());
+            add(new ProfileAction());
         }
     }
 }
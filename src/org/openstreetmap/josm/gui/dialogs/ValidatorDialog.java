@@ -49,6 +49,7 @@ import org.openstreetmap.josm.data.osm.event.SelectionEventManager;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.osm.visitor.PrimitiveVisitor;
 import org.openstreetmap.josm.data.preferences.sources.ValidatorPrefHelper;
+import org.openstreetmap.josm.data.validation.IncrementalValidator;
 import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.TestError;
@@ -110,6 +111,9 @@ public class ValidatorDialog extends ToggleDialog
     /** Last selected element */
     private DefaultMutableTreeNode lastSelectedNode;
 
+    /** Validates the changes of the edit layer, if enabled */
+    private transient IncrementalValidator incrementalValidator;
+
     /**
      * Constructor
      */
@@ -704,6 +708,42 @@ public class ValidatorDialog extends ToggleDialog
     public void processDatasetEvent(AbstractDatasetChangedEvent event) {
         validateAction.updateEnabledState();
         lookupAction.updateEnabledState();
+        if (Boolean.TRUE.equals(ValidatorPrefHelper.PREF_INCREMENTAL.get())) {
+            validateChanges(event);
+        }
+    }
+
+    /**
+     * Validates the primitives changed by a data set event, and updates the errors of the edit layer.
+     * @param event data set event
+     */
+    private void validateChanges(AbstractDatasetChangedEvent event) {
+        OsmDataLayer editLayer = MainApplication.getLayerManager().getEditLayer();
+        if (editLayer == null || event.getDataset() != editLayer.getDataSet()) {
+            return;
+        }
+        if (incrementalValidator == null || incrementalValidator.getDataSet() != editLayer.getDataSet()) {
+            incrementalValidator = new IncrementalValidator(editLayer.getDataSet());
+        }
+        IncrementalValidator validator = incrementalValidator;
+        validator.processDatasetEvent(event);
+        // a single validation is pending at a time, it validates all the changes made until it starts
+        if (validator.hasChanges() && validator.schedule()) {
+            // run on the worker thread, so that the validations of the incremental validator never run concurrently
+            MainApplication.worker.submit(() -> {
+                IncrementalValidator.Result result = validator.validate();
+                if (!result.isEmpty()) {
+                    GuiHelper.runInEDT(() -> {
+                        if (tree.getErrors() == editLayer.validationErrors) {
+                            tree.updateErrors(result);
+                        } else {
+                            result.applyTo(editLayer.validationErrors);
+                        }
+                        invalidateValidatorLayers();
+                    });
+                }
+            });
+        }
     }
 
     private static class AutofixCommand extends SequenceCommand {
@@ -36,6 +36,7 @@ import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
 import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
 import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
 import org.openstreetmap.josm.data.preferences.sources.ValidatorPrefHelper;
+import org.openstreetmap.josm.data.validation.IncrementalValidator;
 import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.TestError;
@@ -387,6 +388,17 @@ public class ValidatorTreePanel extends JTree implements Destroyable, DataSetLis
         }
     }
 
+    /**
+     * Replaces the errors of revalidated primitives by their new errors
+     * @param result the result of an incremental validation
+     * @since 17248
+     */
+    public void updateErrors(IncrementalValidator.Result result) {
+        if (result.applyTo(errors) && isVisible()) {
+            buildTree();
+        }
+    }
+
     /**
      * Returns the errors of the tree
      * @return the errors of the tree
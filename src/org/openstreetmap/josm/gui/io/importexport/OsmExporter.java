@@ -79,6 +79,16 @@ public class OsmExporter extends FileExporter {
         save(file, (OsmDataLayer) layer, isAutosave);
     }
 
+    /**
+     * Determines if the exported file keeps all the edits of the layer, including deleted primitives and the modification
+     * state, so that the layer can be marked as saved after the export.
+     * @return {@code true} if the exported file keeps all the edits of the layer
+     * @since 17265
+     */
+    public boolean keepsEdits() {
+        return true;
+    }
+
     protected static OutputStream getOutputStream(File file) throws IOException {
         return Compression.getCompressedFileOutputStream(file);
     }
@@ -101,7 +111,7 @@ public class OsmExporter extends FileExporter {
             if ((isAutosave || !Config.getPref().getBoolean("save.keepbackup", false)) && tmpFile != null) {
                 Utils.deleteFile(tmpFile);
             }
-            if (!isAutosave) {
+            if (!isAutosave && keepsEdits()) {
                 layer.onPostSaveToFile();
             }
         } catch (IOException | InvalidPathException e) {
@@ -0,0 +1,87 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.io.importexport;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+
+import org.openstreetmap.josm.actions.ExtensionFileFilter;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.imagery.ImageryInfo;
+import org.openstreetmap.josm.data.imagery.ImageryInfo.ImageryType;
+import org.openstreetmap.josm.data.imagery.PMTilesArchive;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.ImageryLayer;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.tools.CheckParameterUtil;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Opens a local PMTiles archive as imagery layer.
+ * @since 17261
+ */
+public class PMTilesImporter extends FileImporter {
+
+    /**
+     * The file filter used in "open" dialogs for PMTiles archives.
+     */
+    public static final ExtensionFileFilter FILE_FILTER = new ExtensionFileFilter(
+            "pmtiles", "pmtiles", tr("PMTiles archives (*.pmtiles)"));
+
+    /**
+     * Constructs a new {@code PMTilesImporter}.
+     */
+    public PMTilesImporter() {
+        super(FILE_FILTER);
+    }
+
+    @Override
+    public void importData(File file, ProgressMonitor progressMonitor) throws IOException, IllegalDataException {
+        CheckParameterUtil.ensureParameterNotNull(file, "file");
+        final Bounds bounds;
+        JsonObject metadata;
+        try (PMTilesArchive archive = new PMTilesArchive(file)) {
+            bounds = archive.getBounds();
+            metadata = readMetadata(archive);
+        }
+        String name = metadata.getString("name", "");
+        ImageryInfo info = new ImageryInfo(name.isEmpty() ? file.getName() : name,
+                ImageryType.PMTILES.getTypeString() + ':' + file.getAbsolutePath());
+        String attribution = metadata.getString("attribution", "");
+        if (!attribution.isEmpty()) {
+            info.setAttributionText(attribution);
+        }
+        final ImageryLayer layer = ImageryLayer.create(info);
+
+        // FIXME: remove UI stuff from IO subsystem
+        GuiHelper.runInEDT(() -> {
+            MainApplication.getLayerManager().addLayer(layer);
+            if (bounds.isCollapsed() || !MainApplication.isDisplayingMapView()) {
+                return;
+            }
+            MainApplication.getMap().mapView.zoomTo(bounds);
+        });
+    }
+
+    private static JsonObject readMetadata(PMTilesArchive archive) throws IOException {
+        String metadata = archive.getMetadata();
+        if (!metadata.isEmpty()) {
+            try (JsonReader reader = Json.createReader(new StringReader(metadata))) {
+                return reader.readObject();
+            } catch (JsonException e) {
+                Logging.warn("Invalid metadata in {0}: {1}", archive.getFile(), e.getMessage());
+            }
+        }
+        return JsonValue.EMPTY_JSON_OBJECT;
+    }
+}
@@ -0,0 +1,83 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.io.importexport;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.swing.JOptionPane;
+
+import org.openstreetmap.josm.actions.ExtensionFileFilter;
+import org.openstreetmap.josm.gui.ConditionalOptionPaneUtil;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.Layer;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.io.PbfWriter;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Exports data to an OSM PBF file (*.osm.pbf).
+ * <p>
+ * The format cannot store deleted primitives and the modification state, so the layer is not marked as saved after
+ * the export, and the user is warned before exporting a layer with edits to upload.
+ * @since 17240
+ */
+public class PbfExporter extends OsmExporter {
+
+    /**
+     * Constructs a new {@code PbfExporter}.
+     */
+    public PbfExporter() {
+        super(new ExtensionFileFilter(
+            "osm.pbf,pbf", "osm.pbf", tr("OSM PBF Files") + " (*.osm.pbf, *.pbf)"));
+    }
+
+    @Override
+    public void exportData(File file, Layer layer) throws IOException {
+        setCanceled(false);
+        if (layer instanceof OsmDataLayer && ((OsmDataLayer) layer).data.requiresUploadToServer()
+                && !GuiHelper.runInEDTAndWaitAndReturn(() -> ConditionalOptionPaneUtil.showConfirmationDialog(
+                        "export_pbf_edits",
+                        MainApplication.getMainFrame(),
+                        "<html>" + tr("The OSM PBF format cannot store deleted objects and which objects have been modified.<br>"
+                                + "The file will not keep the edits of layer ''{0}'' to upload, and the layer will remain unsaved.<br><br>"
+                                + "Do you want to export it anyway?", Utils.escapeReservedCharactersHTML(layer.getName())) + "</html>",
+                        tr("Export to OSM PBF"),
+                        JOptionPane.YES_NO_OPTION,
+                        JOptionPane.WARNING_MESSAGE,
+                        JOptionPane.YES_OPTION))) {
+            setCanceled(true);
+            return;
+        }
+        super.exportData(file, layer);
+    }
+
+    @Override
+    public void exportDataQuiet(File file, Layer layer) throws IOException {
+        setCanceled(false);
+        super.exportData(file, layer);
+    }
+
+    @Override
+    public boolean keepsEdits() {
+        return false;
+    }
+
+    @Override
+    protected void doSave(File file, OsmDataLayer layer) throws IOException {
+        try (
+            OutputStream out = getOutputStream(file);
+            PbfWriter w = new PbfWriter(out)
+        ) {
+            layer.data.getReadLock().lock();
+            try {
+                w.write(layer.data);
+            } finally {
+                layer.data.getReadLock().unlock();
+            }
+        }
+    }
+}
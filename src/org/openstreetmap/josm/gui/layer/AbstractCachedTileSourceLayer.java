@@ -1,6 +1,7 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.gui.layer;
 
+import java.io.File;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -128,5 +129,19 @@ public abstract class AbstractCachedTileSourceLayer<T extends AbstractTMSTileSou
         return MAX_DISK_CACHE_SIZE.get() * 1024;
     }
 
+    @Override
+    public long getDiskCacheUsage() {
+        // the files of the cache region, whatever the kind of disk cache
+        File[] files = new File(CachedTileLoaderFactory.PROP_TILECACHE_DIR.get()).listFiles(
+                (dir, name) -> name.startsWith(getCacheName() + '_'));
+        long size = 0;
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
     protected abstract String getCacheName();
 }
@@ -59,7 +59,6 @@ import javax.swing.JSeparator;
 import javax.swing.Timer;
 
 import org.openstreetmap.gui.jmapviewer.AttributionSupport;
-import org.openstreetmap.gui.jmapviewer.MemoryTileCache;
 import org.openstreetmap.gui.jmapviewer.OsmTileLoader;
 import org.openstreetmap.gui.jmapviewer.Tile;
 import org.openstreetmap.gui.jmapviewer.TileRange;
@@ -87,6 +86,7 @@ import org.openstreetmap.josm.data.imagery.ImageryInfo;
 import org.openstreetmap.josm.data.imagery.OffsetBookmark;
 import org.openstreetmap.josm.data.imagery.TMSCachedTileLoader;
 import org.openstreetmap.josm.data.imagery.TileLoaderFactory;
+import org.openstreetmap.josm.data.imagery.TileSeeder;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.data.preferences.IntegerProperty;
@@ -111,6 +111,8 @@ import org.openstreetmap.josm.gui.layer.imagery.IncreaseZoomAction;
 import org.openstreetmap.josm.gui.layer.imagery.LoadAllTilesAction;
 import org.openstreetmap.josm.gui.layer.imagery.LoadErroneousTilesAction;
 import org.openstreetmap.josm.gui.layer.imagery.ReprojectionTile;
+import org.openstreetmap.josm.gui.layer.imagery.SeedTileCacheAction;
+import org.openstreetmap.josm.gui.layer.imagery.SharedTileCache;
 import org.openstreetmap.josm.gui.layer.imagery.ShowErrorsAction;
 import org.openstreetmap.josm.gui.layer.imagery.TileAnchor;
 import org.openstreetmap.josm.gui.layer.imagery.TileCoordinateConverter;
@@ -118,6 +120,7 @@ import org.openstreetmap.josm.gui.layer.imagery.TilePosition;
 import org.openstreetmap.josm.gui.layer.imagery.TileSourceDisplaySettings;
 import org.openstreetmap.josm.gui.layer.imagery.TileSourceDisplaySettings.DisplaySettingsChangeEvent;
 import org.openstreetmap.josm.gui.layer.imagery.TileSourceDisplaySettings.DisplaySettingsChangeListener;
+import org.openstreetmap.josm.gui.layer.imagery.ViewTilePrioritizer;
 import org.openstreetmap.josm.gui.layer.imagery.ZoomToBestAction;
 import org.openstreetmap.josm.gui.layer.imagery.ZoomToNativeLevelAction;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
@@ -176,16 +179,31 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
 
     private static final BooleanProperty POPUP_MENU_ENABLED = new BooleanProperty(PREFERENCE_PREFIX + ".popupmenu", true);
 
+    /**
+     * Load in advance the tiles around the view, in the direction in which the map is panned, and of the next and
+     * previous zoom levels
+     * @since 17263
+     */
+    public static final BooleanProperty PREFETCH_TILES = new BooleanProperty(PREFERENCE_PREFIX + ".prefetch", true);
+
     /*
-     *  use MemoryTileCache instead of tileLoader JCS cache, as tileLoader caches only content (byte[] of image)
-     *  and MemoryTileCache caches whole Tile. This gives huge performance improvement when a lot of tiles are visible
+     *  use a memory cache of whole tiles besides the tileLoader JCS cache, as tileLoader caches only content (byte[] of image)
+     *  and the memory cache keeps decoded images. This gives huge performance improvement when a lot of tiles are visible
      *  in MapView (for example - when limiting min zoom in imagery)
      *
-     *  Use per-layer tileCache instance, as the more layers there are, the more tiles needs to be cached
+     *  Use per-layer tileCache instance, sharing its memory budget with the other layers, see SharedTileCache
      */
     protected TileCache tileCache; // initialized together with tileSource
     protected T tileSource;
     protected TileLoader tileLoader;
+    /** Order in which the tiles are downloaded, from the tiles displayed by this layer */
+    private final ViewTilePrioritizer tilePrioritizer = new ViewTilePrioritizer(1, 2);
+    /** Center of the displayed tiles, and unit vector of the direction in which the map is panned */
+    private double viewCenterX = Double.NaN;
+    private double viewCenterY = Double.NaN;
+    private int viewZoom;
+    private double panX;
+    private double panY;
 
     /** A timer that is used to delay invalidation events if required. */
     private final Timer invalidateLaterTimer = new Timer(100, e -> this.invalidate());
@@ -296,8 +314,11 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
 
         if (tileLoader == null)
             tileLoader = new OsmTileLoader(this, headers);
+        if (tileLoader instanceof TMSCachedTileLoader) {
+            ((TMSCachedTileLoader) tileLoader).setTilePrioritizer(tilePrioritizer);
+        }
 
-        tileCache = new MemoryTileCache(estimateTileCacheSize());
+        tileCache = new SharedTileCache(estimateTileCacheSize());
     }
 
     @Override
@@ -306,6 +327,9 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
             success = false;
             tile.setImage(null);
         }
+        if (tileCache instanceof SharedTileCache) {
+            ((SharedTileCache) tileCache).tileLoaded(tile);
+        }
         invalidateLater();
         Logging.debug("tileLoadingFinished() tile: {0} success: {1}", tile, success);
     }
@@ -754,9 +778,8 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
 
     private void zoomChanged(boolean invalidate) {
         Logging.debug("zoomChanged(): {0}", currentZoomLevel);
-        if (tileLoader instanceof TMSCachedTileLoader) {
-            ((TMSCachedTileLoader) tileLoader).cancelOutstandingTasks();
-        }
+        // outstanding tasks are not cancelled here: the tiles which are not needed anymore are cancelled once the
+        // new view is painted, see TileSet.prioritizeTiles()
         if (invalidate) {
             invalidate();
         }
@@ -1234,6 +1257,44 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
             maxY = Utils.clamp(maxY, tileSource.getTileYMin(zoom), tileSource.getTileYMax(zoom));
         }
 
+        /**
+         * Tells the tile cache that the tiles of this set are displayed, so that they are evicted last.
+         */
+        private void focusTileCache() {
+            if (tileCache instanceof SharedTileCache) {
+                ((SharedTileCache) tileCache).setFocus(zoom, minX, minY, maxX, maxY);
+            }
+        }
+
+        /**
+         * Tells the tile loader that the tiles of this set are displayed, so that they are loaded first, and cancels
+         * the loading of the tiles which are not needed anymore.
+         */
+        private void prioritizeTiles() {
+            double centerX = (minX + maxX) / 2d;
+            double centerY = (minY + maxY) / 2d;
+            if (zoom != viewZoom || Double.isNaN(viewCenterX)) {
+                panX = 0;
+                panY = 0;
+                viewCenterX = centerX;
+                viewCenterY = centerY;
+                viewZoom = zoom;
+            } else {
+                double length = Math.hypot(centerX - viewCenterX, centerY - viewCenterY);
+                // the center moves by half a tile when one side of the set does, keep the direction until then
+                if (length >= 0.5) {
+                    panX = (centerX - viewCenterX) / length;
+                    panY = (centerY - viewCenterY) / length;
+                    viewCenterX = centerX;
+                    viewCenterY = centerY;
+                }
+            }
+            if (tilePrioritizer.setView(zoom, minX, minY, maxX, maxY, panX, panY)
+                    && tileLoader instanceof TMSCachedTileLoader) {
+                ((TMSCachedTileLoader) tileLoader).cancelStaleTasks();
+            }
+        }
+
         private boolean tooSmall() {
             return this.tilesSpanned() < 2.1;
         }
@@ -1498,6 +1559,30 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
         // old and unused.
     }
 
+    /**
+     * Loads the tiles which may be displayed next: the tiles around the view, further in the direction in which the
+     * map is panned, and the tiles of the next and previous zoom levels. They are downloaded after the visible tiles,
+     * see {@link ViewTilePrioritizer}.
+     * @param pb the displayed bounds
+     * @param zoom the zoom level of the displayed tiles
+     */
+    private void prefetchTiles(ProjectionBounds pb, int zoom) {
+        TileXY min = tilePrioritizer.getPrefetchMin();
+        TileXY max = tilePrioritizer.getPrefetchMax();
+        if (min != null && max != null) {
+            new TileSet(min, max, zoom).loadAllTiles(false);
+        }
+        if (zoom + 1 <= getMaxZoomLvl()) {
+            TileSet next = getTileSet(pb, zoom + 1);
+            if (!next.tooLarge()) {
+                next.loadAllTiles(false);
+            }
+        }
+        if (zoom - 1 >= getMinZoomLvl()) {
+            getTileSet(pb, zoom - 1).loadAllTiles(false);
+        }
+    }
+
     private void drawInViewArea(Graphics2D g, MapView mv, ProjectionBounds pb) {
         int zoom = currentZoomLevel;
         if (getDisplaySettings().isAutoZoom()) {
@@ -1548,12 +1633,17 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
             setZoomLevel(zoom, false);
         }
         TileSet ts = dts.getTileSet(zoom);
+        ts.focusTileCache();
+        ts.prioritizeTiles();
 
         // Too many tiles... refuse to download
         if (!ts.tooLarge()) {
             // try to load tiles from desired zoom level, no matter what we will show (for example, tiles from previous zoom level
             // on zoom in)
             ts.loadAllTiles(false);
+            if (getDisplaySettings().isAutoLoad() && PREFETCH_TILES.get()) {
+                prefetchTiles(pb, zoom);
+            }
         }
 
         if (displayZoomLevel != zoom) {
@@ -1569,7 +1659,7 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
         g.setColor(Color.DARK_GRAY);
 
         List<Tile> missedTiles = this.paintTileImages(g, ts);
-        if (getDisplaySettings().isAutoLoad()) {
+        if (getDisplaySettings().isAutoLoad() && !PREFETCH_TILES.get()) {
             ts.overloadTiles();
         }
         int[] otherZooms = {1, 2, -1, -2, -3, -4, -5};
@@ -1649,13 +1739,17 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
             myDrawString(g, tr("Pixel scale: {0}", getScaleFactor(currentZoomLevel)), 50, 170);
             myDrawString(g, tr("Best zoom: {0}", getBestZoom()), 50, 185);
             myDrawString(g, tr("Estimated cache size: {0}", estimateTileCacheSize()), 50, 200);
+            int offset = 200;
             if (tileLoader instanceof TMSCachedTileLoader) {
-                int offset = 200;
                 for (String part: ((TMSCachedTileLoader) tileLoader).getStats().split("\n", -1)) {
                     offset += 15;
                     myDrawString(g, tr("Cache stats: {0}", part), 50, offset);
                 }
             }
+            for (String part: SharedTileCache.getStats().split("\n", -1)) {
+                offset += 15;
+                myDrawString(g, tr("Memory cache stats: {0}", part), 50, offset);
+            }
         }
     }
 
@@ -1777,7 +1871,8 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
             new ZoomToNativeLevelAction(this),
             new FlushTileCacheAction(this),
             new LoadErroneousTilesAction(this),
-            new LoadAllTilesAction(this)
+            new LoadAllTilesAction(this),
+            new SeedTileCacheAction(this)
         };
     }
 
@@ -1923,6 +2018,51 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
         return new PrecacheTask(progressMonitor, points, bufferX, bufferY);
     }
 
+    /**
+     * Creates a task downloading all the tiles of an area and of a range of zoom levels into the tile cache.
+     *
+     * A new download executor is created with separate queue, so that the tiles of the map view are loaded meanwhile
+     *
+     * @param area the area to seed, in degrees of longitude (x) and latitude (y)
+     * @param minZoom the minimum zoom level to seed
+     * @param maxZoom the maximum zoom level to seed
+     * @param threads the number of tiles downloaded in parallel
+     * @return the seeding task, whose download executor is shut down by {@link #finishTileSeeder}
+     * @since 17264
+     */
+    public TileSeeder createTileSeeder(Shape area, int minZoom, int maxZoom, int threads) {
+        TileSeeder seeder = new TileSeeder(tileSource, area, minZoom, maxZoom);
+        TileLoader loader = getTileLoaderFactory().makeTileLoader(seeder, getHeaders(tileSource), minimumTileExpire);
+        if (loader instanceof TMSCachedTileLoader) {
+            ((TMSCachedTileLoader) loader).setDownloadExecutor(
+                    TMSCachedTileLoader.getNewThreadPoolExecutor("Tile seeder-%d", threads));
+        }
+        // keep the download threads busy while the next tiles are checked in the cache
+        seeder.setTileLoader(loader, 2 * threads);
+        seeder.setCacheUsage(this::getDiskCacheUsage);
+        return seeder;
+    }
+
+    /**
+     * Releases the download threads of a seeding task once it is finished or canceled.
+     * @param seeder the seeding task created by {@link #createTileSeeder}
+     * @since 17264
+     */
+    public void finishTileSeeder(TileSeeder seeder) {
+        if (seeder.getTileLoader() instanceof TMSCachedTileLoader) {
+            ((TMSCachedTileLoader) seeder.getTileLoader()).getDownloadExecutor().shutdown();
+        }
+    }
+
+    /**
+     * Returns the size of the disk cache of the tiles of this layer.
+     * @return the size of the files of the disk cache, in bytes, or -1 if this layer has no disk cache
+     * @since 17264
+     */
+    public long getDiskCacheUsage() {
+        return -1;
+    }
+
     @Override
     public boolean isSavable() {
         return true; // With WMSLayerExporter
@@ -1938,6 +2078,35 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
         super.destroy();
         MapView.removeZoomChangeListener(this);
         adjustAction.destroy();
+        if (tileCache != null) {
+            // free the memory shared with the other layers at once
+            tileCache.clear();
+        }
+        clearTilePrioritizerView();
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        super.setVisible(visible);
+        if (!visible) {
+            clearTileCacheFocus();
+            clearTilePrioritizerView();
+        }
+    }
+
+    private void clearTilePrioritizerView() {
+        tilePrioritizer.clearView();
+        viewCenterX = Double.NaN;
+        viewCenterY = Double.NaN;
+        if (tileLoader instanceof TMSCachedTileLoader) {
+            ((TMSCachedTileLoader) tileLoader).cancelStaleTasks();
+        }
+    }
+
+    private void clearTileCacheFocus() {
+        if (tileCache instanceof SharedTileCache) {
+            ((SharedTileCache) tileCache).clearFocus();
+        }
     }
 
     private class TileSourcePainter extends CompatibilityModeLayerPainter {
@@ -1983,6 +2152,7 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
             event.getMapView().removeMouseListener(adapter);
             MapView.removeZoomChangeListener(AbstractTileSourceLayer.this);
             super.detachFromMapView(event);
+            clearTileCacheFocus();
             if (memory != null) {
                 memory.free();
             }
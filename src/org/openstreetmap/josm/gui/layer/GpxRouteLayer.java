@@ -12,6 +12,7 @@ import javax.swing.Icon;
 
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.gpx.GpxRoute;
+import org.openstreetmap.josm.data.gpx.GpxTrackIndex;
 import org.openstreetmap.josm.data.gpx.Line;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.gui.MapView;
@@ -93,6 +94,11 @@ public class GpxRouteLayer extends AbstractModifiableLayer {
             protected Iterable<Line> getLinesIterable(boolean[] trackVisibility) {
                 return () -> routes.stream().map(Line::new).iterator();
             }
+
+            @Override
+            protected GpxTrackIndex getTrackIndex() {
+                return null;
+            }
         };
     }
 }
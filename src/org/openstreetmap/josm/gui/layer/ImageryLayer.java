@@ -168,6 +168,8 @@ public abstract class ImageryLayer extends Layer {
         case BING:
         case SCANEX:
             return new TMSLayer(info);
+        case PMTILES:
+            return new PMTilesLayer(info);
         default:
             throw new AssertionError(tr("Unsupported imagery type: {0}", info.getImageryType()));
         }
@@ -93,13 +93,19 @@ import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.osm.visitor.OsmPrimitiveVisitor;
 import org.openstreetmap.josm.data.osm.visitor.paint.AbstractMapRenderer;
 import org.openstreetmap.josm.data.osm.visitor.paint.MapRendererFactory;
+import org.openstreetmap.josm.data.osm.visitor.paint.RenderTileCache;
+import org.openstreetmap.josm.data.osm.visitor.paint.RetainedRenderList;
+import org.openstreetmap.josm.data.osm.visitor.paint.SimplifiedWayCache;
+import org.openstreetmap.josm.data.osm.visitor.paint.StyledMapRenderer;
 import org.openstreetmap.josm.data.osm.visitor.paint.relations.MultipolygonCache;
 import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.data.preferences.IntegerProperty;
 import org.openstreetmap.josm.data.preferences.NamedColorProperty;
 import org.openstreetmap.josm.data.preferences.StringProperty;
 import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.data.validation.tests.MapCSSTagChecker;
 import org.openstreetmap.josm.gui.ExtendedDialog;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.MapFrame;
@@ -183,6 +189,18 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
      */
     public static final BooleanProperty PROPERTY_HIDE_LABELS_WHILE_DRAGGING = new BooleanProperty("mappaint.hide.labels.while.dragging", true);
 
+    /**
+     * Property to determine if data is painted with cached tiles, see {@link RenderTileCache}.
+     * @since 17250
+     */
+    public static final BooleanProperty PROPERTY_TILED_RENDERING = new BooleanProperty("mappaint.tiled-rendering", false);
+
+    /**
+     * Property to determine if the styles of data are retained between frames, see {@link RetainedRenderList}.
+     * @since 17251
+     */
+    public static final BooleanProperty PROPERTY_RETAINED_RENDER_LIST = new BooleanProperty("mappaint.retained-render-list", true);
+
     private static final NamedColorProperty PROPERTY_BACKGROUND_COLOR = new NamedColorProperty(marktr("background"), Color.BLACK);
     private static final NamedColorProperty PROPERTY_OUTSIDE_COLOR = new NamedColorProperty(marktr("outside downloaded area"), Color.YELLOW);
 
@@ -382,6 +400,9 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
      */
     public final DataSet data;
     private final DataSetListenerAdapter dataSetListenerAdapter;
+    private volatile RenderTileCache renderTileCache;
+    private final RetainedRenderList renderList;
+    private final SimplifiedWayCache simplifiedWays;
 
     /**
      * a texture for non-downloaded area
@@ -436,6 +457,8 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
         this.data = data;
         this.data.setName(name);
         this.dataSetListenerAdapter = new DataSetListenerAdapter(this);
+        this.renderList = new RetainedRenderList(data);
+        this.simplifiedWays = new SimplifiedWayCache(data);
         this.setAssociatedFile(associatedFile);
         data.addDataSetListener(dataSetListenerAdapter);
         data.addDataSetListener(MultipolygonCache.getInstance());
@@ -537,13 +560,37 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
             }
         }
 
-        AbstractMapRenderer painter = MapRendererFactory.getInstance().createActiveRenderer(g, mv, inactive);
-        painter.enableSlowOperations(mv.getMapMover() == null || !mv.getMapMover().movementInProgress()
-                || !PROPERTY_HIDE_LABELS_WHILE_DRAGGING.get());
-        painter.render(data, virtual, box);
+        if (!paintTiles(g, mv, inactive, virtual)) {
+            AbstractMapRenderer painter = MapRendererFactory.getInstance().createActiveRenderer(g, mv, inactive);
+            painter.enableSlowOperations(mv.getMapMover() == null || !mv.getMapMover().movementInProgress()
+                    || !PROPERTY_HIDE_LABELS_WHILE_DRAGGING.get());
+            painter.setSimplifiedWayCache(simplifiedWays);
+            if (painter instanceof StyledMapRenderer && PROPERTY_RETAINED_RENDER_LIST.get()) {
+                ((StyledMapRenderer) painter).setRenderList(renderList);
+            }
+            painter.render(data, virtual, box);
+        }
         MainApplication.getMap().conflictDialog.paintConflicts(g, mv);
     }
 
+    private boolean paintTiles(Graphics2D g, MapView mv, boolean inactive, boolean virtual) {
+        RenderTileCache cache = getRenderTileCache();
+        return cache != null && cache.paint(g, mv, inactive, virtual);
+    }
+
+    private synchronized RenderTileCache getRenderTileCache() {
+        if (PROPERTY_TILED_RENDERING.get()) {
+            if (renderTileCache == null) {
+                renderTileCache = new RenderTileCache(data);
+                renderTileCache.setSimplifiedWayCache(simplifiedWays);
+            }
+        } else if (renderTileCache != null) {
+            renderTileCache.destroy();
+            renderTileCache = null;
+        }
+        return renderTileCache;
+    }
+
     @Override public String getToolTipText() {
         DataCountVisitor counter = new DataCountVisitor();
         for (final OsmPrimitive osm : data.allPrimitives()) {
@@ -1120,6 +1167,16 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
         data.removeDataSetListener(MultipolygonCache.getInstance());
         removeClipboardDataFor(this);
         recentRelations.clear();
+        if (renderTileCache != null) {
+            renderTileCache.destroy();
+            renderTileCache = null;
+        }
+        renderList.clear();
+        simplifiedWays.clear();
+        MapCSSTagChecker tagChecker = OsmValidator.getTest(MapCSSTagChecker.class);
+        if (tagChecker != null) {
+            tagChecker.clearCache(data);
+        }
     }
 
     protected static void removeClipboardDataFor(OsmDataLayer osm) {
@@ -1138,6 +1195,12 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
 
     @Override
     public void processDatasetEvent(AbstractDatasetChangedEvent event) {
+        RenderTileCache cache = renderTileCache;
+        if (cache != null) {
+            cache.processDatasetEvent(event);
+        }
+        renderList.processDatasetEvent(event);
+        simplifiedWays.processDatasetEvent(event);
         invalidate();
         setRequiresSaveToFile(true);
         setRequiresUploadToServer(event.getDataset().requiresUploadToServer());
@@ -1145,6 +1208,13 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
 
     @Override
     public void selectionChanged(SelectionChangeEvent event) {
+        RenderTileCache cache = renderTileCache;
+        if (cache != null) {
+            cache.invalidate(event.getAdded());
+            cache.invalidate(event.getRemoved());
+        }
+        renderList.invalidate(event.getAdded());
+        renderList.invalidate(event.getRemoved());
         invalidate();
     }
 
@@ -1152,6 +1222,12 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
     public void projectionChanged(Projection oldValue, Projection newValue) {
          // No reprojection required. The dataset itself is registered as projection
          // change listener and already got notified.
+        RenderTileCache cache = renderTileCache;
+        if (cache != null) {
+            cache.clear();
+        }
+        renderList.clear();
+        simplifiedWays.clear();
     }
 
     @Override
@@ -1272,6 +1348,10 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
 
     @Override
     public void highlightUpdated(HighlightUpdateEvent e) {
+        RenderTileCache cache = renderTileCache;
+        if (cache != null) {
+            cache.highlightUpdated();
+        }
         invalidate();
     }
 
@@ -0,0 +1,81 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openstreetmap.josm.data.imagery.ImageryInfo;
+import org.openstreetmap.josm.data.imagery.ImageryInfo.ImageryType;
+import org.openstreetmap.josm.data.imagery.PMTilesTileLoader;
+import org.openstreetmap.josm.data.imagery.PMTilesTileSource;
+import org.openstreetmap.josm.data.imagery.TileLoaderFactory;
+import org.openstreetmap.josm.gui.layer.imagery.TileSourceDisplaySettings;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Layer displaying the tiles of a local PMTiles archive, e.g. to work offline.
+ * <p>
+ * The tiles are read from the archive directly, without the JCS tile cache.
+ * @since 17261
+ */
+public class PMTilesLayer extends AbstractTileSourceLayer<PMTilesTileSource> {
+    private static final String PREFERENCE_PREFIX = "imagery.pmtiles";
+
+    /**
+     * Registers all setting properties
+     */
+    static {
+        new TileSourceDisplaySettings(PREFERENCE_PREFIX);
+    }
+
+    /**
+     * Creates a layer from an imagery info
+     * @param info imagery info, whose URL is the path of the archive
+     */
+    public PMTilesLayer(ImageryInfo info) {
+        super(info);
+    }
+
+    @Override
+    protected TileSourceDisplaySettings createDisplaySettings() {
+        return new TileSourceDisplaySettings(PREFERENCE_PREFIX);
+    }
+
+    @Override
+    protected TileLoaderFactory getTileLoaderFactory() {
+        return (listener, headers, minimumExpiryTime) -> new PMTilesTileLoader(listener);
+    }
+
+    @Override
+    public Collection<String> getNativeProjections() {
+        return Collections.singletonList("EPSG:3857");
+    }
+
+    @Override
+    protected PMTilesTileSource getTileSource() {
+        if (info.getImageryType() != ImageryType.PMTILES || info.getUrl() == null) {
+            return null;
+        }
+        try {
+            PMTilesTileSource tileSource = new PMTilesTileSource(info);
+            info.setAttribution(tileSource);
+            return tileSource;
+        } catch (IOException e) {
+            Logging.warn(e);
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        super.destroy();
+        if (tileSource != null) {
+            try {
+                tileSource.getArchive().close();
+            } catch (IOException e) {
+                Logging.warn(e);
+            }
+        }
+    }
+}
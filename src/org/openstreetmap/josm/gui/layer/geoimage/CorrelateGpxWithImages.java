@@ -259,6 +259,7 @@ public class CorrelateGpxWithImages extends AbstractAction {
 
     // remember the last number of matched photos
     private int lastNumMatched;
+    private transient GpxImageCorrelation.CorrelationIndex correlationIndex;
 
     /** This class is called when the user doesn't find the GPX file he needs in the files that have
      * been loaded yet. It displays a FileChooser dialog to select the GPX file to be loaded.
@@ -1097,7 +1098,11 @@ public class CorrelateGpxWithImages extends AbstractAction {
                 return tr("No gpx selected");
 
             final long offsetMs = ((long) (timezone.getHours() * TimeUnit.HOURS.toMillis(1))) + delta.getMilliseconds(); // in milliseconds
-            lastNumMatched = GpxImageCorrelation.matchGpxTrack(dateImgLst, selGpx.data, offsetMs, forceTags);
+            // the track points are only prepared again if the track or the correlation settings change
+            if (correlationIndex == null || !correlationIndex.isValidFor(selGpx.data, forceTags)) {
+                correlationIndex = new GpxImageCorrelation.CorrelationIndex(selGpx.data, forceTags);
+            }
+            lastNumMatched = GpxImageCorrelation.matchGpxTrack(dateImgLst, correlationIndex, offsetMs);
 
             return trn("<html>Matched <b>{0}</b> of <b>{1}</b> photo to GPX track.</html>",
                     "<html>Matched <b>{0}</b> of <b>{1}</b> photos to GPX track.</html>",
@@ -16,8 +16,8 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Stroke;
+import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferInt;
 import java.awt.image.Raster;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -25,10 +25,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
-import java.util.Random;
 
 import javax.swing.ImageIcon;
 
@@ -40,6 +38,7 @@ import org.openstreetmap.josm.data.gpx.GpxConstants;
 import org.openstreetmap.josm.data.gpx.GpxData;
 import org.openstreetmap.josm.data.gpx.GpxData.GpxDataChangeEvent;
 import org.openstreetmap.josm.data.gpx.GpxData.GpxDataChangeListener;
+import org.openstreetmap.josm.data.gpx.GpxTrackIndex;
 import org.openstreetmap.josm.data.gpx.Line;
 import org.openstreetmap.josm.data.gpx.WayPoint;
 import org.openstreetmap.josm.data.preferences.NamedColorProperty;
@@ -161,19 +160,14 @@ public class GpxDrawHelper implements SoMChangeListener, MapViewPaintable.LayerP
     // do not draw elements with value lower than this limit
     private int heatMapDrawLowerLimit;
 
-    // normal buffered image and draw object (cached)
-    private BufferedImage heatMapImgGray;
-    private Graphics2D heatMapGraph2d;
+    // density buffers and heat map image (cached)
+    private final GpxHeatMapRenderer heatMapRenderer = new GpxHeatMapRenderer();
 
     // some cached values
     Rectangle heatMapCacheScreenBounds = new Rectangle();
     MapViewState heatMapMapViewState;
     int heatMapCacheLineWith;
 
-    // copied value for line drawing
-    private final List<Integer> heatMapPolyX = new ArrayList<>();
-    private final List<Integer> heatMapPolyY = new ArrayList<>();
-
     // setup color maps used by heat map
     private static final Color[] heatMapLutColorJosmInferno = createColorFromResource("inferno");
     private static final Color[] heatMapLutColorJosmViridis = createColorFromResource("viridis");
@@ -354,7 +348,7 @@ public class GpxDrawHelper implements SoMChangeListener, MapViewPaintable.LayerP
     @Override
     public void paint(MapViewGraphics graphics) {
         Bounds clipBounds = graphics.getClipBounds().getLatLonBoundsBox();
-        List<WayPoint> visibleSegments = listVisibleSegments(clipBounds);
+        List<WayPoint> visibleSegments = listVisibleSegments(clipBounds, graphics.getMapView());
         if (!visibleSegments.isEmpty()) {
             readPreferences();
             drawAll(graphics.getDefaultGraphics(), graphics.getMapView(), visibleSegments, clipBounds);
@@ -364,41 +358,73 @@ public class GpxDrawHelper implements SoMChangeListener, MapViewPaintable.LayerP
         }
     }
 
-    private List<WayPoint> listVisibleSegments(Bounds box) {
-        WayPoint last = null;
-        LinkedList<WayPoint> visibleSegments = new LinkedList<>();
+    private List<WayPoint> listVisibleSegments(Bounds box, MapView mv) {
+        List<WayPoint> visibleSegments = new ArrayList<>();
 
         ensureTrackVisibilityLength();
-        for (Line segment : getLinesIterable(layer.trackVisibility)) {
-
-            for (WayPoint pt : segment) {
-                Bounds b = new Bounds(pt.getCoor());
-                if (pt.drawLine && last != null) {
-                    b.extend(last.getCoor());
+        GpxTrackIndex index = getTrackIndex();
+        if (index == null) {
+            WayPoint last = null;
+            for (Line segment : getLinesIterable(layer.trackVisibility)) {
+                for (WayPoint pt : segment) {
+                    addIfVisible(visibleSegments, box, last, pt);
+                    last = pt;
                 }
-                if (b.intersects(box)) {
-                    if (last != null && (visibleSegments.isEmpty()
-                            || visibleSegments.getLast() != last)) {
-                        if (last.drawLine) {
-                            WayPoint l = new WayPoint(last);
-                            l.drawLine = false;
-                            visibleSegments.add(l);
-                        } else {
-                            visibleSegments.add(last);
-                        }
-                    }
-                    visibleSegments.add(pt);
+            }
+        } else {
+            // only visit the chunks of points intersecting the view, with the points decimated at the view scale.
+            // The view is extended by one pixel, as decimated lines may deviate by half a pixel from the track.
+            double scale = mv.getScale();
+            double margin = box.getWidth() / Math.max(1, mv.getWidth());
+            Bounds area = new Bounds(box.getMinLat() - margin, box.getMinLon() - margin,
+                    box.getMaxLat() + margin, box.getMaxLon() + margin);
+            for (GpxTrackIndex.Chunk chunk : index.search(area, layer.trackVisibility)) {
+                WayPoint last = chunk.isSegmentStart()
+                        ? index.getLastPointBefore(chunk, layer.trackVisibility)
+                        : chunk.getPrevious(scale);
+                for (WayPoint pt : chunk.getPoints(scale)) {
+                    addIfVisible(visibleSegments, area, last, pt);
+                    last = pt;
                 }
-                last = pt;
             }
         }
         return visibleSegments;
     }
 
+    private static void addIfVisible(List<WayPoint> visibleSegments, Bounds box, WayPoint last, WayPoint pt) {
+        Bounds b = new Bounds(pt.getCoor());
+        if (pt.drawLine && last != null) {
+            b.extend(last.getCoor());
+        }
+        if (b.intersects(box)) {
+            if (last != null && (visibleSegments.isEmpty()
+                    || visibleSegments.get(visibleSegments.size() - 1) != last)) {
+                if (last.drawLine) {
+                    WayPoint l = new WayPoint(last);
+                    l.drawLine = false;
+                    visibleSegments.add(l);
+                } else {
+                    visibleSegments.add(last);
+                }
+            }
+            visibleSegments.add(pt);
+        }
+    }
+
     protected Iterable<Line> getLinesIterable(final boolean[] trackVisibility) {
         return data.getLinesIterable(trackVisibility);
     }
 
+    /**
+     * Returns the spatial index of the painted track points.
+     * @return the spatial index of the painted track points, or {@code null} to paint all the lines returned by
+     * {@link #getLinesIterable(boolean[])}
+     * @since 17256
+     */
+    protected GpxTrackIndex getTrackIndex() {
+        return data.getTrackIndex();
+    }
+
     /** ensures the trackVisibility array has the correct length without losing data.
      * TODO: Make this nicer by syncing the trackVisibility automatically.
      * additional entries are initialized to true;
@@ -433,7 +459,7 @@ public class GpxDrawHelper implements SoMChangeListener, MapViewPaintable.LayerP
             calculateColors();
             // update the WaiPoint.drawline attributes
             visibleSegments.clear();
-            visibleSegments.addAll(listVisibleSegments(clipBounds));
+            visibleSegments.addAll(listVisibleSegments(clipBounds, mv));
         }
 
         fixColors(visibleSegments);
@@ -650,6 +676,12 @@ public class GpxDrawHelper implements SoMChangeListener, MapViewPaintable.LayerP
             heatMapMapViewState = null;
         }
 
+        // the decimated points depend on the computed drawLine attributes
+        GpxTrackIndex index = getTrackIndex();
+        if (index != null) {
+            index.clearDecimation();
+        }
+
         computeCacheInSync = true;
     }
 
@@ -1109,83 +1141,21 @@ public class GpxDrawHelper implements SoMChangeListener, MapViewPaintable.LayerP
     }
 
     /**
-     * Draw gray heat map with current Graphics2D setting
-     * @param gB              the common draw object to use
-     * @param mv              the meta data to current displayed area
-     * @param listSegm        segments visible in the current scope of mv
-     * @param foreComp        composite use to draw foreground objects
-     * @param foreStroke      stroke use to draw foreground objects
-     * @param backComp        composite use to draw background objects
-     * @param backStroke      stroke use to draw background objects
-     */
-    private void drawHeatGrayLineMap(Graphics2D gB, MapView mv, List<WayPoint> listSegm,
-                                     Composite foreComp, Stroke foreStroke,
-                                     Composite backComp, Stroke backStroke) {
-
-        // draw foreground
-        boolean drawForeground = foreComp != null && foreStroke != null;
-
-        // set initial values
-        gB.setStroke(backStroke); gB.setComposite(backComp);
-
-        // get last point in list
-        final WayPoint lastPnt = !listSegm.isEmpty() ? listSegm.get(listSegm.size() - 1) : null;
-
-        // for all points, draw single lines by using optimized drawing
-        for (WayPoint trkPnt : listSegm) {
-
-            // get transformed coordinates
-            final Point paintPnt = mv.getPoint(trkPnt);
-
-            // end of line segment or end of list reached
-            if (!trkPnt.drawLine || (lastPnt == trkPnt)) {
-
-                // convert to primitive type
-                final int[] polyXArr = heatMapPolyX.stream().mapToInt(Integer::intValue).toArray();
-                final int[] polyYArr = heatMapPolyY.stream().mapToInt(Integer::intValue).toArray();
-
-                // a.) draw background
-                gB.drawPolyline(polyXArr, polyYArr, polyXArr.length);
-
-                // b.) draw extra foreground
-                if (drawForeground && heatMapDrawExtraLine) {
-
-                    gB.setStroke(foreStroke); gB.setComposite(foreComp);
-                    gB.drawPolyline(polyXArr, polyYArr, polyXArr.length);
-                    gB.setStroke(backStroke); gB.setComposite(backComp);
-                }
-
-                // drop used points
-                heatMapPolyX.clear(); heatMapPolyY.clear();
-            }
-
-            // store only the integer part (make sense because pixel is 1:1 here)
-            heatMapPolyX.add((int) paintPnt.getX());
-            heatMapPolyY.add((int) paintPnt.getY());
-        }
-    }
-
-    /**
-     * Map the gray map to heat map and draw them with current Graphics2D setting
+     * Map the gray map to heat map and draw outlines of the samples with current Graphics2D setting
      * @param g               the common draw object to use
-     * @param imgGray         gray scale input image
+     * @param imgPixels       gray levels of the pixels, row by row
+     * @param maxPixelX       width of the gray map
+     * @param maxPixelY       height of the gray map
      * @param sampleRaster    the line with for drawing
      * @param outlineWidth     line width for outlines
      */
-    private void drawHeatMapGrayMap(Graphics2D g, BufferedImage imgGray, int sampleRaster, int outlineWidth) {
-
-        final int[] imgPixels = ((DataBufferInt) imgGray.getRaster().getDataBuffer()).getData();
+    private void drawHeatMapGrayMapOutlines(Graphics2D g, int[] imgPixels, int maxPixelX, int maxPixelY,
+            int sampleRaster, int outlineWidth) {
 
         // samples offset and bounds are scaled with line width derived from zoom level
         final int offX = Math.max(1, sampleRaster);
         final int offY = Math.max(1, sampleRaster);
 
-        final int maxPixelX = imgGray.getWidth();
-        final int maxPixelY = imgGray.getHeight();
-
-        // always full or outlines at big samples rasters
-        final boolean drawOutlines = (outlineWidth > 0) && ((0 == sampleRaster) || (sampleRaster > 10));
-
         // backup stroke
         final Stroke oldStroke = g.getStroke();
 
@@ -1212,7 +1182,7 @@ public class GpxDrawHelper implements SoMChangeListener, MapViewPaintable.LayerP
 
                 // merge next pixels of window of line
                 for (int k = 0; k < offX && (offset + k) < nextLineOffset; k++) {
-                    thePixelColor += imgPixels[offset+k] & 0xFF;
+                    thePixelColor += imgPixels[offset+k];
                     thePixelCount++;
                 }
 
@@ -1244,11 +1214,7 @@ public class GpxDrawHelper implements SoMChangeListener, MapViewPaintable.LayerP
                         g.setColor(heatMapLutColor[ lastPixelColor ]);
 
                         // box from from last Y pixel to current pixel
-                        if (drawOutlines) {
-                            g.drawRect(lastPixelX, y, offX + x - lastPixelX, offY);
-                        } else {
-                            g.fillRect(lastPixelX, y, offX + x - lastPixelX, offY);
-                        }
+                        g.drawRect(lastPixelX, y, offX + x - lastPixelX, offY);
                     }
 
                     // restart detection
@@ -1279,25 +1245,12 @@ public class GpxDrawHelper implements SoMChangeListener, MapViewPaintable.LayerP
 
         // 1st setup virtual paint area ----------------------------------------
 
-        // new image buffer needed
-        final boolean imageSetup = null == heatMapImgGray || !heatMapCacheScreenBounds.equals(screenBounds);
+        // new density buffers needed
+        final boolean imageSetup = !heatMapCacheScreenBounds.equals(screenBounds);
 
-        // screen bounds changed, need new image buffer ?
+        // screen bounds changed, need new density buffers ?
         if (imageSetup) {
-            // we would use a "pure" grayscale image, but there is not efficient way to map gray scale values to RGB)
-            heatMapImgGray = new BufferedImage(screenBounds.width, screenBounds.height, BufferedImage.TYPE_INT_ARGB);
-            heatMapGraph2d = heatMapImgGray.createGraphics();
-            heatMapGraph2d.setBackground(new Color(0, 0, 0, 255));
-            heatMapGraph2d.setColor(Color.WHITE);
-
-            // fast draw ( maybe help or not )
-            heatMapGraph2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
-            heatMapGraph2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
-            heatMapGraph2d.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_SPEED);
-            heatMapGraph2d.setRenderingHint(RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_DISABLE);
-            heatMapGraph2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
-            heatMapGraph2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
-            heatMapGraph2d.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_SPEED);
+            heatMapRenderer.setSize(screenBounds.width, screenBounds.height);
 
             // cache it
             heatMapCacheScreenBounds = screenBounds;
@@ -1320,30 +1273,28 @@ public class GpxDrawHelper implements SoMChangeListener, MapViewPaintable.LayerP
         float lineAlphaBLine = (float) Utils.clamp((lineAlpha * 1.00) * scaleAlpha, 0.001, 0.90);
         float lineAlphaFLine = (float) Utils.clamp((lineAlpha / 1.50) * scaleAlpha, 0.001, 0.90);
 
-        // 3rd Calculate the heat map data by draw GPX traces with alpha value ----------
+        // 3rd Calculate the heat map densities of the GPX traces ----------
 
-        // recalculation of image needed
+        // recalculation of densities needed (gain and color map changes only map them again)
         final boolean imageRecalc = !mapViewState.equalsInWindow(heatMapMapViewState)
                 || gpxLayerInvalidated
                 || heatMapCacheLineWith != globalLineWidth;
 
-        // need re-generation of gray image ?
+        // need re-generation of densities ?
         if (imageSetup || imageRecalc) {
 
-            // clear background
-            heatMapGraph2d.clearRect(0, 0, heatMapImgGray.getWidth(), heatMapImgGray.getHeight());
+            // project the points once, the stripes are then rasterized in parallel
+            final GpxHeatMapRenderer.ProjectedTracks tracks = new GpxHeatMapRenderer.ProjectedTracks();
+            for (WayPoint trkPnt : visibleSegments) {
+                final Point2D paintPnt = mv.getPoint2D(trkPnt);
+                tracks.add(paintPnt.getX(), paintPnt.getY(), trkPnt.drawLine);
+            }
 
             // point or line blending
             if (heatMapDrawPointMode) {
-                heatMapGraph2d.setComposite(AlphaComposite.SrcOver.derive(lineAlphaBPoint));
-                drawHeatGrayDotMap(heatMapGraph2d, mv, visibleSegments, lineWidthB);
-
+                drawHeatGrayDotMap(mv, tracks, lineWidthB);
             } else {
-                drawHeatGrayLineMap(heatMapGraph2d, mv, visibleSegments,
-                                    lineWidthF > 1 ? AlphaComposite.SrcOver.derive(lineAlphaFLine) : null,
-                                    new BasicStroke(lineWidthF, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND),
-                                    AlphaComposite.SrcOver.derive(lineAlphaBLine),
-                                    new BasicStroke(lineWidthB, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                heatMapRenderer.rasterizeLines(tracks, lineWidthB, heatMapDrawExtraLine && lineWidthF > 1 ? lineWidthF : 0);
             }
 
             // remember draw parameter
@@ -1353,21 +1304,30 @@ public class GpxDrawHelper implements SoMChangeListener, MapViewPaintable.LayerP
         }
 
         // 4th. Draw data on target layer, map data via color lookup table --------------
-        drawHeatMapGrayMap(g, heatMapImgGray, lineWidthB > 2 ? (int) (lineWidthB*1.25f) : 1, lineWidth > 2 ? (lineWidth - 2) : 1);
+        final float backAlpha = heatMapDrawPointMode ? lineAlphaBPoint : lineAlphaBLine;
+        final int sampleRaster = lineWidthB > 2 ? (int) (lineWidthB*1.25f) : 1;
+        final int outlineWidth = lineWidth > 2 ? (lineWidth - 2) : 1;
+
+        // outlines at big samples rasters
+        if (sampleRaster > 10) {
+            drawHeatMapGrayMapOutlines(g, heatMapRenderer.getGray(backAlpha, lineAlphaFLine),
+                    heatMapRenderer.getWidth(), heatMapRenderer.getHeight(), sampleRaster, outlineWidth);
+        } else {
+            g.drawImage(heatMapRenderer.getImage(backAlpha, lineAlphaFLine, heatMapLutColor, sampleRaster), 0, 0, null);
+        }
     }
 
     /**
      * Draw a dotted heat map
      *
-     * @param gB              the common draw object to use
      * @param mv              the meta data to current displayed area
-     * @param listSegm        segments visible in the current scope of mv
+     * @param tracks          projected segments visible in the current scope of mv
      * @param drawSize        draw size of draw element
      */
-    private static void drawHeatGrayDotMap(Graphics2D gB, MapView mv, List<WayPoint> listSegm, int drawSize) {
+    private void drawHeatGrayDotMap(MapView mv, GpxHeatMapRenderer.ProjectedTracks tracks, int drawSize) {
 
         // typical rendering rate -> use realtime preview instead of accurate display
-        final double maxSegm = 25_000, nrSegms = listSegm.size();
+        final double maxSegm = 25_000, nrSegms = tracks.size();
 
         // determine random drop rate
         final double randomDrop = Math.min(nrSegms > maxSegm ? (nrSegms - maxSegm) / nrSegms : 0, 0.70f);
@@ -1379,81 +1339,7 @@ public class GpxDrawHelper implements SoMChangeListener, MapViewPaintable.LayerP
         final double pixelRmsX = (100 / mv.getDist100Pixel()) * 2.168;
         final double pixelRmsY = (100 / mv.getDist100Pixel()) * 4.218;
 
-        Point lastPnt = null;
-
-        // for all points, draw single lines
-        for (WayPoint trkPnt : listSegm) {
-
-            // get transformed coordinates
-            final Point paintPnt = mv.getPoint(trkPnt);
-
-            // end of line segment or end of list reached
-            if (trkPnt.drawLine && null != lastPnt) {
-                drawHeatSurfaceLine(gB, paintPnt, lastPnt, drawSize, pixelRmsX, pixelRmsY, randomDrop);
-            }
-
-            // remember
-            lastPnt = paintPnt;
-        }
-    }
-
-    /**
-     * Draw a dotted surface line
-     *
-     * @param g                 the common draw object to use
-     * @param fromPnt           start point
-     * @param toPnt             end point
-     * @param drawSize          size of draw elements
-     * @param rmsSizeX          RMS size of circle for X (width)
-     * @param rmsSizeY          RMS size of circle for Y (height)
-     * @param dropRate          Pixel render drop rate
-     */
-    private static void drawHeatSurfaceLine(Graphics2D g,
-            Point fromPnt, Point toPnt, int drawSize, double rmsSizeX, double rmsSizeY, double dropRate) {
-
-        // collect frequently used items
-        final long fromX = (long) fromPnt.getX(); final long deltaX = (long) (toPnt.getX() - fromX);
-        final long fromY = (long) fromPnt.getY(); final long deltaY = (long) (toPnt.getY() - fromY);
-
-        // use same random values for each point
-        final Random heatMapRandom = new Random(fromX+fromY+deltaX+deltaY);
-
-        // cache distance between start and end point
-        final int dist = (int) Math.abs(fromPnt.distance(toPnt));
-
-        // number of increment ( fill wide distance tracks )
-        double scaleStep = Math.max(1.0f / dist, dist > 100 ? 0.10f : 0.20f);
-
-        // number of additional random points
-        int rounds = Math.min(drawSize/2, 1)+1;
-
-        // decrease random noise at high drop rate ( more accurate draw of fewer points )
-        rmsSizeX *= (1.0d - dropRate);
-        rmsSizeY *= (1.0d - dropRate);
-
-        double scaleVal = 0;
-
-        // interpolate line draw ( needs separate point instead of line )
-        while (scaleVal < (1.0d-0.0001d)) {
-
-            // get position
-            final double pntX = fromX + scaleVal * deltaX;
-            final double pntY = fromY + scaleVal * deltaY;
-
-            // add random distribution around sampled point
-            for (int k = 0; k < rounds; k++) {
-
-                // add error distribution, first point with less error
-                int x = (int) (pntX + heatMapRandom.nextGaussian() * (k > 0 ? rmsSizeX : rmsSizeX/4));
-                int y = (int) (pntY + heatMapRandom.nextGaussian() * (k > 0 ? rmsSizeY : rmsSizeY/4));
-
-                // draw it, even drop is requested
-                if (heatMapRandom.nextDouble() >= dropRate) {
-                    g.fillRect(x-drawSize, y-drawSize, drawSize, drawSize);
-                }
-            }
-            scaleVal += scaleStep;
-        }
+        heatMapRenderer.rasterizeDots(tracks, drawSize, pixelRmsX, pixelRmsY, randomDrop);
     }
 
     /**
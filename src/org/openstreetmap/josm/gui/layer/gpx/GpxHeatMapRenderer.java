@@ -0,0 +1,531 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.gpx;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Rasterizes the tracks of a heat map into density buffers, and maps the densities to colors.
+ * <p>
+ * Each pixel of the density buffers counts the lines (or dots) covering it. The view is divided into horizontal
+ * stripes which are rasterized in parallel, each task only writing the rows of its stripe. The densities do not depend
+ * on the gain nor on the color map, so changing them only maps the densities again.
+ * <p>
+ * The densities are converted to gray levels as if the lines were painted on a black image with white and the given
+ * alpha, then the gray levels are mapped to colors in a single pass, producing an image to paint on the map view.
+ * <p>
+ * This class is not thread safe, it is meant to be used by the painting thread of one layer.
+ * @since 17258
+ */
+public class GpxHeatMapRenderer {
+
+    /** The pool rasterizing the stripes */
+    static final ForkJoinPool THREAD_POOL = newForkJoinPool();
+
+    /** The minimum height of a stripe, in pixels */
+    private static final int MIN_STRIPE_HEIGHT = 16;
+
+    /** Densities making the color nearly opaque are not distinguished */
+    private static final double MIN_TRANSMISSION = 1.0 / 1024;
+
+    private int width;
+    private int height;
+    private int[] backCounts = new int[0];
+    private int[] foreCounts = new int[0];
+    /** The last polyline covering each pixel, so that each polyline counts once per pixel */
+    private int[] stamps = new int[0];
+    private int densityVersion;
+
+    private int[] gray;
+    private float grayBackAlpha;
+    private float grayForeAlpha;
+    private int grayVersion = -1;
+
+    private BufferedImage image;
+    private Color[] imageColors;
+    private int[] imageLut;
+    private float imageBackAlpha;
+    private float imageForeAlpha;
+    private int imageSampleRaster;
+    private int imageVersion = -1;
+
+    private static ForkJoinPool newForkJoinPool() {
+        try {
+            return Utils.newForkJoinPool("gpx.heatmap.numberOfThreads", "gpx-heatmap-%d", Thread.NORM_PRIORITY);
+        } catch (SecurityException e) {
+            Logging.log(Logging.LEVEL_ERROR, "Unable to create new ForkJoinPool", e);
+            return null;
+        }
+    }
+
+    /**
+     * The track points projected to the map view, as polylines.
+     */
+    public static final class ProjectedTracks {
+        private float[] x = new float[1024];
+        private float[] y = new float[1024];
+        private int size;
+        private int[] starts = new int[16];
+        private int polylines;
+
+        /**
+         * Adds a point.
+         * @param px the x coordinate, in pixels
+         * @param py the y coordinate, in pixels
+         * @param connect {@code true} to connect the point to the previous one, {@code false} to start a new polyline
+         */
+        public void add(double px, double py, boolean connect) {
+            if (!connect || size == 0) {
+                if (polylines == starts.length) {
+                    starts = Arrays.copyOf(starts, polylines * 2);
+                }
+                starts[polylines++] = size;
+            }
+            if (size == x.length) {
+                x = Arrays.copyOf(x, size * 2);
+                y = Arrays.copyOf(y, size * 2);
+            }
+            x[size] = (float) px;
+            y[size] = (float) py;
+            size++;
+        }
+
+        /**
+         * Returns the number of points.
+         * @return the number of points
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the number of polylines.
+         * @return the number of polylines
+         */
+        public int getPolylineCount() {
+            return polylines;
+        }
+
+        int getStart(int polyline) {
+            return starts[polyline];
+        }
+
+        int getEnd(int polyline) {
+            return polyline + 1 < polylines ? starts[polyline + 1] : size;
+        }
+    }
+
+    /**
+     * Processes the rows of a stripe.
+     */
+    @FunctionalInterface
+    private interface StripeProcessor {
+        void process(int fromRow, int toRow);
+    }
+
+    private static final class StripeWorker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final transient StripeProcessor processor;
+        private final int fromRow;
+        private final int toRow;
+        private final int stripeHeight;
+
+        StripeWorker(StripeProcessor processor, int fromRow, int toRow, int stripeHeight) {
+            this.processor = processor;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.stripeHeight = stripeHeight;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= stripeHeight) {
+                processor.process(fromRow, toRow);
+            } else {
+                // split at a stripe boundary
+                int stripes = (toRow - fromRow + stripeHeight - 1) / stripeHeight;
+                int middle = fromRow + stripes / 2 * stripeHeight;
+                invokeAll(new StripeWorker(processor, fromRow, middle, stripeHeight),
+                          new StripeWorker(processor, middle, toRow, stripeHeight));
+            }
+        }
+    }
+
+    /**
+     * The horizontal span of a shape on a row.
+     */
+    private static final class Span {
+        private double min;
+        private double max;
+
+        void reset() {
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+        }
+
+        void add(double x) {
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+        }
+
+        void addDisc(double cx, double cy, double r, double row) {
+            double dy = row - cy;
+            if (dy * dy <= r * r) {
+                double half = Math.sqrt(r * r - dy * dy);
+                add(cx - half);
+                add(cx + half);
+            }
+        }
+
+        void addEdge(double x1, double y1, double x2, double y2, double row) {
+            if ((y1 - row) * (y2 - row) <= 0) {
+                if (y1 == y2) {
+                    add(x1);
+                    add(x2);
+                } else {
+                    add(x1 + (row - y1) * (x2 - x1) / (y2 - y1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the width of the density buffers.
+     * @return the width, in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the density buffers.
+     * @return the height, in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sets the size of the density buffers, i.e. of the map view.
+     * @param width the width, in pixels
+     * @param height the height, in pixels
+     */
+    public void setSize(int width, int height) {
+        if (width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            backCounts = new int[width * height];
+            foreCounts = new int[width * height];
+            stamps = new int[width * height];
+            gray = null;
+            image = null;
+            densityVersion++;
+        }
+    }
+
+    int getBackCount(int x, int y) {
+        return backCounts[y * width + x];
+    }
+
+    int getForeCount(int x, int y) {
+        return foreCounts[y * width + x];
+    }
+
+    private void forEachStripe(int alignment, StripeProcessor processor) {
+        if (height == 0) {
+            return;
+        }
+        if (THREAD_POOL == null) {
+            processor.process(0, height);
+            return;
+        }
+        int stripeHeight = Math.max(MIN_STRIPE_HEIGHT, height / (THREAD_POOL.getParallelism() * 4));
+        stripeHeight = (stripeHeight + alignment - 1) / alignment * alignment;
+        THREAD_POOL.invoke(new StripeWorker(processor, 0, height, stripeHeight));
+    }
+
+    /**
+     * Rasterizes the tracks as lines with round caps and joins.
+     * @param tracks the tracks
+     * @param backWidth the width of the background lines, in pixels
+     * @param foreWidth the width of the foreground lines, in pixels, or 0 for no foreground lines
+     */
+    public void rasterizeLines(ProjectedTracks tracks, float backWidth, float foreWidth) {
+        int polylines = tracks.getPolylineCount();
+        forEachStripe(1, (fromRow, toRow) -> {
+            clearRows(fromRow, toRow);
+            Span span = new Span();
+            rasterizeLines(tracks, backWidth / 2, backCounts, 0, fromRow, toRow, span);
+            if (foreWidth > 0) {
+                rasterizeLines(tracks, foreWidth / 2, foreCounts, polylines, fromRow, toRow, span);
+            }
+        });
+        densityVersion++;
+    }
+
+    private void clearRows(int fromRow, int toRow) {
+        Arrays.fill(backCounts, fromRow * width, toRow * width, 0);
+        Arrays.fill(foreCounts, fromRow * width, toRow * width, 0);
+        Arrays.fill(stamps, fromRow * width, toRow * width, 0);
+    }
+
+    private void rasterizeLines(ProjectedTracks tracks, double r, int[] counts, int stampOffset,
+            int fromRow, int toRow, Span span) {
+        for (int p = 0; p < tracks.getPolylineCount(); p++) {
+            int stamp = stampOffset + p + 1;
+            int end = tracks.getEnd(p);
+            for (int i = tracks.getStart(p) + 1; i < end; i++) {
+                rasterizeSegment(tracks.x[i - 1], tracks.y[i - 1], tracks.x[i], tracks.y[i], r, counts, stamp,
+                        fromRow, toRow, span);
+            }
+        }
+    }
+
+    /**
+     * Rasterizes a line segment with round caps, i.e. all pixels whose center is closer than {@code r} to the segment.
+     */
+    private void rasterizeSegment(double ax, double ay, double bx, double by, double r, int[] counts, int stamp,
+            int fromRow, int toRow, Span span) {
+        int firstRow = Math.max(fromRow, (int) Math.ceil(Math.min(ay, by) - r - 0.5));
+        int lastRow = Math.min(toRow - 1, (int) Math.floor(Math.max(ay, by) + r - 0.5));
+        if (firstRow > lastRow || Math.max(ax, bx) + r < 0 || Math.min(ax, bx) - r > width) {
+            return;
+        }
+        double length = Math.hypot(bx - ax, by - ay);
+        double nx = length > 0 ? -(by - ay) / length * r : 0;
+        double ny = length > 0 ? (bx - ax) / length * r : 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            double center = row + 0.5;
+            span.reset();
+            span.addDisc(ax, ay, r, center);
+            span.addDisc(bx, by, r, center);
+            if (length > 0) {
+                // the rectangle around the segment, the shape being convex its span is the union of the spans
+                span.addEdge(ax + nx, ay + ny, bx + nx, by + ny, center);
+                span.addEdge(bx + nx, by + ny, bx - nx, by - ny, center);
+                span.addEdge(bx - nx, by - ny, ax - nx, ay - ny, center);
+                span.addEdge(ax - nx, ay - ny, ax + nx, ay + ny, center);
+            }
+            if (span.min > span.max) {
+                continue;
+            }
+            int firstColumn = Math.max(0, (int) Math.ceil(span.min - 0.5));
+            int lastColumn = Math.min(width - 1, (int) Math.floor(span.max - 0.5));
+            int offset = row * width;
+            for (int i = offset + firstColumn; i <= offset + lastColumn; i++) {
+                if (stamps[i] != stamp) {
+                    stamps[i] = stamp;
+                    counts[i]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Rasterizes the tracks as squares randomly distributed around the lines, according to the typical GPS accuracy.
+     * @param tracks the tracks
+     * @param drawSize the size of the squares, in pixels
+     * @param rmsSizeX RMS distance of the squares to the lines in x direction, in pixels
+     * @param rmsSizeY RMS distance of the squares to the lines in y direction, in pixels
+     * @param dropRate the rate of dropped squares, to limit the rendering time of many points
+     */
+    public void rasterizeDots(ProjectedTracks tracks, int drawSize, double rmsSizeX, double rmsSizeY, double dropRate) {
+        // the random squares are generated once, then each stripe adds those intersecting it
+        int[] dots = new int[1024];
+        int count = 0;
+        for (int p = 0; p < tracks.getPolylineCount(); p++) {
+            int end = tracks.getEnd(p);
+            for (int i = tracks.getStart(p) + 1; i < end; i++) {
+                int[] line = createSurfaceLine((int) tracks.x[i], (int) tracks.y[i], (int) tracks.x[i - 1],
+                        (int) tracks.y[i - 1], drawSize, rmsSizeX, rmsSizeY, dropRate);
+                if (count + line.length > dots.length) {
+                    dots = Arrays.copyOf(dots, Math.max(dots.length * 2, count + line.length));
+                }
+                System.arraycopy(line, 0, dots, count, line.length);
+                count += line.length;
+            }
+        }
+        final int[] squares = dots;
+        final int length = count;
+        forEachStripe(1, (fromRow, toRow) -> {
+            clearRows(fromRow, toRow);
+            for (int i = 0; i < length; i += 2) {
+                int x = squares[i] - drawSize;
+                int y = squares[i + 1] - drawSize;
+                int firstRow = Math.max(fromRow, y);
+                int lastRow = Math.min(toRow, y + drawSize);
+                int firstColumn = Math.max(0, x);
+                int lastColumn = Math.min(width, x + drawSize);
+                for (int row = firstRow; row < lastRow; row++) {
+                    int offset = row * width;
+                    for (int column = firstColumn; column < lastColumn; column++) {
+                        backCounts[offset + column]++;
+                    }
+                }
+            }
+        });
+        densityVersion++;
+    }
+
+    /**
+     * Creates the squares of a dotted surface line.
+     * @return the coordinates of the squares, as x, y pairs
+     */
+    private static int[] createSurfaceLine(int fromX, int fromY, int toX, int toY, int drawSize,
+            double rmsSizeX, double rmsSizeY, double dropRate) {
+
+        final long deltaX = (long) toX - fromX;
+        final long deltaY = (long) toY - fromY;
+
+        // use same random values for each point
+        final Random random = new Random(fromX + fromY + deltaX + deltaY);
+
+        // number of increment ( fill wide distance tracks )
+        final int dist = (int) Math.hypot(deltaX, deltaY);
+        final double scaleStep = Math.max(1.0f / dist, dist > 100 ? 0.10f : 0.20f);
+
+        // number of additional random points
+        final int rounds = Math.min(drawSize/2, 1)+1;
+
+        // decrease random noise at high drop rate ( more accurate draw of fewer points )
+        final double rmsX = rmsSizeX * (1.0d - dropRate);
+        final double rmsY = rmsSizeY * (1.0d - dropRate);
+
+        int[] result = new int[2 * rounds * ((int) Math.ceil(1 / scaleStep) + 1)];
+        int count = 0;
+
+        // interpolate line draw ( needs separate point instead of line )
+        for (double scaleVal = 0; scaleVal < (1.0d-0.0001d) && count < result.length; scaleVal += scaleStep) {
+
+            final double pntX = fromX + scaleVal * deltaX;
+            final double pntY = fromY + scaleVal * deltaY;
+
+            // add random distribution around sampled point, first point with less error
+            for (int k = 0; k < rounds; k++) {
+                int x = (int) (pntX + random.nextGaussian() * (k > 0 ? rmsX : rmsX/4));
+                int y = (int) (pntY + random.nextGaussian() * (k > 0 ? rmsY : rmsY/4));
+                if (random.nextDouble() >= dropRate) {
+                    result[count++] = x;
+                    result[count++] = y;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the transmission table of an alpha value, i.e. the part of the background remaining visible after
+     * painting n times with this alpha value.
+     * @param alpha the alpha value
+     * @return the transmission by number of paintings. The last value is used for all larger numbers
+     */
+    static float[] createTransmissionTable(float alpha) {
+        double transmission = 1.0 - Utils.clamp(alpha, 0.001, 0.999);
+        int size = (int) Math.ceil(Math.log(MIN_TRANSMISSION) / Math.log(transmission)) + 1;
+        float[] table = new float[size];
+        double t = 1.0;
+        for (int i = 0; i < size; i++) {
+            table[i] = (float) t;
+            t *= transmission;
+        }
+        return table;
+    }
+
+    private static int toGray(int backCount, int foreCount, float[] backTable, float[] foreTable) {
+        float t = backTable[Math.min(backCount, backTable.length - 1)]
+                * foreTable[Math.min(foreCount, foreTable.length - 1)];
+        return (int) (255 * (1 - t) + 0.5f);
+    }
+
+    /**
+     * Returns the gray levels of the pixels, i.e. the densities converted as if the lines were painted on a black
+     * image in white with the given alpha values.
+     * @param backAlpha the alpha value of the background lines or of the dots
+     * @param foreAlpha the alpha value of the foreground lines
+     * @return the gray levels, from 0 to 255, row by row
+     */
+    public int[] getGray(float backAlpha, float foreAlpha) {
+        if (gray == null || grayVersion != densityVersion || grayBackAlpha != backAlpha || grayForeAlpha != foreAlpha) {
+            if (gray == null) {
+                gray = new int[width * height];
+            }
+            float[] backTable = createTransmissionTable(backAlpha);
+            float[] foreTable = createTransmissionTable(foreAlpha);
+            forEachStripe(1, (fromRow, toRow) -> {
+                for (int i = fromRow * width; i < toRow * width; i++) {
+                    gray[i] = toGray(backCounts[i], foreCounts[i], backTable, foreTable);
+                }
+            });
+            grayVersion = densityVersion;
+            grayBackAlpha = backAlpha;
+            grayForeAlpha = foreAlpha;
+        }
+        return gray;
+    }
+
+    /**
+     * Returns the heat map image. The gray levels are averaged over the first row of square blocks, which are painted
+     * with the color of their mean gray level.
+     * @param backAlpha the alpha value of the background lines or of the dots
+     * @param foreAlpha the alpha value of the foreground lines
+     * @param colors the colors of the gray levels, from 0 to 255
+     * @param sampleRaster the size of the blocks, in pixels
+     * @return the heat map image, of the size of the density buffers. It is reused by the next calls
+     */
+    public BufferedImage getImage(float backAlpha, float foreAlpha, Color[] colors, int sampleRaster) {
+        if (width == 0 || height == 0) {
+            return null;
+        }
+        final int block = Math.max(1, sampleRaster);
+        if (image != null && imageVersion == densityVersion && imageColors == colors && imageSampleRaster == block
+                && imageBackAlpha == backAlpha && imageForeAlpha == foreAlpha) {
+            return image;
+        }
+        if (image == null) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        if (imageColors != colors) {
+            imageLut = new int[colors.length];
+            for (int i = 1; i < colors.length; i++) {
+                imageLut[i] = colors[i].getRGB();
+            }
+            imageColors = colors;
+        }
+        final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        final int[] lut = imageLut;
+        final float[] backTable = createTransmissionTable(backAlpha);
+        final float[] foreTable = createTransmissionTable(foreAlpha);
+        forEachStripe(block, (fromRow, toRow) -> {
+            for (int y = fromRow; y < toRow; y += block) {
+                int lastRow = Math.min(toRow, y + block);
+                int offset = y * width;
+                for (int x = 0; x < width; x += block) {
+                    int lastColumn = Math.min(width, x + block);
+                    // mean gray level of the first row of the block
+                    int sum = 0;
+                    for (int i = offset + x; i < offset + lastColumn; i++) {
+                        sum += toGray(backCounts[i], foreCounts[i], backTable, foreTable);
+                    }
+                    int level = Math.min(lut.length - 1, sum / (lastColumn - x));
+                    int color = lut[level];
+                    for (int row = y; row < lastRow; row++) {
+                        Arrays.fill(pixels, row * width + x, row * width + lastColumn, color);
+                    }
+                }
+            }
+        });
+        imageVersion = densityVersion;
+        imageBackAlpha = backAlpha;
+        imageForeAlpha = foreAlpha;
+        imageSampleRaster = block;
+        return image;
+    }
+}
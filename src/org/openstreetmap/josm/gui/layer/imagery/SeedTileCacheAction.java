@@ -0,0 +1,309 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.imagery;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+import static org.openstreetmap.josm.tools.I18n.trn;
+
+import java.awt.GridBagLayout;
+import java.awt.event.ActionEvent;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.swing.AbstractAction;
+import javax.swing.ButtonGroup;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JRadioButton;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.imagery.TileSeeder;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.ExtendedDialog;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.PleaseWaitRunnable;
+import org.openstreetmap.josm.gui.layer.AbstractCachedTileSourceLayer;
+import org.openstreetmap.josm.gui.layer.AbstractTileSourceLayer;
+import org.openstreetmap.josm.gui.layer.TMSLayer;
+import org.openstreetmap.josm.gui.progress.ProgressTaskId;
+import org.openstreetmap.josm.gui.progress.ProgressTaskIds;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.GBC;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Download the tiles of an area and of a range of zoom levels into the tile cache, e.g. before working offline.
+ * <p>
+ * The area is the map view or the selected closed ways. Unfinished seedings are kept in the preferences, so that they
+ * can be resumed after a restart.
+ * @since 17264
+ */
+public class SeedTileCacheAction extends AbstractAction {
+
+    /** Preference key of the unfinished seedings, one per imagery URL */
+    private static final String UNFINISHED_KEY = "imagery.seed.unfinished";
+
+    private final AbstractTileSourceLayer<?> layer;
+
+    /**
+     * Constructs a new {@code SeedTileCacheAction}.
+     * @param layer imagery layer
+     */
+    public SeedTileCacheAction(AbstractTileSourceLayer<?> layer) {
+        super(tr("Seed tile cache..."));
+        this.layer = layer;
+        // only the layers with a disk cache can be seeded
+        setEnabled(layer instanceof AbstractCachedTileSourceLayer);
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent ae) {
+        String url = layer.getInfo().getUrl();
+        Map<String, String> unfinished = getUnfinished(url);
+        List<List<double[]>> selection = getSelectedAreas();
+
+        JPanel p = new JPanel(new GridBagLayout());
+        ButtonGroup group = new ButtonGroup();
+        JRadioButton rView = new JRadioButton(tr("Map view"), true);
+        JRadioButton rSelection = new JRadioButton(trn("Selected closed way", "{0} selected closed ways",
+                selection.size(), selection.size()));
+        rSelection.setEnabled(!selection.isEmpty());
+        JRadioButton rResume = new JRadioButton();
+        group.add(rView);
+        group.add(rSelection);
+        group.add(rResume);
+        p.add(new JLabel(tr("Area:")), GBC.eol());
+        p.add(rView, GBC.eol().insets(10, 0, 0, 0));
+        p.add(rSelection, GBC.eol().insets(10, 0, 0, 0));
+        if (unfinished != null) {
+            rResume.setText(tr("Resume the unfinished seeding of zoom levels {0} to {1}",
+                    unfinished.get("min_zoom"), unfinished.get("max_zoom")));
+            rResume.setSelected(true);
+            p.add(rResume, GBC.eol().insets(10, 0, 0, 0));
+        }
+
+        int zoom = layer.getZoomLevel();
+        JSpinner minZoom = new JSpinner(new SpinnerNumberModel(zoom, TMSLayer.MIN_ZOOM, TMSLayer.MAX_ZOOM, 1));
+        JSpinner maxZoom = new JSpinner(new SpinnerNumberModel(Math.min(zoom + 2, TMSLayer.MAX_ZOOM),
+                TMSLayer.MIN_ZOOM, TMSLayer.MAX_ZOOM, 1));
+        JSpinner threads = new JSpinner(new SpinnerNumberModel(Math.max(1, TileSeeder.THREADS.get()), 1, 32, 1));
+        JSpinner rateLimit = new JSpinner(new SpinnerNumberModel(
+                Math.max(0, TileSeeder.RATE_LIMIT.get().doubleValue()), 0, 1000, 0.5));
+        p.add(new JLabel(tr("Min. zoom level: ")), GBC.std());
+        p.add(minZoom, GBC.eol());
+        p.add(new JLabel(tr("Max. zoom level: ")), GBC.std());
+        p.add(maxZoom, GBC.eol());
+        p.add(new JLabel(tr("Concurrent downloads: ")), GBC.std());
+        p.add(threads, GBC.eol());
+        p.add(new JLabel(tr("Requests per second per host (0 for no limit): ")), GBC.std());
+        p.add(rateLimit, GBC.eol());
+        p.add(new JLabel(tr("Make sure that the terms of use of the imagery allow bulk downloading.")),
+                GBC.eol().insets(0, 10, 0, 0));
+
+        ExtendedDialog ed = new ExtendedDialog(MainApplication.getMainFrame(), tr("Seed tile cache"), tr("Download"), tr("Cancel"))
+                .setButtonIcons("download", "cancel").setContent(p);
+        if (ed.showDialog().getValue() != 1) {
+            return;
+        }
+
+        TileSeeder.THREADS.put((Integer) threads.getValue());
+        TileSeeder.RATE_LIMIT.put(((Number) rateLimit.getValue()).doubleValue());
+        Map<String, String> state;
+        if (rResume.isSelected()) {
+            state = unfinished;
+        } else {
+            state = new HashMap<>();
+            state.put("url", url);
+            state.put("area", encodeAreas(rSelection.isSelected() ? selection : Collections.singletonList(getViewArea())));
+            int min = (Integer) minZoom.getValue();
+            int max = (Integer) maxZoom.getValue();
+            state.put("min_zoom", Integer.toString(Math.min(min, max)));
+            state.put("max_zoom", Integer.toString(Math.max(min, max)));
+            state.put("position", "0");
+        }
+        TileSeeder seeder = layer.createTileSeeder(toShape(decodeAreas(state.get("area"))),
+                Integer.parseInt(state.get("min_zoom")), Integer.parseInt(state.get("max_zoom")), TileSeeder.THREADS.get());
+        seeder.setRateLimit(TileSeeder.RATE_LIMIT.get());
+        MainApplication.worker.execute(new SeedTask(layer, seeder, state));
+    }
+
+    private static List<double[]> getViewArea() {
+        Bounds b = MainApplication.getMap().mapView.getRealBounds();
+        List<double[]> ring = new ArrayList<>();
+        ring.add(new double[] {b.getMinLat(), b.getMinLon()});
+        ring.add(new double[] {b.getMinLat(), b.getMaxLon()});
+        ring.add(new double[] {b.getMaxLat(), b.getMaxLon()});
+        ring.add(new double[] {b.getMaxLat(), b.getMinLon()});
+        return ring;
+    }
+
+    private static List<List<double[]>> getSelectedAreas() {
+        DataSet ds = MainApplication.getLayerManager().getActiveDataSet();
+        if (ds == null) {
+            return Collections.emptyList();
+        }
+        return ds.getSelectedWays().stream()
+                .filter(w -> w.isClosed() && w.isUsable() && w.getNodes().stream().allMatch(Node::isLatLonKnown))
+                .map(SeedTileCacheAction::getRing)
+                .collect(Collectors.toList());
+    }
+
+    private static List<double[]> getRing(Way w) {
+        return w.getNodes().stream().map(n -> new double[] {n.lat(), n.lon()}).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the shape of areas, in degrees of longitude (x) and latitude (y).
+     * @param areas the outer rings of the areas, as lists of latitude and longitude pairs
+     * @return the shape of the areas
+     */
+    static Path2D toShape(List<List<double[]>> areas) {
+        Path2D path = new Path2D.Double();
+        for (List<double[]> ring : areas) {
+            for (int i = 0; i < ring.size(); i++) {
+                if (i == 0) {
+                    path.moveTo(ring.get(i)[1], ring.get(i)[0]);
+                } else {
+                    path.lineTo(ring.get(i)[1], ring.get(i)[0]);
+                }
+            }
+            path.closePath();
+        }
+        return path;
+    }
+
+    /**
+     * Encodes areas as string, to be kept in the preferences.
+     * @param areas the outer rings of the areas, as lists of latitude and longitude pairs
+     * @return the areas, as {@code lat lon,lat lon,...} rings separated by {@code ;}
+     */
+    static String encodeAreas(List<List<double[]>> areas) {
+        return areas.stream()
+                .map(ring -> ring.stream().map(ll -> String.format(Locale.ROOT, "%.7f %.7f", ll[0], ll[1]))
+                        .collect(Collectors.joining(",")))
+                .collect(Collectors.joining(";"));
+    }
+
+    /**
+     * Decodes areas encoded by {@link #encodeAreas}.
+     * @param areas the encoded areas
+     * @return the outer rings of the areas, as lists of latitude and longitude pairs
+     */
+    static List<List<double[]>> decodeAreas(String areas) {
+        List<List<double[]>> result = new ArrayList<>();
+        for (String ring : areas.split(";", -1)) {
+            List<double[]> points = new ArrayList<>();
+            for (String point : ring.split(",", -1)) {
+                String[] ll = point.trim().split(" ", -1);
+                points.add(new double[] {Double.parseDouble(ll[0]), Double.parseDouble(ll[1])});
+            }
+            result.add(points);
+        }
+        return result;
+    }
+
+    private static Map<String, String> getUnfinished(String url) {
+        return Config.getPref().getListOfMaps(UNFINISHED_KEY).stream()
+                .filter(m -> Objects.equals(url, m.get("url")))
+                .findFirst().orElse(null);
+    }
+
+    private static synchronized void putUnfinished(String url, Map<String, String> state) {
+        List<Map<String, String>> unfinished = Config.getPref().getListOfMaps(UNFINISHED_KEY).stream()
+                .filter(m -> !Objects.equals(url, m.get("url")))
+                .collect(Collectors.toList());
+        if (state != null) {
+            unfinished.add(state);
+        }
+        Config.getPref().putListOfMaps(UNFINISHED_KEY, unfinished);
+    }
+
+    static class SeedTask extends PleaseWaitRunnable {
+
+        /** Minimum interval between two saves of the position of the seeding, in nanoseconds */
+        private static final long SAVE_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+
+        private final AbstractTileSourceLayer<?> layer;
+        private final TileSeeder seeder;
+        private final Map<String, String> state;
+        private long lastSave;
+
+        SeedTask(AbstractTileSourceLayer<?> layer, TileSeeder seeder, Map<String, String> state) {
+            super(tr("Seeding tile cache"));
+            this.layer = layer;
+            this.seeder = seeder;
+            this.state = new HashMap<>(state);
+        }
+
+        @Override
+        protected void realRun() {
+            String url = state.get("url");
+            long maxTiles = TileSeeder.MAX_TILES.get();
+            long count = seeder.getMaxTileCount();
+            if (count > maxTiles) {
+                layer.finishTileSeeder(seeder);
+                GuiHelper.runInEDT(() -> JOptionPane.showMessageDialog(MainApplication.getMainFrame(),
+                        tr("The area contains up to {0} tiles, more than the {1} tiles that may be seeded at once.", count, maxTiles),
+                        tr("Seed tile cache"), JOptionPane.WARNING_MESSAGE));
+                return;
+            }
+            long start = Long.parseLong(state.getOrDefault("position", "0"));
+            // remembered first, and then at regular intervals, so that the seeding may be resumed if JOSM is closed
+            // or killed meanwhile
+            putUnfinished(url, state);
+            lastSave = System.nanoTime();
+            seeder.setPositionListener(position -> {
+                if (System.nanoTime() - lastSave > SAVE_INTERVAL) {
+                    lastSave = System.nanoTime();
+                    state.put("position", Long.toString(position));
+                    putUnfinished(url, state);
+                }
+            });
+            try {
+                seeder.run(progressMonitor, start);
+            } catch (InterruptedException e) {
+                Logging.warn("InterruptedException in " + getClass().getSimpleName() + " while seeding tile cache");
+                Thread.currentThread().interrupt();
+            } finally {
+                layer.finishTileSeeder(seeder);
+            }
+            long position = seeder.getPosition();
+            if (position >= seeder.getTileCount()) {
+                putUnfinished(url, null);
+            } else {
+                state.put("position", Long.toString(position));
+                putUnfinished(url, state);
+            }
+            Logging.info(tr("Seeded {0} tiles of {1}: {2} downloaded, {3} already cached, {4} failed",
+                    position, layer.getName(), seeder.getDownloadedCount(), seeder.getSkippedCount(), seeder.getFailedCount()));
+        }
+
+        @Override
+        protected void finish() {
+            // Do nothing
+        }
+
+        @Override
+        protected void cancel() {
+            seeder.cancel();
+        }
+
+        @Override
+        public ProgressTaskId canRunInBackground() {
+            return ProgressTaskIds.SEED_TILES;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.imagery;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileCache;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Memory cache of the tiles of an imagery layer, holding their decoded images, whose memory budget is shared by the
+ * caches of all layers.
+ * <p>
+ * The budget is the total size of the decoded pixels, see {@link #MAX_SIZE}, rather than a number of tiles, as tiles
+ * of different sizes and color models use very different amounts of memory. When it is exceeded, the tiles farthest
+ * from the tiles displayed by their layer, see {@link #setFocus}, are evicted first: a zoom level difference counts as
+ * {@value #ZOOM_LEVEL_DISTANCE} tiles away. Tiles of layers which are not displayed go first, and the least recently
+ * used tiles go first among equals. The displayed tiles themselves are never evicted, so that several layers may
+ * exceed the budget for a while instead of loading their visible tiles again and again.
+ * <p>
+ * Hit, miss and decoding time counters are kept for all caches. The loaders report the time they spend decoding
+ * images with {@link #recordDecoding}.
+ * @since 17262
+ */
+public class SharedTileCache implements TileCache {
+
+    /**
+     * The maximum size of the decoded tile images kept in memory by all layers, in megabytes, or 0 to use a quarter of
+     * the maximum heap size.
+     */
+    public static final IntegerProperty MAX_SIZE = new IntegerProperty("imagery.tile_memory_cache.max_size", 0);
+
+    /** Distance, in tiles, that a zoom level difference counts for when tiles are evicted */
+    static final int ZOOM_LEVEL_DISTANCE = 4;
+    /** Memory counted for each tile in addition to its image, so that tiles without image do not pile up */
+    static final int TILE_OVERHEAD = 512;
+
+    /** Guards all caches, as they share the same budget */
+    private static final Object LOCK = new Object();
+    /** The caches having tiles */
+    private static final Set<SharedTileCache> CACHES = new LinkedHashSet<>();
+    private static long usedSize;
+    private static long clock;
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    private static final LongAdder DECODINGS = new LongAdder();
+    private static final LongAdder DECODING_NANOS = new LongAdder();
+
+    private final int cacheSize;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean focused;
+    private int focusZoom;
+    private int focusMinX;
+    private int focusMinY;
+    private int focusMaxX;
+    private int focusMaxY;
+
+    private static final class Entry {
+        private final SharedTileCache cache;
+        private final Tile tile;
+        private long size;
+        private long lastAccess;
+        private double distance;
+
+        Entry(SharedTileCache cache, Tile tile) {
+            this.cache = cache;
+            this.tile = tile;
+        }
+    }
+
+    /**
+     * Constructs a new {@code SharedTileCache}.
+     * @param cacheSize the number of tiles that the layer may need at once, returned by {@link #getCacheSize()}. The
+     * number of cached tiles is not bounded by it
+     */
+    public SharedTileCache(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    @Override
+    public Tile getTile(TileSource source, int x, int y, int z) {
+        String key = Tile.getTileKey(source, x, y, z);
+        synchronized (LOCK) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                entry.lastAccess = ++clock;
+                if (getImage(entry.tile) != null) {
+                    HITS.increment();
+                    return entry.tile;
+                }
+            }
+            MISSES.increment();
+            return entry != null ? entry.tile : null;
+        }
+    }
+
+    @Override
+    public void addTile(Tile tile) {
+        synchronized (LOCK) {
+            Entry entry = new Entry(this, tile);
+            entry.size = getSize(tile);
+            entry.lastAccess = ++clock;
+            Entry old = entries.put(tile.getKey(), entry);
+            if (old != null) {
+                usedSize -= old.size;
+            }
+            usedSize += entry.size;
+            CACHES.add(this);
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Updates the memory used by a tile once its image has been loaded, and evicts tiles if needed.
+     * @param tile the loaded tile
+     */
+    public void tileLoaded(Tile tile) {
+        synchronized (LOCK) {
+            Entry entry = entries.get(tile.getKey());
+            if (entry != null && entry.tile == tile) {
+                long size = getSize(tile);
+                usedSize += size - entry.size;
+                entry.size = size;
+                evictIfNeeded();
+            }
+        }
+    }
+
+    /**
+     * Sets the tiles displayed by the layer, which are evicted last, as well as the tiles around them.
+     * @param zoom the zoom level of the displayed tiles
+     * @param minX the minimum x index of the displayed tiles
+     * @param minY the minimum y index of the displayed tiles
+     * @param maxX the maximum x index of the displayed tiles
+     * @param maxY the maximum y index of the displayed tiles
+     */
+    public void setFocus(int zoom, int minX, int minY, int maxX, int maxY) {
+        synchronized (LOCK) {
+            focused = true;
+            focusZoom = zoom;
+            focusMinX = minX;
+            focusMinY = minY;
+            focusMaxX = maxX;
+            focusMaxY = maxY;
+        }
+    }
+
+    /**
+     * Forgets the tiles displayed by the layer, e.g. when it is hidden, so that its tiles are evicted first.
+     */
+    public void clearFocus() {
+        synchronized (LOCK) {
+            focused = false;
+        }
+    }
+
+    @Override
+    public int getTileCount() {
+        synchronized (LOCK) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (LOCK) {
+            for (Entry entry : entries.values()) {
+                usedSize -= entry.size;
+            }
+            entries.clear();
+            CACHES.remove(this);
+        }
+    }
+
+    @Override
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Returns the distance of a tile to the displayed tiles, in tiles at the displayed zoom level.
+     * Tiles of other zoom levels are assumed to be aligned on the quad tree of the displayed zoom level.
+     * @param tile the tile
+     * @return the distance of the tile, 0 for displayed tiles, or infinity if the layer is not displayed
+     */
+    double getDistance(Tile tile) {
+        if (!focused) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double scale = Math.scalb(1.0, focusZoom - tile.getZoom());
+        // position of the center of the tile, in tiles at the displayed zoom level
+        double x = (tile.getXtile() + 0.5) * scale;
+        double y = (tile.getYtile() + 0.5) * scale;
+        double dx = Math.max(0, Math.max(focusMinX - x, x - focusMaxX - 1));
+        double dy = Math.max(0, Math.max(focusMinY - y, y - focusMaxY - 1));
+        return (double) Math.abs(tile.getZoom() - focusZoom) * ZOOM_LEVEL_DISTANCE + Math.max(dx, dy);
+    }
+
+    private static void evictIfNeeded() {
+        long maxSize = getMaxSize();
+        if (usedSize <= maxSize) {
+            return;
+        }
+        // sizes are computed again, as images may have changed meanwhile, e.g. when a reprojected tile is invalidated
+        usedSize = 0;
+        List<Entry> candidates = new ArrayList<>();
+        for (SharedTileCache cache : CACHES) {
+            for (Entry entry : cache.entries.values()) {
+                entry.size = getSize(entry.tile);
+                usedSize += entry.size;
+                entry.distance = cache.getDistance(entry.tile);
+                if (entry.distance > 0) {
+                    candidates.add(entry);
+                }
+            }
+        }
+        // evict a bit more than needed, so that the next tiles can be added without sorting all tiles again
+        long target = maxSize - maxSize / 10;
+        if (usedSize <= target) {
+            return;
+        }
+        candidates.sort(Comparator.comparingDouble((Entry e) -> -e.distance).thenComparingLong(e -> e.lastAccess));
+        for (Entry entry : candidates) {
+            if (usedSize <= target) {
+                break;
+            }
+            entry.cache.entries.remove(entry.tile.getKey());
+            if (entry.cache.entries.isEmpty()) {
+                CACHES.remove(entry.cache);
+            }
+            usedSize -= entry.size;
+            EVICTIONS.increment();
+        }
+    }
+
+    /**
+     * Returns the memory used by a tile: the size of the pixels of its image, and a fixed overhead.
+     * @param tile the tile
+     * @return the memory used by the tile, in bytes
+     */
+    static long getSize(Tile tile) {
+        BufferedImage image = getImage(tile);
+        if (image == null) {
+            return TILE_OVERHEAD;
+        }
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return TILE_OVERHEAD + (long) buffer.getSize() * buffer.getNumBanks()
+                * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * Returns the decoded image of a tile.
+     * @param tile the tile
+     * @return the image of the tile, or {@code null} if it has no image or only the image shared by loading or
+     * erroneous tiles
+     */
+    private static BufferedImage getImage(Tile tile) {
+        BufferedImage image = tile.getImage();
+        return image == Tile.LOADING_IMAGE || image == Tile.ERROR_IMAGE ? null : image;
+    }
+
+    /**
+     * Returns the maximum size of the decoded tile images kept in memory by all layers.
+     * @return the maximum size, in bytes
+     * @see #MAX_SIZE
+     */
+    public static long getMaxSize() {
+        int maxSize = MAX_SIZE.get();
+        return maxSize > 0 ? maxSize * 1024L * 1024L : Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Returns the memory currently used by the tiles of all layers.
+     * @return the memory used, in bytes
+     */
+    public static long getUsedSize() {
+        synchronized (LOCK) {
+            return usedSize;
+        }
+    }
+
+    /**
+     * Records the decoding of a tile image.
+     * @param nanos the time spent decoding the image, in nanoseconds
+     */
+    public static void recordDecoding(long nanos) {
+        DECODINGS.increment();
+        DECODING_NANOS.add(nanos);
+    }
+
+    /**
+     * Returns the number of times a tile has been found with its image.
+     * @return the number of cache hits
+     */
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    /**
+     * Returns the number of times a tile has not been found, or has been found without its image.
+     * @return the number of cache misses
+     */
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    /**
+     * Returns the number of tiles evicted to keep the memory used within the budget.
+     * @return the number of evicted tiles
+     */
+    public static long getEvictionCount() {
+        return EVICTIONS.sum();
+    }
+
+    /**
+     * Returns the number of decoded tile images.
+     * @return the number of decoded tile images
+     */
+    public static long getDecodingCount() {
+        return DECODINGS.sum();
+    }
+
+    /**
+     * Returns the total time spent decoding tile images.
+     * @return the decoding time, in milliseconds
+     */
+    public static long getDecodingTime() {
+        return TimeUnit.NANOSECONDS.toMillis(DECODING_NANOS.sum());
+    }
+
+    /**
+     * Returns the statistics of the caches as string.
+     * @return the statistics of the caches, one per line
+     */
+    public static String getStats() {
+        long decodings = getDecodingCount();
+        return "Memory used: " + Utils.getSizeString(getUsedSize(), null) + " of " + Utils.getSizeString(getMaxSize(), null)
+                + "\nHits: " + getHitCount() + ", misses: " + getMissCount() + ", evictions: " + getEvictionCount()
+                + "\nDecoded images: " + decodings + ", average time: "
+                + String.format(Locale.ROOT, "%.1f ms", decodings == 0 ? 0 : DECODING_NANOS.sum() / 1e6 / decodings);
+    }
+}
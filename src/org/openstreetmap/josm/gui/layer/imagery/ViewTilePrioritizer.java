@@ -0,0 +1,168 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.imagery;
+
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.TileXY;
+import org.openstreetmap.josm.data.imagery.TilePrioritizer;
+
+/**
+ * Prioritizes the tiles of an imagery layer from the tiles it displays.
+ * <p>
+ * Tiles are loaded in this order, each group being sorted by distance from the center of the view:
+ * <ol>
+ * <li>the visible tiles,</li>
+ * <li>the tiles of the next and previous zoom levels covering the view,</li>
+ * <li>the tiles around the view, up to {@link #getMargin()} tiles away and {@link #getPrefetchDistance()} tiles away
+ * in the direction in which the map is panned,</li>
+ * <li>the tiles of other zoom levels covering the view.</li>
+ * </ol>
+ * Other tiles are {@link TilePrioritizer#STALE stale}. The view is updated by the layer when it is painted, while the
+ * priorities are read by the loader threads.
+ * @since 17263
+ */
+public class ViewTilePrioritizer implements TilePrioritizer {
+
+    /** Width of the priority range of each group of tiles */
+    static final double GROUP = 1 << 20;
+    /** Minimum pan direction component, so that diagonal pans prefetch tiles along both axes */
+    private static final double MIN_PAN_COMPONENT = 0.38;
+
+    private final int margin;
+    private final int prefetchDistance;
+    private volatile View view;
+    private volatile boolean hidden;
+
+    private static final class View {
+        private final int zoom;
+        private final int minX;
+        private final int minY;
+        private final int maxX;
+        private final int maxY;
+        private final int prefetchMinX;
+        private final int prefetchMinY;
+        private final int prefetchMaxX;
+        private final int prefetchMaxY;
+
+        View(int zoom, int minX, int minY, int maxX, int maxY, int[] prefetch) {
+            this.zoom = zoom;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.prefetchMinX = prefetch[0];
+            this.prefetchMinY = prefetch[1];
+            this.prefetchMaxX = prefetch[2];
+            this.prefetchMaxY = prefetch[3];
+        }
+    }
+
+    /**
+     * Constructs a new {@code ViewTilePrioritizer}.
+     * @param margin the number of tiles loaded around the view
+     * @param prefetchDistance the number of tiles loaded beyond the view in the direction in which the map is panned
+     */
+    public ViewTilePrioritizer(int margin, int prefetchDistance) {
+        this.margin = margin;
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    /**
+     * Sets the tiles displayed by the layer.
+     * @param zoom the zoom level of the displayed tiles
+     * @param minX the minimum x index of the displayed tiles
+     * @param minY the minimum y index of the displayed tiles
+     * @param maxX the maximum x index of the displayed tiles
+     * @param maxY the maximum y index of the displayed tiles
+     * @param panX the x component of the unit vector of the pan direction, in tiles, or 0
+     * @param panY the y component of the unit vector of the pan direction, in tiles, or 0
+     * @return {@code true} if the view has changed, so that some tiles may be stale
+     */
+    public boolean setView(int zoom, int minX, int minY, int maxX, int maxY, double panX, double panY) {
+        int[] prefetch = {
+            minX - margin - (panX <= -MIN_PAN_COMPONENT ? prefetchDistance : 0),
+            minY - margin - (panY <= -MIN_PAN_COMPONENT ? prefetchDistance : 0),
+            maxX + margin + (panX >= MIN_PAN_COMPONENT ? prefetchDistance : 0),
+            maxY + margin + (panY >= MIN_PAN_COMPONENT ? prefetchDistance : 0)
+        };
+        View old = view;
+        if (old != null && old.zoom == zoom && old.minX == minX && old.minY == minY && old.maxX == maxX
+                && old.maxY == maxY && old.prefetchMinX == prefetch[0] && old.prefetchMinY == prefetch[1]
+                && old.prefetchMaxX == prefetch[2] && old.prefetchMaxY == prefetch[3]) {
+            return false;
+        }
+        hidden = false;
+        view = new View(zoom, minX, minY, maxX, maxY, prefetch);
+        return true;
+    }
+
+    /**
+     * Forgets the displayed tiles, e.g. when the layer is hidden, so that all tiles are stale.
+     */
+    public void clearView() {
+        hidden = true;
+        view = null;
+    }
+
+    /**
+     * Returns the minimum corner of the tiles to load around the view.
+     * @return the minimum corner of the tiles to load around the view, or {@code null} if there is no view
+     */
+    public TileXY getPrefetchMin() {
+        View v = view;
+        return v == null ? null : new TileXY(v.prefetchMinX, v.prefetchMinY);
+    }
+
+    /**
+     * Returns the maximum corner of the tiles to load around the view.
+     * @return the maximum corner of the tiles to load around the view, or {@code null} if there is no view
+     */
+    public TileXY getPrefetchMax() {
+        View v = view;
+        return v == null ? null : new TileXY(v.prefetchMaxX, v.prefetchMaxY);
+    }
+
+    /**
+     * Returns the number of tiles loaded around the view.
+     * @return the number of tiles loaded around the view
+     */
+    public int getMargin() {
+        return margin;
+    }
+
+    /**
+     * Returns the number of tiles loaded beyond the view in the direction in which the map is panned.
+     * @return the number of tiles loaded in the pan direction
+     */
+    public int getPrefetchDistance() {
+        return prefetchDistance;
+    }
+
+    @Override
+    public double getPriority(Tile tile) {
+        View v = view;
+        if (v == null) {
+            // before the first paint all tiles are equal, after the layer is hidden none is needed
+            return hidden ? STALE : 0;
+        }
+        int dz = tile.getZoom() - v.zoom;
+        // bounds of the tile, in tiles at the displayed zoom level
+        double scale = Math.scalb(1.0, -dz);
+        double x0 = tile.getXtile() * scale;
+        double y0 = tile.getYtile() * scale;
+        double x1 = x0 + scale;
+        double y1 = y0 + scale;
+        double distance = Math.hypot((x0 + x1 - v.minX - v.maxX - 1) / 2, (y0 + y1 - v.minY - v.maxY - 1) / 2);
+        boolean visible = x1 > v.minX && x0 < v.maxX + 1 && y1 > v.minY && y0 < v.maxY + 1;
+        if (dz == 0) {
+            if (visible) {
+                return distance;
+            } else if (x1 > v.prefetchMinX && x0 < v.prefetchMaxX + 1 && y1 > v.prefetchMinY && y0 < v.prefetchMaxY + 1) {
+                return 2 * GROUP + distance;
+            }
+            return STALE;
+        } else if (!visible) {
+            return STALE;
+        }
+        return (Math.abs(dz) == 1 ? GROUP : 3 * GROUP) + distance;
+    }
+}
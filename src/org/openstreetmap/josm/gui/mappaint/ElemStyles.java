@@ -99,6 +99,16 @@ public class ElemStyles implements PreferenceChangedListener {
         });
     }
 
+    /**
+     * Returns the index of the style cache, incremented each time the cache is cleared.
+     * Results computed from the styles with an older index are out of date.
+     * @return the index of the style cache
+     * @since 17251
+     */
+    public short getCacheIndex() {
+        return cacheIdx;
+    }
+
     /**
      * Returns the list of style sources.
      * @return the list of style sources
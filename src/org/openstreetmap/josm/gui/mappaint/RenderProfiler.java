@@ -0,0 +1,193 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.openstreetmap.josm.gui.mappaint.mapcss.MapCSSRule;
+import org.openstreetmap.josm.gui.mappaint.styleelement.StyleElement;
+
+/**
+ * Collects the time spent painting each kind of {@link StyleElement} and applying each MapCSS rule, to find out which
+ * parts of a style make rendering slow.
+ * <p>
+ * Profiling is disabled by default. When enabled, the renderers report the time needed to paint each style element,
+ * see {@link org.openstreetmap.josm.data.osm.visitor.paint.RenderBenchmarkCollector.ProfilingBenchmark}, and MapCSS
+ * style sources report the time needed to match and apply each rule while styles are computed. Since computed styles
+ * are cached, rules are only profiled for primitives whose style is not cached yet.
+ * <p>
+ * All methods are thread safe, styles are computed in parallel.
+ * @since 17254
+ */
+public final class RenderProfiler {
+
+    private static volatile boolean enabled;
+
+    private static final Map<String, Statistics> ELEMENTS = new ConcurrentHashMap<>();
+    private static final Map<MapCSSRule, Statistics> RULES = new ConcurrentHashMap<>();
+
+    /**
+     * The accumulated cost of a style element class or of a MapCSS rule.
+     */
+    public static final class Statistics {
+        private final String name;
+        private final String source;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder applied = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        Statistics(String name, String source) {
+            this.name = name;
+            this.source = source;
+        }
+
+        /**
+         * Returns the name of the style element class, or the selectors of the rule.
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the title of the style source of the rule.
+         * @return the title of the style source, or {@code null} for style elements
+         */
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * Returns the number of invocations: painted style elements, or checked rules.
+         * @return the number of invocations
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Returns the number of times a rule matched and its declaration has been applied.
+         * @return the number of times a rule has been applied, always equal to {@link #getCount()} for style elements
+         */
+        public long getApplied() {
+            return applied.sum();
+        }
+
+        /**
+         * Returns the total time of all invocations.
+         * @return the total time, in nanoseconds
+         */
+        public long getNanos() {
+            return nanos.sum();
+        }
+
+        void add(long time, boolean wasApplied) {
+            count.increment();
+            if (wasApplied) {
+                applied.increment();
+            }
+            nanos.add(time);
+        }
+
+        @Override
+        public String toString() {
+            long c = getCount();
+            return String.format(Locale.ROOT, "%10.1f ms %10d x %8.1f us  %s", getNanos() / 1e6, c,
+                    c == 0 ? 0 : getNanos() / 1e3 / c, source == null ? name : name + " (" + source + ", applied " + getApplied() + " x)");
+        }
+    }
+
+    private RenderProfiler() {
+        // Hide default constructor for utils classes
+    }
+
+    /**
+     * Determines if profiling is enabled.
+     * @return {@code true} if profiling is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables profiling. The collected statistics are kept.
+     * @param enable {@code true} to enable profiling
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Clears the collected statistics.
+     */
+    public static void reset() {
+        ELEMENTS.clear();
+        RULES.clear();
+    }
+
+    /**
+     * Records the time needed to paint a style element.
+     * @param element the painted style element
+     * @param nanos the time, in nanoseconds
+     */
+    public static void elementPainted(StyleElement element, long nanos) {
+        ELEMENTS.computeIfAbsent(element.getClass().getSimpleName(), name -> new Statistics(name, null)).add(nanos, true);
+    }
+
+    /**
+     * Records the time needed to match a MapCSS rule against a primitive, and to apply it if it matched.
+     * @param source the style source of the rule
+     * @param rule the rule
+     * @param nanos the time, in nanoseconds
+     * @param applied {@code true} if the rule matched and its declaration has been applied
+     */
+    public static void ruleChecked(StyleSource source, MapCSSRule rule, long nanos, boolean applied) {
+        RULES.computeIfAbsent(rule, r -> new Statistics(
+                r.selectors.stream().map(String::valueOf).collect(Collectors.joining(", ")), source.getDisplayString()))
+            .add(nanos, applied);
+    }
+
+    /**
+     * Returns the statistics of the style element classes, the most expensive first.
+     * @return the statistics of the style element classes
+     */
+    public static List<Statistics> getElementStatistics() {
+        return sorted(ELEMENTS.values());
+    }
+
+    /**
+     * Returns the statistics of the MapCSS rules, the most expensive first.
+     * @return the statistics of the MapCSS rules
+     */
+    public static List<Statistics> getRuleStatistics() {
+        return sorted(RULES.values());
+    }
+
+    private static List<Statistics> sorted(Iterable<Statistics> statistics) {
+        // sort by a snapshot of the times, they may change meanwhile
+        Map<Statistics, Long> times = new HashMap<>();
+        statistics.forEach(s -> times.put(s, s.getNanos()));
+        List<Statistics> result = new ArrayList<>(times.keySet());
+        result.sort((a, b) -> Long.compare(times.get(b), times.get(a)));
+        return result;
+    }
+
+    /**
+     * Writes the collected statistics.
+     * @param out the stream to write to
+     * @param maxRules the maximum number of rules to write, the most expensive first
+     */
+    public static void dump(PrintStream out, int maxRules) {
+        out.println("Style elements (time, count, average, element):");
+        getElementStatistics().forEach(out::println);
+        out.println("MapCSS rules (time, checks, average, selectors):");
+        getRuleStatistics().stream().limit(maxRules).forEach(out::println);
+    }
+}
@@ -9,6 +9,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -35,6 +36,9 @@ import org.openstreetmap.josm.data.projection.Projection;
 import org.openstreetmap.josm.data.projection.ProjectionRegistry;
 import org.openstreetmap.josm.data.projection.Projections;
 import org.openstreetmap.josm.gui.mappaint.RenderingHelper.StyleData;
+import org.openstreetmap.josm.gui.mappaint.TilePyramidRenderer.DirectoryTileOutput;
+import org.openstreetmap.josm.gui.mappaint.TilePyramidRenderer.TileOutput;
+import org.openstreetmap.josm.gui.mappaint.TilePyramidRenderer.ZipTileOutput;
 import org.openstreetmap.josm.io.Compression;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.io.OsmReader;
@@ -64,9 +68,12 @@ public class RenderingCLI implements CLIModule {
 
     private static final double PIXEL_PER_METER = 96 / 2.54 * 100; // standard value of 96 dpi display resolution
     private static final int DEFAULT_MAX_IMAGE_SIZE = 20000;
+    private static final int MAX_TILE_ZOOM = 24;
+    private static final int MAX_PROFILED_RULES = 100;
 
     private boolean argDebug;
     private boolean argTrace;
+    private boolean argProfile;
     private String argInput;
     private String argOutput;
     private List<StyleData> argStyles;
@@ -80,6 +87,8 @@ public class RenderingCLI implements CLIModule {
     private Integer argHeightPx;
     private String argProjection;
     private Integer argMaxImageSize;
+    private int[] argTiles;
+    private Integer argThreads;
 
     private StyleData argCurrentStyle;
 
@@ -87,6 +96,7 @@ public class RenderingCLI implements CLIModule {
         HELP(false, 'h'),
         DEBUG(false, '*'),
         TRACE(false, '*'),
+        PROFILE(false, '*'),
         INPUT(true, 'i'),
         STYLE(true, 's'),
         SETTING(true, '*'),
@@ -100,7 +110,9 @@ public class RenderingCLI implements CLIModule {
         WIDTH_PX(true, '*'),
         HEIGHT_PX(true, '*'),
         PROJECTION(true, '*'),
-        MAX_IMAGE_SIZE(true, '*');
+        MAX_IMAGE_SIZE(true, '*'),
+        TILES(true, '*'),
+        THREADS(true, '*');
 
         private final String name;
         private final boolean requiresArg;
@@ -161,6 +173,12 @@ public class RenderingCLI implements CLIModule {
         try {
             parseArguments(argArray);
             initialize();
+            RenderProfiler.setEnabled(argProfile);
+            if (argTiles != null) {
+                renderTiles();
+                dumpProfile();
+                System.exit(0);
+            }
             Stopwatch stopwatch = Stopwatch.createStarted();
             String task = tr("Rendering {0} to {1}", argInput, argOutput);
             System.err.println(task);
@@ -171,6 +189,7 @@ public class RenderingCLI implements CLIModule {
             BufferedImage image = rh.render();
             writeImageToFile(image);
             System.err.println(stopwatch.toString(task));
+            dumpProfile();
         } catch (FileNotFoundException | NoSuchFileException e) {
             if (Logging.isDebugEnabled()) {
                 e.printStackTrace();
@@ -235,6 +254,9 @@ public class RenderingCLI implements CLIModule {
         case TRACE:
             argTrace = true;
             break;
+        case PROFILE:
+            argProfile = true;
+            break;
         default:
             throw new AssertionError("Unexpected option index: " + o);
         }
@@ -370,6 +392,33 @@ public class RenderingCLI implements CLIModule {
                         tr("Expected integer number >= 0 for option {0}, but got ''{1}''", "--max-image-size", arg));
             }
             break;
+        case TILES:
+            String[] zooms = arg.split("-", -1);
+            try {
+                int minZoom = Integer.parseInt(zooms[0].trim());
+                int maxZoom = zooms.length > 1 ? Integer.parseInt(zooms[1].trim()) : minZoom;
+                if (zooms.length > 2 || minZoom < 0 || minZoom > maxZoom || maxZoom > MAX_TILE_ZOOM) {
+                    throw new OptionParseException(
+                            tr("Expected zoom range between 0 and {0} for option {1}, but got ''{2}''", MAX_TILE_ZOOM, "--tiles", arg));
+                }
+                argTiles = new int[] {minZoom, maxZoom};
+            } catch (NumberFormatException nfe) {
+                throw new OptionParseException(
+                        tr("Expected zoom range for option {0}, but got ''{1}''", "--tiles", arg), nfe);
+            }
+            break;
+        case THREADS:
+            try {
+                argThreads = Integer.valueOf(arg);
+            } catch (NumberFormatException nfe) {
+                throw new OptionParseException(
+                        tr("Expected integer number for option {0}, but got ''{1}''", "--threads", arg), nfe);
+            }
+            if (argThreads <= 0) {
+                throw new OptionParseException(
+                        tr("Expected integer number > 0 for option {0}, but got ''{1}''", "--threads", arg));
+            }
+            break;
         default:
             throw new AssertionError("Unexpected option index: " + o);
         }
@@ -414,6 +463,13 @@ public class RenderingCLI implements CLIModule {
                 "\t--projection <code>       "+tr("Projection to use, default value ''{0}'' (web-Mercator)", "epsg:3857")+"\n"+
                 "\t--max-image-size <number> "+tr("Maximum image width/height in pixel (''{0}'' means no limit), default value: {1}",
                                                    0, Integer.toString(DEFAULT_MAX_IMAGE_SIZE))+"\n"+
+                "\t--tiles <min>[-<max>]     "+tr("Render slippy map tiles (z/x/y.png) of the given zoom levels instead of one image")+"\n"+
+                "\t                          "+tr("The output is a directory, or a single archive if its name ends with ''{0}''; "
+                                                + "defaults to ''{1}''", ".zip", "tiles")+"\n"+
+                "\t                          "+tr("Tiles without data are skipped. Requires the projection {0}.", "epsg:3857")+"\n"+
+                "\t--threads <number>        "+tr("Number of threads rendering tiles, default value: number of processors")+"\n"+
+                "\t--profile                 "+tr("Print the time spent painting each kind of style element "
+                                                + "and applying the most expensive style rules")+"\n"+
                 "\n"+
                 tr("To specify the rendered area and scale, the options can be combined in various ways")+":\n"+
                 "  * --bounds (--zoom|--scale|--width-px|--height-px)\n"+
@@ -432,7 +488,9 @@ public class RenderingCLI implements CLIModule {
                 "  josm render -i data.osm -s style.mapcss --bounds 21.151,51.401,21.152,51.402 -z 16\n"+
                 "  josm render -i data.osm -s style.mapcss --anchor 21.151,51.401 --width-m 500 --height-m 300 -z 16\n"+
                 "  josm render -i data.osm -s style.mapcss --anchor 21.151,51.401 --width-m 500 --height-m 300 --width-px 1800\n"+
-                "  josm render -i data.osm -s style.mapcss --scale 5000 --projection epsg:4326\n";
+                "  josm render -i data.osm -s style.mapcss --scale 5000 --projection epsg:4326\n"+
+                "  josm render -i data.osm -s style.mapcss --bounds 21.1,51.3,21.2,51.4 --tiles 12-16 -o tiles\n"+
+                "  josm render -i data.osm -s style.mapcss --tiles 10-14 -o tiles.zip\n";
     }
 
     /**
@@ -576,6 +634,53 @@ public class RenderingCLI implements CLIModule {
         return ra;
     }
 
+    /**
+     * Renders a pyramid of tiles of the area given by {@code --bounds}, or of the downloaded area.
+     * @throws IOException in case of an I/O error
+     * @throws IllegalDataException if the data or a style has errors
+     */
+    private void renderTiles() throws IOException, IllegalDataException {
+        if (argZoom != null || argScale != null || argAnchor != null) {
+            throw new IllegalArgumentException(
+                    tr("Option {0} cannot be combined with {1}, {2} or {3}", "--tiles", "--zoom", "--scale", "--anchor"));
+        }
+        String output = Optional.ofNullable(argOutput).orElse("tiles");
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        String task = tr("Rendering tiles of {0} to {1}", argInput, output);
+        System.err.println(task);
+        DataSet ds = loadDataset();
+        Bounds bounds = argBounds;
+        if (bounds == null) {
+            if (ds.getDataSourceBounds().isEmpty()) {
+                throw new IllegalArgumentException(
+                        tr("{0} mode, but no bounds found in osm data input file", "--bounds=auto"));
+            }
+            bounds = ds.getDataSourceBounds().get(0);
+        }
+        TilePyramidRenderer renderer = new TilePyramidRenderer(ds, bounds, argTiles[0], argTiles[1], argStyles);
+        if (argThreads != null) {
+            renderer.setThreads(argThreads);
+        }
+        int count;
+        if (output.toLowerCase(Locale.US).endsWith(".zip")) {
+            try (TileOutput out = new ZipTileOutput(Files.newOutputStream(Paths.get(output)))) {
+                count = renderer.render(out);
+            }
+        } else {
+            try (TileOutput out = new DirectoryTileOutput(Paths.get(output))) {
+                count = renderer.render(out);
+            }
+        }
+        System.err.println(tr("{0} tiles written", count));
+        System.err.println(stopwatch.toString(task));
+    }
+
+    private void dumpProfile() {
+        if (argProfile) {
+            RenderProfiler.dump(System.err, MAX_PROFILED_RULES);
+        }
+    }
+
     private DataSet loadDataset() throws IOException, IllegalDataException {
         if (argInput == null) {
             throw new IllegalArgumentException(tr("Missing argument - input data file ({0})", "--input|-i"));
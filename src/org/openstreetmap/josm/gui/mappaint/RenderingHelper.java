@@ -112,38 +112,7 @@ public class RenderingHelper {
      * @throws IllegalDataException when illegal data is encountered (style has errors, etc.)
      */
     public BufferedImage render() throws IOException, IllegalDataException {
-        // load the styles
-        ElemStyles elemStyles = new ElemStyles();
-        MapCSSStyleSource.STYLE_SOURCE_LOCK.writeLock().lock();
-        try {
-            for (StyleData sd : styles) {
-                MapCSSStyleSource source = new MapCSSStyleSource(sd.styleUrl, "cliRenderingStyle", "cli rendering style '" + sd.styleUrl + "'");
-                source.loadStyleSource();
-                elemStyles.add(source);
-                if (!source.getErrors().isEmpty()) {
-                    throw new IllegalDataException("Failed to load style file. Errors: " + source.getErrors());
-                }
-                for (String key : sd.settings.keySet()) {
-                    StyleSetting.PropertyStyleSetting<?> match = source.settings.stream()
-                            .filter(s -> s instanceof StyleSetting.PropertyStyleSetting)
-                            .map(s -> (StyleSetting.PropertyStyleSetting<?>) s)
-                            .filter(bs -> bs.getKey().endsWith(":" + key))
-                            .findFirst().orElse(null);
-                    if (match == null) {
-                        Logging.warn(tr("Style setting not found: ''{0}''", key));
-                    } else {
-                        String value = sd.settings.get(key);
-                        Logging.trace("setting applied: ''{0}:{1}''", key, value);
-                        match.setStringValue(value);
-                    }
-                }
-                if (!sd.settings.isEmpty()) {
-                    source.loadStyleSource(); // reload to apply settings
-                }
-            }
-        } finally {
-            MapCSSStyleSource.STYLE_SOURCE_LOCK.writeLock().unlock();
-        }
+        ElemStyles elemStyles = loadStyles(styles);
 
         Dimension imgDimPx = getImageSize();
         NavigatableComponent nc = new NavigatableComponent() {
@@ -167,17 +136,7 @@ public class RenderingHelper {
         // render the data
         BufferedImage image = new BufferedImage(imgDimPx.width, imgDimPx.height, BufferedImage.TYPE_INT_ARGB);
         Graphics2D g = image.createGraphics();
-
-        // Force all render hints to be defaults - do not use platform values
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
-        g.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
-        g.setRenderingHint(RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_DISABLE);
-        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_NORMALIZE);
-        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        setRenderingHints(g);
 
         if (fillBackground) {
             g.setColor(Optional.ofNullable(backgroundColor).orElse(elemStyles.getBackgroundColor()));
@@ -203,6 +162,65 @@ public class RenderingHelper {
         return image;
     }
 
+    /**
+     * Loads styles and applies their settings.
+     * @param styles the styles to load
+     * @return the loaded styles
+     * @throws IllegalDataException if a style has errors
+     * @since 17253
+     */
+    static ElemStyles loadStyles(Collection<StyleData> styles) throws IllegalDataException {
+        ElemStyles elemStyles = new ElemStyles();
+        MapCSSStyleSource.STYLE_SOURCE_LOCK.writeLock().lock();
+        try {
+            for (StyleData sd : styles) {
+                MapCSSStyleSource source = new MapCSSStyleSource(sd.styleUrl, "cliRenderingStyle", "cli rendering style '" + sd.styleUrl + "'");
+                source.loadStyleSource();
+                elemStyles.add(source);
+                if (!source.getErrors().isEmpty()) {
+                    throw new IllegalDataException("Failed to load style file. Errors: " + source.getErrors());
+                }
+                for (String key : sd.settings.keySet()) {
+                    StyleSetting.PropertyStyleSetting<?> match = source.settings.stream()
+                            .filter(s -> s instanceof StyleSetting.PropertyStyleSetting)
+                            .map(s -> (StyleSetting.PropertyStyleSetting<?>) s)
+                            .filter(bs -> bs.getKey().endsWith(":" + key))
+                            .findFirst().orElse(null);
+                    if (match == null) {
+                        Logging.warn(tr("Style setting not found: ''{0}''", key));
+                    } else {
+                        String value = sd.settings.get(key);
+                        Logging.trace("setting applied: ''{0}:{1}''", key, value);
+                        match.setStringValue(value);
+                    }
+                }
+                if (!sd.settings.isEmpty()) {
+                    source.loadStyleSource(); // reload to apply settings
+                }
+            }
+        } finally {
+            MapCSSStyleSource.STYLE_SOURCE_LOCK.writeLock().unlock();
+        }
+        return elemStyles;
+    }
+
+    /**
+     * Forces all render hints to be defaults - do not use platform values.
+     * @param g the graphics to render with
+     * @since 17253
+     */
+    static void setRenderingHints(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_DISABLE);
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_NORMALIZE);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    }
+
     void setDebugStream(PrintStream debugStream) {
         this.debugStream = debugStream;
     }
@@ -0,0 +1,317 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.openstreetmap.gui.jmapviewer.OsmMercator;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.ProjectionBounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.visitor.paint.StyledMapRenderer;
+import org.openstreetmap.josm.data.osm.visitor.paint.TileView;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.mappaint.RenderingHelper.StyleData;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.tools.CheckParameterUtil;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Class to render osm data to a pyramid of slippy map tiles (z/x/y.png, web-Mercator).
+ * <p>
+ * The styles are loaded once and shared by all tiles. For each zoom level, the styles of the primitives in the rendered
+ * area are computed first, then the tiles are rendered in parallel. Tiles without data are skipped.
+ * @since 17253
+ */
+public class TilePyramidRenderer {
+
+    /**
+     * The size of tiles, in pixels.
+     */
+    public static final int TILE_SIZE = OsmMercator.DEFAUL_TILE_SIZE;
+
+    /** Extra space around tiles in which primitives are rendered, so that symbols and labels are not cut at tile borders */
+    private static final int MARGIN = TILE_SIZE / 2;
+    /** Half the width of the world in web-Mercator, in meters */
+    private static final double WORLD_HALF_SIZE = OsmMercator.EARTH_RADIUS * Math.PI;
+    private static final double MAX_LAT = 85.05112877980659;
+
+    private final DataSet ds;
+    private final Bounds bounds;
+    private final int minZoom;
+    private final int maxZoom;
+    private final Collection<StyleData> styles;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Receives the rendered tiles.
+     */
+    public interface TileOutput extends Closeable {
+        /**
+         * Writes a tile. May be called concurrently.
+         * @param zoom the zoom level of the tile
+         * @param x the column of the tile
+         * @param y the row of the tile, from the north
+         * @param png the tile, encoded as PNG
+         * @throws IOException in case of an I/O error
+         */
+        void write(int zoom, int x, int y, byte[] png) throws IOException;
+    }
+
+    /**
+     * Writes tiles to a directory tree {@code <zoom>/<x>/<y>.png}.
+     */
+    public static class DirectoryTileOutput implements TileOutput {
+        private final Path directory;
+
+        /**
+         * Constructs a new {@code DirectoryTileOutput}.
+         * @param directory the root directory of the tiles
+         */
+        public DirectoryTileOutput(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public void write(int zoom, int x, int y, byte[] png) throws IOException {
+            Path dir = directory.resolve(Integer.toString(zoom)).resolve(Integer.toString(x));
+            Files.createDirectories(dir);
+            Files.write(dir.resolve(y + ".png"), png);
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+
+    /**
+     * Writes tiles to a single zip archive, with entries {@code <zoom>/<x>/<y>.png}.
+     */
+    public static class ZipTileOutput implements TileOutput {
+        private final ZipOutputStream zip;
+
+        /**
+         * Constructs a new {@code ZipTileOutput}.
+         * @param out the stream to write the archive to
+         */
+        public ZipTileOutput(OutputStream out) {
+            this.zip = new ZipOutputStream(out);
+            // PNG is compressed already
+            this.zip.setLevel(0);
+        }
+
+        @Override
+        public synchronized void write(int zoom, int x, int y, byte[] png) throws IOException {
+            zip.putNextEntry(new ZipEntry(zoom + "/" + x + '/' + y + ".png"));
+            zip.write(png);
+            zip.closeEntry();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            zip.close();
+        }
+    }
+
+    /**
+     * Construct a new {@code TilePyramidRenderer}.
+     * @param ds the dataset to render
+     * @param bounds the bounds of the area to render
+     * @param minZoom the lowest zoom level to render
+     * @param maxZoom the highest zoom level to render
+     * @param styles the styles to use for rendering
+     */
+    public TilePyramidRenderer(DataSet ds, Bounds bounds, int minZoom, int maxZoom, Collection<StyleData> styles) {
+        CheckParameterUtil.ensureParameterNotNull(ds, "ds");
+        CheckParameterUtil.ensureParameterNotNull(bounds, "bounds");
+        CheckParameterUtil.ensureParameterNotNull(styles, "styles");
+        if (minZoom < 0 || minZoom > maxZoom) {
+            throw new IllegalArgumentException(tr("Invalid zoom range {0}-{1}", minZoom, maxZoom));
+        }
+        this.ds = ds;
+        this.bounds = bounds;
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        this.styles = styles;
+    }
+
+    /**
+     * Sets the number of threads rendering tiles.
+     * @param threads the number of threads, defaults to the number of available processors
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Returns the range of columns of the tiles covering the given longitudes.
+     * @param minLon the minimum longitude
+     * @param maxLon the maximum longitude
+     * @param zoom the zoom level
+     * @return the first and last column
+     */
+    static int[] getTileColumns(double minLon, double maxLon, int zoom) {
+        int n = 1 << zoom;
+        return new int[] {
+            clamp((int) Math.floor((minLon + 180) / 360 * n), n),
+            clamp((int) Math.floor((maxLon + 180) / 360 * n), n)
+        };
+    }
+
+    /**
+     * Returns the range of rows of the tiles covering the given latitudes.
+     * @param minLat the minimum latitude
+     * @param maxLat the maximum latitude
+     * @param zoom the zoom level
+     * @return the first (northern) and last row
+     */
+    static int[] getTileRows(double minLat, double maxLat, int zoom) {
+        return new int[] {getTileRow(maxLat, zoom), getTileRow(minLat, zoom)};
+    }
+
+    private static int getTileRow(double lat, int zoom) {
+        int n = 1 << zoom;
+        double latRad = Math.toRadians(Utils.clamp(lat, -MAX_LAT, MAX_LAT));
+        double y = (1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2;
+        return clamp((int) Math.floor(y * n), n);
+    }
+
+    private static int clamp(int tile, int n) {
+        return Math.max(0, Math.min(n - 1, tile));
+    }
+
+    /**
+     * Renders the tiles.
+     * @param output the output receiving the tiles
+     * @return the number of written tiles
+     * @throws IOException in case of an I/O error
+     * @throws IllegalDataException when illegal data is encountered (style has errors, etc.)
+     */
+    public int render(TileOutput output) throws IOException, IllegalDataException {
+        if (!"EPSG:3857".equals(ProjectionRegistry.getProjection().toCode())) {
+            throw new IllegalArgumentException(tr("Tiles can only be rendered in projection {0}", "EPSG:3857"));
+        }
+        ElemStyles elemStyles = RenderingHelper.loadStyles(styles);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, Utils.newThreadFactory("tile-renderer-%d", Thread.NORM_PRIORITY));
+        AtomicInteger written = new AtomicInteger();
+        try {
+            for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+                renderZoom(zoom, elemStyles, executor, output, written);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return written.get();
+    }
+
+    private void renderZoom(int zoom, ElemStyles elemStyles, ExecutorService executor, TileOutput output, AtomicInteger written)
+            throws IOException {
+        Projection proj = ProjectionRegistry.getProjection();
+        double span = 2 * WORLD_HALF_SIZE / (1 << zoom);
+        double scale = span / TILE_SIZE;
+        int[] columns = getTileColumns(bounds.getMinLon(), bounds.getMaxLon(), zoom);
+        int[] rows = getTileRows(bounds.getMinLat(), bounds.getMaxLat(), zoom);
+
+        // compute the styles of all tiles at once, so that tile renderers do not write the style cache concurrently
+        ProjectionBounds all = new ProjectionBounds(
+                new EastNorth(-WORLD_HALF_SIZE + columns[0] * span - MARGIN * scale, WORLD_HALF_SIZE - (rows[1] + 1) * span - MARGIN * scale),
+                new EastNorth(-WORLD_HALF_SIZE + (columns[1] + 1) * span + MARGIN * scale, WORLD_HALF_SIZE - rows[0] * span + MARGIN * scale));
+        // all tiles of a zoom level share the same rendering settings, whatever their latitude
+        double dist100Pixel = createView(all.getCenter(), scale, Double.NaN).getDist100Pixel();
+        NavigatableComponent view = createView(all.getCenter(), scale, dist100Pixel);
+        StyledMapRenderer styler = new StyledMapRenderer(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics(), view, false);
+        styler.setStyles(elemStyles);
+        styler.computeStyles(ds, proj.getLatLonBoundsBox(all));
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int x = columns[0]; x <= columns[1]; x++) {
+            for (int y = rows[0]; y <= rows[1]; y++) {
+                ProjectionBounds pb = new ProjectionBounds(
+                        new EastNorth(-WORLD_HALF_SIZE + x * span, WORLD_HALF_SIZE - (y + 1) * span),
+                        new EastNorth(-WORLD_HALF_SIZE + (x + 1) * span, WORLD_HALF_SIZE - y * span));
+                EastNorth center = pb.getCenter();
+                pb.extend(new EastNorth(pb.minEast - MARGIN * scale, pb.minNorth - MARGIN * scale));
+                pb.extend(new EastNorth(pb.maxEast + MARGIN * scale, pb.maxNorth + MARGIN * scale));
+                Bounds tileBounds = proj.getLatLonBoundsBox(pb);
+                if (isEmpty(tileBounds.toBBox())) {
+                    continue;
+                }
+                int tileX = x;
+                int tileY = y;
+                futures.add(executor.submit(() -> {
+                    output.write(zoom, tileX, tileY, renderTile(elemStyles, createView(center, scale, dist100Pixel), tileBounds));
+                    written.incrementAndGet();
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+        Logging.info(tr("Rendered zoom level {0}", zoom));
+    }
+
+    private boolean isEmpty(BBox bbox) {
+        return ds.searchNodes(bbox).isEmpty() && ds.searchWays(bbox).isEmpty() && ds.searchRelations(bbox).isEmpty();
+    }
+
+    private static TileView createView(EastNorth center, double scale, double dist100Pixel) {
+        TileView view = new TileView(TILE_SIZE);
+        view.moveTo(center, scale, dist100Pixel);
+        return view;
+    }
+
+    private byte[] renderTile(ElemStyles elemStyles, NavigatableComponent nc, Bounds tileBounds) throws IOException {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            RenderingHelper.setRenderingHints(g);
+            g.setColor(elemStyles.getBackgroundColor());
+            g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            StyledMapRenderer smr = new StyledMapRenderer(g, nc, false);
+            smr.setStyles(elemStyles);
+            smr.render(ds, false, tileBounds);
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
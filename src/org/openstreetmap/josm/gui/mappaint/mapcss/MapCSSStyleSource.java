@@ -34,6 +34,7 @@ import org.openstreetmap.josm.gui.mappaint.Cascade;
 import org.openstreetmap.josm.gui.mappaint.Environment;
 import org.openstreetmap.josm.gui.mappaint.MultiCascade;
 import org.openstreetmap.josm.gui.mappaint.Range;
+import org.openstreetmap.josm.gui.mappaint.RenderProfiler;
 import org.openstreetmap.josm.gui.mappaint.StyleKeys;
 import org.openstreetmap.josm.gui.mappaint.StyleSetting;
 import org.openstreetmap.josm.gui.mappaint.StyleSetting.StyleSettingGroup;
@@ -353,40 +354,63 @@ public class MapCSSStyleSource extends StyleSource {
         Environment env = new Environment(osm, mc, null, this);
         // the declaration indices are sorted, so it suffices to save the last used index
         int lastDeclUsed = -1;
+        final boolean profile = RenderProfiler.isEnabled();
 
         Iterator<MapCSSRule> candidates = ruleIndex.getRuleCandidates(osm);
         while (candidates.hasNext()) {
             MapCSSRule r = candidates.next();
-            for (Selector s : r.selectors) {
-                env.clearSelectorMatchingInformation();
-                env.layer = s.getSubpart().getId(env);
-                String sub = env.layer;
-                if (!s.matches(env)) { // as side effect env.parent will be set (if s is a child selector)
-                    continue;
-                }
-                if (s.getRange().contains(scale)) {
-                    mc.range = Range.cut(mc.range, s.getRange());
-                } else {
-                    mc.range = mc.range.reduceAround(scale, s.getRange());
-                    continue;
-                }
+            if (profile) {
+                long start = System.nanoTime();
+                int declUsed = applyRule(r, env, mc, scale, lastDeclUsed);
+                RenderProfiler.ruleChecked(this, r, System.nanoTime() - start, declUsed != lastDeclUsed);
+                lastDeclUsed = declUsed;
+            } else {
+                lastDeclUsed = applyRule(r, env, mc, scale, lastDeclUsed);
+            }
+        }
+    }
+
+    /**
+     * Applies a rule if one of its selectors matches.
+     * @param r the rule
+     * @param env the environment
+     * @param mc the cascade to apply the rule to
+     * @param scale the scale
+     * @param lastDeclUsed the index of the last applied declaration
+     * @return the index of the last applied declaration, updated if the rule has been applied
+     */
+    private static int applyRule(MapCSSRule r, Environment env, MultiCascade mc, double scale, int lastDeclUsed) {
+        int declUsed = lastDeclUsed;
+        for (Selector s : r.selectors) {
+            env.clearSelectorMatchingInformation();
+            env.layer = s.getSubpart().getId(env);
+            String sub = env.layer;
+            if (!s.matches(env)) { // as side effect env.parent will be set (if s is a child selector)
+                continue;
+            }
+            if (s.getRange().contains(scale)) {
+                mc.range = Range.cut(mc.range, s.getRange());
+            } else {
+                mc.range = mc.range.reduceAround(scale, s.getRange());
+                continue;
+            }
 
-                if (r.declaration.idx == lastDeclUsed)
-                    continue; // don't apply one declaration more than once
-                lastDeclUsed = r.declaration.idx;
-                if ("*".equals(sub)) {
-                    for (Entry<String, Cascade> entry : mc.getLayers()) {
-                        env.layer = entry.getKey();
-                        if ("*".equals(env.layer)) {
-                            continue;
-                        }
-                        r.execute(env);
+            if (r.declaration.idx == declUsed)
+                continue; // don't apply one declaration more than once
+            declUsed = r.declaration.idx;
+            if ("*".equals(sub)) {
+                for (Entry<String, Cascade> entry : mc.getLayers()) {
+                    env.layer = entry.getKey();
+                    if ("*".equals(env.layer)) {
+                        continue;
                     }
+                    r.execute(env);
                 }
-                env.layer = sub;
-                r.execute(env);
             }
+            env.layer = sub;
+            r.execute(env);
         }
+        return declUsed;
     }
 
     /**
@@ -0,0 +1,135 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.styleelement.placement;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Screen space index of the rectangles occupied by the labels painted so far, to skip labels that would overlap them.
+ * <p>
+ * The rectangles are stored in a uniform grid of square cells, each rectangle in all cells it touches. A label is
+ * made of one or more rectangles (e.g. one per glyph for text along a line), and is only placed if none of them
+ * intersects an occupied rectangle.
+ * <p>
+ * This class is not thread safe, each renderer uses its own index.
+ * @since 17255
+ */
+public class LabelCollisionIndex {
+
+    /** The default size of a grid cell, in pixels */
+    public static final int DEFAULT_CELL_SIZE = 64;
+
+    private final double cellSize;
+    private final Map<Long, List<Rectangle2D>> cells = new HashMap<>();
+    private int size;
+
+    /**
+     * Constructs a new {@code LabelCollisionIndex} with the default cell size.
+     */
+    public LabelCollisionIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Constructs a new {@code LabelCollisionIndex}.
+     * @param cellSize the size of a grid cell, in pixels
+     */
+    public LabelCollisionIndex(double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Invalid cell size: " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Determines if a rectangle intersects an occupied rectangle.
+     * @param r the rectangle, in view coordinates
+     * @return {@code true} if the rectangle intersects an occupied rectangle
+     */
+    public boolean intersects(Rectangle2D r) {
+        if (r.isEmpty()) {
+            return false;
+        }
+        int minX = cell(r.getMinX());
+        int maxX = cell(r.getMaxX());
+        int minY = cell(r.getMinY());
+        int maxY = cell(r.getMaxY());
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                List<Rectangle2D> occupied = cells.get(key(x, y));
+                if (occupied != null) {
+                    for (Rectangle2D o : occupied) {
+                        if (o.intersects(r)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks a rectangle as occupied.
+     * @param r the rectangle, in view coordinates. Must not be modified afterwards
+     */
+    public void add(Rectangle2D r) {
+        if (r.isEmpty()) {
+            return;
+        }
+        int minX = cell(r.getMinX());
+        int maxX = cell(r.getMaxX());
+        int minY = cell(r.getMinY());
+        int maxY = cell(r.getMaxY());
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                cells.computeIfAbsent(key(x, y), k -> new ArrayList<>()).add(r);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Marks the rectangles of a label as occupied, unless one of them intersects an occupied rectangle.
+     * @param label the rectangles of the label, in view coordinates. Must not be modified afterwards
+     * @return {@code true} if the rectangles were free and are occupied now, {@code false} if the label overlaps
+     * another one and must not be painted
+     */
+    public boolean addIfFree(Collection<? extends Rectangle2D> label) {
+        for (Rectangle2D r : label) {
+            if (intersects(r)) {
+                return false;
+            }
+        }
+        label.forEach(this::add);
+        return true;
+    }
+
+    /**
+     * Removes all rectangles.
+     */
+    public void clear() {
+        cells.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the number of occupied rectangles.
+     * @return the number of occupied rectangles
+     */
+    public int size() {
+        return size;
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static Long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+}
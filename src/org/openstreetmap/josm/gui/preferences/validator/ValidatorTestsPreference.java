@@ -49,6 +49,7 @@ public class ValidatorTestsPreference implements SubPreferenceSetting {
     private JCheckBox prefUseLayer;
     private JCheckBox prefOtherUpload;
     private JCheckBox prefOther;
+    private JCheckBox prefIncremental;
 
     /** The list of all tests */
     private Collection<Test> allTests;
@@ -75,6 +76,11 @@ public class ValidatorTestsPreference implements SubPreferenceSetting {
         prefOtherUpload.setToolTipText(tr("Show the informational tests in the upload check windows."));
         testPanel.add(prefOtherUpload, GBC.eol());
 
+        prefIncremental = new JCheckBox(tr("Validate changes while editing."), ValidatorPrefHelper.PREF_INCREMENTAL.get());
+        prefIncremental.setToolTipText(tr("Update the validation results each time data is changed, "
+                + "by validating the modified objects and their surroundings."));
+        testPanel.add(prefIncremental, GBC.eol());
+
         ActionListener otherUploadEnabled = e -> prefOtherUpload.setEnabled(prefOther.isSelected());
         prefOther.addActionListener(otherUploadEnabled);
         otherUploadEnabled.actionPerformed(null);
@@ -121,6 +127,7 @@ public class ValidatorTestsPreference implements SubPreferenceSetting {
         ValidatorPrefHelper.PREF_OTHER.put(prefOther.isSelected());
         ValidatorPrefHelper.PREF_OTHER_UPLOAD.put(prefOtherUpload.isSelected());
         ValidatorPrefHelper.PREF_LAYER.put(prefUseLayer.isSelected());
+        ValidatorPrefHelper.PREF_INCREMENTAL.put(prefIncremental.isSelected());
         return false;
     }
 
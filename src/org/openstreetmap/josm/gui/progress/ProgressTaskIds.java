@@ -16,4 +16,10 @@ public interface ProgressTaskIds {
      */
     ProgressTaskId PRECACHE_WMS = new ProgressTaskId("core", "precacheWms");
 
+    /**
+     * Download the tiles of an area into the tile cache
+     * @since 17264
+     */
+    ProgressTaskId SEED_TILES = new ProgressTaskId("core", "seedTiles");
+
 }
@@ -284,8 +284,28 @@ public abstract class AbstractReader {
         void accept(InputStreamReader ir) throws IllegalDataException, IOException;
     }
 
+    @FunctionalInterface
+    protected interface BinaryParserWorker {
+        /**
+         * Effectively parses the file, for binary formats (PBF, etc.)
+         * @param is input stream
+         * @throws IllegalDataException in case of invalid data
+         * @throws IOException in case of I/O error
+         */
+        void accept(InputStream is) throws IllegalDataException, IOException;
+    }
+
     protected final DataSet doParseDataSet(InputStream source, ProgressMonitor progressMonitor, ParserWorker parserWorker)
             throws IllegalDataException {
+        return doParseBinaryDataSet(source, progressMonitor, is -> {
+            try (InputStreamReader ir = UTFInputStreamReader.create(is)) {
+                parserWorker.accept(ir);
+            }
+        });
+    }
+
+    protected final DataSet doParseBinaryDataSet(InputStream source, ProgressMonitor progressMonitor, BinaryParserWorker parserWorker)
+            throws IllegalDataException {
         if (progressMonitor == null) {
             progressMonitor = NullProgressMonitor.INSTANCE;
         }
@@ -296,9 +316,7 @@ public abstract class AbstractReader {
             progressMonitor.beginTask(tr("Prepare OSM data..."), 4); // read, prepare, post-process, render
             progressMonitor.indeterminateSubTask(tr("Parsing OSM data..."));
 
-            try (InputStreamReader ir = UTFInputStreamReader.create(source)) {
-                parserWorker.accept(ir);
-            }
+            parserWorker.accept(source);
             progressMonitor.worked(1);
 
             boolean readOnly = getDataSet().isLocked();
@@ -423,14 +441,14 @@ public abstract class AbstractReader {
         }
     }
 
-    private final Map<String, Integer> timestampCache = new LruCache<>(30);
+    private final ThreadLocal<Map<String, Integer>> timestampCache = ThreadLocal.withInitial(() -> new LruCache<>(30));
 
     protected final void parseTimestamp(PrimitiveData current, String time) {
         if (time == null || time.isEmpty()) {
             return;
         }
         try {
-            int timestamp = timestampCache.computeIfAbsent(time, t -> (int) (DateUtils.tsFromString(t) / 1000));
+            int timestamp = timestampCache.get().computeIfAbsent(time, t -> (int) (DateUtils.tsFromString(t) / 1000));
             current.setRawTimestamp(timestamp);
         } catch (UncheckedParseException | DateTimeException e) {
             Logging.error(e);
@@ -669,6 +687,20 @@ public abstract class AbstractReader {
 
     protected final Node parseNode(String lat, String lon, CommonReader commonReader, NodeReader nodeReader)
             throws IllegalDataException {
+        return addNode(parseNodeData(lat, lon, commonReader), nodeReader);
+    }
+
+    /**
+     * Parses the coordinates and common attributes of a node, without adding it to the data set.
+     * Can be called from any thread, as long as the common reader is thread-safe.
+     * @param lat latitude, can be null
+     * @param lon longitude, can be null
+     * @param commonReader reader of common attributes
+     * @return the node data
+     * @throws IllegalDataException in case of invalid data
+     * @since 17241
+     */
+    protected final NodeData parseNodeData(String lat, String lon, CommonReader commonReader) throws IllegalDataException {
         NodeData nd = new NodeData(0);
         LatLon ll = null;
         if (areLatLonDefined(lat, lon)) {
@@ -684,7 +716,7 @@ public abstract class AbstractReader {
             throw new IllegalDataException(tr("Illegal value for attributes ''lat'', ''lon'' on node with ID {0}. Got ''{1}'', ''{2}''.",
                     Long.toString(nd.getId()), lat, lon));
         }
-        return addNode(nd, nodeReader);
+        return nd;
     }
 
     protected final Way parseWay(CommonReader commonReader, WayReader wayReader) throws IllegalDataException {
@@ -694,12 +726,23 @@ public abstract class AbstractReader {
 
         Collection<Long> nodeIds = new ArrayList<>();
         wayReader.accept(w, nodeIds);
+        putWayNodes(wd, w, nodeIds);
+        return w;
+    }
+
+    /**
+     * Records the node ids of a parsed way, to be resolved by {@link #prepareDataSet()}.
+     * @param wd way data, whose id is the external id of the way
+     * @param w way built from {@code wd}
+     * @param nodeIds node ids
+     * @since 17241
+     */
+    protected final void putWayNodes(WayData wd, Way w, Collection<Long> nodeIds) {
         if (w.isDeleted() && !nodeIds.isEmpty()) {
             Logging.info(tr("Deleted way {0} contains nodes", Long.toString(w.getUniqueId())));
             nodeIds = new ArrayList<>();
         }
         ways.put(wd.getUniqueId(), nodeIds);
-        return w;
     }
 
     protected final Relation parseRelation(CommonReader commonReader, RelationReader relationReader) throws IllegalDataException {
@@ -709,15 +752,26 @@ public abstract class AbstractReader {
 
         Collection<RelationMemberData> members = new ArrayList<>();
         relationReader.accept(r, members);
+        putRelationMembers(rd, r, members);
+        return r;
+    }
+
+    /**
+     * Records the members of a parsed relation, to be resolved by {@link #prepareDataSet()}.
+     * @param rd relation data, whose id is the external id of the relation
+     * @param r relation built from {@code rd}
+     * @param members relation members
+     * @since 17241
+     */
+    protected final void putRelationMembers(RelationData rd, Relation r, Collection<RelationMemberData> members) {
         if (r.isDeleted() && !members.isEmpty()) {
             Logging.info(tr("Deleted relation {0} contains members", Long.toString(r.getUniqueId())));
             members = new ArrayList<>();
         }
         relations.put(rd.getUniqueId(), members);
-        return r;
     }
 
-    protected final RelationMemberData parseRelationMember(Relation r, String ref, String type, String role) throws IllegalDataException {
+    protected final RelationMemberData parseRelationMember(PrimitiveId r, String ref, String type, String role) throws IllegalDataException {
         if (ref == null) {
             throw new IllegalDataException(tr("Missing attribute ''ref'' on member in relation {0}.",
                     Long.toString(r.getUniqueId())));
@@ -730,7 +784,7 @@ public abstract class AbstractReader {
         }
     }
 
-    protected final RelationMemberData parseRelationMember(Relation r, long id, String type, String role) throws IllegalDataException {
+    protected final RelationMemberData parseRelationMember(PrimitiveId r, long id, String type, String role) throws IllegalDataException {
         if (id == 0) {
             throw new IllegalDataException(tr("Incomplete <member> specification with ref=0"));
         }
@@ -4,12 +4,19 @@ package org.openstreetmap.josm.io;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -21,15 +28,24 @@ import javax.xml.stream.XMLStreamReader;
 import org.openstreetmap.josm.data.osm.Changeset;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.PrimitiveId;
 import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationData;
 import org.openstreetmap.josm.data.osm.RelationMemberData;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
 import org.openstreetmap.josm.data.osm.Tagged;
 import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.WayData;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.UncheckedParseException;
+import org.openstreetmap.josm.tools.Utils;
 import org.openstreetmap.josm.tools.XmlUtils;
 
 /**
@@ -57,11 +73,28 @@ public class OsmReader extends AbstractReader {
         SAVE_ORIGINAL_ID
     }
 
+    /**
+     * Whether primitives are decoded in parallel by a multi-stage pipeline: XML parsing in the reading thread,
+     * decoding of attributes and tags in a thread pool, and building of primitives in the reading thread, in file order.
+     * @since 17241
+     */
+    public static final BooleanProperty PARALLEL_PARSING = new BooleanProperty("osm.reader.parallel", true);
+
+    /** Number of primitives decoded by a single task of the pipeline */
+    static final int BATCH_SIZE = 1024;
+
+    /** Preference key for the number of threads decoding primitives */
+    static final String THREADS_PREF = "osm.reader.numberOfThreads";
+
     protected XMLStreamReader parser;
 
     /** The {@link OsmReader.Options} to use when parsing the xml data */
     protected final Collection<Options> options;
 
+    private ForkJoinPool threadPool;
+    private List<RawPrimitive> batch;
+    private Deque<RawBatch> pending;
+
     private static final Set<String> COMMON_XML_ATTRIBUTES = new TreeSet<>();
 
     static {
@@ -152,6 +185,24 @@ public class OsmReader extends AbstractReader {
         if (parser.getAttributeValue(null, "upload-changeset") != null) {
             uploadChangesetId = getLong("upload-changeset");
         }
+        startPipeline();
+        try {
+            try {
+                parseOsmContent(generator, uploadChangesetId);
+            } catch (OsmParsingCanceledException e) {
+                throw e;
+            } catch (XMLStreamException e) {
+                // Errors of the primitives read before take precedence, as with sequential parsing
+                flushPipeline();
+                throw e;
+            }
+            flushPipeline();
+        } finally {
+            stopPipeline();
+        }
+    }
+
+    private void parseOsmContent(String generator, Long uploadChangesetId) throws XMLStreamException {
         while (parser.hasNext()) {
             int event = parser.next();
 
@@ -166,13 +217,25 @@ public class OsmReader extends AbstractReader {
                     parseBounds(generator);
                     break;
                 case "node":
-                    parseNode();
+                    if (batch != null) {
+                        queue(readRawPrimitive(OsmPrimitiveType.NODE));
+                    } else {
+                        parseNode();
+                    }
                     break;
                 case "way":
-                    parseWay();
+                    if (batch != null) {
+                        queue(readRawPrimitive(OsmPrimitiveType.WAY));
+                    } else {
+                        parseWay();
+                    }
                     break;
                 case "relation":
-                    parseRelation();
+                    if (batch != null) {
+                        queue(readRawPrimitive(OsmPrimitiveType.RELATION));
+                    } else {
+                        parseRelation();
+                    }
                     break;
                 case "changeset":
                     parseChangeset(uploadChangesetId);
@@ -269,7 +332,7 @@ public class OsmReader extends AbstractReader {
                 if (event == XMLStreamConstants.START_ELEMENT) {
                     switch (parser.getLocalName()) {
                     case "nd":
-                        nodeIds.add(parseWayNode(w));
+                        nodeIds.add(parseWayNode(w.getUniqueId()));
                         break;
                     case "tag":
                         parseTag(w);
@@ -286,10 +349,10 @@ public class OsmReader extends AbstractReader {
         }
     }
 
-    private long parseWayNode(Way w) throws XMLStreamException {
+    private long parseWayNode(long wayId) throws XMLStreamException {
         if (parser.getAttributeValue(null, "ref") == null) {
             throwException(
-                    tr("Missing mandatory attribute ''{0}'' on <nd> of way {1}.", "ref", Long.toString(w.getUniqueId()))
+                    tr("Missing mandatory attribute ''{0}'' on <nd> of way {1}.", "ref", Long.toString(wayId))
             );
         }
         long id = getLong("ref");
@@ -335,7 +398,7 @@ public class OsmReader extends AbstractReader {
         }
     }
 
-    private RelationMemberData parseRelationMember(Relation r) throws XMLStreamException {
+    private RelationMemberData parseRelationMember(PrimitiveId r) throws XMLStreamException {
         RelationMemberData result = null;
         try {
             String ref = parser.getAttributeValue(null, "ref");
@@ -429,6 +492,248 @@ public class OsmReader extends AbstractReader {
         jumpToEnd(true);
     }
 
+    /**
+     * Primitive read by the XML parsing stage of the pipeline, whose attributes and tags are still to be decoded.
+     * Node ids and relation members are resolved when reading, as their errors refer to the location of child elements.
+     */
+    private static final class RawPrimitive {
+        final OsmPrimitiveType type;
+        final Location location;
+        final String[] attributes;
+        final List<String> tags = new ArrayList<>();
+        final Collection<Long> nodeIds;
+        final Collection<RelationMemberData> members;
+
+        RawPrimitive(OsmPrimitiveType type, XMLStreamReader parser) {
+            this.type = type;
+            this.location = parser.getLocation();
+            this.attributes = new String[2 * parser.getAttributeCount()];
+            for (int i = 0; i < parser.getAttributeCount(); i++) {
+                attributes[2 * i] = parser.getAttributeLocalName(i);
+                attributes[2 * i + 1] = parser.getAttributeValue(i);
+            }
+            this.nodeIds = type == OsmPrimitiveType.WAY ? new ArrayList<>() : null;
+            this.members = type == OsmPrimitiveType.RELATION ? new ArrayList<>() : null;
+        }
+
+        String get(String name) {
+            for (int i = 0; i < attributes.length; i += 2) {
+                if (name.equals(attributes[i])) {
+                    return attributes[i + 1];
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Batch of primitives submitted to the decoding stage of the pipeline.
+     */
+    private static final class RawBatch {
+        final List<RawPrimitive> primitives;
+        final ForkJoinTask<List<PrimitiveData>> task;
+
+        RawBatch(List<RawPrimitive> primitives, ForkJoinTask<List<PrimitiveData>> task) {
+            this.primitives = primitives;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Determines if primitives should be decoded by the parallel pipeline.
+     * Subclasses overriding {@link #parseNode()}, {@link #parseWay()} or {@link #parseRelation()} should return {@code false}.
+     * @return {@code true} if primitives should be decoded by the parallel pipeline
+     * @since 17241
+     */
+    protected boolean isPipelineEnabled() {
+        return PARALLEL_PARSING.get();
+    }
+
+    private void startPipeline() {
+        if (isPipelineEnabled() && Config.getPref().getInt(THREADS_PREF, Runtime.getRuntime().availableProcessors()) > 1) {
+            batch = new ArrayList<>(BATCH_SIZE);
+            pending = new ArrayDeque<>();
+        }
+    }
+
+    private void stopPipeline() {
+        if (pending != null) {
+            pending.forEach(b -> b.task.cancel(false));
+        }
+        if (threadPool != null) {
+            threadPool.shutdown();
+        }
+        threadPool = null;
+        batch = null;
+        pending = null;
+    }
+
+    private boolean ensureThreadPool() {
+        if (threadPool == null) {
+            try {
+                // The thread pool is only created for files with more than one batch of primitives
+                threadPool = Utils.newForkJoinPool(THREADS_PREF, "osm-reader-%d", Thread.NORM_PRIORITY);
+            } catch (SecurityException e) {
+                Logging.log(Logging.LEVEL_ERROR, "Unable to create new ForkJoinPool", e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queues a primitive read by the XML parsing stage. Full batches are decoded in parallel, and merged in order.
+     * @param raw primitive to decode
+     * @throws XMLStreamException if a previously read primitive is invalid
+     */
+    private void queue(RawPrimitive raw) throws XMLStreamException {
+        batch.add(raw);
+        if (batch.size() >= BATCH_SIZE) {
+            final List<RawPrimitive> toDecode = batch;
+            batch = new ArrayList<>(BATCH_SIZE);
+            if (!ensureThreadPool()) {
+                merge(toDecode, decode(toDecode));
+                return;
+            }
+            pending.add(new RawBatch(toDecode, threadPool.submit(() -> decode(toDecode))));
+            // Bound the number of batches waiting to be merged, to keep memory usage under control
+            while (!pending.isEmpty() && (pending.size() > 2 * threadPool.getParallelism() || pending.peek().task.isDone())) {
+                RawBatch done = pending.poll();
+                merge(done.primitives, waitFor(done.task));
+            }
+        }
+    }
+
+    /**
+     * Merges all pending batches, then decodes and merges the last incomplete batch in the current thread.
+     * @throws XMLStreamException if a primitive is invalid
+     */
+    private void flushPipeline() throws XMLStreamException {
+        if (batch != null) {
+            while (!pending.isEmpty()) {
+                RawBatch done = pending.poll();
+                merge(done.primitives, waitFor(done.task));
+            }
+            merge(batch, decode(batch));
+            batch.clear();
+        }
+    }
+
+    private static List<PrimitiveData> waitFor(ForkJoinTask<List<PrimitiveData>> task) throws XMLStreamException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OsmParsingCanceledException(tr("Reading was canceled"), null);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // ForkJoinPool wraps checked exceptions thrown by callables into plain RuntimeExceptions
+            while (cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof XMLStreamException) {
+                throw (XMLStreamException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new XMLStreamException(cause);
+        }
+    }
+
+    /**
+     * Builds the primitives of a decoded batch and records their references. Must be called in file order.
+     * @param raws primitives read by the XML parsing stage
+     * @param decoded matching decoded primitives
+     */
+    private void merge(List<RawPrimitive> raws, List<PrimitiveData> decoded) {
+        for (int i = 0; i < decoded.size(); i++) {
+            PrimitiveData pd = decoded.get(i);
+            OsmPrimitive p = buildPrimitive(pd);
+            RawPrimitive raw = raws.get(i);
+            if (raw.nodeIds != null) {
+                putWayNodes((WayData) pd, (Way) p, raw.nodeIds);
+            } else if (raw.members != null) {
+                putRelationMembers((RelationData) pd, (Relation) p, raw.members);
+            }
+        }
+    }
+
+    /**
+     * Reads a node, way or relation element with its children, without decoding attributes and tags.
+     * @param type primitive type
+     * @return the raw primitive
+     * @throws XMLStreamException if the element is invalid
+     */
+    private RawPrimitive readRawPrimitive(OsmPrimitiveType type) throws XMLStreamException {
+        RawPrimitive raw = new RawPrimitive(type, parser);
+        SimplePrimitiveId id = new SimplePrimitiveId(getLong("id"), type);
+        try {
+            while (parser.hasNext()) {
+                int event = parser.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String element = parser.getLocalName();
+                    if ("tag".equals(element)) {
+                        String key = parser.getAttributeValue(null, "k");
+                        String value = parser.getAttributeValue(null, "v");
+                        if (key == null || value == null) {
+                            throwException(tr("Missing key or value attribute in tag."));
+                        }
+                        raw.tags.add(key);
+                        raw.tags.add(value);
+                        jumpToEnd();
+                    } else if (raw.nodeIds != null && "nd".equals(element)) {
+                        raw.nodeIds.add(parseWayNode(id.getUniqueId()));
+                    } else if (raw.members != null && "member".equals(element)) {
+                        raw.members.add(parseRelationMember(id));
+                    } else {
+                        parseUnknown();
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            // Errors in the attributes of the primitive take precedence, as with sequential parsing
+            decode(Collections.singletonList(raw));
+            throw e;
+        }
+        return raw;
+    }
+
+    /**
+     * Decodes the attributes and tags of primitives. Does not modify the reader state, and can be called from any thread.
+     * @param raws primitives read by the XML parsing stage
+     * @return decoded primitives
+     * @throws XMLStreamException if a primitive is invalid
+     */
+    private List<PrimitiveData> decode(List<RawPrimitive> raws) throws XMLStreamException {
+        List<PrimitiveData> result = new ArrayList<>(raws.size());
+        for (RawPrimitive raw : raws) {
+            try {
+                PrimitiveData pd;
+                switch (raw.type) {
+                case NODE:
+                    pd = parseNodeData(raw.get("lat"), raw.get("lon"), nd -> readCommon(nd, raw));
+                    break;
+                case WAY:
+                    pd = new WayData(0);
+                    readCommon(pd, raw);
+                    break;
+                default:
+                    pd = new RelationData(0);
+                    readCommon(pd, raw);
+                }
+                for (int i = 0; i < raw.tags.size(); i += 2) {
+                    parseTag(pd, raw.tags.get(i), raw.tags.get(i + 1));
+                }
+                result.add(pd);
+            } catch (IllegalDataException e) {
+                throw new XmlStreamParsingException(e.getMessage(), raw.location, e);
+            }
+        }
+        return result;
+    }
+
     /**
      * Read out the common attributes and put them into current OsmPrimitive.
      * @param current primitive to update
@@ -459,6 +764,37 @@ public class OsmReader extends AbstractReader {
         }
     }
 
+    /**
+     * Read out the common attributes of a raw primitive and put them into current OsmPrimitive.
+     * @param current primitive to update
+     * @param raw primitive read by the XML parsing stage
+     * @throws IllegalDataException if the attributes are invalid
+     */
+    private void readCommon(PrimitiveData current, RawPrimitive raw) throws IllegalDataException {
+        try {
+            parseId(current, getLong("id", raw.get("id")));
+            parseTimestamp(current, raw.get("timestamp"));
+            parseUser(current, raw.get("user"), raw.get("uid"));
+            parseVisible(current, raw.get("visible"));
+            parseVersion(current, raw.get("version"));
+            parseAction(current, raw.get("action"));
+            parseChangeset(current, raw.get("changeset"));
+
+            if (options.contains(Options.SAVE_ORIGINAL_ID)) {
+                parseTag(current, "current_id", Long.toString(getLong("id", raw.get("id"))));
+            }
+            if (options.contains(Options.CONVERT_UNKNOWN_TO_TAGS)) {
+                for (int i = 0; i < raw.attributes.length; i += 2) {
+                    if (!COMMON_XML_ATTRIBUTES.contains(raw.attributes[i])) {
+                        parseTag(current, raw.attributes[i], raw.attributes[i + 1]);
+                    }
+                }
+            }
+        } catch (UncheckedParseException e) {
+            throw new IllegalDataException(e);
+        }
+    }
+
     private long getLong(String name) throws XMLStreamException {
         String value = parser.getAttributeValue(null, name);
         try {
@@ -17,6 +17,7 @@ import org.openstreetmap.josm.data.coor.conversion.DecimalDegreesCoordinateForma
 import org.openstreetmap.josm.data.osm.AbstractPrimitive;
 import org.openstreetmap.josm.data.osm.Changeset;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.DataSetSnapshot;
 import org.openstreetmap.josm.data.osm.DownloadPolicy;
 import org.openstreetmap.josm.data.osm.INode;
 import org.openstreetmap.josm.data.osm.IPrimitive;
@@ -164,6 +165,20 @@ public class OsmWriter extends XmlWriter implements PrimitiveVisitor {
         footer();
     }
 
+    /**
+     * Writes the full OSM file for the given data set snapshot (header, data sources, osm data, footer).
+     * Does not require any lock.
+     * @param snapshot OSM data set snapshot
+     * @since 17243
+     */
+    public void write(DataSetSnapshot snapshot) {
+        DataSet data = snapshot.getDataSet();
+        header(data.getDownloadPolicy(), data.getUploadPolicy(), snapshot.isSourceLocked());
+        writeDataSources(data);
+        writeContent(data);
+        footer();
+    }
+
     /**
      * Writes the contents of the given dataset (nodes, then ways, then relations)
      * @param ds The dataset to write
@@ -0,0 +1,755 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.DataSource;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.RelationData;
+import org.openstreetmap.josm.data.osm.RelationMemberData;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.WayData;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Parser for the OSM PBF format. Read from an input stream and construct a dataset out of it.
+ * <p>
+ * A PBF file is a sequence of blobs, each one holding a (usually zlib compressed) block of primitives.
+ * Blobs are decompressed and decoded in parallel, one task per blob, and the decoded blocks are then
+ * merged in file order into the data set.
+ * @see <a href="https://wiki.openstreetmap.org/wiki/PBF_Format">PBF Format</a>
+ * @since 17240
+ */
+public class PbfReader extends AbstractReader {
+
+    /** Maximum size of a blob header, as defined by the specification */
+    static final int MAX_BLOB_HEADER_SIZE = 64 * 1024;
+    /** Maximum size of a blob, as defined by the specification */
+    static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    static final String BLOB_OSM_HEADER = "OSMHeader";
+    static final String BLOB_OSM_DATA = "OSMData";
+
+    static final String FEATURE_SCHEMA = "OsmSchema-V0.6";
+    static final String FEATURE_DENSE_NODES = "DenseNodes";
+
+    /**
+     * Decoded content of a single {@code PrimitiveBlock}, ready to be merged into the data set.
+     */
+    private static final class DecodedBlock {
+        final List<NodeData> nodes = new ArrayList<>();
+        final List<WayData> ways = new ArrayList<>();
+        final List<Collection<Long>> wayNodes = new ArrayList<>();
+        final List<RelationData> relations = new ArrayList<>();
+        final List<Collection<RelationMemberData>> relationMembers = new ArrayList<>();
+    }
+
+    /**
+     * Exception thrown after user cancelation.
+     */
+    private static final class PbfParsingCanceledException extends IOException implements ImportCancelException {
+        PbfParsingCanceledException(String msg) {
+            super(msg);
+        }
+    }
+
+    /**
+     * constructor (for private and subclasses use only)
+     *
+     * @see #parseDataSet(InputStream, ProgressMonitor)
+     */
+    protected PbfReader() {
+        // Restricts visibility
+    }
+
+    protected void parse(InputStream source) throws IllegalDataException, IOException {
+        parseVersion("0.6");
+        DataInputStream in = new DataInputStream(source);
+        int threads = Math.max(1, Config.getPref().getInt("pbf.reader.threads", Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, Utils.newThreadFactory("pbf-reader-%d", Thread.NORM_PRIORITY));
+        Deque<Future<DecodedBlock>> pending = new ArrayDeque<>();
+        try {
+            boolean headerRead = false;
+            byte[] blob;
+            String type;
+            while (true) {
+                if (cancel) {
+                    cancel = false;
+                    throw new PbfParsingCanceledException(tr("Reading was canceled"));
+                }
+                int headerSize;
+                try {
+                    headerSize = in.readInt();
+                } catch (EOFException e) {
+                    Logging.trace(e);
+                    break;
+                }
+                if (headerSize <= 0 || headerSize > MAX_BLOB_HEADER_SIZE) {
+                    throw new IllegalDataException(tr("Invalid PBF blob header size: {0}", headerSize));
+                }
+                byte[] header = new byte[headerSize];
+                in.readFully(header);
+                type = null;
+                int dataSize = -1;
+                ProtobufInput h = new ProtobufInput(header);
+                while (h.hasNext()) {
+                    int tag = h.readTag();
+                    switch (tag >>> 3) {
+                    case 1: type = h.readString(); break;
+                    case 3: dataSize = (int) h.readVarint(); break;
+                    default: h.skip(tag & 7);
+                    }
+                }
+                if (type == null || dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+                    throw new IllegalDataException(tr("Invalid PBF blob header"));
+                }
+                blob = new byte[dataSize];
+                in.readFully(blob);
+                if (BLOB_OSM_HEADER.equals(type)) {
+                    parseHeaderBlock(decompress(blob));
+                    headerRead = true;
+                } else if (BLOB_OSM_DATA.equals(type)) {
+                    if (!headerRead) {
+                        throw new IllegalDataException(tr("Missing PBF header block"));
+                    }
+                    final byte[] data = blob;
+                    pending.add(executor.submit(() -> decodePrimitiveBlock(decompress(data))));
+                    // Bound the number of decoded blocks waiting to be merged, to keep memory usage under control
+                    while (pending.size() > 2 * threads || (!pending.isEmpty() && pending.peek().isDone())) {
+                        mergeBlock(waitFor(pending.poll()));
+                    }
+                } else {
+                    Logging.info(tr("Unknown PBF blob type ''{0}''. Skipping.", type));
+                }
+            }
+            while (!pending.isEmpty()) {
+                mergeBlock(waitFor(pending.poll()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static DecodedBlock waitFor(Future<DecodedBlock> future) throws IllegalDataException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PbfParsingCanceledException(tr("Reading was canceled"));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalDataException) {
+                throw (IllegalDataException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalDataException(cause);
+        }
+    }
+
+    /**
+     * Merges a decoded block into the data set. Must be called in file order, from the reading thread.
+     * @param block decoded block
+     */
+    private void mergeBlock(DecodedBlock block) {
+        for (NodeData nd : block.nodes) {
+            buildPrimitive(nd);
+        }
+        for (int i = 0; i < block.ways.size(); i++) {
+            WayData wd = block.ways.get(i);
+            buildPrimitive(wd);
+            ways.put(wd.getUniqueId(), block.wayNodes.get(i));
+        }
+        for (int i = 0; i < block.relations.size(); i++) {
+            RelationData rd = block.relations.get(i);
+            buildPrimitive(rd);
+            relations.put(rd.getUniqueId(), block.relationMembers.get(i));
+        }
+    }
+
+    static byte[] decompress(byte[] blob) throws IllegalDataException {
+        byte[] raw = null;
+        byte[] zlib = null;
+        int rawSize = -1;
+        ProtobufInput b = new ProtobufInput(blob);
+        try {
+            while (b.hasNext()) {
+                int tag = b.readTag();
+                switch (tag >>> 3) {
+                case 1: raw = b.readBytes(); break;
+                case 2: rawSize = (int) b.readVarint(); break;
+                case 3: zlib = b.readBytes(); break;
+                case 4: case 5: case 6: case 7:
+                    throw new IllegalDataException(tr("Unsupported PBF blob compression"));
+                default: b.skip(tag & 7);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalDataException(e);
+        }
+        if (raw != null) {
+            return raw;
+        } else if (zlib == null || rawSize < 0 || rawSize > MAX_BLOB_SIZE) {
+            throw new IllegalDataException(tr("Invalid PBF blob"));
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(zlib);
+            byte[] result = new byte[rawSize];
+            int n = 0;
+            while (n < rawSize && !inflater.finished()) {
+                int read = inflater.inflate(result, n, rawSize - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+            if (n != rawSize) {
+                throw new IllegalDataException(tr("Invalid PBF blob"));
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalDataException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void parseHeaderBlock(byte[] data) throws IllegalDataException, IOException {
+        ProtobufInput in = new ProtobufInput(data);
+        long[] bbox = null;
+        String program = null;
+        String source = null;
+        while (in.hasNext()) {
+            int tag = in.readTag();
+            switch (tag >>> 3) {
+            case 1:
+                bbox = new long[4];
+                ProtobufInput b = in.readMessage();
+                while (b.hasNext()) {
+                    int t = b.readTag();
+                    int field = t >>> 3;
+                    if (field >= 1 && field <= 4) {
+                        bbox[field - 1] = b.readSInt64();
+                    } else {
+                        b.skip(t & 7);
+                    }
+                }
+                break;
+            case 4:
+                String feature = in.readString();
+                if (!FEATURE_SCHEMA.equals(feature) && !FEATURE_DENSE_NODES.equals(feature)) {
+                    throw new IllegalDataException(tr("Unsupported PBF feature: {0}", feature));
+                }
+                break;
+            case 16: program = in.readString(); break;
+            case 17: source = in.readString(); break;
+            default: in.skip(tag & 7);
+            }
+        }
+        if (bbox != null) {
+            // left, right, top, bottom, in nanodegrees
+            Bounds bounds = new Bounds(bbox[3] / 1e9, bbox[0] / 1e9, bbox[2] / 1e9, bbox[1] / 1e9);
+            if (!bounds.isOutOfTheWorld()) {
+                ds.addDataSource(new DataSource(bounds, source != null ? source : program));
+            }
+        }
+    }
+
+    /**
+     * Decodes a {@code PrimitiveBlock}. This method does not touch the data set, and can be called from any thread.
+     * @param data uncompressed block
+     * @return decoded block
+     * @throws IllegalDataException if the block is invalid
+     */
+    private DecodedBlock decodePrimitiveBlock(byte[] data) throws IllegalDataException {
+        try {
+            BlockContext ctx = new BlockContext();
+            List<ProtobufInput> groups = new ArrayList<>();
+            ProtobufInput in = new ProtobufInput(data);
+            // Block parameters are written after the primitive groups, so collect everything first
+            while (in.hasNext()) {
+                int tag = in.readTag();
+                switch (tag >>> 3) {
+                case 1:
+                    List<String> strings = new ArrayList<>();
+                    ProtobufInput st = in.readMessage();
+                    while (st.hasNext()) {
+                        int t = st.readTag();
+                        if (t >>> 3 == 1) {
+                            strings.add(st.readString().intern());
+                        } else {
+                            st.skip(t & 7);
+                        }
+                    }
+                    ctx.strings = strings.toArray(new String[0]);
+                    break;
+                case 2: groups.add(in.readMessage()); break;
+                case 17: ctx.granularity = in.readVarint(); break;
+                case 18: ctx.dateGranularity = in.readVarint(); break;
+                case 19: ctx.latOffset = in.readVarint(); break;
+                case 20: ctx.lonOffset = in.readVarint(); break;
+                default: in.skip(tag & 7);
+                }
+            }
+            DecodedBlock block = new DecodedBlock();
+            for (ProtobufInput group : groups) {
+                while (group.hasNext()) {
+                    int tag = group.readTag();
+                    switch (tag >>> 3) {
+                    case 1: decodeNode(ctx, group.readMessage(), block); break;
+                    case 2: decodeDenseNodes(ctx, group.readMessage(), block); break;
+                    case 3: decodeWay(ctx, group.readMessage(), block); break;
+                    case 4: decodeRelation(ctx, group.readMessage(), block); break;
+                    default: group.skip(tag & 7);
+                    }
+                }
+            }
+            return block;
+        } catch (IOException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalDataException(e);
+        }
+    }
+
+    /**
+     * Per-block decoding state: string table, coordinate and date granularity, user cache.
+     */
+    private static final class BlockContext {
+        String[] strings = new String[0];
+        long granularity = 100;
+        long dateGranularity = 1000;
+        long latOffset;
+        long lonOffset;
+        final Map<Long, User> users = new HashMap<>();
+
+        double lat(long raw) {
+            return (latOffset + granularity * raw) / 1e9;
+        }
+
+        double lon(long raw) {
+            return (lonOffset + granularity * raw) / 1e9;
+        }
+
+        User user(long uid, int userSid) {
+            String name = strings[userSid];
+            if (uid > 0) {
+                return users.computeIfAbsent(uid, id -> User.createOsmUser(id, name));
+            } else if (!name.isEmpty()) {
+                return User.createLocalUser(name);
+            }
+            return null;
+        }
+    }
+
+    private void readInfo(BlockContext ctx, ProtobufInput info, PrimitiveData pd) throws IOException, IllegalDataException {
+        int version = -1;
+        long timestamp = 0;
+        long changeset = 0;
+        long uid = -1;
+        int userSid = 0;
+        while (info.hasNext()) {
+            int tag = info.readTag();
+            switch (tag >>> 3) {
+            case 1: version = (int) info.readVarint(); break;
+            case 2: timestamp = info.readVarint(); break;
+            case 3: changeset = info.readVarint(); break;
+            case 4: uid = (int) info.readVarint(); break;
+            case 5: userSid = (int) info.readVarint(); break;
+            case 6: pd.setVisible(info.readVarint() != 0); break;
+            default: info.skip(tag & 7);
+            }
+        }
+        setCommon(ctx, pd, version, timestamp, changeset, uid, userSid);
+    }
+
+    private void setCommon(BlockContext ctx, PrimitiveData pd, int version, long timestamp, long changeset, long uid, int userSid)
+            throws IllegalDataException {
+        if (timestamp > 0) {
+            pd.setRawTimestamp((int) (timestamp * ctx.dateGranularity / 1000));
+        }
+        if (uid > 0 || userSid > 0) {
+            pd.setUser(ctx.user(uid, userSid));
+        }
+        if (version != -1) {
+            parseVersion(pd, version);
+        }
+        if (changeset != 0) {
+            parseChangeset(pd, (int) changeset);
+        }
+    }
+
+    private void readTags(BlockContext ctx, long[] keys, long[] vals, PrimitiveData pd) throws IllegalDataException {
+        if (keys.length != vals.length) {
+            throw new IllegalDataException(tr("Mismatched number of keys and values in PBF primitive {0}", pd.getUniqueId()));
+        }
+        for (int i = 0; i < keys.length; i++) {
+            parseTag(pd, ctx.strings[(int) keys[i]], ctx.strings[(int) vals[i]]);
+        }
+    }
+
+    private NodeData newNode(BlockContext ctx, long id, long lat, long lon) throws IllegalDataException {
+        NodeData nd = new NodeData(0);
+        parseId(nd, id);
+        LatLon ll = new LatLon(ctx.lat(lat), ctx.lon(lon));
+        if (!ll.isValid()) {
+            throw new IllegalDataException(tr("Illegal value for attributes ''lat'', ''lon'' on node with ID {0}. Got ''{1}'', ''{2}''.",
+                    Long.toString(id), ll.lat(), ll.lon()));
+        }
+        nd.setCoor(ll);
+        return nd;
+    }
+
+    private void decodeNode(BlockContext ctx, ProtobufInput in, DecodedBlock block) throws IOException, IllegalDataException {
+        long id = 0;
+        long lat = 0;
+        long lon = 0;
+        long[] keys = new long[0];
+        long[] vals = new long[0];
+        ProtobufInput info = null;
+        while (in.hasNext()) {
+            int tag = in.readTag();
+            switch (tag >>> 3) {
+            case 1: id = in.readSInt64(); break;
+            case 2: keys = in.readPackedVarints(tag & 7, keys); break;
+            case 3: vals = in.readPackedVarints(tag & 7, vals); break;
+            case 4: info = in.readMessage(); break;
+            case 8: lat = in.readSInt64(); break;
+            case 9: lon = in.readSInt64(); break;
+            default: in.skip(tag & 7);
+            }
+        }
+        NodeData nd = newNode(ctx, id, lat, lon);
+        if (info != null) {
+            readInfo(ctx, info, nd);
+        }
+        readTags(ctx, keys, vals, nd);
+        block.nodes.add(nd);
+    }
+
+    private void decodeDenseNodes(BlockContext ctx, ProtobufInput in, DecodedBlock block) throws IOException, IllegalDataException {
+        long[] ids = new long[0];
+        long[] lats = new long[0];
+        long[] lons = new long[0];
+        long[] keysVals = new long[0];
+        long[] versions = null;
+        long[] timestamps = null;
+        long[] changesets = null;
+        long[] uids = null;
+        long[] userSids = null;
+        long[] visibles = null;
+        while (in.hasNext()) {
+            int tag = in.readTag();
+            switch (tag >>> 3) {
+            case 1: ids = in.readPackedVarints(tag & 7, ids); break;
+            case 5:
+                ProtobufInput info = in.readMessage();
+                while (info.hasNext()) {
+                    int t = info.readTag();
+                    switch (t >>> 3) {
+                    case 1: versions = info.readPackedVarints(t & 7, versions); break;
+                    case 2: timestamps = info.readPackedVarints(t & 7, timestamps); break;
+                    case 3: changesets = info.readPackedVarints(t & 7, changesets); break;
+                    case 4: uids = info.readPackedVarints(t & 7, uids); break;
+                    case 5: userSids = info.readPackedVarints(t & 7, userSids); break;
+                    case 6: visibles = info.readPackedVarints(t & 7, visibles); break;
+                    default: info.skip(t & 7);
+                    }
+                }
+                break;
+            case 8: lats = in.readPackedVarints(tag & 7, lats); break;
+            case 9: lons = in.readPackedVarints(tag & 7, lons); break;
+            case 10: keysVals = in.readPackedVarints(tag & 7, keysVals); break;
+            default: in.skip(tag & 7);
+            }
+        }
+        if (lats.length != ids.length || lons.length != ids.length) {
+            throw new IllegalDataException(tr("Invalid PBF dense nodes"));
+        }
+        long id = 0;
+        long lat = 0;
+        long lon = 0;
+        long timestamp = 0;
+        long changeset = 0;
+        long uid = 0;
+        long userSid = 0;
+        int kv = 0;
+        for (int i = 0; i < ids.length; i++) {
+            id += ProtobufInput.zigZag(ids[i]);
+            lat += ProtobufInput.zigZag(lats[i]);
+            lon += ProtobufInput.zigZag(lons[i]);
+            NodeData nd = newNode(ctx, id, lat, lon);
+            if (versions != null) {
+                timestamp += timestamps != null ? ProtobufInput.zigZag(timestamps[i]) : 0;
+                changeset += changesets != null ? ProtobufInput.zigZag(changesets[i]) : 0;
+                uid += uids != null ? ProtobufInput.zigZag(uids[i]) : 0;
+                userSid += userSids != null ? ProtobufInput.zigZag(userSids[i]) : 0;
+                if (visibles != null) {
+                    nd.setVisible(visibles[i] != 0);
+                }
+                setCommon(ctx, nd, (int) versions[i], timestamp, changeset, uid, (int) userSid);
+            }
+            while (kv < keysVals.length && keysVals[kv] != 0) {
+                parseTag(nd, ctx.strings[(int) keysVals[kv]], ctx.strings[(int) keysVals[kv + 1]]);
+                kv += 2;
+            }
+            kv++;
+            block.nodes.add(nd);
+        }
+    }
+
+    private void decodeWay(BlockContext ctx, ProtobufInput in, DecodedBlock block) throws IOException, IllegalDataException {
+        WayData wd = new WayData(0);
+        long[] keys = new long[0];
+        long[] vals = new long[0];
+        long[] refs = new long[0];
+        ProtobufInput info = null;
+        while (in.hasNext()) {
+            int tag = in.readTag();
+            switch (tag >>> 3) {
+            case 1: parseId(wd, in.readVarint()); break;
+            case 2: keys = in.readPackedVarints(tag & 7, keys); break;
+            case 3: vals = in.readPackedVarints(tag & 7, vals); break;
+            case 4: info = in.readMessage(); break;
+            case 8: refs = in.readPackedVarints(tag & 7, refs); break;
+            default: in.skip(tag & 7);
+            }
+        }
+        if (info != null) {
+            readInfo(ctx, info, wd);
+        }
+        readTags(ctx, keys, vals, wd);
+        Collection<Long> nodeIds = new ArrayList<>(refs.length);
+        long ref = 0;
+        for (long delta : refs) {
+            ref += ProtobufInput.zigZag(delta);
+            nodeIds.add(ref);
+        }
+        block.ways.add(wd);
+        block.wayNodes.add(nodeIds);
+    }
+
+    private void decodeRelation(BlockContext ctx, ProtobufInput in, DecodedBlock block) throws IOException, IllegalDataException {
+        RelationData rd = new RelationData(0);
+        long[] keys = new long[0];
+        long[] vals = new long[0];
+        long[] roles = new long[0];
+        long[] memIds = new long[0];
+        long[] types = new long[0];
+        ProtobufInput info = null;
+        while (in.hasNext()) {
+            int tag = in.readTag();
+            switch (tag >>> 3) {
+            case 1: parseId(rd, in.readVarint()); break;
+            case 2: keys = in.readPackedVarints(tag & 7, keys); break;
+            case 3: vals = in.readPackedVarints(tag & 7, vals); break;
+            case 4: info = in.readMessage(); break;
+            case 8: roles = in.readPackedVarints(tag & 7, roles); break;
+            case 9: memIds = in.readPackedVarints(tag & 7, memIds); break;
+            case 10: types = in.readPackedVarints(tag & 7, types); break;
+            default: in.skip(tag & 7);
+            }
+        }
+        if (roles.length != memIds.length || types.length != memIds.length) {
+            throw new IllegalDataException(tr("Invalid members in PBF relation {0}", rd.getUniqueId()));
+        }
+        if (info != null) {
+            readInfo(ctx, info, rd);
+        }
+        readTags(ctx, keys, vals, rd);
+        Collection<RelationMemberData> members = new ArrayList<>(memIds.length);
+        long memId = 0;
+        for (int i = 0; i < memIds.length; i++) {
+            memId += ProtobufInput.zigZag(memIds[i]);
+            if (memId == 0) {
+                throw new IllegalDataException(tr("Incomplete <member> specification with ref=0"));
+            }
+            members.add(new RelationMemberData(ctx.strings[(int) roles[i]], memberType(types[i]), memId));
+        }
+        block.relations.add(rd);
+        block.relationMembers.add(members);
+    }
+
+    private static OsmPrimitiveType memberType(long type) throws IllegalDataException {
+        switch ((int) type) {
+        case 0: return OsmPrimitiveType.NODE;
+        case 1: return OsmPrimitiveType.WAY;
+        case 2: return OsmPrimitiveType.RELATION;
+        default: throw new IllegalDataException(tr("Illegal PBF member type: {0}", type));
+        }
+    }
+
+    /**
+     * Minimal reader of the protocol buffers wire format, over a slice of a byte array.
+     */
+    static final class ProtobufInput {
+        private final byte[] buf;
+        private int pos;
+        private final int end;
+
+        ProtobufInput(byte[] buf) {
+            this(buf, 0, buf.length);
+        }
+
+        ProtobufInput(byte[] buf, int offset, int length) {
+            this.buf = buf;
+            this.pos = offset;
+            this.end = offset + length;
+        }
+
+        boolean hasNext() {
+            return pos < end;
+        }
+
+        int readTag() throws IOException {
+            return (int) readVarint();
+        }
+
+        long readVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= end) {
+                    throw new EOFException(tr("Truncated PBF message"));
+                }
+                byte b = buf[pos++];
+                result |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException(tr("Malformed PBF varint"));
+        }
+
+        static long zigZag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readSInt64() throws IOException {
+            return zigZag(readVarint());
+        }
+
+        private int readLength() throws IOException {
+            long length = readVarint();
+            if (length < 0 || length > end - pos) {
+                throw new EOFException(tr("Truncated PBF message"));
+            }
+            return (int) length;
+        }
+
+        ProtobufInput readMessage() throws IOException {
+            int length = readLength();
+            ProtobufInput result = new ProtobufInput(buf, pos, length);
+            pos += length;
+            return result;
+        }
+
+        byte[] readBytes() throws IOException {
+            int length = readLength();
+            byte[] result = Arrays.copyOfRange(buf, pos, pos + length);
+            pos += length;
+            return result;
+        }
+
+        String readString() throws IOException {
+            int length = readLength();
+            String result = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return result;
+        }
+
+        /**
+         * Reads a repeated varint field, packed or not.
+         * @param wireType wire type of the current field
+         * @param previous values already read for this field, can be {@code null}
+         * @return all values read for this field so far
+         * @throws IOException if the message is malformed
+         */
+        long[] readPackedVarints(int wireType, long[] previous) throws IOException {
+            long[] values;
+            if (wireType == 2) {
+                int length = readLength();
+                int limit = pos + length;
+                int count = 0;
+                for (int i = pos; i < limit; i++) {
+                    if ((buf[i] & 0x80) == 0) {
+                        count++;
+                    }
+                }
+                values = new long[count];
+                ProtobufInput packed = new ProtobufInput(buf, pos, length);
+                for (int i = 0; i < count; i++) {
+                    values[i] = packed.readVarint();
+                }
+                pos = limit;
+            } else {
+                values = new long[] {readVarint()};
+            }
+            if (previous == null || previous.length == 0) {
+                return values;
+            }
+            long[] result = Arrays.copyOf(previous, previous.length + values.length);
+            System.arraycopy(values, 0, result, previous.length, values.length);
+            return result;
+        }
+
+        void skip(int wireType) throws IOException {
+            switch (wireType) {
+            case 0: readVarint(); break;
+            case 1: pos += 8; break;
+            case 2: pos += readLength(); break;
+            case 5: pos += 4; break;
+            default: throw new IOException(tr("Unsupported PBF wire type: {0}", wireType));
+            }
+            if (pos > end) {
+                throw new EOFException(tr("Truncated PBF message"));
+            }
+        }
+    }
+
+    @Override
+    protected DataSet doParseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
+        return doParseBinaryDataSet(source, progressMonitor, this::parse);
+    }
+
+    /**
+     * Parse the given input source and return the dataset.
+     *
+     * @param source the source input stream. Must not be null.
+     * @param progressMonitor the progress monitor. If null, {@link NullProgressMonitor#INSTANCE} is assumed
+     *
+     * @return the dataset with the parsed data
+     * @throws IllegalDataException if an error was found while parsing the data from the source
+     * @throws IllegalArgumentException if source is null
+     */
+    public static DataSet parseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
+        return new PbfReader().doParseDataSet(source, progressMonitor);
+    }
+}
@@ -0,0 +1,384 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Save the dataset into a stream in the OSM PBF format.
+ * <p>
+ * Nodes are written as dense nodes, then ways, then relations, each sorted by id. As the format has no equivalent
+ * of the JOSM {@code action} attribute, deleted primitives are not written and the modification state is lost.
+ * @see PbfReader
+ * @since 17240
+ */
+public class PbfWriter implements Closeable {
+
+    /** Maximum number of primitives written in a single block */
+    static final int BLOCK_SIZE = 8000;
+
+    private static final int GRANULARITY = 100;
+
+    private final DataOutputStream out;
+
+    /**
+     * Constructs a new {@code PbfWriter}.
+     * @param out output stream
+     */
+    public PbfWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    /**
+     * Writes the full PBF file for the given data set (header and osm data).
+     * @param ds OSM data set
+     * @throws IOException if any I/O error occurs
+     */
+    public void write(DataSet ds) throws IOException {
+        writeHeader(ds);
+        Predicate<OsmPrimitive> filter = p -> !p.isDeleted() && !p.isIncomplete();
+        List<Node> nodes = sortById(ds.getNodes(), n -> filter.test(n) && n.isLatLonKnown());
+        for (int i = 0; i < nodes.size(); i += BLOCK_SIZE) {
+            writeNodes(nodes.subList(i, Math.min(nodes.size(), i + BLOCK_SIZE)));
+        }
+        List<Way> ways = sortById(ds.getWays(), filter);
+        for (int i = 0; i < ways.size(); i += BLOCK_SIZE) {
+            writeWays(ways.subList(i, Math.min(ways.size(), i + BLOCK_SIZE)));
+        }
+        List<Relation> relations = sortById(ds.getRelations(), filter);
+        for (int i = 0; i < relations.size(); i += BLOCK_SIZE) {
+            writeRelations(relations.subList(i, Math.min(relations.size(), i + BLOCK_SIZE)));
+        }
+        out.flush();
+    }
+
+    private static <T extends OsmPrimitive> List<T> sortById(Collection<T> primitives, Predicate<? super T> filter) {
+        List<T> result = new ArrayList<>(primitives.size());
+        for (T p : primitives) {
+            if (filter.test(p)) {
+                result.add(p);
+            }
+        }
+        result.sort(OsmWriter.byIdComparator);
+        return result;
+    }
+
+    private void writeHeader(DataSet ds) throws IOException {
+        ProtobufOutput header = new ProtobufOutput();
+        Bounds bounds = null;
+        for (Bounds b : ds.getDataSourceBounds()) {
+            if (bounds == null) {
+                bounds = new Bounds(b);
+            } else {
+                bounds.extend(b);
+            }
+        }
+        if (bounds != null) {
+            ProtobufOutput bbox = new ProtobufOutput();
+            bbox.writeSInt64(1, toNano(bounds.getMinLon()));
+            bbox.writeSInt64(2, toNano(bounds.getMaxLon()));
+            bbox.writeSInt64(3, toNano(bounds.getMaxLat()));
+            bbox.writeSInt64(4, toNano(bounds.getMinLat()));
+            header.writeMessage(1, bbox);
+        }
+        header.writeString(4, PbfReader.FEATURE_SCHEMA);
+        header.writeString(4, PbfReader.FEATURE_DENSE_NODES);
+        header.writeString(16, "JOSM");
+        writeBlob(PbfReader.BLOB_OSM_HEADER, header.toByteArray());
+    }
+
+    private static long toNano(double degrees) {
+        return Math.round(degrees * 1e9);
+    }
+
+    private static long toRaw(double degrees) {
+        return Math.round(degrees * 1e9 / GRANULARITY);
+    }
+
+    private void writeNodes(List<Node> nodes) throws IOException {
+        StringTable strings = new StringTable();
+        ProtobufOutput ids = new ProtobufOutput();
+        ProtobufOutput lats = new ProtobufOutput();
+        ProtobufOutput lons = new ProtobufOutput();
+        ProtobufOutput keysVals = new ProtobufOutput();
+        ProtobufOutput versions = new ProtobufOutput();
+        ProtobufOutput timestamps = new ProtobufOutput();
+        ProtobufOutput changesets = new ProtobufOutput();
+        ProtobufOutput uids = new ProtobufOutput();
+        ProtobufOutput userSids = new ProtobufOutput();
+        long id = 0;
+        long lat = 0;
+        long lon = 0;
+        long timestamp = 0;
+        long changeset = 0;
+        long uid = 0;
+        long userSid = 0;
+        boolean hasTags = false;
+        for (Node n : nodes) {
+            LatLon ll = n.getCoor();
+            long nLat = toRaw(ll.lat());
+            long nLon = toRaw(ll.lon());
+            ids.writeRawSInt64(n.getUniqueId() - id);
+            lats.writeRawSInt64(nLat - lat);
+            lons.writeRawSInt64(nLon - lon);
+            id = n.getUniqueId();
+            lat = nLat;
+            lon = nLon;
+            versions.writeRawVarint(n.getVersion() > 0 ? n.getVersion() : -1);
+            timestamps.writeRawSInt64(n.getRawTimestamp() - timestamp);
+            timestamp = n.getRawTimestamp();
+            changesets.writeRawSInt64(n.getChangesetId() - changeset);
+            changeset = n.getChangesetId();
+            long nUid = userId(n.getUser());
+            long nUserSid = strings.indexOf(n.getUser() != null ? n.getUser().getName() : "");
+            uids.writeRawSInt64(nUid - uid);
+            userSids.writeRawSInt64(nUserSid - userSid);
+            uid = nUid;
+            userSid = nUserSid;
+            for (Entry<String, String> tag : n.getKeys().entrySet()) {
+                keysVals.writeRawVarint(strings.indexOf(tag.getKey()));
+                keysVals.writeRawVarint(strings.indexOf(tag.getValue()));
+                hasTags = true;
+            }
+            keysVals.writeRawVarint(0);
+        }
+        ProtobufOutput info = new ProtobufOutput();
+        info.writeBytes(1, versions.toByteArray());
+        info.writeBytes(2, timestamps.toByteArray());
+        info.writeBytes(3, changesets.toByteArray());
+        info.writeBytes(4, uids.toByteArray());
+        info.writeBytes(5, userSids.toByteArray());
+        ProtobufOutput dense = new ProtobufOutput();
+        dense.writeBytes(1, ids.toByteArray());
+        dense.writeMessage(5, info);
+        dense.writeBytes(8, lats.toByteArray());
+        dense.writeBytes(9, lons.toByteArray());
+        if (hasTags) {
+            dense.writeBytes(10, keysVals.toByteArray());
+        }
+        ProtobufOutput group = new ProtobufOutput();
+        group.writeMessage(2, dense);
+        writePrimitiveBlock(strings, group);
+    }
+
+    private void writeWays(List<Way> ways) throws IOException {
+        StringTable strings = new StringTable();
+        ProtobufOutput group = new ProtobufOutput();
+        for (Way w : ways) {
+            ProtobufOutput way = new ProtobufOutput();
+            way.writeVarint(1, w.getUniqueId());
+            writeTagsAndInfo(way, w, strings);
+            ProtobufOutput refs = new ProtobufOutput();
+            long ref = 0;
+            for (Node n : w.getNodes()) {
+                refs.writeRawSInt64(n.getUniqueId() - ref);
+                ref = n.getUniqueId();
+            }
+            way.writeBytes(8, refs.toByteArray());
+            group.writeMessage(3, way);
+        }
+        writePrimitiveBlock(strings, group);
+    }
+
+    private void writeRelations(List<Relation> relations) throws IOException {
+        StringTable strings = new StringTable();
+        ProtobufOutput group = new ProtobufOutput();
+        for (Relation r : relations) {
+            ProtobufOutput relation = new ProtobufOutput();
+            relation.writeVarint(1, r.getUniqueId());
+            writeTagsAndInfo(relation, r, strings);
+            ProtobufOutput roles = new ProtobufOutput();
+            ProtobufOutput memIds = new ProtobufOutput();
+            ProtobufOutput types = new ProtobufOutput();
+            long memId = 0;
+            for (RelationMember m : r.getMembers()) {
+                roles.writeRawVarint(strings.indexOf(m.getRole()));
+                memIds.writeRawSInt64(m.getUniqueId() - memId);
+                memId = m.getUniqueId();
+                types.writeRawVarint(m.getType().ordinal());
+            }
+            relation.writeBytes(8, roles.toByteArray());
+            relation.writeBytes(9, memIds.toByteArray());
+            relation.writeBytes(10, types.toByteArray());
+            group.writeMessage(4, relation);
+        }
+        writePrimitiveBlock(strings, group);
+    }
+
+    private static void writeTagsAndInfo(ProtobufOutput message, OsmPrimitive p, StringTable strings) {
+        ProtobufOutput keys = new ProtobufOutput();
+        ProtobufOutput vals = new ProtobufOutput();
+        for (Entry<String, String> tag : p.getKeys().entrySet()) {
+            keys.writeRawVarint(strings.indexOf(tag.getKey()));
+            vals.writeRawVarint(strings.indexOf(tag.getValue()));
+        }
+        message.writeBytes(2, keys.toByteArray());
+        message.writeBytes(3, vals.toByteArray());
+        ProtobufOutput info = new ProtobufOutput();
+        info.writeVarint(1, p.getVersion() > 0 ? p.getVersion() : -1);
+        info.writeVarint(2, p.getRawTimestamp());
+        info.writeVarint(3, p.getChangesetId());
+        info.writeVarint(4, userId(p.getUser()));
+        info.writeVarint(5, strings.indexOf(p.getUser() != null ? p.getUser().getName() : ""));
+        message.writeMessage(4, info);
+    }
+
+    private static long userId(User user) {
+        return user != null && user.isOsmUser() ? user.getId() : 0;
+    }
+
+    private void writePrimitiveBlock(StringTable strings, ProtobufOutput group) throws IOException {
+        ProtobufOutput table = new ProtobufOutput();
+        for (String s : strings.strings) {
+            table.writeString(1, s);
+        }
+        ProtobufOutput block = new ProtobufOutput();
+        block.writeMessage(1, table);
+        block.writeMessage(2, group);
+        writeBlob(PbfReader.BLOB_OSM_DATA, block.toByteArray());
+    }
+
+    private void writeBlob(String type, byte[] data) throws IOException {
+        Deflater deflater = new Deflater();
+        byte[] compressed;
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            compressed = new byte[Math.max(64, data.length + data.length / 1000 + 64)];
+            int n = 0;
+            while (!deflater.finished()) {
+                if (n == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                n += deflater.deflate(compressed, n, compressed.length - n);
+            }
+            compressed = Arrays.copyOf(compressed, n);
+        } finally {
+            deflater.end();
+        }
+        ProtobufOutput blob = new ProtobufOutput();
+        blob.writeVarint(2, data.length);
+        blob.writeBytes(3, compressed);
+        byte[] blobBytes = blob.toByteArray();
+        ProtobufOutput header = new ProtobufOutput();
+        header.writeString(1, type);
+        header.writeVarint(3, blobBytes.length);
+        byte[] headerBytes = header.toByteArray();
+        out.writeInt(headerBytes.length);
+        out.write(headerBytes);
+        out.write(blobBytes);
+    }
+
+    /**
+     * String table of a primitive block. Index 0 is reserved for the empty string, used as delimiter.
+     */
+    private static final class StringTable {
+        final List<String> strings = new ArrayList<>();
+        final Map<String, Integer> indexes = new HashMap<>();
+
+        StringTable() {
+            indexOf("");
+        }
+
+        int indexOf(String s) {
+            return indexes.computeIfAbsent(s, k -> {
+                strings.add(k);
+                return strings.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * Minimal writer of the protocol buffers wire format, backed by a growable byte array.
+     */
+    static final class ProtobufOutput {
+        private byte[] buf = new byte[256];
+        private int size;
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+            }
+        }
+
+        void writeRawVarint(long value) {
+            ensureCapacity(10);
+            long v = value;
+            while ((v & ~0x7fL) != 0) {
+                buf[size++] = (byte) ((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        void writeRawSInt64(long value) {
+            writeRawVarint((value << 1) ^ (value >> 63));
+        }
+
+        private void writeTag(int field, int wireType) {
+            writeRawVarint((field << 3) | wireType);
+        }
+
+        void writeVarint(int field, long value) {
+            writeTag(field, 0);
+            writeRawVarint(value);
+        }
+
+        void writeSInt64(int field, long value) {
+            writeTag(field, 0);
+            writeRawSInt64(value);
+        }
+
+        void writeBytes(int field, byte[] value) {
+            writeBytes(field, value, value.length);
+        }
+
+        private void writeBytes(int field, byte[] value, int length) {
+            writeTag(field, 2);
+            writeRawVarint(length);
+            ensureCapacity(length);
+            System.arraycopy(value, 0, buf, size, length);
+            size += length;
+        }
+
+        void writeString(int field, String value) {
+            writeBytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeMessage(int field, ProtobufOutput message) {
+            writeBytes(field, message.buf, message.size);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Utils.close(out);
+    }
+}
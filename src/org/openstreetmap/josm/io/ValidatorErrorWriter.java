@@ -9,13 +9,12 @@ import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
-import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import org.openstreetmap.josm.command.AddPrimitivesCommand;
@@ -41,6 +40,9 @@ import org.openstreetmap.josm.tools.date.DateUtils;
  */
 public class ValidatorErrorWriter extends XmlWriter {
 
+    private String timestamp;
+    private OsmWriter osmWriter;
+
     /**
      * Constructs a new {@code ValidatorErrorWriter} that will write to the given {@link PrintWriter}.
      * @param out PrintWriter to write XML to
@@ -63,71 +65,95 @@ public class ValidatorErrorWriter extends XmlWriter {
      * @throws IOException in case of I/O error
      */
     public void write(Collection<TestError> validationErrors) throws IOException {
-        Set<Test> analysers = validationErrors.stream().map(TestError::getTester).collect(Collectors.toCollection(TreeSet::new));
-        String timestamp = DateUtils.fromDate(new Date());
+        List<Test> analysers = validationErrors.stream().map(TestError::getTester).distinct()
+                .sorted(Comparator.comparing(Test::getName)).collect(Collectors.toList());
+        writeStart();
+        for (Test test : analysers) {
+            writeAnalyser(test, validationErrors);
+        }
+        writeEnd();
+    }
 
+    /**
+     * Writes the start of the document. Errors can then be streamed test by test with
+     * {@link #writeAnalyser(Test, Collection)}, before ending the document with {@link #writeEnd()}.
+     * @since 17246
+     */
+    public void writeStart() {
+        timestamp = DateUtils.fromDate(new Date());
+        osmWriter = OsmWriterFactory.createOsmWriter(out, true, OsmChangeBuilder.DEFAULT_API_VERSION);
         out.println("<?xml version='1.0' encoding='UTF-8'?>");
         out.println("<analysers generator='JOSM' timestamp='"+timestamp+"'>");
+    }
 
-        try (OsmWriter osmWriter = OsmWriterFactory.createOsmWriter(out, true, OsmChangeBuilder.DEFAULT_API_VERSION)) {
-            String lang = LanguageInfo.getJOSMLocaleCode();
+    /**
+     * Writes the errors of a test. Errors of other tests in the collection are ignored.
+     * @param test the test
+     * @param validationErrors Test error collection to write
+     * @since 17246
+     */
+    public void writeAnalyser(Test test, Collection<TestError> validationErrors) {
+        String lang = LanguageInfo.getJOSMLocaleCode();
+        out.println("  <analyser timestamp='" + timestamp + "' name='" + XmlWriter.encode(test.getName()) + "'>");
+        // Build map of test error classes for the current test
+        Map<ErrorClass, List<TestError>> map = new LinkedHashMap<>();
+        for (Entry<Severity, Map<String, Map<String, List<TestError>>>> e1 :
+                OsmValidator.getErrorsBySeverityMessageDescription(validationErrors, e -> e.getTester() == test).entrySet()) {
+            for (Entry<String, Map<String, List<TestError>>> e2 : e1.getValue().entrySet()) {
+                ErrorClass errorClass = new ErrorClass(e1.getKey(), e2.getKey());
+                List<TestError> list = map.computeIfAbsent(errorClass, k -> new ArrayList<>());
+                e2.getValue().values().forEach(list::addAll);
+            }
+        }
+        // Write classes
+        for (ErrorClass ec : map.keySet()) {
+            out.println("    <class id='" + ec.id + "' level='" + ec.severity.getLevel() + "'>");
+            out.println("      <classtext lang='" + XmlWriter.encode(lang) + "' title='" + XmlWriter.encode(ec.message) + "'/>");
+            out.println("    </class>");
+        }
 
-            for (Test test : analysers) {
-                out.println("  <analyser timestamp='" + timestamp + "' name='" + XmlWriter.encode(test.getName()) + "'>");
-                // Build map of test error classes for the current test
-                Map<ErrorClass, List<TestError>> map = new HashMap<>();
-                for (Entry<Severity, Map<String, Map<String, List<TestError>>>> e1 :
-                        OsmValidator.getErrorsBySeverityMessageDescription(validationErrors, e -> e.getTester() == test).entrySet()) {
-                    for (Entry<String, Map<String, List<TestError>>> e2 : e1.getValue().entrySet()) {
-                        ErrorClass errorClass = new ErrorClass(e1.getKey(), e2.getKey());
-                        List<TestError> list = map.computeIfAbsent(errorClass, k -> new ArrayList<>());
-                        e2.getValue().values().forEach(list::addAll);
-                    }
-                }
-                // Write classes
-                for (ErrorClass ec : map.keySet()) {
-                    out.println("    <class id='" + ec.id + "' level='" + ec.severity.getLevel() + "'>");
-                    out.println("      <classtext lang='" + XmlWriter.encode(lang) + "' title='" + XmlWriter.encode(ec.message) + "'/>");
-                    out.println("    </class>");
+        // Write errors
+        for (Entry<ErrorClass, List<TestError>> entry : map.entrySet()) {
+            for (TestError error : entry.getValue()) {
+                LatLon ll = error.getPrimitives().iterator().next().getBBox().getCenter();
+                out.println("    <error class='" + entry.getKey().id + "'>");
+                out.print("      <location");
+                osmWriter.writeLatLon(ll);
+                out.println("/>");
+                for (OsmPrimitive p : error.getPrimitives()) {
+                    p.accept(osmWriter);
                 }
-
-                // Write errors
-                for (Entry<ErrorClass, List<TestError>> entry : map.entrySet()) {
-                    for (TestError error : entry.getValue()) {
-                        LatLon ll = error.getPrimitives().iterator().next().getBBox().getCenter();
-                        out.println("    <error class='" + entry.getKey().id + "'>");
-                        out.print("      <location");
-                        osmWriter.writeLatLon(ll);
-                        out.println("/>");
-                        for (OsmPrimitive p : error.getPrimitives()) {
-                            p.accept(osmWriter);
-                        }
-                        out.println("      <text lang='" + XmlWriter.encode(lang) +
-                                "' value='" + XmlWriter.encode(error.getDescription()) + "'/>");
-                        if (error.isFixable()) {
-                            out.println("      <fixes>");
-                            Command fix = error.getFix();
-                            if (fix instanceof AddPrimitivesCommand) {
-                                Logging.info("TODO: {0}", fix);
-                            } else if (fix instanceof DeleteCommand) {
-                                Logging.info("TODO: {0}", fix);
-                            } else if (fix instanceof ChangePropertyCommand) {
-                                Logging.info("TODO: {0}", fix);
-                            } else if (fix instanceof ChangePropertyKeyCommand) {
-                                Logging.info("TODO: {0}", fix);
-                            } else {
-                                Logging.warn("Unsupported command type: {0}", fix);
-                            }
-                            out.println("      </fixes>");
-                        }
-                        out.println("    </error>");
+                out.println("      <text lang='" + XmlWriter.encode(lang) +
+                        "' value='" + XmlWriter.encode(error.getDescription()) + "'/>");
+                if (error.isFixable()) {
+                    out.println("      <fixes>");
+                    Command fix = error.getFix();
+                    if (fix instanceof AddPrimitivesCommand) {
+                        Logging.info("TODO: {0}", fix);
+                    } else if (fix instanceof DeleteCommand) {
+                        Logging.info("TODO: {0}", fix);
+                    } else if (fix instanceof ChangePropertyCommand) {
+                        Logging.info("TODO: {0}", fix);
+                    } else if (fix instanceof ChangePropertyKeyCommand) {
+                        Logging.info("TODO: {0}", fix);
+                    } else {
+                        Logging.warn("Unsupported command type: {0}", fix);
                     }
+                    out.println("      </fixes>");
                 }
-
-                out.println("  </analyser>");
+                out.println("    </error>");
             }
         }
 
+        out.println("  </analyser>");
+        out.flush();
+    }
+
+    /**
+     * Writes the end of the document.
+     * @since 17246
+     */
+    public void writeEnd() {
         out.println("</analysers>");
         out.flush();
     }
@@ -0,0 +1,61 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Shared setup of JMH benchmarks.
+ * <p>
+ * Benchmarks are run in forked JVMs by {@code ant benchmark}, with the working directory and system properties of the
+ * performance tests.
+ */
+public final class BenchmarkData {
+
+    /** A real world data set of a city, with about 200,000 primitives */
+    public static final String CITY = "nodist/data/neubrandenburg.osm.bz2";
+
+    private BenchmarkData() {
+        // Hide default constructor for utils classes
+    }
+
+    /**
+     * Initializes JOSM (preferences, projection...) as for performance tests.
+     */
+    public static void initFixture() {
+        JOSMFixture.createPerformanceTestFixture().init(true);
+    }
+
+    /**
+     * Reads a data file, uncompressed.
+     * @param file data file, possibly compressed
+     * @return uncompressed content
+     * @throws IOException if the file cannot be read
+     */
+    public static byte[] readUncompressed(String file) throws IOException {
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File(file))) {
+            return Utils.readBytesFromStream(in);
+        }
+    }
+
+    /**
+     * Loads an OSM data file.
+     * @param file OSM file, possibly compressed
+     * @return the data set
+     * @throws IOException if the file cannot be read
+     * @throws IllegalDataException if the file is invalid
+     */
+    public static DataSet loadDataSet(String file) throws IOException, IllegalDataException {
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File(file))) {
+            return OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+    }
+}
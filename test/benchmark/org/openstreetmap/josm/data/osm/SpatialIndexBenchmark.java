@@ -0,0 +1,97 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.BenchmarkData;
+
+/**
+ * Benchmarks {@link SpatialIndex} implementations: {@link QuadBuckets} and {@link PackedRTree}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpatialIndexBenchmark {
+
+    private static final int SEARCH_BOXES = 1024;
+
+    /** Spatial index implementation */
+    @Param({"QuadBuckets", "PackedRTree"})
+    public String index;
+
+    /** Number of random nodes */
+    @Param({"100000"})
+    public int nodeCount;
+
+    private List<Node> nodes;
+    private SpatialIndex<Node> spatialIndex;
+    private BBox[] searches;
+    private int next;
+
+    /**
+     * Generates the nodes and search boxes, each search box covering 1% of the data bounds.
+     */
+    @Setup
+    public void setUp() {
+        BenchmarkData.initFixture();
+        nodes = new ArrayList<>(OsmDataGenerator.getNodes(nodeCount).generateDataSet().getNodes());
+        spatialIndex = newIndex();
+        spatialIndex.addAll(nodes);
+        BBox bounds = new BBox();
+        nodes.forEach(n -> bounds.add(n.getCoor()));
+        double width = bounds.width() / 10;
+        double height = bounds.height() / 10;
+        Random random = new Random(42);
+        searches = new BBox[SEARCH_BOXES];
+        for (int i = 0; i < SEARCH_BOXES; i++) {
+            double x = bounds.getTopLeftLon() + random.nextDouble() * (bounds.width() - width);
+            double y = bounds.getBottomRightLat() + random.nextDouble() * (bounds.height() - height);
+            searches[i] = new BBox(x, y, x + width, y + height);
+        }
+    }
+
+    private SpatialIndex<Node> newIndex() {
+        return "PackedRTree".equals(index) ? new PackedRTree<>() : new QuadBuckets<>();
+    }
+
+    /**
+     * Searches the nodes in a bounding box.
+     * @return found nodes
+     */
+    @Benchmark
+    public List<Node> search() {
+        next = (next + 1) % SEARCH_BOXES;
+        return spatialIndex.search(searches[next]);
+    }
+
+    /**
+     * Builds the index by adding nodes one at a time.
+     * @return the index
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SpatialIndex<Node> buildIncremental() {
+        SpatialIndex<Node> result = newIndex();
+        for (Node n : nodes) {
+            result.add(n);
+        }
+        return result;
+    }
+}
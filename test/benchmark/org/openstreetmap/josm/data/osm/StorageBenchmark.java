@@ -0,0 +1,76 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.BenchmarkData;
+
+/**
+ * Benchmarks {@link Storage#get} and lookups by id through a foreign key, as done by {@link DataSet#getPrimitiveById}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    private static final int NODE_COUNT = 100_000;
+
+    private final Storage<OsmPrimitive> storage = new Storage<>(new Storage.PrimitiveIdHash(), true);
+    private final Map<PrimitiveId, OsmPrimitive> map = storage.foreignKey(new Storage.PrimitiveIdHash());
+    private Node[] nodes;
+    private PrimitiveId[] ids;
+    private int next;
+
+    /**
+     * Fills the storage with nodes having consecutive positive ids.
+     */
+    @Setup
+    public void setUp() {
+        BenchmarkData.initFixture();
+        nodes = new Node[NODE_COUNT];
+        ids = new PrimitiveId[NODE_COUNT];
+        for (int i = 0; i < NODE_COUNT; i++) {
+            nodes[i] = new Node(i + 1L);
+            // every other id is missing from the storage
+            ids[i] = new SimplePrimitiveId(2L * i + 1, OsmPrimitiveType.NODE);
+            storage.add(nodes[i]);
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 7919) % NODE_COUNT;
+        return next;
+    }
+
+    /**
+     * Gets a primitive by itself.
+     * @return the primitive
+     */
+    @Benchmark
+    public OsmPrimitive get() {
+        return storage.get(nodes[nextIndex()]);
+    }
+
+    /**
+     * Gets a primitive by id, half of the ids being missing.
+     * @return the primitive, or {@code null}
+     */
+    @Benchmark
+    public OsmPrimitive getById() {
+        return map.get(ids[nextIndex()]);
+    }
+}
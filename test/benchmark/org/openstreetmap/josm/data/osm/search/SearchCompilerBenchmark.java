@@ -0,0 +1,72 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.BenchmarkData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.Match;
+
+/**
+ * Benchmarks {@link SearchCompiler} matching of all primitives of a city.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchCompilerBenchmark {
+
+    /** Search expression */
+    @Param({
+        "highway=residential",
+        "building OR amenity",
+        "type:way -highway -building",
+        "name:Neubrandenburg",
+        "\"addr:street\"=*Straße"
+    })
+    public String expression;
+
+    private List<OsmPrimitive> primitives;
+    private Match match;
+
+    /**
+     * Loads the city and compiles the expression.
+     * @throws Exception if the data cannot be loaded or the expression is invalid
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.initFixture();
+        primitives = new ArrayList<>(BenchmarkData.loadDataSet(BenchmarkData.CITY).allPrimitives());
+        match = SearchCompiler.compile(expression);
+    }
+
+    /**
+     * Matches all primitives.
+     * @return the number of matching primitives
+     */
+    @Benchmark
+    public int match() {
+        int count = 0;
+        for (OsmPrimitive p : primitives) {
+            if (match.match(p)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
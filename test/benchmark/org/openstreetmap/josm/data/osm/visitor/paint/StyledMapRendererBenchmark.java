@@ -0,0 +1,103 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.BenchmarkData;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+
+/**
+ * Benchmarks full frames of {@link StyledMapRenderer} with the default map style, for a city.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StyledMapRendererBenchmark {
+
+    private static final int IMG_WIDTH = 1400;
+    private static final int IMG_HEIGHT = 1050;
+
+    /** Rendered area: the whole city, or a few streets */
+    @Param({"city", "streets"})
+    public String area;
+
+    private DataSet ds;
+    private Bounds bounds;
+    private Graphics2D g;
+    private StyledMapRenderer renderer;
+
+    /**
+     * Loads the default map style and the city, and creates the renderer.
+     * @throws Exception if the data cannot be loaded
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.initFixture();
+        MapPaintStyles.readFromPreferences();
+        ds = BenchmarkData.loadDataSet(BenchmarkData.CITY);
+        bounds = "city".equals(area)
+                ? new Bounds(53.51, 13.20, 53.59, 13.34)
+                : new Bounds(53.56, 13.25, 53.57, 13.26);
+        BufferedImage img = new BufferedImage(IMG_WIDTH, IMG_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        g = (Graphics2D) img.getGraphics();
+        g.setClip(0, 0, IMG_WIDTH, IMG_HEIGHT);
+        NavigatableComponent nc = new NavigatableComponent() {
+            {
+                setBounds(0, 0, IMG_WIDTH, IMG_HEIGHT);
+                updateLocationState();
+            }
+
+            @Override
+            protected boolean isVisibleOnScreen() {
+                return true;
+            }
+
+            @Override
+            public Point getLocationOnScreen() {
+                return new Point(0, 0);
+            }
+        };
+        nc.zoomTo(bounds);
+        renderer = new StyledMapRenderer(g, nc, false);
+    }
+
+    /**
+     * Releases the graphics.
+     */
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+    }
+
+    /**
+     * Renders a frame.
+     */
+    @Benchmark
+    public void render() {
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, IMG_WIDTH, IMG_HEIGHT);
+        renderer.render(ds, true, bounds);
+    }
+}
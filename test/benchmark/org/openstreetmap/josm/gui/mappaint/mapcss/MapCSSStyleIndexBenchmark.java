@@ -0,0 +1,85 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.mapcss;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openstreetmap.josm.BenchmarkData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+
+/**
+ * Benchmarks {@link MapCSSStyleIndex} rule lookup with the default map style, for all primitives of a city.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapCSSStyleIndexBenchmark {
+
+    private final MapCSSStyleIndex index = new MapCSSStyleIndex();
+    private List<MapCSSRule> rules;
+    private List<OsmPrimitive> primitives;
+
+    /**
+     * Loads the default map style and the city.
+     * @throws Exception if the data cannot be loaded
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.initFixture();
+        MapPaintStyles.readFromPreferences();
+        MapCSSStyleSource source = MapPaintStyles.getStyles().getStyleSources().stream()
+                .filter(MapCSSStyleSource.class::isInstance)
+                .map(MapCSSStyleSource.class::cast)
+                .findFirst().orElseThrow(() -> new IllegalStateException("No MapCSS style"));
+        rules = new ArrayList<>(source.rules);
+        index.buildIndex(rules.stream());
+        primitives = new ArrayList<>(BenchmarkData.loadDataSet(BenchmarkData.CITY).allPrimitives());
+    }
+
+    /**
+     * Builds the index of the default map style.
+     * @return the index
+     */
+    @Benchmark
+    public MapCSSStyleIndex buildIndex() {
+        MapCSSStyleIndex result = new MapCSSStyleIndex();
+        result.buildIndex(rules.stream());
+        return result;
+    }
+
+    /**
+     * Gets the rule candidates of all primitives.
+     * @param blackhole consumes the candidates
+     */
+    @Benchmark
+    public void getRuleCandidates(Blackhole blackhole) {
+        MapCSSStyleSource.STYLE_SOURCE_LOCK.readLock().lock();
+        try {
+            for (OsmPrimitive p : primitives) {
+                Iterator<MapCSSRule> candidates = index.getRuleCandidates(p);
+                while (candidates.hasNext()) {
+                    blackhole.consume(candidates.next());
+                }
+            }
+        } finally {
+            MapCSSStyleSource.STYLE_SOURCE_LOCK.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.BenchmarkData;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+
+/**
+ * Benchmarks {@link OsmReader} parsing of a city, sequentially and with the parallel pipeline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OsmReaderBenchmark {
+
+    /** Whether the parallel pipeline is used */
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private byte[] data;
+
+    /**
+     * Reads the uncompressed file in memory.
+     * @throws Exception if the file cannot be read
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.initFixture();
+        OsmReader.PARALLEL_PARSING.put(parallel);
+        data = BenchmarkData.readUncompressed(BenchmarkData.CITY);
+    }
+
+    /**
+     * Parses the city.
+     * @return the data set
+     * @throws IllegalDataException never
+     */
+    @Benchmark
+    public DataSet parse() throws IllegalDataException {
+        return OsmReader.parseDataSet(new ByteArrayInputStream(data), NullProgressMonitor.INSTANCE);
+    }
+}
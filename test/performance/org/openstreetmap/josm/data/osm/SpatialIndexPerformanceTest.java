@@ -0,0 +1,91 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.PerformanceTestUtils;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This test compares the build and search performance of {@link QuadBuckets} and {@link PackedRTree},
+ * on the random nodes of {@link OsmDataGenerator}.
+ */
+@Timeout(value = 15*60, unit = TimeUnit.SECONDS)
+class SpatialIndexPerformanceTest {
+    private static final int NODE_COUNT = 100_000;
+    private static final int SEARCH_COUNT = 10_000;
+
+    private List<Node> nodes;
+    private List<BBox> searches;
+
+    /**
+     * Prepare the test.
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().projection();
+
+    /**
+     * Generates the nodes and the search boxes, each covering 1% of the data bounds.
+     */
+    @BeforeEach
+    public void generateData() {
+        nodes = new ArrayList<>(OsmDataGenerator.getNodes(NODE_COUNT).generateDataSet().getNodes());
+        BBox bounds = new BBox();
+        nodes.forEach(n -> bounds.add(n.getCoor()));
+        double width = bounds.width() / 10;
+        double height = bounds.height() / 10;
+        Random random = new Random(42);
+        searches = new ArrayList<>(SEARCH_COUNT);
+        for (int i = 0; i < SEARCH_COUNT; i++) {
+            double x = bounds.getTopLeftLon() + random.nextDouble() * (bounds.width() - width);
+            double y = bounds.getBottomRightLat() + random.nextDouble() * (bounds.height() - height);
+            searches.add(new BBox(x, y, x + width, y + height));
+        }
+    }
+
+    private void testIndex(String name, Supplier<SpatialIndex<Node>> factory) {
+        PerformanceTestUtils.runPerformanceTest(name + " incremental build (ms)", () -> {
+            SpatialIndex<Node> index = factory.get();
+            nodes.forEach(index::add);
+        });
+        SpatialIndex<Node> index = factory.get();
+        nodes.forEach(index::add);
+        assertEquals(NODE_COUNT, index.size());
+        int[] found = new int[1];
+        PerformanceTestUtils.runPerformanceTest(name + " " + SEARCH_COUNT + " searches (ms)", () -> {
+            found[0] = 0;
+            searches.forEach(b -> found[0] += index.search(b).size());
+        });
+        System.out.println(name + ": " + found[0] + " nodes found");
+    }
+
+    /**
+     * Measures {@link QuadBuckets}.
+     */
+    @Test
+    void testQuadBuckets() {
+        testIndex("QuadBuckets", QuadBuckets::new);
+    }
+
+    /**
+     * Measures {@link PackedRTree}, including bulk loading.
+     */
+    @Test
+    void testPackedRTree() {
+        testIndex("PackedRTree", PackedRTree::new);
+        PerformanceTestUtils.runPerformanceTest("PackedRTree bulk load (ms)", () -> new PackedRTree<>(nodes));
+    }
+}
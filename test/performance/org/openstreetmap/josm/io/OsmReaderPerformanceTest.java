@@ -18,6 +18,7 @@ import org.openstreetmap.josm.JOSMFixture;
 import org.openstreetmap.josm.PerformanceTestUtils;
 import org.openstreetmap.josm.PerformanceTestUtils.PerformanceTestTimer;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.spi.preferences.Config;
 
 /**
  * This test tests how fast we are at reading an OSM file.
@@ -57,7 +58,27 @@ class OsmReaderPerformanceTest {
         runTest(".osm-file", true);
     }
 
-    private void runTest(String what, boolean decompressBeforeRead) throws IllegalDataException, IOException {
+    /**
+     * Compares the sequential parser with the parallel pipeline, on a plain read of a .osm file (from memory)
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testPipelineSpeedup() throws Exception {
+        boolean parallel = OsmReader.PARALLEL_PARSING.get();
+        try {
+            OsmReader.PARALLEL_PARSING.put(false);
+            long sequentialTime = runTest(".osm-file (sequential)", true);
+            OsmReader.PARALLEL_PARSING.put(true);
+            long pipelineTime = runTest(".osm-file (pipeline, " +
+                    Config.getPref().getInt(OsmReader.THREADS_PREF, Runtime.getRuntime().availableProcessors()) + " threads)", true);
+            PerformanceTestUtils.measurementPlotsPluginOutput("load .osm-file pipeline speedup",
+                    (double) sequentialTime / Math.max(1, pipelineTime));
+        } finally {
+            OsmReader.PARALLEL_PARSING.put(parallel);
+        }
+    }
+
+    private long runTest(String what, boolean decompressBeforeRead) throws IllegalDataException, IOException {
         InputStream is = loadFile(decompressBeforeRead);
         PerformanceTestTimer timer = PerformanceTestUtils.startTimer("load " + what + " " + TIMES + " times");
         DataSet ds = null;
@@ -67,8 +88,10 @@ class OsmReaderPerformanceTest {
             ds = OsmReader.parseDataSet(decompressBeforeRead ? is : Compression.byExtension(DATA_FILE)
                     .getUncompressedInputStream(is), null);
         }
+        long time = timer.getTimeSinceCreation();
         timer.done();
         assertNotNull(ds);
+        return time;
     }
 
     private InputStream loadFile(boolean decompressBeforeRead) throws IOException {
@@ -6,6 +6,10 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -73,6 +77,61 @@ class HostLimitQueueTest {
         }
     }
 
+    /**
+     * Mock class recording the order in which tasks are run
+     */
+    static class PriorityTask extends Task {
+        private final String name;
+        private final double priority;
+        private final List<String> log;
+
+        PriorityTask(ICacheAccess<String, CacheEntry> cache, String name, double priority, List<String> log)
+                throws IOException {
+            super(cache, new URL("http://localhost/" + name), new AtomicInteger(0));
+            this.name = name;
+            this.priority = priority;
+            this.log = log;
+        }
+
+        @Override
+        public void run() {
+            log.add(name);
+            executionFinished();
+        }
+
+        @Override
+        public double getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void handleJobCancellation() {
+            log.add("canceled " + name);
+        }
+    }
+
+    /**
+     * Check that queued tasks are run by priority, and that tasks of infinite priority are cancelled
+     * @throws Exception in case of error
+     */
+    @Test
+    void testPriority() throws Exception {
+        ThreadPoolExecutor tpe = TMSCachedTileLoader.getNewThreadPoolExecutor("test-%d", 1, 1);
+        ICacheAccess<String, CacheEntry> cache = JCSCacheManager.getCache("test", 3, 0, "");
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        // the first task spawns the thread and keeps it busy, while the other tasks are queued
+        tpe.execute(new Task(cache, new URL("http://localhost/"), new AtomicInteger(0)));
+        tpe.execute(new PriorityTask(cache, "a", 3, log));
+        tpe.execute(new PriorityTask(cache, "b", 1, log));
+        tpe.execute(new PriorityTask(cache, "c", Double.POSITIVE_INFINITY, log));
+        tpe.execute(new PriorityTask(cache, "d", 2, log));
+        tpe.execute(new PriorityTask(cache, "e", 1, log));
+        tpe.shutdown();
+        tpe.awaitTermination(15, TimeUnit.SECONDS);
+        // tasks of equal priority are run in submission order
+        assertEquals(Arrays.asList("canceled c", "b", "e", "d", "a"), log);
+    }
+
     /**
      * Check if single threaded execution works properly
      * @throws Exception in case of error
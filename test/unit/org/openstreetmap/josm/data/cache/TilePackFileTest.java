@@ -0,0 +1,253 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests of {@link TilePackFile} class.
+ */
+class TilePackFileTest {
+
+    @TempDir
+    File dir;
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String getData(TilePackFile pack, String key) throws IOException {
+        TilePackFile.Record record = pack.get(key);
+        if (record == null) {
+            return null;
+        }
+        ByteBuffer data = record.getData();
+        byte[] result = new byte[data.remaining()];
+        data.get(result);
+        return new String(result, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that records are added, replaced and removed.
+     * @throws IOException never
+     */
+    @Test
+    void testPutGetRemove() throws IOException {
+        try (TilePackFile pack = new TilePackFile(dir, "test", 0)) {
+            pack.put("a", 1, bytes("meta"), bytes("data a"));
+            pack.put("b", 2, new byte[0], bytes("data b"));
+            assertEquals(2, pack.size());
+            assertEquals("data a", getData(pack, "a"));
+            TilePackFile.Record record = pack.get("a");
+            assertEquals(1, record.getKind());
+            assertTrue(record.getData().isReadOnly());
+            assertEquals(ByteBuffer.wrap(bytes("meta")), record.getMeta());
+            assertNull(pack.get("c"));
+
+            pack.put("a", 1, new byte[0], bytes("new data a"));
+            assertEquals(2, pack.size());
+            assertEquals("new data a", getData(pack, "a"));
+            // the record read before is still valid
+            assertEquals(ByteBuffer.wrap(bytes("data a")), record.getData());
+
+            assertTrue(pack.remove("b"));
+            assertFalse(pack.remove("b"));
+            assertFalse(pack.contains("b"));
+            assertEquals(Arrays.asList("a"), pack.getKeys());
+        }
+    }
+
+    /**
+     * Checks that many records survive the growth of the hash table and the removal of others.
+     * @throws IOException never
+     */
+    @Test
+    void testManyRecords() throws IOException {
+        try (TilePackFile pack = new TilePackFile(dir, "test", 0)) {
+            for (int i = 0; i < 5000; i++) {
+                pack.put("tile" + i, 1, new byte[0], bytes("data" + i));
+            }
+            for (int i = 0; i < 5000; i += 3) {
+                assertTrue(pack.remove("tile" + i));
+            }
+            assertEquals(5000 - 1667, pack.size());
+            for (int i = 0; i < 5000; i++) {
+                assertEquals(i % 3 == 0 ? null : "data" + i, getData(pack, "tile" + i));
+            }
+        }
+    }
+
+    /**
+     * Checks that the records are found again after reopening the pack, with or without index.
+     * @throws IOException never
+     */
+    @Test
+    void testReopen() throws IOException {
+        try (TilePackFile pack = new TilePackFile(dir, "test", 0)) {
+            pack.put("a", 1, new byte[0], bytes("data a"));
+            pack.put("b", 1, new byte[0], bytes("data b"));
+            pack.put("c", 1, new byte[0], bytes("data c"));
+            pack.remove("b");
+        }
+        try (TilePackFile pack = new TilePackFile(dir, "test", 0)) {
+            assertEquals(2, pack.size());
+            assertEquals("data a", getData(pack, "a"));
+            assertNull(getData(pack, "b"));
+        }
+        // without index, the pack is scanned, including the removals
+        Files.delete(new File(dir, "test.pidx").toPath());
+        try (TilePackFile pack = new TilePackFile(dir, "test", 0)) {
+            assertEquals(2, pack.size());
+            assertEquals("data c", getData(pack, "c"));
+            assertNull(getData(pack, "b"));
+        }
+    }
+
+    /**
+     * Checks the recovery of the records appended after the last save of the index, and the truncation of an
+     * incomplete record.
+     * @throws IOException never
+     */
+    @Test
+    void testRecovery() throws IOException {
+        File packFile;
+        try (TilePackFile pack = new TilePackFile(dir, "test", 0)) {
+            pack.put("a", 1, new byte[0], bytes("data a"));
+            pack.flush();
+            pack.put("b", 1, new byte[0], bytes("data b"));
+            packFile = pack.getPackFile();
+            // simulate a crash: keep the index saved before the last record, and write an incomplete record
+            Files.copy(packFile.toPath(), new File(dir, "crash.0.pack").toPath());
+            Files.copy(new File(dir, "test.pidx").toPath(), new File(dir, "crash.pidx").toPath());
+        }
+        long length = packFile.length();
+        try (RandomAccessFile raf = new RandomAccessFile(new File(dir, "crash.0.pack"), "rw")) {
+            raf.seek(raf.length());
+            raf.write(new byte[] {0x4a, 0x54, 0x50, 0x52, 0, 0, 0, 1, 0, 0});
+        }
+        try (TilePackFile pack = new TilePackFile(dir, "crash", 0)) {
+            assertEquals(2, pack.size());
+            assertEquals("data a", getData(pack, "a"));
+            assertEquals("data b", getData(pack, "b"));
+            assertEquals(length, pack.getLength());
+            assertEquals(length, pack.getPackFile().length());
+        }
+    }
+
+    /**
+     * Checks that the least recently used records are evicted.
+     * @throws IOException never
+     */
+    @Test
+    void testEviction() throws IOException {
+        byte[] data = new byte[1000];
+        try (TilePackFile pack = new TilePackFile(dir, "test", 10_000)) {
+            for (int i = 0; i < 9; i++) {
+                pack.put("tile" + i, 1, new byte[0], data);
+            }
+            // use the first tile, so that it is not evicted
+            assertTrue(pack.get("tile0") != null);
+            pack.put("tile9", 1, new byte[0], data);
+            assertTrue(pack.getLiveBytes() <= 9_000);
+            assertTrue(pack.contains("tile0"));
+            assertFalse(pack.contains("tile1"));
+            assertTrue(pack.contains("tile9"));
+        }
+    }
+
+    /**
+     * Checks that compaction keeps the live records only.
+     * @throws IOException never
+     */
+    @Test
+    void testCompact() throws IOException {
+        try (TilePackFile pack = new TilePackFile(dir, "test", 0)) {
+            for (int i = 0; i < 100; i++) {
+                pack.put("tile" + (i % 10), 1, bytes("meta" + i), bytes("data" + i));
+            }
+            TilePackFile.Record record = pack.get("tile0");
+            File oldFile = pack.getPackFile();
+            long oldLength = pack.getLength();
+            pack.compact();
+            assertTrue(pack.getLength() < oldLength / 5);
+            assertEquals(pack.getLiveBytes() + TilePackFile.PACK_HEADER_SIZE, pack.getLength());
+            assertFalse(oldFile.equals(pack.getPackFile()));
+            assertEquals(new HashSet<>(Arrays.asList("tile0", "tile1", "tile2", "tile3", "tile4",
+                    "tile5", "tile6", "tile7", "tile8", "tile9")), new HashSet<>(pack.getKeys()));
+            assertEquals("data95", getData(pack, "tile5"));
+            assertEquals(ByteBuffer.wrap(bytes("data90")), record.getData());
+
+            pack.clear();
+            assertEquals(0, pack.size());
+            assertNull(pack.get("tile5"));
+        }
+        try (TilePackFile pack = new TilePackFile(dir, "test", 0)) {
+            assertEquals(0, pack.size());
+            assertEquals(1, dir.listFiles((d, n) -> n.endsWith(".pack")).length);
+        }
+    }
+
+    /**
+     * Checks that the records put or removed while the live records are copied are kept by the compaction.
+     * @throws IOException never
+     */
+    @Test
+    void testCompactDuringChanges() throws IOException {
+        try (TilePackFile pack = new TilePackFile(dir, "test", 0)) {
+            for (int i = 0; i < 100; i++) {
+                pack.put("tile" + (i % 10), 1, bytes("meta" + i), bytes("data" + i));
+            }
+            TilePackFile.Compaction compaction = pack.startCompaction();
+            assertNull(pack.startCompaction());
+            compaction.copy();
+            pack.put("tile1", 1, bytes("meta"), bytes("new1"));
+            pack.put("tile10", 1, bytes("meta"), bytes("new10"));
+            pack.remove("tile2");
+            pack.finishCompaction(compaction);
+            assertNotNull(pack.startCompaction());
+            assertEquals(10, pack.size());
+            assertEquals("new1", getData(pack, "tile1"));
+            assertEquals("new10", getData(pack, "tile10"));
+            assertNull(pack.get("tile2"));
+            assertEquals("data95", getData(pack, "tile5"));
+        }
+        try (TilePackFile pack = new TilePackFile(dir, "test", 0)) {
+            assertEquals(10, pack.size());
+            assertEquals("new1", getData(pack, "tile1"));
+            assertNull(pack.get("tile2"));
+            assertEquals(1, dir.listFiles((d, n) -> n.endsWith(".pack")).length);
+        }
+    }
+
+    /**
+     * Checks that the content of a cache entry is read from a buffer.
+     * @throws IOException never
+     */
+    @Test
+    void testCacheEntryFromBuffer() throws IOException {
+        try (TilePackFile pack = new TilePackFile(dir, "test", 0)) {
+            pack.put("a", 1, new byte[0], bytes("content"));
+            CacheEntry entry = new CacheEntry(pack.get("a").getData());
+            assertEquals(7, entry.getContentLength());
+            assertArrayEquals(bytes("content"), entry.getContent());
+            byte[] read = new byte[10];
+            assertEquals(7, entry.getContentStream().read(read));
+        }
+    }
+}
@@ -6,7 +6,11 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 import org.junit.jupiter.api.BeforeAll;
@@ -262,13 +266,112 @@ class GpxImageCorrelationTest {
 
     }
 
-    private void clearTmp(List<GpxImageEntry> imgs) {
+    private static void clearTmp(List<GpxImageEntry> imgs) {
         for (GpxImageEntry i : imgs) {
             i.discardTmp();
             i.createTmp();
         }
     }
 
+    /**
+     * Tests matching images with several offsets to the same correlation index. The images are shifted by the offset,
+     * so that they must be matched to the positions of the TEST #4 of {@link #testMatchGpxTrack()}.
+     * @throws Exception if the track cannot be parsed
+     */
+    @Test
+    void testCorrelationIndex() throws Exception {
+        final GpxData gpx = GpxReaderTest.parseGpxData(TestUtils.getTestDataRoot() + "tracks/tracks.gpx");
+        final GpxImageCorrelation.CorrelationIndex index = new GpxImageCorrelation.CorrelationIndex(gpx, true);
+        assertTrue(index.size() > 0);
+        assertTrue(index.isValidFor(gpx, true));
+        assertFalse(index.isValidFor(new GpxData(), true));
+
+        final List<String> times = Arrays.asList("2016:01:03 11:54:58", "2016:01:03 11:59:54", "2016:01:03 12:04:01",
+                "2016:01:03 12:04:57", "2016:01:03 12:05:05", "2016:01:03 12:05:20", "2016:01:03 12:07:00", "2016:01:03 12:07:45");
+        final List<CachedLatLon> positions = Arrays.asList(
+                new CachedLatLon(47.19286847859621, 8.79732714034617),
+                new CachedLatLon(47.19286847859621, 8.79732714034617),
+                new CachedLatLon(47.196979885920882, 8.79541271366179),
+                new CachedLatLon((47.197131179273129 + 47.197186248376966) / 2, (8.792974585667253 + 8.792809881269932) / 2),
+                new CachedLatLon(47.197319911792874, 8.792139580473304),
+                new CachedLatLon(47.197568312311816, 8.790292849679897),
+                new CachedLatLon(47.198845306804905, 8.783144918860685),
+                new CachedLatLon(47.19985828931693, 8.77969308585768));
+        for (long offset : new long[] {0, 30_000, -45_000, 3_600_000}) {
+            List<GpxImageEntry> images = new ArrayList<>();
+            for (String time : times) {
+                images.add(createImage(new Date(DateUtils.fromString(time).getTime() + offset)));
+            }
+            assertEquals(8, GpxImageCorrelation.matchGpxTrack(images, index, offset));
+            for (int i = 0; i < images.size(); i++) {
+                assertEquals(positions.get(i), images.get(i).getPos(), times.get(i));
+                assertEquals(DateUtils.fromString(times.get(i)), images.get(i).getGpsTime(), times.get(i));
+            }
+            assertEquals(Double.valueOf(447.894014085), images.get(6).getElevation(), 0.000001);
+            assertEquals(Double.valueOf(437.395070423), images.get(7).getElevation(), 0.000001);
+        }
+
+        gpx.addWaypoint(new WayPoint(LatLon.ZERO));
+        assertFalse(index.isValidFor(gpx, true));
+    }
+
+    /**
+     * Tests matching images to tracks overlapping in time, the images being matched to the first track.
+     */
+    @Test
+    void testOverlappingTracks() {
+        final long start = DateUtils.fromString("2016:01:03 12:00:00").getTime();
+        final GpxData gpx = new GpxData();
+        gpx.addTrack(createTrack(start, 0));
+        gpx.addTrack(createTrack(start + 50_000, 1));
+        final GpxImageCorrelation.CorrelationIndex index = new GpxImageCorrelation.CorrelationIndex(gpx, false);
+        assertEquals(22, index.size());
+
+        List<GpxImageEntry> images = Arrays.asList(
+                createImage(new Date(start + 75_000)),
+                createImage(new Date(start + 105_000)),
+                createImage(new Date(start + 125_000)),
+                createImage(new Date(start + 160_000)));
+        List<LatLon> expected = Arrays.asList(
+                new LatLon(7.5, 0), // the second track matches too, but the first one wins
+                new LatLon(5.5, 1),
+                new LatLon(7.5, 1),
+                new LatLon(10, 1)); // tagged to the end of the last track
+
+        // all images at once
+        assertEquals(4, GpxImageCorrelation.matchGpxTrack(images, index, 0));
+        for (int i = 0; i < images.size(); i++) {
+            assertEquals(expected.get(i), images.get(i).getTmp().getPos());
+        }
+        // one image at a time
+        clearTmp(images);
+        for (int i = 0; i < images.size(); i++) {
+            assertEquals(1, GpxImageCorrelation.matchGpxTrack(images.subList(i, i + 1), index, 0));
+            assertEquals(expected.get(i), images.get(i).getTmp().getPos());
+        }
+        // with offset
+        clearTmp(images);
+        assertEquals(4, GpxImageCorrelation.matchGpxTrack(images, index, -5_000));
+        assertEquals(new LatLon(8, 0), images.get(0).getTmp().getPos());
+    }
+
+    private static GpxTrack createTrack(long start, double lon) {
+        List<WayPoint> points = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            WayPoint wp = new WayPoint(new LatLon(i, lon));
+            wp.setTimeInMillis(start + i * 10_000L);
+            points.add(wp);
+        }
+        return new GpxTrack(Collections.<Collection<WayPoint>>singletonList(points), Collections.emptyMap());
+    }
+
+    private static GpxImageEntry createImage(Date exifTime) {
+        GpxImageEntry image = new GpxImageEntry();
+        image.setExifTime(exifTime);
+        image.createTmp();
+        return image;
+    }
+
     /**
      * Unit test of {@link GpxImageCorrelation#getElevation}
      */
@@ -0,0 +1,121 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.gpx;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.gpx.GpxTrackIndex.Chunk;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link GpxTrackIndex}.
+ */
+class GpxTrackIndexTest {
+
+    /**
+     * Setup test.
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().projection();
+
+    private static List<WayPoint> createPoints(int count, double lat, double amplitude) {
+        List<WayPoint> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            WayPoint wp = new WayPoint(new LatLon(lat + (i % 2) * amplitude, 8 + i * 0.001));
+            wp.drawLine = i > 0;
+            points.add(wp);
+        }
+        return points;
+    }
+
+    /**
+     * Test of {@link GpxTrackIndex#search}.
+     */
+    @Test
+    void testSearch() {
+        List<WayPoint> first = createPoints(200, 50, 0);
+        List<WayPoint> second = createPoints(10, 51, 0);
+        GpxData data = new GpxData();
+        data.addTrack(new GpxTrack(Arrays.asList(first, second), Collections.emptyMap()));
+        GpxTrackIndex index = data.getTrackIndex();
+        assertSame(index, data.getTrackIndex());
+        assertEquals(5, index.getChunkCount());
+
+        // an area around the 100th point, in the second chunk
+        LatLon ll = first.get(100).getCoor();
+        List<Chunk> chunks = index.search(new Bounds(ll.lat() - 1e-4, ll.lon() - 1e-4, ll.lat() + 1e-4, ll.lon() + 1e-4));
+        assertEquals(1, chunks.size());
+        Chunk chunk = chunks.get(0);
+        assertEquals(first.subList(64, 128), chunk.getPoints());
+        assertSame(first.get(63), chunk.getPrevious());
+        assertEquals(0, chunk.getTrackIndex());
+
+        // the line between the last point of a chunk and the first one of the next chunk
+        ll = first.get(64).getCoor();
+        chunks = index.search(new Bounds(ll.lat() - 1e-4, ll.lon() - 6e-4, ll.lat() + 1e-4, ll.lon() - 4e-4));
+        assertEquals(1, chunks.size());
+        assertSame(chunk.getPoints().get(0), chunks.get(0).getPoints().get(0));
+
+        // the second segment starts after the last point of the first one
+        chunks = index.search(new Bounds(50.9, 7, 51.1, 9));
+        assertEquals(1, chunks.size());
+        assertTrue(chunks.get(0).isSegmentStart());
+        assertTrue(chunks.get(0).isSegmentEnd());
+        assertNull(chunks.get(0).getPrevious());
+        assertSame(first.get(199), index.getLastPointBefore(chunks.get(0)));
+
+        assertTrue(index.search(new Bounds(50.9, 7, 51.1, 9), false).isEmpty());
+        assertTrue(index.search(new Bounds(10, 10, 11, 11)).isEmpty());
+
+        // the index is rebuilt when the tracks change
+        data.addTrack(new GpxTrack(Collections.singletonList(createPoints(10, 52, 0)), Collections.emptyMap()));
+        assertNotSame(index, data.getTrackIndex());
+        assertEquals(6, data.getTrackIndex().getChunkCount());
+    }
+
+    /**
+     * Test of the decimated points.
+     */
+    @Test
+    void testDecimation() {
+        List<WayPoint> points = createPoints(200, 50, 1e-7);
+        points.get(150).drawLine = false;
+        GpxTrackIndex index = new GpxTrackIndex(Collections.singletonList(
+                new GpxTrack(Collections.singletonList(points), Collections.emptyMap())));
+        List<Chunk> chunks = index.search(new Bounds(49, 7, 51, 9));
+        assertEquals(4, chunks.size());
+
+        // at a small scale, all points are kept
+        assertEquals(points.subList(128, 192), chunks.get(2).getPoints(1e-3));
+        assertSame(points.get(127), chunks.get(2).getPrevious(1e-3));
+
+        // at a large scale, only the ends and the gap are kept
+        List<WayPoint> kept = new ArrayList<>();
+        chunks.forEach(c -> kept.addAll(c.getPoints(1e6)));
+        assertEquals(Arrays.asList(points.get(0), points.get(149), points.get(150), points.get(199)), kept);
+        assertSame(points.get(150), chunks.get(3).getPrevious(1e6));
+        assertNull(chunks.get(0).getPrevious(1e6));
+
+        // the decimation follows the computed drawLine attributes
+        points.get(150).drawLine = true;
+        index.clearDecimation();
+        kept.clear();
+        chunks.forEach(c -> kept.addAll(c.getPoints(1e6)));
+        assertEquals(Arrays.asList(points.get(0), points.get(199)), kept);
+    }
+}
@@ -0,0 +1,192 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.data.Bounds;
+
+/**
+ * Unit tests of {@link PMTilesArchive} class.
+ */
+class PMTilesArchiveTest {
+
+    @TempDir
+    File dir;
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return new String(result, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while (value >= 0x80) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Encodes a directory, whose entries are given as {tileId, runLength, length, offset}.
+     */
+    private static byte[] directory(boolean gzip, long[]... entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, entries.length);
+        long last = 0;
+        for (long[] entry : entries) {
+            writeVarint(out, entry[0] - last);
+            last = entry[0];
+        }
+        for (long[] entry : entries) {
+            writeVarint(out, entry[1]);
+        }
+        for (long[] entry : entries) {
+            writeVarint(out, entry[2]);
+        }
+        for (int i = 0; i < entries.length; i++) {
+            boolean follows = i > 0 && entries[i][3] == entries[i - 1][3] + entries[i - 1][2];
+            writeVarint(out, follows ? 0 : entries[i][3] + 1);
+        }
+        return gzip ? gzip(out.toByteArray()) : out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes an archive with the tile 0/0/0 in the root directory, and the tiles of zoom 1 in a leaf directory:
+     * 1/0/0 and 1/0/1 share the same data, 1/1/1 is missing.
+     */
+    private File writeArchive(String name, boolean gzip, byte[] magic, int tileType) throws IOException {
+        byte[] tiles = bytes("tile0tile1tile4");
+        byte[] leaf = directory(gzip, new long[] {1, 2, 5, 5}, new long[] {4, 1, 5, 10});
+        byte[] root = directory(gzip, new long[] {0, 1, 5, 0}, new long[] {1, 0, leaf.length, 0});
+        byte[] metadata = bytes("{\"name\":\"Test\"}");
+        if (gzip) {
+            metadata = gzip(metadata);
+        }
+        long rootOffset = PMTilesArchive.HEADER_SIZE;
+        long metadataOffset = rootOffset + root.length;
+        long leafOffset = metadataOffset + metadata.length;
+        long tileOffset = leafOffset + leaf.length;
+        ByteBuffer header = ByteBuffer.allocate(PMTilesArchive.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(magic).put((byte) 3);
+        header.putLong(rootOffset).putLong(root.length);
+        header.putLong(metadataOffset).putLong(metadata.length);
+        header.putLong(leafOffset).putLong(leaf.length);
+        header.putLong(tileOffset).putLong(tiles.length);
+        header.putLong(5).putLong(4).putLong(3);
+        header.put((byte) 1);
+        header.put((byte) (gzip ? PMTilesArchive.COMPRESSION_GZIP : PMTilesArchive.COMPRESSION_NONE));
+        header.put((byte) PMTilesArchive.COMPRESSION_NONE);
+        header.put((byte) tileType);
+        header.put((byte) 0).put((byte) 1);
+        header.putInt(-1800000000).putInt(-850000000).putInt(1800000000).putInt(850000000);
+        header.put((byte) 0).putInt(0).putInt(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(header.array());
+        out.write(root);
+        out.write(metadata);
+        out.write(leaf);
+        out.write(tiles);
+        File file = new File(dir, name);
+        Files.write(file.toPath(), out.toByteArray());
+        return file;
+    }
+
+    /**
+     * Checks the tile ids along the Hilbert curve.
+     */
+    @Test
+    void testGetTileId() {
+        assertEquals(0, PMTilesArchive.getTileId(0, 0, 0));
+        assertEquals(1, PMTilesArchive.getTileId(1, 0, 0));
+        assertEquals(2, PMTilesArchive.getTileId(1, 0, 1));
+        assertEquals(3, PMTilesArchive.getTileId(1, 1, 1));
+        assertEquals(4, PMTilesArchive.getTileId(1, 1, 0));
+        assertEquals(5, PMTilesArchive.getTileId(2, 0, 0));
+        assertEquals(20, PMTilesArchive.getTileId(2, 3, 0));
+    }
+
+    /**
+     * Checks the decoding of varints.
+     * @throws IOException never
+     */
+    @Test
+    void testReadVarint() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0, 0x7f, (byte) 0xac, 0x02});
+        assertEquals(0, PMTilesArchive.readVarint(buffer));
+        assertEquals(127, PMTilesArchive.readVarint(buffer));
+        assertEquals(300, PMTilesArchive.readVarint(buffer));
+        assertThrows(IOException.class, () -> PMTilesArchive.readVarint(ByteBuffer.wrap(new byte[] {(byte) 0x80})));
+    }
+
+    /**
+     * Checks the lookup of tiles through the root and leaf directories, with and without compression.
+     * @throws IOException never
+     */
+    @Test
+    void testGetTile() throws IOException {
+        for (boolean gzip : new boolean[] {false, true}) {
+            try (PMTilesArchive archive = new PMTilesArchive(
+                    writeArchive("test.pmtiles", gzip, bytes("PMTiles"), PMTilesArchive.TILE_TYPE_PNG))) {
+                assertEquals(PMTilesArchive.TILE_TYPE_PNG, archive.getTileType());
+                assertEquals(0, archive.getMinZoom());
+                assertEquals(1, archive.getMaxZoom());
+                assertEquals(new Bounds(-85, -180, 85, 180), archive.getBounds());
+                assertEquals("{\"name\":\"Test\"}", archive.getMetadata());
+                assertEquals(2, archive.getRootSize());
+
+                assertEquals("tile0", string(archive.getTile(0, 0, 0)));
+                assertEquals("tile1", string(archive.getTile(1, 0, 0)));
+                assertEquals("tile1", string(archive.getTile(1, 0, 1)));
+                assertNull(archive.getTile(1, 1, 1));
+                assertEquals("tile4", string(archive.getTile(1, 1, 0)));
+                // out of the zoom range or of the tile grid
+                assertNull(archive.getTile(2, 0, 0));
+                assertNull(archive.getTile(1, 2, 0));
+            }
+        }
+    }
+
+    /**
+     * Checks that invalid or unsupported archives are rejected.
+     * @throws IOException never
+     */
+    @Test
+    void testInvalidArchive() throws IOException {
+        File invalid = writeArchive("invalid.pmtiles", false, bytes("MBTiles"), PMTilesArchive.TILE_TYPE_PNG);
+        assertThrows(IOException.class, () -> new PMTilesArchive(invalid));
+        File vector = writeArchive("vector.pmtiles", false, bytes("PMTiles"), PMTilesArchive.TILE_TYPE_MVT);
+        assertThrows(IOException.class, () -> new PMTilesArchive(vector));
+        File empty = new File(dir, "empty.pmtiles");
+        Files.write(empty.toPath(), new byte[10]);
+        assertThrows(IOException.class, () -> new PMTilesArchive(empty));
+    }
+}
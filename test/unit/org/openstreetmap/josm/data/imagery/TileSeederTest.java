@@ -0,0 +1,201 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileJob;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileLoader;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileLoaderListener;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.gui.jmapviewer.tilesources.OsmTileSource;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+
+/**
+ * Unit tests of {@link TileSeeder} class.
+ */
+class TileSeederTest {
+
+    private final TileSource source = new OsmTileSource.Mapnik();
+    /** lon 2.0 to 2.5, lat 48.5 to 49.0 */
+    private final Rectangle2D bbox = new Rectangle2D.Double(2.0, 48.5, 0.5, 0.5);
+
+    /**
+     * Tile loader notifying the seeder when tiles are submitted, or when they are canceled.
+     */
+    private static class MockTileLoader implements TileLoader {
+        private final TileLoaderListener listener;
+        private final Predicate<Tile> finished;
+        private final List<Tile> submitted = new ArrayList<>();
+        private final List<Tile> outstanding = new ArrayList<>();
+
+        MockTileLoader(TileLoaderListener listener, Predicate<Tile> finished) {
+            this.listener = listener;
+            this.finished = finished;
+        }
+
+        @Override
+        public TileJob createTileLoaderJob(Tile tile) {
+            return new TileJob() {
+                @Override
+                public void submit() {
+                    submit(false);
+                }
+
+                @Override
+                public void submit(boolean force) {
+                    submitted.add(tile);
+                    if (finished.test(tile)) {
+                        // tiles of odd columns fail
+                        listener.tileLoadingFinished(tile, tile.getXtile() % 2 == 0);
+                    } else {
+                        outstanding.add(tile);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void cancelOutstandingTasks() {
+            for (Tile tile : outstanding) {
+                listener.tileLoadingFinished(tile, false);
+            }
+            outstanding.clear();
+        }
+
+        @Override
+        public boolean hasOutstandingTasks() {
+            return !outstanding.isEmpty();
+        }
+    }
+
+    private static String key(Tile tile) {
+        return tile.getZoom() + "/" + tile.getXtile() + "/" + tile.getYtile();
+    }
+
+    /**
+     * Checks the tiles of a bounding box.
+     */
+    @Test
+    void testBoundingBox() {
+        TileSeeder seeder = new TileSeeder(source, bbox, 10, 11);
+        // 3x3 tiles at zoom 10, 4x5 tiles at zoom 11
+        assertEquals(29, seeder.getMaxTileCount());
+        assertEquals(29, seeder.getTileCount());
+        Iterator<Tile> it = seeder.iterator(0);
+        assertEquals("10/517/351", key(it.next()));
+        assertEquals("10/518/351", key(it.next()));
+        // resume from the 10th tile, the first one of zoom 11
+        it = seeder.iterator(9);
+        assertEquals("11/1035/703", key(it.next()));
+        int count = 1;
+        for (; it.hasNext(); it.next()) {
+            count++;
+        }
+        assertEquals(20, count);
+        // zoom levels beyond the ones of the tile source
+        assertEquals(0, new TileSeeder(source, bbox, 20, 22).getTileCount());
+    }
+
+    /**
+     * Checks the tiles of a polygon, the lower left half of the bounding box.
+     */
+    @Test
+    void testPolygon() {
+        Path2D triangle = new Path2D.Double();
+        triangle.moveTo(2.0, 48.5);
+        triangle.lineTo(2.5, 48.5);
+        triangle.lineTo(2.0, 49.0);
+        triangle.closePath();
+        TileSeeder seeder = new TileSeeder(source, triangle, 10, 11);
+        assertEquals(29, seeder.getMaxTileCount());
+        assertEquals(19, seeder.getTileCount());
+        List<String> tiles = new ArrayList<>();
+        for (Iterator<Tile> it = seeder.iterator(0); it.hasNext() && tiles.size() < 7;) {
+            tiles.add(key(it.next()));
+        }
+        assertEquals(Arrays.asList("10/517/351", "10/517/352", "10/518/352", "10/517/353", "10/518/353", "10/519/353",
+                "11/1035/703"), tiles);
+    }
+
+    /**
+     * Checks the loading of tiles, and the counters.
+     * @throws Exception never
+     */
+    @Test
+    void testRun() throws Exception {
+        TileSeeder seeder = new TileSeeder(source, bbox, 10, 11);
+        MockTileLoader loader = new MockTileLoader(seeder, tile -> true);
+        seeder.setTileLoader(loader, 2);
+        List<Long> positions = new ArrayList<>();
+        seeder.setPositionListener(positions::add);
+        seeder.run(NullProgressMonitor.INSTANCE, 0);
+        assertEquals(29, loader.submitted.size());
+        assertEquals(29, seeder.getPosition());
+        // the final position is always reported
+        assertEquals(Long.valueOf(29), positions.get(positions.size() - 1));
+        assertEquals(29, seeder.getDownloadedCount() + seeder.getFailedCount());
+        // 1 of 3 columns at zoom 10, 2 of 4 columns at zoom 11
+        assertEquals(3 + 10, seeder.getDownloadedCount());
+        assertEquals(0, seeder.getSkippedCount());
+
+        // resume from the first tile of zoom 11
+        seeder = new TileSeeder(source, bbox, 10, 11);
+        loader = new MockTileLoader(seeder, tile -> true);
+        seeder.setTileLoader(loader, 2);
+        seeder.run(NullProgressMonitor.INSTANCE, 9);
+        assertEquals(20, loader.submitted.size());
+        assertEquals(11, loader.submitted.get(0).getZoom());
+    }
+
+    /**
+     * Checks that the position of a canceled seeding is the first tile which has not been loaded.
+     * @throws Exception never
+     */
+    @Test
+    void testCancel() throws Exception {
+        TileSeeder seeder = new TileSeeder(source, bbox, 10, 11);
+        // the 3rd tile never finishes, the seeding is canceled when the 6th tile is submitted
+        MockTileLoader loader = new MockTileLoader(seeder, tile -> {
+            if (tile.getXtile() == 519 && tile.getYtile() == 352) {
+                seeder.cancel();
+            }
+            return !(tile.getXtile() == 519 && tile.getYtile() == 351);
+        });
+        seeder.setTileLoader(loader, 2);
+        List<Long> positions = new ArrayList<>();
+        seeder.setPositionListener(positions::add);
+        seeder.run(NullProgressMonitor.INSTANCE, 0);
+        assertEquals(6, loader.submitted.size());
+        assertFalse(loader.hasOutstandingTasks());
+        assertEquals(2, seeder.getPosition());
+        assertEquals(Long.valueOf(2), positions.get(positions.size() - 1));
+    }
+
+    /**
+     * Checks the limit of requests per second to each host.
+     * @throws Exception never
+     */
+    @Test
+    void testRateLimit() throws Exception {
+        TileSeeder seeder = new TileSeeder(source, bbox, 10, 10);
+        seeder.setTileLoader(new MockTileLoader(seeder, tile -> true), 4);
+        seeder.setRateLimit(10);
+        long start = System.nanoTime();
+        seeder.run(NullProgressMonitor.INSTANCE, 0);
+        // 9 tiles, from at most 3 hosts
+        assertTrue(System.nanoTime() - start >= 180_000_000L);
+        assertEquals(9, seeder.getPosition());
+    }
+}
@@ -3,6 +3,10 @@ package org.openstreetmap.josm.data.osm;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
@@ -364,4 +368,43 @@ class DataSetTest {
         assertEquals(4, copy.allPrimitives().size());
         assertTrue(copy.isLocked());
     }
+
+    /**
+     * Unit test of {@link DataSet#snapshot}.
+     */
+    @Test
+    void testSnapshot() {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(LatLon.SOUTH_POLE);
+        Node n2 = new Node(LatLon.NORTH_POLE);
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        Way w = new Way();
+        w.setNodes(Arrays.asList(n1, n2));
+        ds.addPrimitive(w);
+
+        DataSetSnapshot snapshot = ds.snapshot();
+        assertTrue(snapshot.isCurrent());
+        assertFalse(snapshot.isSourceLocked());
+        assertSame(snapshot, ds.snapshot());
+        DataSet copy = snapshot.getDataSet();
+        assertEquals(3, copy.allPrimitives().size());
+        assertTrue(copy.isLocked());
+        Way wCopy = (Way) copy.getPrimitiveById(w);
+        assertNotSame(w, wCopy);
+        assertSame(w, snapshot.getSourcePrimitive(wCopy));
+        assertThrows(DataIntegrityProblemException.class, () -> wCopy.put("highway", "road"));
+
+        // modifications of the source data set are not visible in the snapshot
+        w.put("highway", "track");
+        n1.setCoor(LatLon.ZERO);
+        assertFalse(snapshot.isCurrent());
+        assertNull(wCopy.get("highway"));
+        assertEquals(LatLon.SOUTH_POLE, ((Node) copy.getPrimitiveById(n1)).getCoor());
+
+        DataSetSnapshot snapshot2 = ds.snapshot();
+        assertNotSame(snapshot, snapshot2);
+        assertTrue(snapshot2.isCurrent());
+        assertEquals("track", snapshot2.getDataSet().getPrimitiveById(w).get("highway"));
+    }
 }
@@ -0,0 +1,152 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link PackedRTree}.
+ */
+class PackedRTreeTest {
+
+    /**
+     * Setup test.
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    private static List<Node> randomNodes(Random random, int count) {
+        List<Node> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            nodes.add(new Node(new LatLon(random.nextDouble() * 10, random.nextDouble() * 10)));
+        }
+        return nodes;
+    }
+
+    private static BBox randomBBox(Random random) {
+        double lat = random.nextDouble() * 10;
+        double lon = random.nextDouble() * 10;
+        return new BBox(lon, lat, lon + random.nextDouble() * 2, lat + random.nextDouble() * 2);
+    }
+
+    private static <T extends IPrimitive> void assertSearch(Set<T> expected, SpatialIndex<T> index, BBox bbox) {
+        Set<T> inside = expected.stream().filter(p -> p.getBBox().intersects(bbox)).collect(Collectors.toSet());
+        List<T> result = index.search(bbox);
+        assertEquals(inside.size(), result.size());
+        assertEquals(inside, new HashSet<>(result));
+    }
+
+    /**
+     * Checks searches against a brute force search, with incremental additions and removals.
+     */
+    @Test
+    void testSearchAddRemove() {
+        Random random = new Random(42);
+        PackedRTree<Node> tree = new PackedRTree<>();
+        Set<Node> expected = new HashSet<>();
+        for (Node n : randomNodes(random, 5000)) {
+            assertTrue(tree.add(n));
+            expected.add(n);
+        }
+        assertEquals(5000, tree.size());
+        for (int i = 0; i < 50; i++) {
+            assertSearch(expected, tree, randomBBox(random));
+        }
+
+        List<Node> toRemove = new ArrayList<>(expected);
+        Collections.shuffle(toRemove, random);
+        for (Node n : toRemove.subList(0, 4000)) {
+            assertTrue(tree.contains(n));
+            assertTrue(tree.remove(n));
+            assertFalse(tree.contains(n));
+            assertFalse(tree.remove(n));
+            expected.remove(n);
+        }
+        assertEquals(1000, tree.size());
+        assertEquals(expected, new HashSet<>(tree));
+        for (int i = 0; i < 50; i++) {
+            assertSearch(expected, tree, randomBBox(random));
+        }
+        assertSearch(expected, tree, new BBox(-180, -90, 180, 90));
+        assertTrue(tree.search(new BBox()).isEmpty());
+    }
+
+    /**
+     * Checks bulk loading and ways.
+     */
+    @Test
+    void testBulkLoadWays() {
+        Random random = new Random(7);
+        List<Node> nodes = randomNodes(random, 3000);
+        List<Way> ways = new ArrayList<>();
+        for (int i = 0; i + 2 < nodes.size(); i += 3) {
+            Way w = new Way();
+            w.setNodes(nodes.subList(i, i + 3));
+            ways.add(w);
+        }
+        Way incomplete = new Way(123);
+        ways.add(incomplete);
+
+        PackedRTree<Way> tree = new PackedRTree<>(ways);
+        assertEquals(ways.size(), tree.size());
+        assertTrue(tree.contains(incomplete));
+        assertEquals(new HashSet<>(ways), new HashSet<>(tree));
+        Set<Way> expected = new HashSet<>(ways);
+        for (int i = 0; i < 50; i++) {
+            assertSearch(expected, tree, randomBBox(random));
+        }
+        assertTrue(tree.removeAll(Arrays.asList(incomplete, ways.get(0))));
+        assertTrue(tree.retainAll(ways.subList(0, 10)));
+        assertEquals(9, tree.size());
+        tree.clear();
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.iterator().hasNext());
+    }
+
+    /**
+     * Checks that a data set can use the packed R-tree, including reindexing of moved nodes.
+     */
+    @Test
+    void testDataSet() {
+        Config.getPref().putBoolean(QuadBucketPrimitiveStore.PREF_PACKED_RTREE, true);
+        try {
+            DataSet ds = new DataSet();
+            Random random = new Random(3);
+            List<Node> nodes = randomNodes(random, 1000);
+            nodes.forEach(ds::addPrimitive);
+            Way w = new Way();
+            w.setNodes(nodes.subList(0, 2));
+            ds.addPrimitive(w);
+            assertEquals(1000, ds.searchNodes(new BBox(-1, -1, 11, 11)).size());
+
+            Node moved = nodes.get(0);
+            moved.setCoor(new LatLon(50, 50));
+            assertEquals(Collections.singletonList(moved), ds.searchNodes(new BBox(49, 49, 51, 51)));
+            assertEquals(Collections.singletonList(w), ds.searchWays(new BBox(49, 49, 51, 51)));
+
+            nodes.subList(500, 1000).forEach(ds::removePrimitive);
+            assertEquals(500, ds.searchNodes(new BBox(-1, -1, 51, 51)).size());
+        } finally {
+            Config.getPref().putBoolean(QuadBucketPrimitiveStore.PREF_PACKED_RTREE, false);
+        }
+    }
+}
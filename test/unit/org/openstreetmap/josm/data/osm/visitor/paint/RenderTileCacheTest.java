@@ -0,0 +1,212 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.preferences.NamedColorProperty;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link RenderTileCache}.
+ */
+class RenderTileCacheTest {
+
+    /**
+     * Setup test.
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection().mapStyles();
+
+    private static final int VIEW_WIDTH = 700;
+    private static final int VIEW_HEIGHT = 500;
+
+    private static NavigatableComponent createView() {
+        NavigatableComponent nc = new NavigatableComponent() {
+            {
+                setBounds(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+                updateLocationState();
+            }
+
+            @Override
+            protected boolean isVisibleOnScreen() {
+                return true;
+            }
+
+            @Override
+            public Point getLocationOnScreen() {
+                return new Point(0, 0);
+            }
+        };
+        nc.zoomTo(ProjectionRegistry.getProjection().latlon2eastNorth(new LatLon(50.005, 8.005)), 2, true);
+        return nc;
+    }
+
+    private static DataSet createDataSet() {
+        Random random = new Random(42);
+        DataSet ds = new DataSet();
+        for (int i = 0; i < 200; i++) {
+            Node a = new Node(new LatLon(50 + random.nextDouble() * 0.01, 8 + random.nextDouble() * 0.01));
+            Node b = new Node(new LatLon(50 + random.nextDouble() * 0.01, 8 + random.nextDouble() * 0.01));
+            ds.addPrimitive(a);
+            ds.addPrimitive(b);
+            Way w = new Way();
+            w.setNodes(Arrays.asList(a, b));
+            ds.addPrimitive(w);
+        }
+        return ds;
+    }
+
+    private static BufferedImage paintTiles(RenderTileCache cache, NavigatableComponent nc) {
+        BufferedImage image = new BufferedImage(VIEW_WIDTH, VIEW_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        assertTrue(cache.paint(g, nc, false, false));
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage paintDirectly(DataSet ds, NavigatableComponent nc) {
+        BufferedImage image = new BufferedImage(VIEW_WIDTH, VIEW_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        new StyledMapRenderer(g, nc, false).render(ds, false, nc.getRealBounds());
+        g.dispose();
+        return image;
+    }
+
+    private static int countDifferentPixels(BufferedImage a, BufferedImage b, int tolerance) {
+        int count = 0;
+        for (int y = 0; y < VIEW_HEIGHT; y++) {
+            for (int x = 0; x < VIEW_WIDTH; x++) {
+                int p = a.getRGB(x, y);
+                int q = b.getRGB(x, y);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    if (Math.abs(((p >>> shift) & 0xff) - ((q >>> shift) & 0xff)) > tolerance) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Lines are rasterized from other start points in tiles, so a few pixels of them differ from direct rendering.
+     */
+    private static void assertSimilar(BufferedImage expected, BufferedImage actual) {
+        int count = countDifferentPixels(expected, actual, 64);
+        assertTrue(count < VIEW_WIDTH * VIEW_HEIGHT / 10, Integer.toString(count));
+    }
+
+    /**
+     * Checks that tiles paint the same image as direct rendering, and that they are reused.
+     */
+    @Test
+    void testPaint() {
+        DataSet ds = createDataSet();
+        NavigatableComponent nc = createView();
+        RenderTileCache cache = new RenderTileCache(ds);
+        try {
+            BufferedImage tiled = paintTiles(cache, nc);
+            int tiles = cache.size();
+            assertTrue(tiles >= 6, Integer.toString(tiles));
+            assertSimilar(paintDirectly(ds, nc), tiled);
+
+            // painted again from the cache
+            assertEquals(0, countDifferentPixels(tiled, paintTiles(cache, nc), 0));
+            assertEquals(tiles, cache.size());
+
+            // panning renders the exposed tiles only
+            nc.zoomTo(nc.getCenter().add(RenderTileCache.TILE_SIZE * nc.getScale(), 0), nc.getScale(), true);
+            assertSimilar(paintDirectly(ds, nc), paintTiles(cache, nc));
+            assertTrue(cache.size() > tiles);
+        } finally {
+            cache.destroy();
+        }
+    }
+
+    /**
+     * Checks that changes invalidate the tiles they touch only.
+     */
+    @Test
+    void testInvalidate() {
+        DataSet ds = createDataSet();
+        NavigatableComponent nc = createView();
+        RenderTileCache cache = new RenderTileCache(ds);
+        try {
+            paintTiles(cache, nc);
+            int tiles = cache.size();
+            Node node = ds.getNodes().iterator().next();
+            node.setCoor(new LatLon(50.005, 8.005));
+            cache.invalidate(Collections.singleton(node));
+            assertTrue(cache.size() < tiles);
+            assertSimilar(paintDirectly(ds, nc), paintTiles(cache, nc));
+            assertEquals(tiles, cache.size());
+
+            cache.clear();
+            assertEquals(0, cache.size());
+        } finally {
+            cache.destroy();
+        }
+    }
+
+    /**
+     * Checks that only the preferences affecting rendering drop the tiles.
+     */
+    @Test
+    void testPreferenceChanged() {
+        DataSet ds = createDataSet();
+        NavigatableComponent nc = createView();
+        RenderTileCache cache = new RenderTileCache(ds);
+        try {
+            paintTiles(cache, nc);
+            int tiles = cache.size();
+            Config.getPref().putBoolean("some.other.setting", true);
+            assertEquals(tiles, cache.size());
+            Config.getPref().putBoolean("mappaint.some-setting", true);
+            assertEquals(0, cache.size());
+            assertTrue(RenderTileCache.isRenderingPreference("draw.oneway"));
+            assertTrue(RenderTileCache.isRenderingPreference(NamedColorProperty.NAMED_COLOR_PREFIX + "mappaint.mapnik.node"));
+            assertFalse(RenderTileCache.isRenderingPreference("download.overpass.server"));
+        } finally {
+            cache.destroy();
+        }
+    }
+
+    /**
+     * Checks that tiles are not used with a scaled graphics context.
+     */
+    @Test
+    void testScaledGraphics() {
+        DataSet ds = createDataSet();
+        RenderTileCache cache = new RenderTileCache(ds);
+        try {
+            Graphics2D g = new BufferedImage(VIEW_WIDTH, VIEW_HEIGHT, BufferedImage.TYPE_INT_ARGB).createGraphics();
+            g.scale(2, 2);
+            assertFalse(cache.paint(g, createView(), false, false));
+            assertEquals(0, cache.size());
+        } finally {
+            cache.destroy();
+        }
+    }
+}
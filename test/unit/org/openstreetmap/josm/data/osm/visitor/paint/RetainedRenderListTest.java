@@ -0,0 +1,159 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.data.osm.visitor.paint.RenderBenchmarkCollector.CapturingBenchmark;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link RetainedRenderList}.
+ */
+class RetainedRenderListTest {
+
+    /**
+     * Setup test.
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection().mapStyles();
+
+    private static final int VIEW_WIDTH = 400;
+    private static final int VIEW_HEIGHT = 300;
+
+    private static NavigatableComponent createView() {
+        NavigatableComponent nc = new NavigatableComponent() {
+            {
+                setBounds(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+                updateLocationState();
+            }
+
+            @Override
+            protected boolean isVisibleOnScreen() {
+                return true;
+            }
+
+            @Override
+            public Point getLocationOnScreen() {
+                return new Point(0, 0);
+            }
+        };
+        nc.zoomTo(ProjectionRegistry.getProjection().latlon2eastNorth(new LatLon(50.005, 8.005)), 2, true);
+        return nc;
+    }
+
+    private static DataSet createDataSet() {
+        Random random = new Random(42);
+        DataSet ds = new DataSet();
+        String[] highways = {"residential", "primary", "footway", "track"};
+        for (int i = 0; i < 100; i++) {
+            Node a = new Node(new LatLon(50 + random.nextDouble() * 0.01, 8 + random.nextDouble() * 0.01));
+            Node b = new Node(new LatLon(50 + random.nextDouble() * 0.01, 8 + random.nextDouble() * 0.01));
+            ds.addPrimitive(a);
+            ds.addPrimitive(b);
+            Way w = new Way();
+            w.setNodes(Arrays.asList(a, b));
+            w.put("highway", highways[i % highways.length]);
+            ds.addPrimitive(w);
+        }
+        return ds;
+    }
+
+    private static int[] paint(DataSet ds, NavigatableComponent nc, RetainedRenderList list, CapturingBenchmark benchmark) {
+        BufferedImage image = new BufferedImage(VIEW_WIDTH, VIEW_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        StyledMapRenderer renderer = new StyledMapRenderer(g, nc, false);
+        renderer.setRenderList(list);
+        renderer.setBenchmarkFactory(() -> benchmark);
+        renderer.render(ds, false, nc.getRealBounds());
+        g.dispose();
+        return image.getRGB(0, 0, VIEW_WIDTH, VIEW_HEIGHT, null, 0, VIEW_WIDTH);
+    }
+
+    /**
+     * Checks that the list is reused while the view is moved, and paints the same as direct rendering.
+     */
+    @Test
+    void testReuse() {
+        DataSet ds = createDataSet();
+        NavigatableComponent nc = createView();
+        RetainedRenderList list = new RetainedRenderList(ds);
+        CapturingBenchmark benchmark = new CapturingBenchmark();
+
+        assertArrayEquals(paint(ds, nc, null, new CapturingBenchmark()), paint(ds, nc, list, benchmark));
+        assertFalse(benchmark.isRenderListReused());
+        int size = list.size();
+        assertTrue(size > 0);
+
+        assertArrayEquals(paint(ds, nc, null, new CapturingBenchmark()), paint(ds, nc, list, benchmark));
+        assertTrue(benchmark.isRenderListReused());
+
+        // moved within the retained area
+        nc.zoomTo(nc.getCenter().add(10 * nc.getScale(), 0), nc.getScale(), true);
+        assertArrayEquals(paint(ds, nc, null, new CapturingBenchmark()), paint(ds, nc, list, benchmark));
+        assertTrue(benchmark.isRenderListReused());
+        assertEquals(size, list.size());
+
+        // moved out of it
+        nc.zoomTo(nc.getCenter().add(VIEW_WIDTH * nc.getScale(), 0), nc.getScale(), true);
+        assertArrayEquals(paint(ds, nc, null, new CapturingBenchmark()), paint(ds, nc, list, benchmark));
+        assertFalse(benchmark.isRenderListReused());
+
+        // a list of another data set is not used
+        assertArrayEquals(paint(ds, nc, null, new CapturingBenchmark()), paint(ds, nc, new RetainedRenderList(new DataSet()), benchmark));
+    }
+
+    /**
+     * Checks that changed primitives are updated in the retained list.
+     */
+    @Test
+    void testUpdate() {
+        DataSet ds = createDataSet();
+        NavigatableComponent nc = createView();
+        RetainedRenderList list = new RetainedRenderList(ds);
+        ds.addDataSetListener(new DataSetListenerAdapter(list::processDatasetEvent));
+        CapturingBenchmark benchmark = new CapturingBenchmark();
+        paint(ds, nc, list, benchmark);
+
+        Way way = ds.getWays().iterator().next();
+        way.put("highway", "motorway");
+        way.firstNode().setCoor(new LatLon(50.006, 8.006));
+        assertArrayEquals(paint(ds, nc, null, new CapturingBenchmark()), paint(ds, nc, list, benchmark));
+        assertTrue(benchmark.isRenderListReused());
+
+        ds.setSelected(way);
+        list.invalidate(Collections.singleton(way));
+        assertArrayEquals(paint(ds, nc, null, new CapturingBenchmark()), paint(ds, nc, list, benchmark));
+        assertTrue(benchmark.isRenderListReused());
+
+        ds.removePrimitive(way);
+        assertArrayEquals(paint(ds, nc, null, new CapturingBenchmark()), paint(ds, nc, list, benchmark));
+        assertTrue(benchmark.isRenderListReused());
+
+        list.clear();
+        assertEquals(0, list.size());
+        paint(ds, nc, list, benchmark);
+        assertFalse(benchmark.isRenderListReused());
+    }
+}
@@ -0,0 +1,107 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.INode;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link SimplifiedWayCache}.
+ */
+class SimplifiedWayCacheTest {
+
+    /**
+     * Setup test.
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().projection();
+
+    private static Way createZigZag(DataSet ds, int count, double amplitude) {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Node n = new Node(new LatLon(50 + (i % 2) * amplitude, 8 + i * 0.001));
+            ds.addPrimitive(n);
+            nodes.add(n);
+        }
+        Way w = new Way();
+        w.setNodes(nodes);
+        ds.addPrimitive(w);
+        return w;
+    }
+
+    /**
+     * Test of {@link SimplifiedWayCache#simplify}.
+     */
+    @Test
+    void testSimplify() {
+        DataSet ds = new DataSet();
+        Way way = createZigZag(ds, 100, 1e-7);
+        double length = way.lastNode().getEastNorth().east() - way.firstNode().getEastNorth().east();
+
+        // the deviation is far below the tolerance: only the end points are kept
+        List<? extends INode> simplified = SimplifiedWayCache.simplify(way.getNodes(), length / 100);
+        assertEquals(2, simplified.size());
+        assertSame(way.firstNode(), simplified.get(0));
+        assertSame(way.lastNode(), simplified.get(1));
+
+        // the deviation is above the tolerance: all nodes are kept
+        assertEquals(way.getNodes().size(), SimplifiedWayCache.simplify(way.getNodes(), length / 1e9).size());
+
+        // closed ways stay closed
+        way.addNode(way.firstNode());
+        simplified = SimplifiedWayCache.simplify(way.getNodes(), length / 100);
+        assertTrue(simplified.size() >= 3);
+        assertSame(simplified.get(0), simplified.get(simplified.size() - 1));
+    }
+
+    /**
+     * Checks that the cache is invalidated when the geometry of ways changes.
+     */
+    @Test
+    void testInvalidation() {
+        DataSet ds = new DataSet();
+        Way way = createZigZag(ds, 100, 1e-7);
+        SimplifiedWayCache cache = new SimplifiedWayCache(ds);
+        ds.addDataSetListener(new DataSetListenerAdapter(cache::processDatasetEvent));
+
+        List<? extends INode> simplified = cache.getNodes(way, 10);
+        assertEquals(2, simplified.size());
+        assertSame(simplified, cache.getNodes(way, 10));
+        assertEquals(1, cache.size());
+
+        // short ways and ways of other data sets are not cached
+        assertEquals(way.getNodes(), new SimplifiedWayCache(new DataSet()).getNodes(way, 10));
+        Way shortWay = createZigZag(ds, 4, 1e-7);
+        assertEquals(shortWay.getNodes(), cache.getNodes(shortWay, 10));
+        assertEquals(1, cache.size());
+
+        way.getNode(50).setCoor(new LatLon(50.1, 8.05));
+        assertEquals(0, cache.size());
+        assertEquals(3, cache.getNodes(way, 10).size());
+
+        way.removeNode(way.getNode(50));
+        assertEquals(0, cache.size());
+        assertNotSame(simplified, cache.getNodes(way, 10));
+        assertEquals(2, cache.getNodes(way, 10).size());
+
+        ds.removePrimitive(way);
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,55 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Unit tests of {@link TextLayoutCache}.
+ */
+class TextLayoutCacheTest {
+
+    private static final Font FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+    private static final FontRenderContext FRC = new FontRenderContext(null, true, true);
+
+    /**
+     * Checks that cached layouts are reused, and that the glyph vectors handed out are copies.
+     */
+    @Test
+    void testCache() {
+        TextLayoutCache cache = new TextLayoutCache(10);
+        String text = "Main Street";
+
+        assertEquals(FONT.getStringBounds(text, FRC), cache.getStringBounds(text, FONT, FRC));
+        assertSame(cache.getTextLayout(text, FONT, FRC), cache.getTextLayout(text, FONT, FRC));
+        assertEquals(1, cache.size());
+
+        List<GlyphVector> expected = Utils.getGlyphVectorsBidi(text, FONT, FRC);
+        List<GlyphVector> gvs = cache.getGlyphVectors(text, FONT, FRC);
+        assertEquals(expected.size(), gvs.size());
+        GlyphVector gv = gvs.get(0);
+        assertEquals(expected.get(0).getNumGlyphs(), gv.getNumGlyphs());
+        assertEquals(expected.get(0).getLogicalBounds(), gv.getLogicalBounds());
+
+        // modifying a glyph vector does not affect the next ones
+        gv.setGlyphTransform(0, AffineTransform.getTranslateInstance(100, 100));
+        GlyphVector other = cache.getGlyphVectors(text, FONT, FRC).get(0);
+        assertNotSame(gv, other);
+        assertEquals(expected.get(0).getGlyphVisualBounds(0).getBounds2D(), other.getGlyphVisualBounds(0).getBounds2D());
+
+        cache.getStringBounds("other", FONT, FRC);
+        assertEquals(2, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,147 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.data.validation.tests.CrossingWays;
+import org.openstreetmap.josm.data.validation.tests.DuplicateNode;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link IncrementalValidator}.
+ */
+class IncrementalValidatorTest {
+
+    /**
+     * Setup test.
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection().territories();
+
+    private static List<TestError> validateAll(Collection<org.openstreetmap.josm.data.validation.Test> tests, DataSet ds) {
+        List<TestError> errors = new ArrayList<>();
+        for (org.openstreetmap.josm.data.validation.Test t : tests) {
+            t.startTest(NullProgressMonitor.INSTANCE);
+            t.visit(ds.allPrimitives());
+            t.endTest();
+            errors.addAll(t.getErrors());
+            t.clear();
+        }
+        return errors;
+    }
+
+    /**
+     * Checks that errors are updated after changes, as a full validation would do.
+     */
+    @Test
+    void testValidateChanges() {
+        DataSet ds = new DataSet();
+        Node a = new Node(new LatLon(50.0, 8.0));
+        Node b = new Node(new LatLon(50.001, 8.001));
+        Node c = new Node(new LatLon(50.0, 8.001));
+        Node d = new Node(new LatLon(50.001, 8.0005));
+        Node e = new Node(new LatLon(51.0, 9.0));
+        Node f = new Node(new LatLon(51.0, 9.0));
+        Arrays.asList(a, b, c, d, e, f).forEach(ds::addPrimitive);
+        Way w1 = TestUtils.newWay("highway=residential", a, b);
+        Way w2 = TestUtils.newWay("highway=residential", c, d);
+        ds.addPrimitive(w1);
+        ds.addPrimitive(w2);
+
+        List<org.openstreetmap.josm.data.validation.Test> tests = Arrays.asList(new CrossingWays.Ways(), new DuplicateNode());
+        List<TestError> errors = validateAll(tests, ds);
+        assertEquals(2, errors.size());
+
+        IncrementalValidator validator = new IncrementalValidator(ds);
+        ds.addDataSetListener(new DataSetListenerAdapter(validator));
+        assertFalse(validator.hasChanges());
+
+        // move the way out of the crossing
+        d.setCoor(new LatLon(50.0005, 8.0015));
+        assertTrue(validator.hasChanges());
+        IncrementalValidator.Result result = validator.validate(tests);
+        assertFalse(validator.hasChanges());
+        assertTrue(result.getRevalidated().containsAll(Arrays.asList(d, w2)));
+        assertFalse(result.getRevalidated().contains(e));
+        assertTrue(result.applyTo(errors));
+        assertEquals(1, errors.size());
+        assertEquals(DuplicateNode.class, errors.get(0).getTester().getClass());
+
+        // move it back, and fix the duplicate node
+        d.setCoor(new LatLon(50.001, 8.0005));
+        f.setCoor(new LatLon(51.001, 9.0));
+        validator.validate(tests).applyTo(errors);
+        assertEquals(1, errors.size());
+        assertEquals(CrossingWays.Ways.class, errors.get(0).getTester().getClass());
+        assertEquals(validateAll(tests, ds).size(), errors.size());
+
+        // no change, nothing to do
+        assertTrue(validator.validate(tests).isEmpty());
+    }
+
+    /**
+     * Checks that a single validation is scheduled for many events.
+     */
+    @Test
+    void testSchedule() {
+        DataSet ds = new DataSet();
+        Node a = new Node(new LatLon(50.0, 8.0));
+        Node b = new Node(new LatLon(50.0, 8.0));
+        ds.addPrimitive(a);
+        ds.addPrimitive(b);
+        IncrementalValidator validator = new IncrementalValidator(ds);
+        ds.addDataSetListener(new DataSetListenerAdapter(validator));
+
+        a.setCoor(new LatLon(50.001, 8.0));
+        assertTrue(validator.schedule());
+        b.setCoor(new LatLon(50.001, 8.0));
+        assertFalse(validator.schedule());
+        // the pending validation validates both changes
+        IncrementalValidator.Result result = validator.validate(Collections.singleton(new DuplicateNode()));
+        assertTrue(result.getRevalidated().containsAll(Arrays.asList(a, b)));
+        assertEquals(1, result.getErrors().size());
+        // the next change schedules a new validation
+        assertTrue(validator.schedule());
+    }
+
+    /**
+     * Checks that the enabled tests are run on instances owned by the validator, not on the shared instances.
+     */
+    @Test
+    void testOwnTestInstances() {
+        DataSet ds = new DataSet();
+        Node a = new Node(new LatLon(50.0, 8.0));
+        Node b = new Node(new LatLon(50.001, 8.0));
+        ds.addPrimitive(a);
+        ds.addPrimitive(b);
+        IncrementalValidator validator = new IncrementalValidator(ds);
+        ds.addDataSetListener(new DataSetListenerAdapter(validator));
+
+        a.setCoor(new LatLon(50.001, 8.0));
+        TestError error = validator.validate().getErrors().stream()
+                .filter(e -> e.getTester() instanceof DuplicateNode)
+                .findFirst().orElseThrow(AssertionError::new);
+        assertNotSame(OsmValidator.getTest(DuplicateNode.class), error.getTester());
+    }
+}
@@ -0,0 +1,144 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.validation.tests.DuplicateNode;
+import org.openstreetmap.josm.data.validation.tests.UntaggedNode;
+import org.openstreetmap.josm.data.validation.tests.UntaggedWay;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmWriter;
+import org.openstreetmap.josm.io.OsmWriterFactory;
+import org.openstreetmap.josm.io.PbfWriter;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+import org.openstreetmap.josm.tools.XmlUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests for class {@link ValidatorCLI}.
+ */
+class ValidatorCLITest {
+
+    /**
+     * Setup test.
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().projection().territories();
+
+    /**
+     * Temporary directory.
+     */
+    @TempDir
+    File tempDir;
+
+    /**
+     * Validates a file with known errors and checks the written XML document.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testValidate() throws Exception {
+        File input = new File(tempDir, "errors.osm");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(input.toPath(), StandardCharsets.UTF_8));
+             OsmWriter writer = OsmWriterFactory.createOsmWriter(out, true, "0.6")) {
+            writer.write(createDataSet());
+        }
+
+        File output = new File(tempDir, "errors.xml");
+        ValidatorCLI cli = new ValidatorCLI();
+        int count = cli.validate(input.getPath(), output.getPath());
+        assertTrue(count >= 3, Integer.toString(count));
+        assertEquals(0, cli.getFailedTests());
+
+        Document doc;
+        try (InputStream in = Files.newInputStream(output.toPath())) {
+            doc = XmlUtils.parseSafeDOM(in);
+        }
+        NodeList analysers = doc.getElementsByTagName("analyser");
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < analysers.getLength(); i++) {
+            names.add(((Element) analysers.item(i)).getAttribute("name"));
+        }
+        assertTrue(names.contains(OsmValidator.getTest(DuplicateNode.class).getName()), names.toString());
+        assertTrue(names.contains(OsmValidator.getTest(UntaggedNode.class).getName()), names.toString());
+        assertTrue(names.contains(OsmValidator.getTest(UntaggedWay.class).getName()), names.toString());
+        assertEquals(count, doc.getElementsByTagName("error").getLength());
+    }
+
+    /**
+     * Validates compressed and PBF files, which must give the same errors as the .osm file.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testValidateCompressedAndPbf() throws Exception {
+        DataSet ds = createDataSet();
+        File osm = new File(tempDir, "errors.osm");
+        File bz2 = new File(tempDir, "errors.osm.bz2");
+        for (File file : Arrays.asList(osm, bz2)) {
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                    Compression.getCompressedFileOutputStream(file), StandardCharsets.UTF_8));
+                 OsmWriter writer = OsmWriterFactory.createOsmWriter(out, true, "0.6")) {
+                writer.write(ds);
+            }
+        }
+        File pbf = new File(tempDir, "errors.osm.pbf");
+        try (PbfWriter writer = new PbfWriter(Files.newOutputStream(pbf.toPath()))) {
+            writer.write(ds);
+        }
+
+        ValidatorCLI cli = new ValidatorCLI();
+        int count = cli.validate(osm.getPath(), new File(tempDir, "osm.xml").getPath());
+        assertTrue(count >= 3, Integer.toString(count));
+        assertEquals(count, cli.validate(bz2.getPath(), new File(tempDir, "bz2.xml").getPath()));
+        assertEquals(count, cli.validate(pbf.getPath(), new File(tempDir, "pbf.xml").getPath()));
+        assertEquals(0, cli.getFailedTests());
+    }
+
+    private static DataSet createDataSet() {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(new LatLon(53.5, 13.2));
+        Node n2 = new Node(new LatLon(53.5, 13.2));
+        Node n3 = new Node(new LatLon(53.6, 13.3));
+        Way w = new Way();
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(n3);
+        w.setNodes(Arrays.asList(n2, n3));
+        ds.addPrimitive(w);
+        return ds;
+    }
+
+    /**
+     * Checks argument errors.
+     */
+    @Test
+    void testParseArgumentsErrors() {
+        ValidatorCLI cli = new ValidatorCLI();
+        assertThrows(IllegalArgumentException.class, () -> cli.parseArguments(new String[] {"--threads", "2"}));
+        assertThrows(IllegalArgumentException.class, () -> cli.parseArguments(new String[] {"-o", "out.xml", "a.osm", "b.osm"}));
+        cli.parseArguments(new String[] {"-i", "a.osm", "b.osm", "-t", "2"});
+    }
+}
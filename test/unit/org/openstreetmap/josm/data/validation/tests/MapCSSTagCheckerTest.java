@@ -4,16 +4,21 @@ package org.openstreetmap.josm.data.validation.tests;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.InputStream;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -30,6 +35,7 @@ import org.openstreetmap.josm.data.osm.IPrimitive;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmUtils;
+import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.data.preferences.sources.ExtendedSourceEntry;
 import org.openstreetmap.josm.data.preferences.sources.ValidatorPrefHelper;
 import org.openstreetmap.josm.data.validation.Severity;
@@ -41,6 +47,7 @@ import org.openstreetmap.josm.gui.mappaint.Environment;
 import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
 import org.openstreetmap.josm.gui.mappaint.mapcss.MapCSSStyleSource;
 import org.openstreetmap.josm.gui.mappaint.mapcss.parsergen.ParseException;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.io.OsmReader;
 import org.openstreetmap.josm.testutils.JOSMTestRules;
 import org.openstreetmap.josm.tools.Logging;
@@ -443,4 +450,95 @@ class MapCSSTagCheckerTest {
         assertEquals("3000_Unnecessary amount of decimal places", errors.iterator().next().getIgnoreGroup());
     }
 
+    private static List<TestError> validate(MapCSSTagChecker test, DataSet ds) {
+        test.startTest(NullProgressMonitor.INSTANCE);
+        test.visit(ds.allPrimitives());
+        test.endTest();
+        List<TestError> errors = new ArrayList<>(test.getErrors());
+        test.clear();
+        return errors;
+    }
+
+    private static TestError getError(List<TestError> errors, String message) {
+        return errors.stream().filter(e -> e.getMessage().equals(message)).findFirst().orElse(null);
+    }
+
+    /**
+     * Checks that the errors of unchanged primitives are reused, and that changes are seen.
+     * @throws ParseException if a parsing error occurs
+     */
+    @Test
+    void testErrorCache() throws ParseException {
+        final MapCSSTagChecker test = buildTagChecker(
+                "way[highway=footway][foot=no] { throwWarning: \"footway\"; }"
+                + "node[amenity=bench][!backrest] { throwWarning: \"bench\"; }"
+                + "way[highway=footway] > node[amenity=bench] { throwWarning: \"bench on footway\"; }");
+        DataSet ds = new DataSet();
+        Node bench = new Node(new LatLon(50, 8));
+        bench.put("amenity", "bench");
+        Node n = new Node(new LatLon(50.001, 8));
+        ds.addPrimitive(bench);
+        ds.addPrimitive(n);
+        Way w = TestUtils.newWay("highway=footway foot=no", bench, n);
+        ds.addPrimitive(w);
+
+        List<TestError> errors = validate(test, ds);
+        assertEquals(3, errors.size());
+        getError(errors, "bench").setIgnored(true);
+        List<TestError> cached = validate(test, ds);
+        assertEquals(3, cached.size());
+        // cached errors are returned as new errors, not ignored
+        assertNotSame(getError(errors, "bench"), getError(cached, "bench"));
+        assertFalse(getError(cached, "bench").isIgnored());
+
+        // tags of the primitive and of its parent way
+        w.put("foot", "yes");
+        errors = validate(test, ds);
+        assertEquals(2, errors.size());
+        assertNotNull(getError(errors, "bench on footway"));
+        w.put("highway", "path");
+        errors = validate(test, ds);
+        assertEquals(1, errors.size());
+        assertNotNull(getError(errors, "bench"));
+        bench.put("backrest", "yes");
+        assertTrue(validate(test, ds).isEmpty());
+
+        MapCSSTagChecker.PREF_CACHE.put(false);
+        w.put("highway", "footway");
+        assertEquals(1, validate(test, ds).size());
+        MapCSSTagChecker.PREF_CACHE.put(true);
+    }
+
+    /**
+     * Checks that the error cache runs the checks once per unchanged primitive, and returns new errors each time.
+     */
+    @Test
+    void testErrorCacheCopies() {
+        DataSet ds = new DataSet();
+        Node bench = new Node(new LatLon(50, 8));
+        bench.put("amenity", "bench");
+        ds.addPrimitive(bench);
+        AtomicInteger calls = new AtomicInteger();
+        Function<OsmPrimitive, List<TestError>> checker = p -> {
+            calls.incrementAndGet();
+            return Collections.singletonList(TestError.builder(new MapCSSTagChecker(), Severity.WARNING, 3000)
+                    .message("bench").primitives(p).build());
+        };
+        MapCSSTagCheckerCache cache = new MapCSSTagCheckerCache();
+        cache.startRun(ds, false);
+        TestError first = cache.getErrors(bench, "url", checker).get(0);
+        first.setIgnored(true);
+        cache.startRun(ds, false);
+        TestError second = cache.getErrors(bench, "url", checker).get(0);
+        assertEquals(1, calls.get());
+        assertNotSame(first, second);
+        assertFalse(second.isIgnored());
+        assertEquals("bench", second.getMessage());
+        assertEquals(first.getPrimitives(), second.getPrimitives());
+
+        bench.put("backrest", "no");
+        cache.startRun(ds, false);
+        cache.getErrors(bench, "url", checker);
+        assertEquals(2, calls.get());
+    }
 }
@@ -0,0 +1,119 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.preferences.sources.ValidatorPrefHelper;
+import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.data.validation.tests.CrossingWays;
+import org.openstreetmap.josm.data.validation.tests.DuplicateNode;
+import org.openstreetmap.josm.data.validation.tests.UnconnectedWays;
+import org.openstreetmap.josm.data.validation.tests.UntaggedNode;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link ParallelValidation}.
+ */
+class ParallelValidationTest {
+
+    /**
+     * Setup test.
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().projection();
+
+    /**
+     * Checks that results are kept in the order of items, with and without parallel execution.
+     */
+    @Test
+    void testFlatMapPartitions() {
+        List<Integer> items = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        List<Integer> expected = items.stream().flatMap(i -> Arrays.asList(i, -i).stream()).collect(Collectors.toList());
+        for (boolean parallel : new boolean[] {true, false}) {
+            ValidatorPrefHelper.PREF_PARALLEL.put(parallel);
+            assertEquals(expected, ParallelValidation.flatMapPartitions(items, 7,
+                    partition -> partition.stream().flatMap(i -> Arrays.asList(i, -i).stream()).collect(Collectors.toList())));
+            assertEquals(items.stream().map(i -> i * 2).collect(Collectors.toList()), ParallelValidation.map(items, i -> i * 2));
+        }
+        assertEquals(Collections.emptyList(), ParallelValidation.map(Collections.<Integer>emptyList(), i -> i));
+    }
+
+    private static DataSet createDataSet() {
+        Random random = new Random(42);
+        DataSet ds = new DataSet();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Node n = new Node(new LatLon(50 + random.nextDouble() * 0.05, 8 + random.nextDouble() * 0.05));
+            ds.addPrimitive(n);
+            nodes.add(n);
+            if (i % 50 == 0) {
+                // duplicate node
+                Node d = new Node(n.getCoor());
+                ds.addPrimitive(d);
+            }
+        }
+        for (int i = 0; i + 3 < nodes.size(); i += 4) {
+            Way w = new Way();
+            w.setNodes(nodes.subList(i, i + 3));
+            w.put("highway", i % 3 == 0 ? "residential" : "footway");
+            ds.addPrimitive(w);
+        }
+        return ds;
+    }
+
+    private static List<String> validate(org.openstreetmap.josm.data.validation.Test test, DataSet ds, boolean parallel)
+            throws Exception {
+        ValidatorPrefHelper.PREF_PARALLEL.put(parallel);
+        test.initialize();
+        test.startTest(NullProgressMonitor.INSTANCE);
+        test.visit(ds.allPrimitives());
+        test.endTest();
+        List<String> errors = new ArrayList<>();
+        for (TestError e : test.getErrors()) {
+            errors.add(e.getCode() + " " + e.getMessage() + " " + e.getPrimitives() + " " + e.getHighlighted());
+        }
+        test.clear();
+        return errors;
+    }
+
+    /**
+     * Checks that tests report the same errors, in the same order, when run in parallel.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testSameErrors() throws Exception {
+        DataSet ds = createDataSet();
+        // some tests look at the active data set
+        OsmDataLayer layer = new OsmDataLayer(ds, null, null);
+        MainApplication.getLayerManager().addLayer(layer);
+        for (org.openstreetmap.josm.data.validation.Test test : Arrays.asList(new CrossingWays.Ways(), new DuplicateNode(),
+                new UntaggedNode(), new UnconnectedWays.UnconnectedHighways())) {
+            List<String> sequential = validate(test, ds, false);
+            List<String> parallel = validate(test, ds, true);
+            assertFalse(sequential.isEmpty(), test.getName());
+            assertEquals(sequential, parallel, test.getName());
+        }
+        MainApplication.getLayerManager().removeLayer(layer);
+    }
+}
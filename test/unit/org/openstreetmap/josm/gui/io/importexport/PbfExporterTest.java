@@ -0,0 +1,55 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.io.importexport;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+/**
+ * Unit tests of {@link PbfExporter} class.
+ */
+class PbfExporterTest {
+
+    /**
+     * Setup test.
+     */
+    @RegisterExtension
+    public JOSMTestRules test = new JOSMTestRules().preferences();
+
+    /**
+     * Checks that a layer with edits to upload remains unsaved after a PBF export, unlike after an OSM XML export.
+     * @param dir temporary directory
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testLayerRemainsUnsaved(@TempDir Path dir) throws Exception {
+        DataSet ds = new DataSet();
+        ds.addPrimitive(new Node(new LatLon(1, 2)));
+        OsmDataLayer layer = new OsmDataLayer(ds, "test", null);
+        File pbf = dir.resolve("test.osm.pbf").toFile();
+        layer.setAssociatedFile(pbf);
+        layer.onPostDownloadFromServer();
+        assertTrue(layer.requiresSaveToFile());
+
+        new PbfExporter().exportDataQuiet(pbf, layer);
+        assertTrue(pbf.length() > 0);
+        assertTrue(layer.requiresSaveToFile());
+        assertTrue(layer.requiresUploadToServer());
+
+        File osm = dir.resolve("test.osm").toFile();
+        new OsmExporter().exportDataQuiet(osm, layer);
+        assertFalse(layer.requiresSaveToFile());
+        assertTrue(layer.requiresUploadToServer());
+    }
+}
@@ -0,0 +1,169 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.gpx;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.gui.layer.gpx.GpxHeatMapRenderer.ProjectedTracks;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link GpxHeatMapRenderer} class.
+ */
+class GpxHeatMapRendererTest {
+
+    /**
+     * Setup test.
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences();
+
+    private static GpxHeatMapRenderer createRenderer() {
+        GpxHeatMapRenderer renderer = new GpxHeatMapRenderer();
+        renderer.setSize(100, 300);
+        return renderer;
+    }
+
+    /**
+     * Checks the pixels covered by lines, in all stripes.
+     */
+    @Test
+    void testRasterizeLines() {
+        GpxHeatMapRenderer renderer = createRenderer();
+        ProjectedTracks tracks = new ProjectedTracks();
+        // a vertical line crossing all stripes, going back and forth
+        tracks.add(50, 10, false);
+        tracks.add(50, 290, true);
+        tracks.add(50, 150, true);
+        // another polyline on the same line
+        tracks.add(50, 100, false);
+        tracks.add(50, 200, true);
+        assertEquals(2, tracks.getPolylineCount());
+
+        renderer.rasterizeLines(tracks, 4, 2);
+        // each polyline counts once per pixel
+        assertEquals(1, renderer.getBackCount(50, 50));
+        assertEquals(2, renderer.getBackCount(50, 150));
+        assertEquals(2, renderer.getBackCount(48, 150));
+        assertEquals(0, renderer.getBackCount(47, 150));
+        assertEquals(2, renderer.getForeCount(50, 150));
+        assertEquals(0, renderer.getForeCount(48, 150));
+        // round caps
+        assertEquals(1, renderer.getBackCount(50, 8));
+        assertEquals(0, renderer.getBackCount(50, 7));
+        assertEquals(0, renderer.getBackCount(10, 150));
+
+        // the densities are cleared by the next rasterization
+        renderer.rasterizeLines(new ProjectedTracks(), 4, 0);
+        assertEquals(0, renderer.getBackCount(50, 150));
+        assertEquals(0, renderer.getForeCount(50, 150));
+    }
+
+    /**
+     * Checks diagonal lines and lines outside of the view.
+     */
+    @Test
+    void testRasterizeDiagonalLines() {
+        GpxHeatMapRenderer renderer = createRenderer();
+        ProjectedTracks tracks = new ProjectedTracks();
+        tracks.add(-100, -100, false);
+        tracks.add(200, 200, true);
+        tracks.add(1000, 1000, false);
+        tracks.add(2000, 1000, true);
+        renderer.rasterizeLines(tracks, 2, 0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1, renderer.getBackCount(i, i));
+        }
+        assertEquals(0, renderer.getBackCount(10, 20));
+        assertEquals(0, renderer.getBackCount(99, 299));
+    }
+
+    /**
+     * Checks the conversion of densities to gray levels and colors.
+     */
+    @Test
+    void testGrayAndImage() {
+        GpxHeatMapRenderer renderer = createRenderer();
+        ProjectedTracks tracks = new ProjectedTracks();
+        tracks.add(0, 20.5, false);
+        tracks.add(100, 20.5, true);
+        tracks.add(0, 20.5, false);
+        tracks.add(100, 20.5, true);
+        renderer.rasterizeLines(tracks, 1, 0);
+
+        int[] gray = renderer.getGray(0.5f, 0.5f);
+        assertEquals(191, gray[20 * 100 + 10]);
+        assertEquals(0, gray[21 * 100 + 10]);
+        // cached as long as the densities and alpha values do not change
+        assertSame(gray, renderer.getGray(0.5f, 0.5f));
+
+        Color[] colors = new Color[256];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = new Color(i, 0, 255 - i, 200);
+        }
+        BufferedImage image = renderer.getImage(0.5f, 0.5f, colors, 1);
+        assertEquals(100, image.getWidth());
+        assertEquals(300, image.getHeight());
+        assertEquals(colors[191].getRGB(), image.getRGB(10, 20));
+        assertEquals(0, image.getRGB(10, 21));
+        assertSame(image, renderer.getImage(0.5f, 0.5f, colors, 1));
+
+        // blocks of 4 pixels take the mean gray level of their first row
+        image = renderer.getImage(0.5f, 0.5f, colors, 4);
+        assertEquals(colors[191].getRGB(), image.getRGB(10, 22));
+        assertEquals(0, image.getRGB(10, 24));
+    }
+
+    /**
+     * Checks the transmission tables.
+     */
+    @Test
+    void testTransmissionTable() {
+        float[] table = GpxHeatMapRenderer.createTransmissionTable(0.5f);
+        assertEquals(1f, table[0]);
+        assertEquals(0.25f, table[2]);
+        assertTrue(table[table.length - 1] <= 1.0 / 1024);
+        assertTrue(table[table.length - 2] > 1.0 / 1024);
+    }
+
+    /**
+     * Checks the dotted heat map.
+     */
+    @Test
+    void testRasterizeDots() {
+        GpxHeatMapRenderer renderer = createRenderer();
+        ProjectedTracks tracks = new ProjectedTracks();
+        tracks.add(50, 10, false);
+        tracks.add(50, 290, true);
+        renderer.rasterizeDots(tracks, 2, 0, 0, 0);
+        int total = 0;
+        for (int y = 0; y < 300; y++) {
+            for (int x = 0; x < 100; x++) {
+                total += renderer.getBackCount(x, y);
+            }
+        }
+        // 10 samples of 2 squares of 4 pixels, without random distribution
+        assertEquals(80, total);
+        assertEquals(2, renderer.getBackCount(48, 288));
+    }
+
+    /**
+     * Checks an empty view.
+     */
+    @Test
+    void testEmpty() {
+        GpxHeatMapRenderer renderer = new GpxHeatMapRenderer();
+        renderer.rasterizeLines(new ProjectedTracks(), 2, 0);
+        assertNull(renderer.getImage(0.5f, 0.5f, new Color[256], 1));
+    }
+}
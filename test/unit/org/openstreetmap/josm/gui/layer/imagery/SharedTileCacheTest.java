@@ -0,0 +1,157 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.imagery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.gui.jmapviewer.tilesources.OsmTileSource;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link SharedTileCache} class.
+ */
+class SharedTileCacheTest {
+
+    /**
+     * Setup test.
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences();
+
+    /** Memory used by a tile of 256x256 ARGB pixels */
+    private static final long TILE_SIZE = 256 * 256 * 4 + SharedTileCache.TILE_OVERHEAD;
+
+    private final TileSource source = new OsmTileSource.Mapnik();
+    private final SharedTileCache cache = new SharedTileCache(100);
+    private final SharedTileCache other = new SharedTileCache(100);
+
+    /**
+     * Removes the tiles of the test caches from the shared budget.
+     */
+    @AfterEach
+    public void tearDown() {
+        cache.clear();
+        other.clear();
+    }
+
+    private Tile addTile(SharedTileCache tileCache, int x, int y, int zoom) {
+        Tile tile = new Tile(source, x, y, zoom, new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB));
+        tileCache.addTile(tile);
+        return tile;
+    }
+
+    private boolean contains(SharedTileCache tileCache, int x, int y, int zoom) {
+        return tileCache.getTile(source, x, y, zoom) != null;
+    }
+
+    /**
+     * Checks the memory accounting, and the hit and miss counters.
+     */
+    @Test
+    void testAccounting() {
+        long used = SharedTileCache.getUsedSize();
+        long hits = SharedTileCache.getHitCount();
+        long misses = SharedTileCache.getMissCount();
+
+        Tile tile = new Tile(source, 1, 2, 3);
+        cache.addTile(tile);
+        assertEquals(used + SharedTileCache.TILE_OVERHEAD, SharedTileCache.getUsedSize());
+        // a tile without image is a miss
+        assertSame(tile, cache.getTile(source, 1, 2, 3));
+        assertNull(cache.getTile(source, 1, 2, 4));
+        assertEquals(misses + 2, SharedTileCache.getMissCount());
+
+        tile.setImage(new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB));
+        cache.tileLoaded(tile);
+        assertEquals(used + TILE_SIZE, SharedTileCache.getUsedSize());
+        assertSame(tile, cache.getTile(source, 1, 2, 3));
+        assertEquals(hits + 1, SharedTileCache.getHitCount());
+
+        addTile(other, 1, 2, 3);
+        assertEquals(1, cache.getTileCount());
+        assertEquals(1, other.getTileCount());
+        assertEquals(used + 2 * TILE_SIZE, SharedTileCache.getUsedSize());
+        cache.clear();
+        assertEquals(0, cache.getTileCount());
+        assertEquals(used + TILE_SIZE, SharedTileCache.getUsedSize());
+        assertEquals(100, cache.getCacheSize());
+    }
+
+    /**
+     * Checks that the tiles far from the displayed tiles, in zoom level or position, are evicted first.
+     */
+    @Test
+    void testEviction() {
+        SharedTileCache.MAX_SIZE.put(2);
+        try {
+            cache.setFocus(10, 0, 0, 1, 0);
+            // 7 tiles fit in the budget
+            addTile(cache, 0, 0, 10);
+            addTile(cache, 1, 0, 10);
+            addTile(cache, 2, 0, 10);
+            addTile(cache, 0, 1, 10);
+            addTile(cache, 0, 0, 11);
+            addTile(cache, 20, 0, 10);
+            addTile(other, 0, 0, 10);
+            assertEquals(7, cache.getTileCount() + other.getTileCount());
+
+            // tiles of layers which are not displayed first
+            addTile(cache, 3, 0, 10);
+            assertEquals(0, other.getTileCount());
+            // then far tiles
+            addTile(cache, 1, 1, 10);
+            assertTrue(!contains(cache, 20, 0, 10));
+            // then tiles of other zoom levels
+            addTile(cache, 4, 0, 10);
+            assertTrue(!contains(cache, 0, 0, 11));
+            addTile(cache, 0, 2, 10);
+            assertTrue(!contains(cache, 4, 0, 10));
+            assertEquals(7, cache.getTileCount());
+            assertTrue(SharedTileCache.getUsedSize() <= SharedTileCache.getMaxSize());
+
+            // displayed tiles are never evicted
+            SharedTileCache.MAX_SIZE.put(1);
+            cache.setFocus(10, 0, 0, 9, 9);
+            addTile(cache, 5, 5, 10);
+            assertEquals(8, cache.getTileCount());
+            assertNotNull(cache.getTile(source, 0, 0, 10));
+
+            // unless the layer is hidden
+            cache.clearFocus();
+            addTile(cache, 6, 6, 10);
+            assertTrue(cache.getTileCount() < 4);
+            assertNotNull(cache.getTile(source, 6, 6, 10));
+        } finally {
+            SharedTileCache.MAX_SIZE.remove();
+        }
+    }
+
+    /**
+     * Checks the distance of tiles to the displayed tiles.
+     */
+    @Test
+    void testGetDistance() {
+        cache.setFocus(10, 4, 4, 5, 5);
+        assertEquals(0, cache.getDistance(new Tile(source, 4, 5, 10)));
+        assertEquals(1.5, cache.getDistance(new Tile(source, 7, 5, 10)));
+        assertEquals(2.5, cache.getDistance(new Tile(source, 3, 1, 10)));
+        // the tile 2/2 at zoom 9 covers the displayed tiles
+        assertEquals(SharedTileCache.ZOOM_LEVEL_DISTANCE, cache.getDistance(new Tile(source, 2, 2, 9)));
+        assertEquals(2 * SharedTileCache.ZOOM_LEVEL_DISTANCE, cache.getDistance(new Tile(source, 16, 16, 12)));
+        cache.clearFocus();
+        assertEquals(Double.POSITIVE_INFINITY, cache.getDistance(new Tile(source, 4, 5, 10)));
+    }
+}
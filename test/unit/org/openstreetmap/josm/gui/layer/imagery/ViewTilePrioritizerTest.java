@@ -0,0 +1,93 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.imagery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.TileXY;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.gui.jmapviewer.tilesources.OsmTileSource;
+import org.openstreetmap.josm.data.imagery.TilePrioritizer;
+
+/**
+ * Unit tests of {@link ViewTilePrioritizer} class.
+ */
+class ViewTilePrioritizerTest {
+
+    private static final double GROUP = ViewTilePrioritizer.GROUP;
+
+    private final TileSource source = new OsmTileSource.Mapnik();
+    private final ViewTilePrioritizer prioritizer = new ViewTilePrioritizer(1, 2);
+
+    private static void assertTileXY(int x, int y, TileXY xy) {
+        assertEquals(x, xy.getXIndex());
+        assertEquals(y, xy.getYIndex());
+    }
+
+    private double getPriority(int x, int y, int zoom) {
+        return prioritizer.getPriority(new Tile(source, x, y, zoom));
+    }
+
+    /**
+     * Checks the order of the groups of tiles, and the order by distance from the center of the view.
+     */
+    @Test
+    void testGetPriority() {
+        assertTrue(prioritizer.setView(10, 4, 4, 5, 5, 0, 0));
+        assertFalse(prioritizer.setView(10, 4, 4, 5, 5, 0, 0));
+
+        // visible tiles
+        assertEquals(Math.hypot(0.5, 0.5), getPriority(4, 4, 10));
+        // tiles of the next and previous zoom levels covering the view
+        assertEquals(GROUP + Math.hypot(0.75, 0.75), getPriority(8, 8, 11));
+        assertEquals(GROUP, getPriority(2, 2, 9));
+        // tiles around the view
+        assertEquals(2 * GROUP + Math.hypot(1.5, 0.5), getPriority(6, 5, 10));
+        assertEquals(2 * GROUP + Math.hypot(1.5, 1.5), getPriority(3, 3, 10));
+        // tiles of other zoom levels covering the view
+        assertEquals(3 * GROUP + Math.hypot(0.875, 0.875), getPriority(16, 16, 12));
+        // other tiles
+        assertEquals(TilePrioritizer.STALE, getPriority(7, 5, 10));
+        assertEquals(TilePrioritizer.STALE, getPriority(20, 8, 11));
+        assertEquals(TilePrioritizer.STALE, getPriority(0, 0, 8));
+    }
+
+    /**
+     * Checks that the tiles in the direction in which the map is panned are loaded.
+     */
+    @Test
+    void testPanDirection() {
+        assertTrue(prioritizer.setView(10, 4, 4, 5, 5, 1, 0));
+        assertTileXY(3, 3, prioritizer.getPrefetchMin());
+        assertTileXY(8, 6, prioritizer.getPrefetchMax());
+        assertEquals(2 * GROUP + Math.hypot(3.5, 0.5), getPriority(8, 5, 10));
+        assertEquals(TilePrioritizer.STALE, getPriority(9, 5, 10));
+        assertEquals(TilePrioritizer.STALE, getPriority(2, 5, 10));
+
+        // diagonal pan
+        assertTrue(prioritizer.setView(10, 4, 4, 5, 5, -Math.sqrt(0.5), Math.sqrt(0.5)));
+        assertTileXY(1, 3, prioritizer.getPrefetchMin());
+        assertTileXY(6, 8, prioritizer.getPrefetchMax());
+        assertTrue(getPriority(1, 8, 10) < TilePrioritizer.STALE);
+        assertEquals(TilePrioritizer.STALE, getPriority(8, 5, 10));
+    }
+
+    /**
+     * Checks the priorities without view, before the layer is painted and after it is hidden.
+     */
+    @Test
+    void testNoView() {
+        assertNull(prioritizer.getPrefetchMin());
+        assertEquals(0, getPriority(4, 4, 10));
+        prioritizer.setView(10, 4, 4, 5, 5, 0, 0);
+        prioritizer.clearView();
+        assertNull(prioritizer.getPrefetchMax());
+        assertEquals(TilePrioritizer.STALE, getPriority(4, 4, 10));
+        assertTrue(prioritizer.setView(10, 4, 4, 5, 5, 0, 0));
+        assertEquals(Math.hypot(0.5, 0.5), getPriority(4, 4, 10));
+    }
+}
@@ -0,0 +1,88 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmUtils;
+import org.openstreetmap.josm.gui.mappaint.RenderProfiler.Statistics;
+import org.openstreetmap.josm.gui.mappaint.mapcss.MapCSSStyleSource;
+import org.openstreetmap.josm.gui.mappaint.styleelement.DefaultStyles;
+import org.openstreetmap.josm.gui.mappaint.styleelement.LineElement;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link RenderProfiler}.
+ */
+class RenderProfilerTest {
+
+    /**
+     * Setup rule
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection();
+
+    /**
+     * Disables profiling after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        RenderProfiler.setEnabled(false);
+        RenderProfiler.reset();
+    }
+
+    /**
+     * Checks that MapCSS rules are only profiled while profiling is enabled.
+     */
+    @Test
+    void testRuleStatistics() {
+        MapCSSStyleSource source = new MapCSSStyleSource(
+                "node[amenity] { symbol-shape: circle; } node[highway] { symbol-shape: square; }");
+        source.loadStyleSource();
+        Node n = (Node) OsmUtils.createPrimitive("node amenity=bench");
+
+        source.apply(new MultiCascade(), n, 1, false);
+        assertTrue(RenderProfiler.getRuleStatistics().isEmpty());
+
+        RenderProfiler.setEnabled(true);
+        source.apply(new MultiCascade(), n, 1, false);
+        source.apply(new MultiCascade(), n, 1, false);
+        List<Statistics> rules = RenderProfiler.getRuleStatistics();
+        assertEquals(1, rules.size());
+        Statistics amenity = rules.get(0);
+        assertTrue(amenity.getName().contains("amenity"), amenity::getName);
+        assertEquals(2, amenity.getCount());
+        assertEquals(2, amenity.getApplied());
+
+        RenderProfiler.reset();
+        assertTrue(RenderProfiler.getRuleStatistics().isEmpty());
+    }
+
+    /**
+     * Checks the statistics of painted style elements.
+     */
+    @Test
+    void testElementStatistics() {
+        RenderProfiler.elementPainted(LineElement.UNTAGGED_WAY, 1000);
+        RenderProfiler.elementPainted(LineElement.UNTAGGED_WAY, 3000);
+        RenderProfiler.elementPainted(DefaultStyles.SIMPLE_NODE_ELEMSTYLE, 500);
+
+        List<Statistics> elements = RenderProfiler.getElementStatistics();
+        assertEquals(2, elements.size());
+        Statistics line = elements.get(0);
+        assertEquals("LineElement", line.getName());
+        assertEquals(2, line.getCount());
+        assertEquals(2, line.getApplied());
+        assertEquals(4000, line.getNanos());
+        assertEquals("NodeElement", elements.get(1).getName());
+    }
+}
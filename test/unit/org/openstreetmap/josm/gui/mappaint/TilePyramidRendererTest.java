@@ -0,0 +1,104 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.mappaint.RenderingHelper.StyleData;
+import org.openstreetmap.josm.gui.mappaint.TilePyramidRenderer.ZipTileOutput;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link TilePyramidRenderer}.
+ */
+class TilePyramidRendererTest {
+
+    /**
+     * Setup rule
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection().territories();
+
+    /**
+     * Test of the tile numbers covering an area.
+     */
+    @Test
+    void testTileNumbers() {
+        // area of imagery tile z=19/x=292949/y=174587
+        Bounds bTile = new Bounds(51.40091918770498, 21.152114868164077, 51.4013475612123, 21.15280151367189, false);
+        double epsilon = 1e-9;
+        assertArrayEquals(new int[] {292949, 292949},
+                TilePyramidRenderer.getTileColumns(bTile.getMinLon() + epsilon, bTile.getMaxLon() - epsilon, 19));
+        assertArrayEquals(new int[] {174587, 174587},
+                TilePyramidRenderer.getTileRows(bTile.getMinLat() + epsilon, bTile.getMaxLat() - epsilon, 19));
+        assertArrayEquals(new int[] {0, 0}, TilePyramidRenderer.getTileColumns(-180, 180, 0));
+        assertArrayEquals(new int[] {0, 1}, TilePyramidRenderer.getTileRows(-90, 90, 1));
+    }
+
+    /**
+     * Test of rendering tiles to an archive. Tiles without data are skipped.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testRender() throws Exception {
+        DataSet ds = new DataSet();
+        Node a = new Node(new LatLon(51.4005, 21.1522));
+        Node b = new Node(new LatLon(51.4009, 21.1526));
+        ds.addPrimitive(a);
+        ds.addPrimitive(b);
+        Way way = new Way();
+        way.setNodes(Arrays.asList(a, b));
+        way.put("highway", "residential");
+        ds.addPrimitive(way);
+
+        StyleData style = new StyleData();
+        style.styleUrl = "resource://styles/standard/elemstyles.mapcss";
+        Bounds bounds = new Bounds(51.39, 21.14, 51.41, 21.16);
+        TilePyramidRenderer renderer = new TilePyramidRenderer(ds, bounds, 16, 17, Collections.singleton(style));
+        renderer.setThreads(2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int count;
+        try (ZipTileOutput output = new ZipTileOutput(out)) {
+            count = renderer.render(output);
+        }
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+                assertEquals(TilePyramidRenderer.TILE_SIZE, ImageIO.read(zip).getWidth());
+            }
+        }
+        assertEquals(count, names.size());
+        // the way touches one or two tiles per zoom level, and the tiles around them within the margin
+        int[] columns16 = TilePyramidRenderer.getTileColumns(bounds.getMinLon(), bounds.getMaxLon(), 16);
+        int[] rows16 = TilePyramidRenderer.getTileRows(bounds.getMinLat(), bounds.getMaxLat(), 16);
+        int all16 = (columns16[1] - columns16[0] + 1) * (rows16[1] - rows16[0] + 1);
+        assertTrue(count > 1 && count < all16, names::toString);
+        assertTrue(names.stream().anyMatch(n -> n.startsWith("16/")), names::toString);
+        assertTrue(names.stream().anyMatch(n -> n.startsWith("17/")), names::toString);
+    }
+}
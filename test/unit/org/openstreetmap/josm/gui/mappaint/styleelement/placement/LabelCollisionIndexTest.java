@@ -0,0 +1,55 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.styleelement.placement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests of {@link LabelCollisionIndex}.
+ */
+class LabelCollisionIndexTest {
+
+    /**
+     * Test of overlapping labels, also across cells and with negative coordinates.
+     */
+    @Test
+    void testAddIfFree() {
+        LabelCollisionIndex index = new LabelCollisionIndex(10);
+        assertTrue(index.addIfFree(Collections.singletonList(new Rectangle2D.Double(-5, -5, 30, 8))));
+        assertEquals(1, index.size());
+
+        assertTrue(index.intersects(new Rectangle2D.Double(20, 0, 5, 5)));
+        assertTrue(index.intersects(new Rectangle2D.Double(-100, -100, 200, 200)));
+        assertFalse(index.intersects(new Rectangle2D.Double(-5, 4, 30, 8)));
+        assertFalse(index.intersects(new Rectangle2D.Double(0, 0, 0, 0)));
+
+        // a label is only placed if none of its parts overlaps
+        assertFalse(index.addIfFree(Arrays.asList(new Rectangle2D.Double(40, 0, 5, 5), new Rectangle2D.Double(0, 0, 5, 5))));
+        assertEquals(1, index.size());
+        assertFalse(index.intersects(new Rectangle2D.Double(40, 0, 5, 5)));
+
+        assertTrue(index.addIfFree(Arrays.asList(new Rectangle2D.Double(40, 0, 5, 5), new Rectangle2D.Double(50, 0, 5, 5))));
+        assertEquals(3, index.size());
+        assertTrue(index.intersects(new Rectangle2D.Double(52, 2, 1, 1)));
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertFalse(index.intersects(new Rectangle2D.Double(0, 0, 5, 5)));
+    }
+
+    /**
+     * Test of an invalid cell size.
+     */
+    @Test
+    void testInvalidCellSize() {
+        assertThrows(IllegalArgumentException.class, () -> new LabelCollisionIndex(0));
+    }
+}
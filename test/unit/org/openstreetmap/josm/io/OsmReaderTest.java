@@ -22,10 +22,13 @@ import org.junit.jupiter.api.Test;
 import org.openstreetmap.josm.TestUtils;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.OsmReader.Options;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.testutils.JOSMTestRules;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -40,7 +43,7 @@ class OsmReaderTest {
      */
     @RegisterExtension
     @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
-    public JOSMTestRules test = new JOSMTestRules();
+    public JOSMTestRules test = new JOSMTestRules().preferences();
 
     private static Options[][] options() {
         return new Options[][]{
@@ -413,4 +416,94 @@ class OsmReaderTest {
             }
         }
     }
+
+    private static String generateOsm(int nodes, String extraNode) {
+        StringBuilder sb = new StringBuilder("<osm version='0.6'>");
+        for (int i = 1; i <= nodes; i++) {
+            sb.append("<node id='").append(i).append("' version='1' changeset='").append(i % 7 + 1)
+              .append("' timestamp='2020-01-0").append(i % 9 + 1).append("T00:00:00Z' user='u").append(i % 5)
+              .append("' uid='").append(i % 5 + 1).append("' lat='").append(i * 1e-5).append("' lon='").append(-i * 1e-5).append("'>")
+              .append("<tag k='ref' v='").append(i).append("'/></node>");
+            if (i == nodes / 2 && extraNode != null) {
+                sb.append(extraNode);
+            }
+        }
+        for (int i = 1; i < nodes; i += 2) {
+            sb.append("<way id='").append(i).append("' version='1'><nd ref='").append(i).append("'/><nd ref='").append(i + 1)
+              .append("'/><tag k='highway' v='service'/></way>");
+        }
+        sb.append("<relation id='1' version='1'><member type='way' ref='1' role='outer'/><member type='node' ref='")
+          .append(nodes + 1).append("' role=''/></relation>");
+        return sb.append("</osm>").toString();
+    }
+
+    /**
+     * Checks that the parallel pipeline produces the same data set as the sequential parser.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    void testParallelParsing() throws Exception {
+        String osm = generateOsm(5 * OsmReader.BATCH_SIZE + 17, null);
+        OsmReader.PARALLEL_PARSING.put(false);
+        DataSet sequential = testValidData(osm, new Options[0]);
+        OsmReader.PARALLEL_PARSING.put(true);
+        Config.getPref().putInt(OsmReader.THREADS_PREF, 4);
+        DataSet parallel = testValidData(osm, new Options[0]);
+        assertEquals(sequential.getNodes().size(), parallel.getNodes().size());
+        assertEquals(sequential.getWays().size(), parallel.getWays().size());
+        for (Node n : sequential.getNodes()) {
+            Node p = (Node) parallel.getPrimitiveById(n);
+            assertEquals(n.getCoor(), p.getCoor());
+            assertEquals(n.getKeys(), p.getKeys());
+            assertEquals(n.getRawTimestamp(), p.getRawTimestamp());
+            assertEquals(n.getUser(), p.getUser());
+            assertEquals(n.getChangesetId(), p.getChangesetId());
+        }
+        for (Way w : sequential.getWays()) {
+            assertEquals(w.getNodes().toString(), ((Way) parallel.getPrimitiveById(w)).getNodes().toString());
+        }
+        Relation r = (Relation) parallel.getPrimitiveById(1, OsmPrimitiveType.RELATION);
+        assertEquals(2, r.getMembersCount());
+        assertTrue(r.getMember(1).getMember().isIncomplete());
+    }
+
+    /**
+     * Checks that the parallel pipeline reports the same errors as the sequential parser.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    void testParallelParsingInvalidData() throws Exception {
+        Config.getPref().putInt(OsmReader.THREADS_PREF, 4);
+        testInvalidUid();
+        testMissingId();
+        testMissingRef();
+        testInvalidData("<osm version='0.6'><way id='1' version='nan'><nd/></way></osm>",
+                "Illegal value for attribute 'version' on OSM primitive with ID 1. Got nan. (at line 1, column 84). 85 bytes have been read");
+        String osm = generateOsm(3 * OsmReader.BATCH_SIZE, "<node id='-1' lat='91' lon='0'/>");
+        try (InputStream in = new ByteArrayInputStream(osm.getBytes(StandardCharsets.UTF_8))) {
+            OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+            fail("should throw exception");
+        } catch (IllegalDataException e) {
+            assertTrue(e.getMessage().startsWith("Illegal value for attributes 'lat', 'lon' on node with ID 0. Got '91', '0'."),
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Checks that the parallel pipeline resolves references of new primitives, even if their ids are renumbered.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    void testParallelParsingNewPrimitives() throws Exception {
+        Config.getPref().putInt(OsmReader.THREADS_PREF, 4);
+        for (int i = 0; i < 10; i++) {
+            new Node();
+        }
+        DataSet ds = testValidData("<osm version='0.6'><node id='-1' lat='1' lon='1'/><node id='-2' lat='2' lon='2'/>" +
+                "<way id='-1'><nd ref='-1'/><nd ref='-2'/></way><relation id='-1'><member type='way' ref='-1' role=''/></relation></osm>",
+                new Options[0]);
+        Way w = ds.getWays().iterator().next();
+        assertEquals(2, w.getNodesCount());
+        assertEquals(w, ds.getRelations().iterator().next().getMember(0).getMember());
+    }
 }
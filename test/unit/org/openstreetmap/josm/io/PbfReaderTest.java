@@ -0,0 +1,215 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.io.PbfWriter.ProtobufOutput;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link PbfReader} and {@link PbfWriter} classes.
+ */
+class PbfReaderTest {
+
+    /**
+     * Setup rule
+     */
+    @RegisterExtension
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    private static DataSet roundTrip(DataSet ds) throws IOException, IllegalDataException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PbfWriter writer = new PbfWriter(out)) {
+            writer.write(ds);
+        }
+        return PbfReader.parseDataSet(new ByteArrayInputStream(out.toByteArray()), null);
+    }
+
+    private static DataSet parseXml(String osm) throws IllegalDataException {
+        return OsmReader.parseDataSet(new ByteArrayInputStream(osm.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    /**
+     * Checks that primitives, tags, metadata and bounds survive a PBF round trip.
+     * @throws Exception never
+     */
+    @Test
+    void testRoundTrip() throws Exception {
+        DataSet ds = roundTrip(parseXml(
+                "<osm version=\"0.6\">\n" +
+                "  <bounds minlat=\"48.5\" minlon=\"2.25\" maxlat=\"48.75\" maxlon=\"2.5\" origin=\"test\"/>\n" +
+                "  <node id=\"1\" version=\"3\" changeset=\"42\" uid=\"7\" user=\"alice\" timestamp=\"2020-01-02T03:04:05Z\"" +
+                " lat=\"48.6000001\" lon=\"2.3456789\">\n" +
+                "    <tag k=\"amenity\" v=\"cafe\"/>\n" +
+                "    <tag k=\"name\" v=\"Café à Paris\"/>\n" +
+                "  </node>\n" +
+                "  <node id=\"2\" version=\"1\" changeset=\"43\" uid=\"8\" user=\"bob\" lat=\"-48.6\" lon=\"-2.3\"/>\n" +
+                "  <node id=\"5\" version=\"1\" changeset=\"43\" uid=\"8\" user=\"bob\" lat=\"0\" lon=\"179.9999999\"/>\n" +
+                "  <way id=\"10\" version=\"2\" changeset=\"44\" uid=\"7\" user=\"alice\">\n" +
+                "    <nd ref=\"1\"/><nd ref=\"5\"/><nd ref=\"2\"/>\n" +
+                "    <tag k=\"highway\" v=\"residential\"/>\n" +
+                "  </way>\n" +
+                "  <relation id=\"20\" version=\"1\" changeset=\"45\">\n" +
+                "    <member type=\"way\" ref=\"10\" role=\"outer\"/>\n" +
+                "    <member type=\"node\" ref=\"2\" role=\"\"/>\n" +
+                "    <member type=\"relation\" ref=\"30\" role=\"sub\"/>\n" +
+                "    <tag k=\"type\" v=\"multipolygon\"/>\n" +
+                "  </relation>\n" +
+                "</osm>"));
+
+        assertEquals(3, ds.getNodes().size());
+        assertEquals(1, ds.getWays().size());
+        assertEquals(2, ds.getRelations().size());
+
+        Node n1 = (Node) ds.getPrimitiveById(1, OsmPrimitiveType.NODE);
+        assertEquals(48.6000001, n1.lat());
+        assertEquals(2.3456789, n1.lon());
+        assertEquals("cafe", n1.get("amenity"));
+        assertEquals("Café à Paris", n1.get("name"));
+        assertEquals(3, n1.getVersion());
+        assertEquals(42, n1.getChangesetId());
+        assertEquals(7, n1.getUser().getId());
+        assertEquals("alice", n1.getUser().getName());
+        assertEquals(1577934245, n1.getRawTimestamp());
+
+        Node n5 = (Node) ds.getPrimitiveById(5, OsmPrimitiveType.NODE);
+        assertEquals(179.9999999, n5.lon());
+        assertFalse(n5.hasKeys());
+
+        Way w = (Way) ds.getPrimitiveById(10, OsmPrimitiveType.WAY);
+        assertArrayEquals(new long[] {1, 5, 2}, w.getNodes().stream().mapToLong(Node::getUniqueId).toArray());
+        assertEquals("residential", w.get("highway"));
+        assertEquals(2, w.getVersion());
+
+        Relation r = (Relation) ds.getPrimitiveById(20, OsmPrimitiveType.RELATION);
+        assertEquals(3, r.getMembersCount());
+        assertEquals("outer", r.getMember(0).getRole());
+        assertEquals(w, r.getMember(0).getMember());
+        assertEquals("", r.getMember(1).getRole());
+        assertTrue(r.getMember(1).isNode());
+        assertEquals("sub", r.getMember(2).getRole());
+        assertTrue(r.getMember(2).getMember().isIncomplete());
+        assertEquals("multipolygon", r.get("type"));
+
+        assertEquals(1, ds.getDataSources().size());
+        assertEquals(48.5, ds.getDataSourceBounds().get(0).getMinLat());
+        assertEquals(2.5, ds.getDataSourceBounds().get(0).getMaxLon());
+    }
+
+    /**
+     * Checks that new primitives (negative ids) and deleted primitives are handled.
+     * @throws Exception never
+     */
+    @Test
+    void testNewAndDeletedPrimitives() throws Exception {
+        DataSet source = new DataSet();
+        Node n1 = new Node(new LatLon(1, 2));
+        Node n2 = new Node(new LatLon(3, 4));
+        Node deleted = new Node(1234, 1);
+        deleted.setCoor(new LatLon(5, 6));
+        source.addPrimitive(n1);
+        source.addPrimitive(n2);
+        source.addPrimitive(deleted);
+        Way w = new Way();
+        w.setNodes(Arrays.asList(n1, n2));
+        w.put("building", "yes");
+        source.addPrimitive(w);
+        deleted.setDeleted(true);
+
+        DataSet ds = roundTrip(source);
+        assertEquals(2, ds.getNodes().size());
+        assertTrue(ds.getNodes().stream().allMatch(Node::isNew));
+        Way w2 = ds.getWays().iterator().next();
+        assertTrue(w2.isNew());
+        assertEquals(2, w2.getNodesCount());
+        assertEquals("yes", w2.get("building"));
+    }
+
+    /**
+     * Checks that large data sets are split into several blocks and merged back in order.
+     * @throws Exception never
+     */
+    @Test
+    void testSeveralBlocks() throws Exception {
+        DataSet source = new DataSet();
+        Way w = new Way(1, 1);
+        for (int i = 1; i <= 2 * PbfWriter.BLOCK_SIZE + 10; i++) {
+            Node n = new Node(i, 1);
+            n.setCoor(new LatLon(i * 1e-4, -i * 1e-4));
+            n.put("ref", Integer.toString(i % 17));
+            source.addPrimitive(n);
+            if (i % 100 == 0) {
+                w.addNode(n);
+            }
+        }
+        source.addPrimitive(w);
+        DataSet ds = roundTrip(source);
+        assertEquals(source.getNodes().size(), ds.getNodes().size());
+        Node n = (Node) ds.getPrimitiveById(PbfWriter.BLOCK_SIZE + 5, OsmPrimitiveType.NODE);
+        assertEquals(Integer.toString((PbfWriter.BLOCK_SIZE + 5) % 17), n.get("ref"));
+        assertEquals((PbfWriter.BLOCK_SIZE + 5) * 1e-4, n.lat(), 1e-9);
+        assertEquals(w.getNodesCount(), ds.getWays().iterator().next().getNodesCount());
+    }
+
+    private static byte[] header(String feature) throws IOException {
+        ProtobufOutput header = new ProtobufOutput();
+        header.writeString(4, feature);
+        ProtobufOutput blob = new ProtobufOutput();
+        blob.writeBytes(1, header.toByteArray());
+        ProtobufOutput blobHeader = new ProtobufOutput();
+        blobHeader.writeString(1, PbfReader.BLOB_OSM_HEADER);
+        blobHeader.writeVarint(3, blob.toByteArray().length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(out)) {
+            dos.writeInt(blobHeader.toByteArray().length);
+            dos.write(blobHeader.toByteArray());
+            dos.write(blob.toByteArray());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks that unsupported required features are rejected.
+     * @throws Exception never
+     */
+    @Test
+    void testUnsupportedFeature() throws Exception {
+        assertEquals(0, PbfReader.parseDataSet(new ByteArrayInputStream(header("DenseNodes")), null).allPrimitives().size());
+        IllegalDataException e = assertThrows(IllegalDataException.class,
+                () -> PbfReader.parseDataSet(new ByteArrayInputStream(header("HistoricalInformation")), null));
+        assertEquals("Unsupported PBF feature: HistoricalInformation", e.getMessage());
+    }
+
+    /**
+     * Checks that truncated files are rejected.
+     * @throws Exception never
+     */
+    @Test
+    void testTruncated() throws Exception {
+        byte[] data = header("DenseNodes");
+        assertThrows(IllegalDataException.class,
+                () -> PbfReader.parseDataSet(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 2)), null));
+    }
+}